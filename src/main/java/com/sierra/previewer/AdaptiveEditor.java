@@ -0,0 +1,240 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import org.fife.ui.autocomplete.AutoCompletion;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+import org.fife.ui.rsyntaxtextarea.parser.AbstractParser;
+import org.fife.ui.rsyntaxtextarea.parser.Parser;
+
+/**
+ * Adapts an editor's features to the size of its document, and measures how
+ * long keystrokes take to show up on screen.
+ * <p>
+ * Code folding, bracket matching and the editor's parsers (e.g. the budget
+ * warnings) rescan the document after every edit, so they are turned off for
+ * large documents. For huge documents, syntax
+ * highlighting is turned off as well: RSyntaxTextArea only paints the visible
+ * lines, but re-lexes every following line whose state an edit changed,
+ * which for an unclosed comment or attribute is the rest of the document.
+ * Features are restored once the document shrinks well below the threshold.
+ * <p>
+ * Latency is measured from the key press to the end of the first paint after
+ * the edit, and reported over the most recent keystrokes.
+ */
+public class AdaptiveEditor {
+
+    public static final int DEFAULT_LARGE_THRESHOLD = 1024 * 1024;
+    public static final int DEFAULT_HUGE_THRESHOLD = 4 * 1024 * 1024;
+
+    private static final int AUTO_ACTIVATION_DELAY = 500;
+    private static final int LARGE_AUTO_ACTIVATION_DELAY = 1500;
+
+    private static final int LATENCY_SAMPLES = 128;
+
+    private final RSyntaxTextArea editor;
+    private final AutoCompletion autoCompletion;
+    private final Runnable changeListener;
+
+    private int largeThreshold = DEFAULT_LARGE_THRESHOLD;
+    private int hugeThreshold = DEFAULT_HUGE_THRESHOLD;
+    private EditorMode mode = EditorMode.FULL;
+    private boolean updateScheduled = false;
+
+    // --- Latency ---
+    private final long[] latencies = new long[LATENCY_SAMPLES]; // Ring buffer, in nanoseconds
+    private int latencyCount = 0;
+    private long keyPressed = -1;
+    private boolean edited = false;
+
+    /**
+     * Starts adapting an editor. The editor has to call {@link #painted()}
+     * at the end of each paint for latency to be measured.
+     *
+     * @param editor The editor, set up for full editing.
+     * @param autoCompletion The completion installed in the editor.
+     * @param changeListener Called on the EDT when the mode changed or a
+     * keystroke was measured.
+     */
+    public AdaptiveEditor(RSyntaxTextArea editor, AutoCompletion autoCompletion, Runnable changeListener) {
+        this.editor = editor;
+        this.autoCompletion = autoCompletion;
+        this.changeListener = changeListener;
+
+        editor.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                keyPressed = System.nanoTime();
+                edited = false;
+            }
+
+            @Override
+            public void keyReleased(KeyEvent e) {
+                if (!edited) {
+                    keyPressed = -1; // Nothing to wait for, e.g. a modifier key
+                }
+            }
+        });
+        editor.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                documentChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                documentChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Style changes, not relevant for size
+            }
+        });
+    }
+
+    private void documentChanged() {
+        edited = keyPressed >= 0;
+
+        // The editor's settings cannot be changed while it is being notified
+        if (!updateScheduled) {
+            updateScheduled = true;
+            SwingUtilities.invokeLater(this::updateMode);
+        }
+    }
+
+    // --- Mode ---
+
+    /**
+     * Gets the mode the editor is in.
+     *
+     * @return The mode.
+     */
+    public EditorMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the document lengths from which features are reduced.
+     *
+     * @param largeThreshold The length from which the editor switches to
+     * {@link EditorMode#LARGE}, or 0 to always keep every feature.
+     * @param hugeThreshold The length from which the editor switches to
+     * {@link EditorMode#HUGE}, or 0 to never switch.
+     */
+    public void setThresholds(int largeThreshold, int hugeThreshold) {
+        this.largeThreshold = Math.max(0, largeThreshold);
+        this.hugeThreshold = Math.max(0, hugeThreshold);
+        updateMode();
+    }
+
+    private void updateMode() {
+        updateScheduled = false;
+
+        EditorMode next = EditorMode.forLength(editor.getDocument().getLength(), mode, largeThreshold, hugeThreshold);
+        if (next == mode) {
+            return;
+        }
+
+        mode = next;
+        editor.setCodeFoldingEnabled(mode == EditorMode.FULL);
+        editor.setBracketMatchingEnabled(mode == EditorMode.FULL);
+        editor.setAntiAliasingEnabled(mode != EditorMode.HUGE);
+        editor.setSyntaxEditingStyle(mode == EditorMode.HUGE
+                ? SyntaxConstants.SYNTAX_STYLE_NONE : SyntaxConstants.SYNTAX_STYLE_XML);
+        autoCompletion.setAutoActivationEnabled(mode != EditorMode.HUGE && !GraphicsEnvironment.isHeadless());
+        autoCompletion.setAutoActivationDelay(mode == EditorMode.FULL
+                ? AUTO_ACTIVATION_DELAY : LARGE_AUTO_ACTIVATION_DELAY);
+        for (int i = 0; i < editor.getParserCount(); i++) {
+            Parser parser = editor.getParser(i);
+            if (parser instanceof AbstractParser abstractParser) {
+                abstractParser.setEnabled(mode == EditorMode.FULL);
+                editor.forceReparsing(parser); // Clears the notices of a disabled parser
+            }
+        }
+
+        changeListener.run();
+    }
+
+    // --- Latency ---
+
+    /**
+     * Records the latency of the pending keystroke, if any. Called by the
+     * editor at the end of each paint.
+     */
+    public void painted() {
+        if (keyPressed < 0 || !edited) {
+            return;
+        }
+
+        latencies[latencyCount % LATENCY_SAMPLES] = System.nanoTime() - keyPressed;
+        latencyCount++;
+        keyPressed = -1;
+        edited = false;
+
+        // Notified after the paint, so that the listener's own repaints are not measured
+        SwingUtilities.invokeLater(changeListener);
+    }
+
+    /**
+     * Gets the number of keystrokes measured so far.
+     *
+     * @return The count.
+     */
+    public int getLatencyCount() {
+        return latencyCount;
+    }
+
+    /**
+     * Gets the mean latency of the recent keystrokes.
+     *
+     * @return The mean, in milliseconds, or 0 if none was measured.
+     */
+    public double getMeanLatencyMillis() {
+        int count = Math.min(latencyCount, LATENCY_SAMPLES);
+        if (count == 0) {
+            return 0;
+        }
+
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += latencies[i];
+        }
+        return total / (count * 1e6);
+    }
+
+    /**
+     * Gets the 95th percentile latency of the recent keystrokes.
+     *
+     * @return The percentile, in milliseconds, or 0 if none was measured.
+     */
+    public double getP95LatencyMillis() {
+        int count = Math.min(latencyCount, LATENCY_SAMPLES);
+        if (count == 0) {
+            return 0;
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(count * 0.95) - 1] / 1e6;
+    }
+}
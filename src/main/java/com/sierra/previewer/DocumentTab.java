@@ -0,0 +1,859 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import com.sierra.previewer.engine.ComplexityAnalyzer;
+import com.sierra.previewer.engine.PreviewCache;
+import com.sierra.previewer.engine.RenderingEngine;
+import com.sierra.previewer.engine.SourceMap;
+import com.sierra.previewer.model.RenderError;
+import com.sierra.previewer.model.RenderPhase;
+import com.sierra.previewer.model.RenderResult;
+import com.sierra.previewer.model.RenderTimings;
+import com.sierra.previewer.text.DocumentMirror;
+import com.sierra.previewer.text.Rope;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+import org.fife.ui.rtextarea.RUndoManager;
+
+import org.fife.ui.autocomplete.AutoCompletion;
+import org.fife.ui.autocomplete.CompletionProvider;
+
+import org.httprpc.sierra.UILoader;
+import org.httprpc.sierra.Outlet;
+
+/**
+ * A single open document: an editor and its live preview. UI is defined in
+ * DocumentTab.xml. All tabs share the rendering engine, and with it the
+ * render executor and parse cache.
+ * <p>
+ * Only the active tab renders as the user types. Inactive tabs record that
+ * they are out of date and drop their preview tree, re-rendering when they
+ * are selected again.
+ */
+public class DocumentTab extends JPanel {
+
+    private static final long SNAPSHOT_INTERVAL_NANOS = 15_000_000_000L;
+    private static final int MAX_SNAPSHOT_SIZE = 2048;
+    private static final DateTimeFormatter SNAPSHOT_TIME_FORMAT = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT)
+            .withZone(ZoneId.systemDefault());
+
+    // --- Subsystems ---
+    private final RenderingEngine renderingEngine;
+    private final Timer debounceTimer;
+    private final Consumer<DocumentTab> statusListener;
+    private RenderListener renderListener = null;
+
+    // --- Document State ---
+    private Path filePath = null; // The path of the loaded file, or null for an untitled document
+    private boolean active = false;
+    private boolean renderPending = true; // Whether the preview is out of date with the editor
+    private int renderGeneration = 0; // Incremented for each render so stale results can be ignored
+    private RenderWorker pendingWorker = null;
+    private String status = "Ready.";
+
+    // --- UI Components (Injected by Sierra) ---
+    @Outlet
+    private JScrollPane editorScrollPane; // The <scroll-pane> placeholder
+
+    @Outlet
+    private JPanel previewPanel; // The <column-panel>
+
+    // --- Manually Created Components ---
+    private RSyntaxTextArea editorPane;
+    private JComponent previewComponent; // The root of the currently displayed preview tree
+    private Rope previewText = null; // The text the displayed preview was rendered from
+    private long previewFingerprint = RenderResult.NO_FINGERPRINT; // Identifies the displayed preview's layout
+    private Instant lastRenderTime = null;
+    private DocumentMirror documentMirror; // Tracks the editor text for constant-time snapshots
+    private AdaptiveEditor adaptiveEditor; // Scales editor features to the document size
+    private RopeUndoManager undoManager; // Keeps undo history as shared text versions
+    private LayoutBudgetParser budgetParser; // Warns where the layout exceeds its performance budgets
+    private final JLabel editorStatusLabel = new JLabel(" ");
+
+    // --- Source Mapping ---
+    private final SourceHighlightUI sourceHighlightUI = new SourceHighlightUI(this::componentPicked);
+    private final JLayer<JComponent> previewLayer = new JLayer<>(null, sourceHighlightUI);
+    private SourceMap sourceMap = null; // Links the displayed preview to the editor text
+    private final List<int[]> editLog = new ArrayList<>(); // Edits made while a render is in flight
+
+    // --- Preview Cache ---
+    private PreviewCache previewCache = null;
+    private Rope snapshotText = null; // The text of the displayed preview if it is not cached yet
+    private long lastSnapshotNanos = 0;
+    private long editLogStart = 0; // The number of edits dropped from the front of the log
+
+    /**
+     * Creates an empty document tab.
+     *
+     * @param renderingEngine The engine shared by all tabs.
+     * @param statusListener Notified on the EDT when the tab's status changes.
+     */
+    public DocumentTab(RenderingEngine renderingEngine, Consumer<DocumentTab> statusListener) {
+        super(new BorderLayout());
+        this.renderingEngine = renderingEngine;
+        this.statusListener = statusListener;
+
+        // 1. Load the outlets from the declarative .xml file
+        UILoader.load(this, "DocumentTab.xml");
+
+        // 2. Manually set up components not supported by the DTD
+        setupCustomEditor();
+
+        // 3. Set layout for previewPanel
+        previewPanel.setLayout(new BorderLayout());
+
+        // The editor's mode and typing latency are shown below it
+        editorStatusLabel.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        editorStatusLabel.setFont(editorStatusLabel.getFont().deriveFont(Font.PLAIN,
+                editorStatusLabel.getFont().getSize2D() - 1));
+        JPanel editorPanel = new JPanel(new BorderLayout());
+        editorPanel.add(editorScrollPane, BorderLayout.CENTER);
+        editorPanel.add(editorStatusLabel, BorderLayout.SOUTH);
+
+        // Create the JSplitPane with the editor on the left and the preview on the right
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, editorPanel, previewPanel);
+        splitPane.setDividerLocation(0.5);
+        splitPane.setResizeWeight(0.5);
+        add(splitPane, BorderLayout.CENTER);
+
+        // 4. Setup Control Subsystem (Debounce Timer)
+        this.debounceTimer = setupDebounceTimer();
+
+        // 5. Wire editor events
+        editorPane.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                recordEdit(e.getOffset(), e.getLength());
+                documentChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                recordEdit(e.getOffset(), -e.getLength());
+                documentChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Style changes, not relevant for text
+            }
+        });
+    }
+
+    /**
+     * Creates the custom RSyntaxTextArea and adds it to the
+     * <scroll-pane> placeholder that Sierra injected.
+     */
+    private void setupCustomEditor() {
+        editorPane = new RSyntaxTextArea(25, 80) {
+            @Override
+            protected RUndoManager createUndoManager() {
+                // Called while the text area is being constructed
+                undoManager = new RopeUndoManager(this);
+                return undoManager;
+            }
+
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                if (adaptiveEditor != null) {
+                    adaptiveEditor.painted();
+                }
+            }
+        };
+        editorPane.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_XML);
+        editorPane.setCodeFoldingEnabled(true);
+        editorPane.setAntiAliasingEnabled(true);
+        editorPane.setEditable(true); // Ensure it's editable
+
+        // The DTD index behind the provider is shared by all tabs
+        CompletionProvider provider = new SierraXMLCompletionProvider();
+
+        // Create the auto-completion manager
+        AutoCompletion ac = new AutoCompletion(provider);
+        ac.setAutoActivationEnabled(!GraphicsEnvironment.isHeadless()); // The popup is a window, e.g. when replaying a session
+        ac.setAutoActivationDelay(500); // Activate after 500ms of typing
+        ac.install(editorPane);
+
+        // Features that rescan the whole document are reduced for large ones
+        adaptiveEditor = new AdaptiveEditor(editorPane, ac, this::updateEditorStatus);
+
+        // Restored versions are rendered at once rather than after the typing delay
+        editorPane.discardAllEdits();
+        undoManager.setRestoreListener(() -> {
+            debounceTimer.stop();
+            if (active) {
+                triggerRender();
+            }
+        });
+
+        // Snapshots of the text are taken for renders and budget checks
+        documentMirror = new DocumentMirror(editorPane.getDocument());
+
+        // Performance budgets are checked as the layout is edited
+        budgetParser = new LayoutBudgetParser(new ComplexityAnalyzer(SierraDtdIndex.getShared().getComponentTypes()),
+                editorPane, documentMirror);
+        editorPane.addParser(budgetParser);
+
+        // The component built from the element around the caret is outlined in the preview
+        editorPane.addCaretListener(e -> highlightSource(e.getDot()));
+
+        editorScrollPane.setViewportView(editorPane);
+    }
+
+    private void updateEditorStatus() {
+        StringBuilder text = new StringBuilder();
+        if (adaptiveEditor.getMode() != EditorMode.FULL) {
+            text.append(adaptiveEditor.getMode().getLabel()).append(" mode");
+        }
+        if (adaptiveEditor.getLatencyCount() > 0) {
+            if (text.length() > 0) {
+                text.append(" \u00b7 ");
+            }
+            text.append(String.format("Keystroke %.1f ms (95%%: %.1f ms)", adaptiveEditor.getMeanLatencyMillis(),
+                    adaptiveEditor.getP95LatencyMillis()));
+        }
+        editorStatusLabel.setText(text.length() == 0 ? " " : text.toString());
+        editorStatusLabel.setToolTipText(switch (adaptiveEditor.getMode()) {
+            case FULL -> null;
+            case LARGE -> "Code folding, bracket matching and budget warnings are off for this document.";
+            case HUGE -> "Syntax highlighting, code folding, budget warnings and automatic completion are off for this document.";
+        });
+    }
+
+    /**
+     * Sets the document lengths from which the editor reduces its features.
+     *
+     * @param largeThreshold The length from which folding and bracket
+     * matching are turned off, or 0 to keep every feature.
+     * @param hugeThreshold The length from which syntax highlighting is
+     * turned off as well, or 0 to keep it.
+     */
+    public void setEditorThresholds(int largeThreshold, int hugeThreshold) {
+        adaptiveEditor.setThresholds(largeThreshold, hugeThreshold);
+    }
+
+    /**
+     * Gets the editor's undo manager, whose history can be navigated
+     * directly.
+     *
+     * @return The undo manager.
+     */
+    public RopeUndoManager getUndoManager() {
+        return undoManager;
+    }
+
+    /**
+     * Gets the mode the editor is in for the current document size.
+     *
+     * @return The editor mode.
+     */
+    public EditorMode getEditorMode() {
+        return adaptiveEditor.getMode();
+    }
+
+    /**
+     * Implements the debounce mechanism.
+     */
+    private Timer setupDebounceTimer() {
+        Timer timer = new Timer(1000, (e) -> triggerRender());
+        timer.setRepeats(false);
+        return timer;
+    }
+
+    private void documentChanged() {
+        renderPending = true;
+        if (active) {
+            debounceTimer.restart();
+            setStatus("Typing...");
+        }
+    }
+
+    // --- Source Mapping ---
+    /**
+     * Keeps the source map in step with the editor. Edits made while a
+     * render is in flight are also logged, so that they can be applied to
+     * the map of the preview it produces, which was built from older text.
+     */
+    private void recordEdit(int offset, int length) {
+        if (sourceMap != null) {
+            sourceMap.edit(offset, length);
+        }
+        if (pendingWorker != null) {
+            editLog.add(new int[] {offset, length});
+        }
+    }
+
+    private void highlightSource(int offset) {
+        Component component = sourceMap != null ? sourceMap.componentAt(offset) : null;
+        sourceHighlightUI.setHighlighted(component != previewComponent ? component : null, previewLayer);
+    }
+
+    /**
+     * Selects the source of a component the user picked in the preview.
+     */
+    private void componentPicked(Component component) {
+        SourceMap.Span span = sourceMap != null ? sourceMap.sourceOf(component) : null;
+        if (span == null) {
+            setStatus("The source of this component is not known.");
+            return;
+        }
+        // Selected backwards, so that the caret is inside the picked element
+        editorPane.setCaretPosition(Math.min(span.end(), editorPane.getDocument().getLength()));
+        editorPane.moveCaretPosition(Math.min(span.start(), editorPane.getDocument().getLength()));
+        editorPane.requestFocusInWindow();
+    }
+
+    private void setStatus(String status) {
+        this.status = status;
+        statusListener.accept(this);
+    }
+
+    // --- Accessors ---
+    /**
+     * Gets the latest status message of this tab's render pipeline.
+     *
+     * @return The status text.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the root of the displayed preview tree.
+     *
+     * @return The preview component, or null if no preview is displayed.
+     */
+    public JComponent getPreviewComponent() {
+        return previewComponent;
+    }
+
+    /**
+     * Gets the text the displayed preview was rendered from, which may lag
+     * behind the editor.
+     *
+     * @return The rendered text, or null if no preview is displayed.
+     */
+    public String getPreviewText() {
+        return previewComponent != null ? previewText.toString() : null;
+    }
+
+    /**
+     * Captures the editor text without copying it.
+     *
+     * @return An immutable snapshot that may be read on any thread.
+     */
+    public Rope getTextSnapshot() {
+        return documentMirror.snapshot();
+    }
+
+    public RSyntaxTextArea getEditorPane() {
+        return editorPane;
+    }
+
+    /**
+     * Gets when the displayed preview was rendered.
+     *
+     * @return The time of the last successful render, or null if there has
+     * been none.
+     */
+    public Instant getLastRenderTime() {
+        return lastRenderTime;
+    }
+
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Gets the title to show on the tab.
+     *
+     * @return The file name, or "Untitled" if no file is loaded.
+     */
+    public String getTitle() {
+        return filePath == null ? "Untitled" : filePath.getFileName().toString();
+    }
+
+    /**
+     * Whether this tab is an untitled document with no content, and so can be
+     * reused when opening a file.
+     *
+     * @return True if the tab is empty.
+     */
+    public boolean isEmpty() {
+        return filePath == null && editorPane.getDocument().getLength() == 0;
+    }
+
+    /**
+     * Replaces the editor content with a loaded file and renders it.
+     *
+     * @param content The file content.
+     * @param path The file path, used as the render target.
+     */
+    public void setContent(String content, Path path) {
+        filePath = path;
+        budgetParser.setFile(path);
+        lastRenderTime = null;
+        snapshotText = null;
+        lastSnapshotNanos = 0; // The first preview of a file is cached at once
+        editorPane.setText(content);
+        editorPane.setCaretPosition(0);
+        editorPane.discardAllEdits(); // Loading is not an undoable edit
+        debounceTimer.stop();
+        renderPending = true;
+        if (active) {
+            triggerRender();
+        }
+    }
+
+    /**
+     * Sets the cache that file previews are stored in as they are rendered.
+     *
+     * @param previewCache The cache, or null.
+     */
+    public void setPreviewCache(PreviewCache previewCache) {
+        this.previewCache = previewCache;
+    }
+
+    /**
+     * Shows a cached snapshot of the preview until the render of the current
+     * content replaces it. Called after {@link #setContent}.
+     *
+     * @param entry The cached preview of the current content.
+     */
+    public void showCachedPreview(PreviewCache.Entry entry) {
+        JLabel placeholder = new JLabel(new ImageIcon(entry.image()));
+        placeholder.setHorizontalAlignment(SwingConstants.LEADING);
+        placeholder.setVerticalAlignment(SwingConstants.TOP);
+        swapPreview(placeholder);
+
+        PreviewCache.Metadata metadata = entry.metadata();
+        setStatus(String.format("Showing the preview cached %s (%,d elements); rendering...",
+                SNAPSHOT_TIME_FORMAT.format(metadata.renderedAt()), metadata.elementCount()));
+    }
+
+    /**
+     * Stores the displayed preview in the preview cache if it has not been
+     * stored yet, e.g. before the application exits.
+     *
+     * @return Completes when the preview is stored.
+     */
+    public CompletableFuture<Void> cachePreview() {
+        return cacheSnapshot(true);
+    }
+
+    /**
+     * Paints the displayed preview and stores it in the preview cache under
+     * the text it was rendered from, which the render also saved to the
+     * file. Unless forced, this happens at most every
+     * {@link #SNAPSHOT_INTERVAL_NANOS}, since painting blocks the EDT.
+     */
+    private CompletableFuture<Void> cacheSnapshot(boolean force) {
+        long now = System.nanoTime();
+        if (previewCache == null || filePath == null || snapshotText == null || previewComponent == null
+                || (!force && lastSnapshotNanos != 0 && now - lastSnapshotNanos < SNAPSHOT_INTERVAL_NANOS)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int width = Math.min(previewComponent.getWidth(), MAX_SNAPSHOT_SIZE);
+        int height = Math.min(previewComponent.getHeight(), MAX_SNAPSHOT_SIZE);
+        if (width <= 0 || height <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            previewComponent.paint(g);
+        } finally {
+            g.dispose();
+        }
+
+        CompletableFuture<Void> stored = previewCache.store(filePath, snapshotText, image);
+        snapshotText = null;
+        lastSnapshotNanos = now;
+        return stored;
+    }
+
+    /**
+     * Moves the caret to the start of a line and scrolls it into view.
+     *
+     * @param line The 1-based line number, or 0 to do nothing. Lines past
+     * the end of the document go to the last line.
+     */
+    public void goToLine(int line) {
+        if (line <= 0) {
+            return;
+        }
+        try {
+            editorPane.setCaretPosition(editorPane.getLineStartOffset(Math.min(line, editorPane.getLineCount()) - 1));
+            editorPane.requestFocusInWindow();
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e); // The line is within the document
+        }
+    }
+
+    /**
+     * Receives the progress of this tab's renders, e.g. to measure how long
+     * edits take to reach the preview. Methods are called on the EDT.
+     */
+    public interface RenderListener {
+
+        /**
+         * Called when a render of the current text has been submitted.
+         *
+         * @param generation Identifies the render.
+         */
+        void renderStarted(int generation);
+
+        /**
+         * Called when a render's result has been displayed. Renders that
+         * were cancelled or superseded are not reported.
+         *
+         * @param generation Identifies the render.
+         * @param result The result.
+         * @param swapNanos The time the EDT was blocked swapping the preview.
+         */
+        void renderDisplayed(int generation, RenderResult result, long swapNanos);
+    }
+
+    /**
+     * Sets the listener notified of this tab's renders.
+     *
+     * @param renderListener The listener, or null.
+     */
+    public void setRenderListener(RenderListener renderListener) {
+        this.renderListener = renderListener;
+    }
+
+    /**
+     * Detaches the file from this tab, e.g. while a new file is loading into it.
+     */
+    public void clearFilePath() {
+        filePath = null;
+        budgetParser.setFile(null);
+        lastRenderTime = null;
+    }
+
+    // --- Activation / Throttling ---
+    /**
+     * Marks this tab as the visible one. Only the active tab renders eagerly;
+     * an inactive tab drops its preview tree to reclaim memory.
+     *
+     * @param active Whether the tab is now visible.
+     */
+    public void setActive(boolean active) {
+        if (this.active == active) {
+            return;
+        }
+        this.active = active;
+
+        if (active) {
+            if (renderPending || previewComponent == null) {
+                triggerRender();
+            }
+        } else {
+            debounceTimer.stop();
+            cancelPendingRender();
+            cacheSnapshot(true);
+            releasePreview();
+        }
+    }
+
+    /**
+     * Stops all background work for this tab before it is closed.
+     */
+    public void dispose() {
+        active = false;
+        debounceTimer.stop();
+        cancelPendingRender();
+        cacheSnapshot(true);
+        releasePreview();
+        documentMirror.dispose();
+    }
+
+    private void cancelPendingRender() {
+        if (pendingWorker != null) {
+            pendingWorker.cancel(false);
+            pendingWorker = null;
+        }
+    }
+
+    private void releasePreview() {
+        if (previewComponent != null) {
+            sourceHighlightUI.setHighlighted(null, previewLayer);
+            sourceMap = null;
+            renderingEngine.getComponentPool().release(previewComponent);
+            previewComponent = null;
+            previewFingerprint = RenderResult.NO_FINGERPRINT;
+            renderPending = true;
+            previewPanel.revalidate();
+            previewPanel.repaint();
+        }
+    }
+
+    // --- Rendering/Control Logic ---
+    /**
+     * Kicks off the rendering process on the shared render executor.
+     */
+    public void triggerRender() {
+        cancelPendingRender();
+
+        setStatus("Rendering...");
+        Rope xmlText = documentMirror.snapshot(); // Flattened to a String on the render thread
+        int generation = ++renderGeneration;
+        long editPosition = editLogStart + editLog.size();
+
+        // The new tree is laid out off screen at the size it will be displayed at
+        Dimension layoutSize = SwingUtilities.calculateInnerArea(previewPanel, null).getSize();
+
+        RenderWorker worker = new RenderWorker(xmlText, filePath, layoutSize, previewFingerprint, renderingEngine,
+                result -> displayRenderResult(generation, xmlText, editPosition, result),
+                component -> displayFirstContent(generation, component), this::discardRenderResult);
+        try {
+            renderingEngine.getRenderExecutor().execute(worker);
+            pendingWorker = worker;
+            renderPending = false;
+            if (renderListener != null) {
+                renderListener.renderStarted(generation);
+            }
+        } catch (RejectedExecutionException e) {
+            // Every render thread is busy and the queue is full; try again later
+            setStatus("Render queue full, retrying...");
+            debounceTimer.restart();
+        }
+    }
+
+    /**
+     * Shows a streamed preview while the rest of its document is still being
+     * parsed.
+     */
+    private void displayFirstContent(int generation, JComponent component) {
+        // Published chunks are delivered on a timer, so the render may already have completed
+        if (generation != renderGeneration || !active || component == previewComponent) {
+            return;
+        }
+        swapPreview(component);
+        setStatus("Rendering (streaming)...");
+    }
+
+    /**
+     * Recycles the preview built by a cancelled render, unless it is the
+     * streamed preview already on screen.
+     */
+    private void discardRenderResult(RenderResult result) {
+        if (result instanceof RenderResult.Success success && success.component() != previewComponent) {
+            renderingEngine.getComponentPool().release(success.component());
+        }
+    }
+
+    /**
+     * This is the callback that runs on the EDT when the SwingWorker is done.
+     */
+    private void displayRenderResult(int generation, Rope xmlText, long editPosition, RenderResult result) {
+        if (generation != renderGeneration || !active) {
+            // Superseded by a newer render, or the tab was hidden meanwhile
+            discardRenderResult(result);
+            return;
+        }
+        pendingWorker = null;
+
+        // The preview was built from the text as it was before any logged edits
+        List<int[]> edits = new ArrayList<>(editLog.subList((int) (editPosition - editLogStart), editLog.size()));
+        editLogStart += editLog.size();
+        editLog.clear();
+
+        long swapNanos = 0;
+        switch (result) {
+            case RenderResult.Success success -> {
+                // A streamed preview is already on screen
+                swapNanos = success.component() != previewComponent ? swapPreview(success.component()) : 0;
+                previewFingerprint = success.fingerprint();
+                if (sourceMap != null) {
+                    for (int[] edit : edits) {
+                        sourceMap.edit(edit[0], edit[1]);
+                    }
+                }
+                previewText = xmlText;
+                lastRenderTime = Instant.now();
+                snapshotText = xmlText;
+                cacheSnapshot(false);
+                RenderTimings timings = success.timings();
+                setStatus(String.format("Render successful (parse %.1f ms, build %.1f ms, layout %.1f ms, swap %.1f ms).",
+                        timings.getMillis(RenderPhase.PARSE), timings.getMillis(RenderPhase.BUILD),
+                        timings.getMillis(RenderPhase.LAYOUT), swapNanos / 1e6));
+            }
+            case RenderResult.Unchanged unchanged -> {
+                // The displayed tree is kept; only its source positions are brought up to date
+                if (sourceMap != null) {
+                    sourceMap = SourceMap.build(previewComponent, unchanged.layout());
+                    for (int[] edit : edits) {
+                        sourceMap.edit(edit[0], edit[1]);
+                    }
+                }
+                previewText = xmlText;
+                lastRenderTime = Instant.now();
+                snapshotText = xmlText;
+                cacheSnapshot(false);
+                setStatus(String.format("Preview unchanged (parse %.1f ms); build and swap skipped.",
+                        unchanged.timings().getMillis(RenderPhase.PARSE)));
+            }
+            case RenderResult.Error error -> {
+                RenderError details = error.details();
+                setStatus("Error (" + details.phase().name().toLowerCase() + "): " + details);
+            }
+            default -> {
+            }
+        }
+
+        if (renderListener != null) {
+            renderListener.renderDisplayed(generation, result, swapNanos);
+        }
+    }
+
+    /**
+     * Replaces the displayed preview with a tree that has already been laid
+     * out off screen. The panel is validated immediately rather than via
+     * revalidate(), so the old tree stays on screen until the new one is
+     * ready to paint and only the preview subtree is laid out.
+     *
+     * @return The time the EDT was blocked, in nanoseconds.
+     */
+    private long swapPreview(JComponent component) {
+        long start = System.nanoTime();
+
+        JComponent previous = previewComponent;
+        if (previewLayer.getParent() == null) {
+            previewPanel.removeAll(); // The placeholder label from DocumentTab.xml
+            previewPanel.add(previewLayer, BorderLayout.CENTER);
+        }
+        sourceHighlightUI.setHighlighted(null, previewLayer);
+        previewComponent = component;
+        previewFingerprint = RenderResult.NO_FINGERPRINT; // Set by the caller once the render is complete
+        sourceMap = SourceMap.of(component);
+        previewLayer.setView(previewComponent);
+        previewPanel.validate();
+        previewPanel.repaint();
+
+        long swapNanos = System.nanoTime() - start;
+        renderingEngine.getMetrics().recordSwap(swapNanos);
+
+        // Recycle the discarded tree so the next render can reuse its components
+        if (previous != null) {
+            renderingEngine.getComponentPool().release(previous);
+        }
+        return swapNanos;
+    }
+
+    // --- INNER CLASS FOR RENDERING ---
+    private static class RenderWorker extends SwingWorker<RenderResult, JComponent> {
+
+        private final Rope xmlText;
+        private final Path targetPath;
+        private final Dimension layoutSize;
+        private final long displayedFingerprint;
+        private final RenderingEngine engine;
+        private final Consumer<RenderResult> callback;
+        private final Consumer<JComponent> firstContentCallback;
+        private final Consumer<RenderResult> discardCallback;
+        private final AtomicReference<RenderResult> unclaimed = new AtomicReference<>(); // Until done() gets it
+
+        RenderWorker(Rope xmlText, Path targetPath, Dimension layoutSize, long displayedFingerprint,
+                RenderingEngine engine, Consumer<RenderResult> callback, Consumer<JComponent> firstContentCallback,
+                Consumer<RenderResult> discardCallback) {
+            this.xmlText = xmlText;
+            this.targetPath = targetPath;
+            this.layoutSize = layoutSize;
+            this.displayedFingerprint = displayedFingerprint;
+            this.engine = engine;
+            this.callback = callback;
+            this.firstContentCallback = firstContentCallback;
+            this.discardCallback = discardCallback;
+        }
+
+        @Override
+        protected RenderResult doInBackground() throws Exception {
+            Dimension size = layoutSize.width > 0 ? layoutSize : null;
+
+            // Very large documents are shown while they are still being parsed
+            RenderResult result;
+            int streamingThreshold = engine.getStreamingThreshold();
+            if (streamingThreshold > 0 && engine.getVirtualizationThreshold() > 0
+                    && xmlText.length() >= streamingThreshold) {
+                result = engine.renderStreaming(xmlText, targetPath, size, component -> publish(component),
+                        this::isCancelled);
+            } else {
+                result = engine.render(xmlText.toString(), targetPath, size, displayedFingerprint);
+            }
+
+            // done() cannot get the result of a cancelled worker, so whichever sees the cancellation discards it
+            unclaimed.set(result);
+            if (isCancelled()) {
+                discardUnclaimed();
+            }
+            return result;
+        }
+
+        private void discardUnclaimed() {
+            RenderResult result = unclaimed.getAndSet(null);
+            if (result != null) {
+                SwingUtilities.invokeLater(() -> discardCallback.accept(result));
+            }
+        }
+
+        @Override
+        protected void process(List<JComponent> chunks) {
+            if (!isCancelled()) {
+                firstContentCallback.accept(chunks.get(chunks.size() - 1));
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                discardUnclaimed();
+                return;
+            }
+            try {
+                RenderResult result = get();
+                callback.accept(result);
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception exception ? exception : e;
+                callback.accept(new RenderResult.Error(new RenderError(cause.getMessage(), cause)));
+            } catch (InterruptedException | CancellationException e) {
+                callback.accept(new RenderResult.Error(new RenderError(e.getMessage(), e)));
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+/**
+ * How much of the editor's feature set is enabled for a document of a given
+ * size. Larger documents give up features whose cost grows with the length of
+ * the text, so that typing stays responsive.
+ */
+public enum EditorMode {
+    /** Every editor feature is enabled. */
+    FULL("Full"),
+    /** Code folding, bracket matching and budget warnings are off, and completion activates later. */
+    LARGE("Large file"),
+    /** As LARGE, and syntax highlighting, anti-aliasing and auto-activated completion are off too. */
+    HUGE("Huge file");
+
+    /**
+     * The fraction of a threshold a document has to shrink below before the
+     * features it disabled are restored, so that typing around a threshold
+     * does not toggle them back and forth.
+     */
+    static final double RESTORE_RATIO = 0.75;
+
+    private final String label;
+
+    EditorMode(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Selects the mode for a document.
+     *
+     * @param length The document length, in characters.
+     * @param current The mode the editor is in.
+     * @param largeThreshold The length from which LARGE applies, or 0 to
+     * always use FULL.
+     * @param hugeThreshold The length from which HUGE applies, or 0 to never
+     * use HUGE.
+     * @return The mode.
+     */
+    public static EditorMode forLength(int length, EditorMode current, int largeThreshold, int hugeThreshold) {
+        if (largeThreshold <= 0) {
+            return FULL;
+        }
+        if (hugeThreshold > 0 && (length >= hugeThreshold
+                || (current == HUGE && length >= hugeThreshold * RESTORE_RATIO))) {
+            return HUGE;
+        }
+        if (length >= largeThreshold || (current != FULL && length >= largeThreshold * RESTORE_RATIO)) {
+            return LARGE;
+        }
+        return FULL;
+    }
+}
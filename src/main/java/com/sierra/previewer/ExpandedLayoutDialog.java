@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import com.sierra.previewer.engine.FragmentCache;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import javax.swing.*;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+import org.fife.ui.rtextarea.RTextScrollPane;
+
+/**
+ * Shows a document with its includes replaced by the fragments they
+ * reference, as the preview builds it.
+ */
+public class ExpandedLayoutDialog extends JDialog {
+
+    /**
+     * Creates the dialog.
+     *
+     * @param owner The owning frame.
+     * @param title The name of the expanded document.
+     * @param expandedXml The expanded layout.
+     * @param fragmentCache The cache the fragments were read from.
+     */
+    public ExpandedLayoutDialog(Frame owner, String title, String expandedXml, FragmentCache fragmentCache) {
+        super(owner, "Expanded Layout - " + title, false);
+
+        RSyntaxTextArea textArea = new RSyntaxTextArea(expandedXml);
+        textArea.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_XML);
+        textArea.setCodeFoldingEnabled(true);
+        textArea.setEditable(false);
+        textArea.setCaretPosition(0);
+
+        JLabel summary = new JLabel(String.format("%,d fragments cached; %,d includes served from the cache, %,d read.",
+                fragmentCache.size(), fragmentCache.getHitCount(), fragmentCache.getMissCount()));
+        summary.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.TRAILING));
+        buttons.add(closeButton);
+
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(summary, BorderLayout.NORTH);
+        content.add(new RTextScrollPane(textArea), BorderLayout.CENTER);
+        content.add(buttons, BorderLayout.SOUTH);
+        setContentPane(content);
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setSize(720, 560);
+        setLocationRelativeTo(owner);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import com.sierra.previewer.engine.FootprintAnalyzer.Footprint;
+import com.sierra.previewer.engine.FootprintAnalyzer.ImageWarning;
+import com.sierra.previewer.engine.FootprintAnalyzer.SubtreeFootprint;
+import com.sierra.previewer.engine.FootprintAnalyzer.TypeFootprint;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.util.function.Consumer;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Shows the estimated memory footprint of a preview, by component type, by
+ * XML element subtree, and for oversized images.
+ */
+public class FootprintDialog extends JDialog {
+
+    /**
+     * Creates the dialog.
+     *
+     * @param owner The owning frame.
+     * @param title The name of the analyzed document.
+     * @param footprint The analysis result.
+     * @param exportAction Called with the footprint when the user asks to
+     * export it as CSV.
+     */
+    public FootprintDialog(Frame owner, String title, Footprint footprint, Consumer<Footprint> exportAction) {
+        super(owner, "Memory Footprint - " + title, false);
+
+        JLabel summary = new JLabel(String.format(
+                "<html>Estimated %s in %,d components; %,d listeners; %,d images (%s); %,d fonts.%s</html>",
+                formatBytes(footprint.totalBytes()), footprint.components(), footprint.listeners(),
+                footprint.images(), formatBytes(footprint.imageBytes()), footprint.fonts(),
+                footprint.imageWarnings().isEmpty() ? ""
+                        : "<br><b>" + footprint.imageWarnings().size()
+                        + " image-pane(s) hold images decoded far above their displayed size.</b>"));
+        summary.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        DefaultTableModel types = readOnlyModel("Type", "Count", "Estimated Size");
+        for (TypeFootprint type : footprint.byType()) {
+            types.addRow(new Object[] {type.type(), type.count(), formatBytes(type.bytes())});
+        }
+
+        DefaultTableModel subtrees = readOnlyModel("Element", "Line", "Components", "Estimated Size");
+        for (SubtreeFootprint subtree : footprint.bySubtree()) {
+            subtrees.addRow(new Object[] {subtree.elementPath(), subtree.line(), subtree.components(),
+                formatBytes(subtree.bytes())});
+        }
+
+        DefaultTableModel images = readOnlyModel("Element", "Line", "Decoded", "Displayed", "Size");
+        for (ImageWarning warning : footprint.imageWarnings()) {
+            images.addRow(new Object[] {warning.elementPath(), warning.line(),
+                warning.imageSize().width + " x " + warning.imageSize().height,
+                warning.displaySize().width + " x " + warning.displaySize().height,
+                formatBytes(warning.bytes())});
+        }
+
+        JTabbedPane tables = new JTabbedPane();
+        tables.addTab("By Type", new JScrollPane(new JTable(types)));
+        tables.addTab("By Element", new JScrollPane(new JTable(subtrees)));
+        tables.addTab("Oversized Images (" + footprint.imageWarnings().size() + ")", new JScrollPane(new JTable(images)));
+
+        JButton exportButton = new JButton("Export CSV...");
+        exportButton.addActionListener(e -> exportAction.accept(footprint));
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.TRAILING));
+        buttons.add(exportButton);
+        buttons.add(closeButton);
+
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(summary, BorderLayout.NORTH);
+        content.add(tables, BorderLayout.CENTER);
+        content.add(buttons, BorderLayout.SOUTH);
+        setContentPane(content);
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setSize(720, 480);
+        setLocationRelativeTo(owner);
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format("%.1f KB", bytes / 1024.0);
+    }
+}
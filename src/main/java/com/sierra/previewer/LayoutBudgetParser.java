@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import com.sierra.previewer.engine.ComplexityAnalyzer;
+import com.sierra.previewer.engine.ComplexityAnalyzer.Analysis;
+import com.sierra.previewer.engine.ComplexityAnalyzer.Budgets;
+import com.sierra.previewer.engine.ComplexityAnalyzer.Violation;
+import com.sierra.previewer.engine.LayoutParseException;
+import com.sierra.previewer.text.DocumentMirror;
+import com.sierra.previewer.text.Rope;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.fife.ui.rsyntaxtextarea.parser.AbstractParser;
+import org.fife.ui.rsyntaxtextarea.parser.DefaultParseResult;
+import org.fife.ui.rsyntaxtextarea.parser.DefaultParserNotice;
+import org.fife.ui.rsyntaxtextarea.parser.ParseResult;
+import org.fife.ui.rsyntaxtextarea.parser.ParserNotice;
+
+/**
+ * Marks the elements at which a layout exceeds its performance budgets as
+ * editor warnings.
+ * <p>
+ * RSyntaxTextArea runs the parser on the EDT shortly after typing stops. The
+ * parser only takes a snapshot of the text there; the budgets file is read
+ * and the snapshot is streamed to a {@link ComplexityAnalyzer}, which also
+ * reads image headers, on a background thread. When the analysis completes,
+ * the editor is asked to parse again, and the warnings are placed against
+ * its current text. Until then the previous warnings stay shown. Malformed
+ * XML is left to the preview to report.
+ */
+public class LayoutBudgetParser extends AbstractParser {
+
+    // Shared by all tabs; analyses are short and only the latest one per tab matters
+    private static final ExecutorService ANALYSIS_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sierra-budgets");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The result of a background analysis.
+     */
+    private record Outcome(int generation, int fileVersion, Budgets budgets, Analysis analysis,
+            LayoutParseException error, long parseTime) {
+    }
+
+    private final ComplexityAnalyzer analyzer;
+    private final RSyntaxTextArea editor;
+    private final DocumentMirror mirror;
+    private final DefaultParseResult result = new DefaultParseResult(this);
+
+    // Confined to the EDT, except the generation, which analyses check to skip superseded snapshots
+    private Path file = null;
+    private int fileVersion = 0;
+    private Budgets budgets = null; // Read by the next analysis
+    private volatile int generation = 0;
+    private Outcome shown = null;
+    private boolean applying = false;
+
+    /**
+     * Creates a parser.
+     *
+     * @param analyzer The analyzer to run.
+     * @param editor The editor the parser is added to.
+     * @param mirror The mirror of the editor's document, for snapshots.
+     */
+    public LayoutBudgetParser(ComplexityAnalyzer analyzer, RSyntaxTextArea editor, DocumentMirror mirror) {
+        this.analyzer = analyzer;
+        this.editor = editor;
+        this.mirror = mirror;
+    }
+
+    /**
+     * Sets the file being edited. The budgets that apply to it are read by
+     * the next analysis.
+     *
+     * @param file The file, or null for an unsaved layout.
+     */
+    public void setFile(Path file) {
+        this.file = file;
+        fileVersion++;
+        budgets = null;
+        shown = null;
+    }
+
+    /**
+     * Gets the budgets the layout was last checked against.
+     *
+     * @return The budgets, or the defaults before the first analysis.
+     */
+    public Budgets getBudgets() {
+        return budgets != null ? budgets : Budgets.DEFAULTS;
+    }
+
+    /**
+     * Gets the result of the last completed analysis.
+     *
+     * @return The analysis, or null if the layout was not well-formed or is
+     * still being analyzed.
+     */
+    public Analysis getAnalysis() {
+        return shown != null ? shown.analysis() : null;
+    }
+
+    @Override
+    public ParseResult parse(RSyntaxDocument document, String style) {
+        if (!applying) {
+            submit();
+        }
+
+        Element root = document.getDefaultRootElement();
+        result.clearNotices();
+        result.setParsedLines(0, root.getElementCount() - 1);
+        result.setError(shown != null ? shown.error() : null);
+        result.setParseTime(shown != null ? shown.parseTime() : 0);
+
+        if (shown != null && shown.analysis() != null) {
+            for (Violation violation : shown.analysis().violations()) {
+                int line = Math.max(0, Math.min(violation.line(), root.getElementCount()) - 1);
+                result.addNotice(notice(document, root.getElement(line), line, violation));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Queues an analysis of the current text.
+     */
+    private void submit() {
+        int requested = ++generation;
+        int version = fileVersion;
+        Rope text = mirror.snapshot();
+        Path directory = file != null ? file.getParent() : null;
+        Budgets known = budgets;
+
+        ANALYSIS_EXECUTOR.execute(() -> {
+            if (generation != requested) {
+                return; // The text has changed again since
+            }
+            Outcome outcome = analyze(requested, version, text, directory, known);
+            SwingUtilities.invokeLater(() -> apply(outcome));
+        });
+    }
+
+    private Outcome analyze(int requested, int version, Rope text, Path directory, Budgets known) {
+        long start = System.currentTimeMillis();
+        Budgets applied = known;
+        if (applied == null) {
+            try {
+                applied = Budgets.find(directory);
+            } catch (IOException e) {
+                System.err.println("Could not read layout budgets: " + e.getMessage());
+                applied = Budgets.DEFAULTS;
+            }
+        }
+
+        Analysis analysis = null;
+        LayoutParseException error = null;
+        try {
+            analysis = analyzer.analyze(text.reader(), directory, applied);
+        } catch (LayoutParseException e) {
+            error = e;
+        }
+        return new Outcome(requested, version, applied, analysis, error, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Shows a completed analysis, unless a newer one is shown or the file
+     * has changed since it was queued.
+     */
+    private void apply(Outcome outcome) {
+        if (outcome.fileVersion() != fileVersion || (shown != null && shown.generation() > outcome.generation())) {
+            return;
+        }
+
+        budgets = outcome.budgets();
+        shown = outcome;
+        applying = true;
+        try {
+            editor.forceReparsing(this); // Clears the warnings instead if the parser is disabled
+        } finally {
+            applying = false;
+        }
+    }
+    /**
+     * Creates a warning underlining a line's text, without its indentation.
+     */
+    private ParserNotice notice(RSyntaxDocument document, Element lineElement, int line, Violation violation) {
+        int offset = lineElement.getStartOffset();
+        int end = Math.min(lineElement.getEndOffset() - 1, document.getLength());
+        try {
+            Segment text = new Segment();
+            document.getText(offset, end - offset, text);
+            int i = 0;
+            while (i < text.count && Character.isWhitespace(text.array[text.offset + i])) {
+                i++;
+            }
+            offset += i;
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e); // The range comes from the document itself
+        }
+
+        DefaultParserNotice notice = new DefaultParserNotice(this, violation.getMessage(), line, offset,
+                Math.max(1, end - offset));
+        notice.setLevel(ParserNotice.Level.WARNING);
+        return notice;
+    }
+}
@@ -13,56 +13,71 @@
  */
 package com.sierra.previewer;
 
+import com.sierra.previewer.engine.FootprintAnalyzer;
+import com.sierra.previewer.engine.FootprintAnalyzer.Footprint;
+import com.sierra.previewer.engine.LayoutCompiler;
+import com.sierra.previewer.engine.LayoutParseException;
+import com.sierra.previewer.engine.LayoutWriter;
+import com.sierra.previewer.engine.PreviewCache;
+import com.sierra.previewer.engine.RenderTracer;
 import com.sierra.previewer.engine.RenderingEngine;
-import com.sierra.previewer.model.RenderError;
-import com.sierra.previewer.model.RenderResult;
+import com.sierra.previewer.model.LayoutNode;
+import com.sierra.previewer.session.EditingSession;
+import com.sierra.previewer.session.SessionRecorder;
+import com.sierra.previewer.text.Rope;
+import com.sierra.previewer.workspace.WorkspaceIndex;
+import com.sierra.previewer.workspace.WorkspaceWatcher;
 import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import javax.swing.*;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
-import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
-import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
-
-import org.fife.ui.autocomplete.AutoCompletion;
-import org.fife.ui.autocomplete.CompletionProvider;
-
 import org.httprpc.sierra.UILoader;
 import org.httprpc.sierra.Outlet;
 
 /**
  * The main application window for the Sierra UI Previewer. UI is defined in
  * MainFrame.xml and loaded by UILoader. This class contains the wiring and
- * business logic.
+ * business logic. Each open document lives in its own {@link DocumentTab}; all
+ * tabs share one rendering engine.
  */
 public class MainFrame extends JFrame {
 
+    private static final long PREVIEW_CACHE_TIMEOUT_MILLIS = 2000;
+    private static final DateTimeFormatter RENDER_TIME_FORMAT = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT)
+            .withZone(ZoneId.systemDefault());
+
     // --- Subsystems ---
-    private final RenderingEngine renderingEngine;
-    private final Timer debounceTimer;
+    private final RenderingEngine renderingEngine; // Shared by every tab
     private final RecentFilesManager recentFilesManager; // NEW: Manager instance
+    private final PreviewCache previewCache; // Snapshots of file previews, shown while reopened files render
 
     // --- File Handling State ---
     private final JFileChooser fileChooser;
-    private Path currentFilePath = null; // Stores the path of the currently loaded file
 
     // --- UI Components (Injected by Sierra) ---
-    @Outlet
-    private JScrollPane editorScrollPane; // The <scroll-pane> placeholder
-
-    @Outlet
-    private JPanel previewPanel; // The <column-panel>
-
     @Outlet
     private JLabel statusBar;
 
@@ -70,16 +85,26 @@ public class MainFrame extends JFrame {
     private JLabel filePathLabel; // The <label> for the file path
 
     // --- Manually Created Components ---
-    private RSyntaxTextArea editorPane;
+    private final JTabbedPane documentTabs;
     private JMenuItem saveItem; // Reference to the manually created menu item
     private JMenu recentMenu; // New reference for the Recent Files menu
+    private boolean adaptiveEditing = true; // Whether editors reduce their features for large documents
+    private SessionRecorder sessionRecorder = null; // Records the edits of one tab for replay
+
+    // --- Workspace Search ---
+    private WorkspaceIndex workspaceIndex = null;
+    private WorkspaceWatcher workspaceWatcher = null;
+    private WorkspaceSearchDialog workspaceSearchDialog = null;
 
     public MainFrame() {
         super("Sierra UI Previewer");
         this.renderingEngine = new RenderingEngine();
+        this.previewCache = new PreviewCache(PreviewCache.defaultDirectory(), PreviewCache.DEFAULT_MAX_BYTES,
+                renderingEngine.getParseCache());
 
         // 0. Initialize the Recent Files Manager
         this.recentFilesManager = new RecentFilesManager(MainFrame.class);
+        recentFilesManager.setChangeListener(() -> SwingUtilities.invokeLater(this::updateRecentMenu));
 
         // 1. Load the UI from the declarative .xml file
         setContentPane(UILoader.load(this, "MainFrame.xml"));
@@ -93,59 +118,35 @@ public class MainFrame extends JFrame {
         // 3. Setup the menu bar
         setupMenuBar();
 
-        // 4. Manually set up components not supported by the DTD
-        setupCustomEditor();
-
-        // 5. Set layout for previewPanel
-        previewPanel.setLayout(new BorderLayout());
+        // 4. Create the document tabs; only the selected tab renders eagerly
+        this.documentTabs = new JTabbedPane();
+        documentTabs.addChangeListener(e -> selectedTabChanged());
 
-        // Create the JSplitPane with the editor on the left and the preview on the right
-        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, editorScrollPane, previewPanel);
-
-        // Set the initial divider location (e.g., 50% of the window width)
-        splitPane.setDividerLocation(0.5);
-
-        // Ensure space is split equally when the frame is resized
-        splitPane.setResizeWeight(0.5);
-
-        // Create a new main panel to hold the JSplitPane (Center) and the StatusBar (South)
+        // Create a new main panel to hold the tabs (Center) and the StatusBar (South)
         JPanel mainContentPanel = new JPanel(new BorderLayout());
-        mainContentPanel.add(splitPane, BorderLayout.CENTER);
+        mainContentPanel.add(documentTabs, BorderLayout.CENTER);
         mainContentPanel.add(statusBar, BorderLayout.SOUTH);
 
         // Set the new panel as the frame's content pane
         setContentPane(mainContentPanel);
 
-        // 6. Setup Control Subsystem (Debounce Timer)
-        this.debounceTimer = setupDebounceTimer();
+        // 5. load icon
+        URL iconURL = getClass().getResource("/sierra.png");
+        Image icon = new ImageIcon(iconURL).getImage();
+        this.setIconImage(icon);
 
-        // 7. Wire editor events
-        editorPane.getDocument().addDocumentListener(new DocumentListener() {
-            @Override
-            public void insertUpdate(DocumentEvent e) {
-                debounceTimer.restart();
-                statusBar.setText("Typing...");
-            }
+        // 6. Open an untitled document, which triggers the initial render
+        createTab();
 
+        // Write out pending preference changes before the application exits
+        addWindowListener(new WindowAdapter() {
             @Override
-            public void removeUpdate(DocumentEvent e) {
-                debounceTimer.restart();
-                statusBar.setText("Typing...");
-            }
-
-            @Override
-            public void changedUpdate(DocumentEvent e) {
-                // Style changes, not relevant for text
+            public void windowClosing(WindowEvent e) {
+                recentFilesManager.flush();
+                cacheSelectedPreview();
+                closeWorkspace();
             }
         });
-        
-        // 7. load icon
-         URL iconURL = getClass().getResource("/sierra.png");
-        Image icon = new ImageIcon(iconURL).getImage();
-        this.setIconImage(icon);
-
-        // 8. Trigger an initial render
-        triggerRender();
     }
 
     // --- Menu Setup ---
@@ -158,6 +159,11 @@ public class MainFrame extends JFrame {
         // --- File Menu ---
         JMenu fileMenu = new JMenu("File");
 
+        // New Tab
+        JMenuItem newItem = new JMenuItem("New Tab");
+        newItem.addActionListener(e -> createTab());
+        fileMenu.add(newItem);
+
         // Open
         JMenuItem openItem = new JMenuItem("Open...");
         openItem.addActionListener(e -> {
@@ -171,8 +177,37 @@ public class MainFrame extends JFrame {
 
         // --- NEW: Recent Menu ---
         recentMenu = new JMenu("Recent");
+        recentMenu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                // Check the files in the background; the menu is updated as results arrive
+                recentFilesManager.refresh();
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
         fileMenu.add(recentMenu);
         updateRecentMenu(); // Populate the menu initially
+        recentFilesManager.refresh();
+
+        fileMenu.addSeparator();
+
+        // Workspace search
+        JMenuItem searchWorkspaceItem = new JMenuItem("Search Workspace...");
+        searchWorkspaceItem.setAccelerator(KeyStroke.getKeyStroke('F',
+                Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx() | InputEvent.SHIFT_DOWN_MASK));
+        searchWorkspaceItem.addActionListener(e -> searchWorkspace(false));
+        fileMenu.add(searchWorkspaceItem);
+
+        JMenuItem openWorkspaceItem = new JMenuItem("Open Workspace...");
+        openWorkspaceItem.addActionListener(e -> searchWorkspace(true));
+        fileMenu.add(openWorkspaceItem);
 
         fileMenu.addSeparator();
 
@@ -182,18 +217,102 @@ public class MainFrame extends JFrame {
         saveItem.setEnabled(false); // Disabled until a file is successfully loaded
         fileMenu.add(saveItem);
 
+        // Compile the layout to the compact binary form
+        JMenuItem compileItem = new JMenuItem("Compile Layout...");
+        compileItem.addActionListener(e -> compileLayout());
+        fileMenu.add(compileItem);
+
+        // Close Tab
+        JMenuItem closeItem = new JMenuItem("Close Tab");
+        closeItem.addActionListener(e -> closeSelectedTab());
+        fileMenu.add(closeItem);
+
         // Separator
         fileMenu.addSeparator();
 
         // Exit
         JMenuItem exitItem = new JMenuItem("Exit");
         exitItem.addActionListener(e -> {
-            System.exit(0); // Exit the application
+            // Close like the window button so the closing listeners save state before exiting
+            dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
         });
         fileMenu.add(exitItem);
 
         menuBar.add(fileMenu);
 
+        // --- View Menu ---
+        JMenu viewMenu = new JMenu("View");
+
+        // Large layouts only build the part of the preview that is scrolled into view
+        int virtualizationThreshold = renderingEngine.getVirtualizationThreshold();
+        JCheckBoxMenuItem virtualizeItem = new JCheckBoxMenuItem("Virtualize Large Previews", true);
+        virtualizeItem.setToolTipText("Build only the visible part of layouts with "
+                + virtualizationThreshold + " or more elements");
+        virtualizeItem.addActionListener(e -> {
+            renderingEngine.setVirtualizationThreshold(virtualizeItem.isSelected() ? virtualizationThreshold : 0);
+            DocumentTab tab = getSelectedTab();
+            if (tab != null) {
+                tab.triggerRender();
+            }
+        });
+        viewMenu.add(virtualizeItem);
+
+        // Large documents turn off editor features that rescan the whole text on every edit
+        JCheckBoxMenuItem adaptiveEditingItem = new JCheckBoxMenuItem("Simplify Editor for Large Files", true);
+        adaptiveEditingItem.setToolTipText(String.format("Turn off code folding above %,d KB and syntax "
+                + "highlighting above %,d KB", AdaptiveEditor.DEFAULT_LARGE_THRESHOLD / 1024,
+                AdaptiveEditor.DEFAULT_HUGE_THRESHOLD / 1024));
+        adaptiveEditingItem.addActionListener(e -> {
+            adaptiveEditing = adaptiveEditingItem.isSelected();
+            for (int i = 0; i < documentTabs.getTabCount(); i++) {
+                applyEditorThresholds((DocumentTab) documentTabs.getComponentAt(i));
+            }
+        });
+        viewMenu.add(adaptiveEditingItem);
+
+        viewMenu.addSeparator();
+
+        // Render tracing, for finding the expensive parts of heavy layouts
+        JCheckBoxMenuItem traceItem = new JCheckBoxMenuItem("Record Render Trace", false);
+        traceItem.addActionListener(e -> {
+            renderingEngine.getTracer().setEnabled(traceItem.isSelected());
+            statusBar.setText(traceItem.isSelected() ? "Recording render trace." : "Render trace recording stopped.");
+        });
+        viewMenu.add(traceItem);
+
+        JMenuItem exportTraceItem = new JMenuItem("Export Render Trace...");
+        exportTraceItem.addActionListener(e -> exportRenderTrace());
+        viewMenu.add(exportTraceItem);
+
+        // Editing sessions, for replaying real workloads against pipeline changes with --replay
+        JCheckBoxMenuItem sessionItem = new JCheckBoxMenuItem("Record Editing Session", false);
+        sessionItem.addActionListener(e -> {
+            if (sessionItem.isSelected()) {
+                sessionItem.setSelected(startSessionRecording());
+            } else {
+                stopSessionRecording();
+            }
+        });
+        viewMenu.add(sessionItem);
+
+        JMenuItem footprintItem = new JMenuItem("Analyze Memory Footprint...");
+        footprintItem.addActionListener(e -> analyzeFootprint());
+        viewMenu.add(footprintItem);
+
+        JMenuItem matrixItem = new JMenuItem("Preview Matrix...");
+        matrixItem.addActionListener(e -> showPreviewMatrix());
+        viewMenu.add(matrixItem);
+
+        JMenuItem expandedItem = new JMenuItem("Expanded Layout...");
+        expandedItem.addActionListener(e -> showExpandedLayout());
+        viewMenu.add(expandedItem);
+
+        JMenuItem undoHistoryItem = new JMenuItem("Undo History...");
+        undoHistoryItem.addActionListener(e -> showUndoHistory());
+        viewMenu.add(undoHistoryItem);
+
+        menuBar.add(viewMenu);
+
         // --- About Menu ---
         JMenu aboutMenu = new JMenu("About");
         JMenuItem aboutItem = new JMenuItem("About Previewer");
@@ -220,7 +339,7 @@ public class MainFrame extends JFrame {
      */
     private void updateRecentMenu() {
         recentMenu.removeAll();
-        List<Path> recentFiles = recentFilesManager.getRecentFiles();
+        List<RecentFilesManager.RecentFile> recentFiles = recentFilesManager.getEntries();
 
         if (recentFiles.isEmpty()) {
             recentMenu.setEnabled(false);
@@ -230,136 +349,207 @@ public class MainFrame extends JFrame {
         } else {
             recentMenu.setEnabled(true);
             for (int i = 0; i < recentFiles.size(); i++) {
-                Path fullPath = recentFiles.get(i);
+                RecentFilesManager.RecentFile recentFile = recentFiles.get(i);
+                Path fullPath = recentFile.path();
 
                 // Display only the file name in the menu item, but use the full path for loading
-                String label = (i + 1) + ". " + fullPath.getFileName().toString();
-                JMenuItem item = new JMenuItem(label);
+                JMenuItem item = new JMenuItem((i + 1) + ". " + fullPath.getFileName() + describe(recentFile));
+                item.setToolTipText(fullPath.toAbsolutePath().toString());
 
                 // Use a local variable for the path in the lambda
                 item.addActionListener(e -> loadFile(fullPath.toFile()));
                 recentMenu.add(item);
             }
         }
+
+        // The entries can change while the menu is open, as background checks complete
+        if (recentMenu.isPopupMenuVisible()) {
+            recentMenu.getPopupMenu().pack();
+        }
     }
 
     /**
-     * Creates and returns the completion provider for Sierra XML.
+     * Summarizes what the last background check found out about a recent
+     * file, e.g. " (12 KB, rendered 10/18/26, 2:41 PM)".
      */
-    private CompletionProvider createCompletionProvider() {
-        return new SierraXMLCompletionProvider();
+    private static String describe(RecentFilesManager.RecentFile recentFile) {
+        if (recentFile.status() == RecentFilesManager.Status.UNREACHABLE) {
+            return " (unavailable)";
+        }
+
+        List<String> details = new ArrayList<>();
+        if (recentFile.size() >= 0) {
+            details.add(String.format("%,d KB", (recentFile.size() + 1023) / 1024));
+        }
+        if (recentFile.lastRendered() != null) {
+            details.add("rendered " + RENDER_TIME_FORMAT.format(recentFile.lastRendered()));
+        }
+        return details.isEmpty() ? "" : " (" + String.join(", ", details) + ")";
     }
 
-    // --- Editor Setup ---
+    // --- Tab Management ---
     /**
-     * Creates the custom RSyntaxTextArea and adds it to the
-     * <scroll-pane> placeholder that Sierra injected.
+     * Opens a new untitled document tab and selects it.
      */
-    private void setupCustomEditor() {
-        editorPane = new RSyntaxTextArea(25, 80);
-        editorPane.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_XML);
-        editorPane.setCodeFoldingEnabled(true);
-        editorPane.setAntiAliasingEnabled(true);
-        editorPane.setEditable(true); // Ensure it's editable
-
-        CompletionProvider provider = createCompletionProvider();
-
-        // Create the auto-completion manager
-        AutoCompletion ac = new AutoCompletion(provider);
-        ac.setAutoActivationEnabled(true);
-        ac.setAutoActivationDelay(500); // Activate after 500ms of typing
+    private DocumentTab createTab() {
+        DocumentTab tab = new DocumentTab(renderingEngine, this::tabStatusChanged);
+        tab.setPreviewCache(previewCache);
+        applyEditorThresholds(tab);
+        documentTabs.addTab(tab.getTitle(), tab);
+        documentTabs.setSelectedComponent(tab);
+        return tab;
+    }
 
-        // Install the auto-completion on the editor pane
-        if (provider != null) {
-            ac.install(editorPane);
+    private void applyEditorThresholds(DocumentTab tab) {
+        if (adaptiveEditing) {
+            tab.setEditorThresholds(AdaptiveEditor.DEFAULT_LARGE_THRESHOLD, AdaptiveEditor.DEFAULT_HUGE_THRESHOLD);
+        } else {
+            tab.setEditorThresholds(0, 0);
         }
-
-        editorScrollPane.setViewportView(editorPane);
     }
 
-    // --- Rendering/Control Logic ---
     /**
-     * Implements the debounce mechanism.
+     * Stores the selected tab's preview before the application exits, so
+     * that reopening the file shows it at once. Other tabs stored theirs
+     * when they were deselected.
      */
-    private Timer setupDebounceTimer() {
-        Timer timer = new Timer(1000, (e) -> triggerRender());
-        timer.setRepeats(false);
-        return timer;
+    private void cacheSelectedPreview() {
+        DocumentTab tab = getSelectedTab();
+        if (tab == null) {
+            return;
+        }
+        try {
+            tab.cachePreview().get(PREVIEW_CACHE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // The preview is rendered again when the file is reopened
+        }
+    }
+
+    private DocumentTab getSelectedTab() {
+        return (DocumentTab) documentTabs.getSelectedComponent();
     }
 
     /**
-     * Kicks off the rendering process on a background thread.
+     * Activates the selected tab and throttles all others, then refreshes the
+     * frame-level state for the selected document.
      */
-    private void triggerRender() {
-        statusBar.setText("Rendering...");
-        String xmlText = editorPane.getText();
+    private void selectedTabChanged() {
+        DocumentTab selected = getSelectedTab();
+        for (int i = 0; i < documentTabs.getTabCount(); i++) {
+            DocumentTab tab = (DocumentTab) documentTabs.getComponentAt(i);
+            tab.setActive(tab == selected);
+        }
 
-        RenderWorker worker = new RenderWorker(xmlText, currentFilePath, renderingEngine, this::displayRenderResult);
-        worker.execute();
+        if (selected != null) {
+            Path path = selected.getFilePath();
+            filePathLabel.setText(path == null ? "" : path.toAbsolutePath().toString());
+            saveItem.setEnabled(path != null);
+            statusBar.setText(selected.getStatus());
+        }
     }
 
     /**
-     * This is the callback that runs on the EDT when the SwingWorker is done.
+     * Shows a tab's status in the status bar if that tab is visible.
      */
-    private void displayRenderResult(RenderResult result) {
-        switch (result) {
-            case RenderResult.Success success -> {
-                previewPanel.removeAll();
-                JComponent component = success.component();
-                previewPanel.add(component, BorderLayout.CENTER);
-                previewPanel.revalidate();
-                previewPanel.repaint();
-
-                this.setTitle("Sierra UI Previewer");
-                if (saveItem == null || saveItem.isEnabled()) {
-                    statusBar.setText("Render successful.");
-                }
-            }
-            case RenderResult.Error error -> {
-                String errorMessage = error.details().toString();
-                statusBar.setText("Error: " + errorMessage);
-            }
-            default -> {
-            }
+    private void tabStatusChanged(DocumentTab tab) {
+        if (tab == getSelectedTab()) {
+            statusBar.setText(tab.getStatus());
+        }
+        if (tab.getFilePath() != null && tab.getLastRenderTime() != null) {
+            recentFilesManager.recordRender(tab.getFilePath(), tab.getLastRenderTime());
+        }
+    }
+
+    private void updateTabTitle(DocumentTab tab) {
+        int index = documentTabs.indexOfComponent(tab);
+        if (index >= 0) {
+            documentTabs.setTitleAt(index, tab.getTitle());
+            Path path = tab.getFilePath();
+            documentTabs.setToolTipTextAt(index, path == null ? null : path.toAbsolutePath().toString());
+        }
+    }
+
+    private void closeSelectedTab() {
+        DocumentTab tab = getSelectedTab();
+        if (tab == null) {
+            return;
+        }
+        tab.dispose();
+        documentTabs.remove(tab);
+
+        // Always keep one document open
+        if (documentTabs.getTabCount() == 0) {
+            createTab();
         }
     }
 
     // --- FILE LOAD/SAVE LOGIC ---
     /**
      * Kicks off a SwingWorker to load a file's content onto a background
-     * thread.
+     * thread. The file opens in the selected tab if that tab is empty,
+     * otherwise in a new tab; a file that is already open is just selected.
      */
     private void loadFile(File file) {
+        loadFile(file, 0);
+    }
+
+    /**
+     * Opens a file, or selects the tab it is already open in, and moves the
+     * caret to a line.
+     *
+     * @param file The file to open.
+     * @param line The 1-based line to show, or 0 to leave the caret alone.
+     */
+    private void loadFile(File file, int line) {
+        Path path = file.toPath();
+        for (int i = 0; i < documentTabs.getTabCount(); i++) {
+            DocumentTab tab = (DocumentTab) documentTabs.getComponentAt(i);
+            if (path.equals(tab.getFilePath())) {
+                documentTabs.setSelectedComponent(tab);
+                tab.goToLine(line);
+                return;
+            }
+        }
+
+        DocumentTab selected = getSelectedTab();
+        DocumentTab target = selected != null && selected.isEmpty() ? selected : createTab();
+
         // Reset save state while loading
         saveItem.setEnabled(false);
-        currentFilePath = null;
+        target.clearFilePath();
 
         filePathLabel.setText("Loading " + file.getName() + "...");
-        FileLoaderWorker worker = new FileLoaderWorker(file.toPath(), this::displayFileContent);
+        FileLoaderWorker worker = new FileLoaderWorker(path, previewCache, result -> {
+            displayFileContent(target, result);
+            target.goToLine(line);
+        });
         worker.execute();
     }
 
     /**
-     * Callback that runs on the EDT after the file is loaded. Updates the UI
+     * Callback that runs on the EDT after the file is loaded. Updates the tab
      * with the file content and path.
      */
-    private void displayFileContent(FileLoadResult result) {
+    private void displayFileContent(DocumentTab tab, FileLoadResult result) {
         switch (result) {
             case FileLoadResult.Success success -> {
-                editorPane.setText(success.content());
-                editorPane.setCaretPosition(0);
+                // Set file state and re-render the preview with the new content
+                tab.setContent(success.content(), success.path());
+                if (success.cachedPreview() != null) {
+                    tab.showCachedPreview(success.cachedPreview());
+                }
+                updateTabTitle(tab);
 
-                // Set file state and enable Save
-                currentFilePath = success.path();
-                filePathLabel.setText(success.path().toAbsolutePath().toString());
-                saveItem.setEnabled(true);
+                if (tab == getSelectedTab()) {
+                    filePathLabel.setText(success.path().toAbsolutePath().toString());
+                    saveItem.setEnabled(true);
+                }
 
                 // NEW: Update the Recent Files list via the manager
-                recentFilesManager.addFile(currentFilePath);
+                recentFilesManager.addFile(success.path());
                 updateRecentMenu(); // Refresh the menu display
-
-                // Re-render the preview with the new content
-                triggerRender();
             }
             case FileLoadResult.Error error -> {
                 filePathLabel.setText("Error loading file.");
@@ -376,21 +566,22 @@ public class MainFrame extends JFrame {
     }
 
     /**
-     * Kicks off a SwingWorker to save the current content back to the loaded
+     * Kicks off a SwingWorker to save the selected tab's content back to its
      * file path.
      */
     private void saveFile() {
-        if (currentFilePath == null) {
+        DocumentTab tab = getSelectedTab();
+        if (tab == null || tab.getFilePath() == null) {
             JOptionPane.showMessageDialog(this, "No file is currently open.", "Save Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
         saveItem.setEnabled(false); // Disable save during save operation
-        statusBar.setText("Saving to " + currentFilePath.getFileName() + "...");
+        statusBar.setText("Saving to " + tab.getFilePath().getFileName() + "...");
 
-        String content = editorPane.getText();
+        CharSequence content = tab.getTextSnapshot();
 
-        FileSaverWorker worker = new FileSaverWorker(currentFilePath, content, this::displaySaveResult);
+        FileSaverWorker worker = new FileSaverWorker(tab.getFilePath(), content, this::displaySaveResult);
         worker.execute();
     }
 
@@ -398,7 +589,8 @@ public class MainFrame extends JFrame {
      * Callback that runs on the EDT after the file is saved.
      */
     private void displaySaveResult(FileSaveResult result) {
-        saveItem.setEnabled(true); // Re-enable save
+        DocumentTab tab = getSelectedTab();
+        saveItem.setEnabled(tab != null && tab.getFilePath() != null); // Re-enable save
 
         if (result instanceof FileSaveResult.Success) {
             statusBar.setText("File saved successfully.");
@@ -413,10 +605,410 @@ public class MainFrame extends JFrame {
         }
     }
 
+    /**
+     * Saves the recorded render trace as a Chrome trace-event file, which can
+     * be opened in chrome://tracing or ui.perfetto.dev.
+     */
+    private void exportRenderTrace() {
+        RenderTracer tracer = renderingEngine.getTracer();
+        if (tracer.size() == 0) {
+            JOptionPane.showMessageDialog(this, "No render trace has been recorded.\n"
+                    + "Enable View > Record Render Trace and edit a document first.",
+                    "Export Render Trace", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        JFileChooser traceChooser = new JFileChooser(fileChooser.getCurrentDirectory());
+        traceChooser.setSelectedFile(new File("render-trace.json"));
+        if (traceChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        StringWriter trace = new StringWriter();
+        try {
+            tracer.writeChromeTrace(trace);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter does not fail
+        }
+
+        Path tracePath = traceChooser.getSelectedFile().toPath();
+        statusBar.setText("Exporting " + tracer.size() + " trace events...");
+        new FileSaverWorker(tracePath, trace.toString(), result -> {
+            if (result instanceof FileSaveResult.Error error) {
+                statusBar.setText("Trace export failed.");
+                JOptionPane.showMessageDialog(this, "Could not save trace:\n" + error.exception().getMessage(),
+                        "Export Render Trace", JOptionPane.ERROR_MESSAGE);
+            } else {
+                statusBar.setText("Render trace saved to " + tracePath.getFileName() + ".");
+            }
+        }).execute();
+    }
+
+    /**
+     * Starts recording the edits made to the selected tab.
+     *
+     * @return Whether recording started.
+     */
+    private boolean startSessionRecording() {
+        DocumentTab tab = getSelectedTab();
+        if (tab == null) {
+            return false;
+        }
+        sessionRecorder = new SessionRecorder(tab.getEditorPane().getDocument());
+        statusBar.setText("Recording editing session of " + tab.getTitle() + ".");
+        return true;
+    }
+
+    /**
+     * Stops recording and saves the session, which can be replayed with
+     * {@code --replay}.
+     */
+    private void stopSessionRecording() {
+        if (sessionRecorder == null) {
+            return;
+        }
+        EditingSession session = sessionRecorder.stop();
+        sessionRecorder = null;
+        if (session.edits().isEmpty()) {
+            statusBar.setText("Editing session recording stopped; no edits were made.");
+            return;
+        }
+
+        JFileChooser sessionChooser = new JFileChooser(fileChooser.getCurrentDirectory());
+        sessionChooser.setSelectedFile(new File("editing.sierrasession"));
+        if (sessionChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            statusBar.setText("Editing session discarded.");
+            return;
+        }
+
+        Path sessionPath = sessionChooser.getSelectedFile().toPath();
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                session.write(sessionPath);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    statusBar.setText(String.format("Editing session of %,d edits saved to %s.",
+                            session.edits().size(), sessionPath.getFileName()));
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(MainFrame.this, "Could not save editing session:\n"
+                            + e.getMessage(), "Record Editing Session", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Estimates the memory retained by the selected tab's preview and shows
+     * the result.
+     */
+    private void analyzeFootprint() {
+        DocumentTab tab = getSelectedTab();
+        JComponent preview = tab == null ? null : tab.getPreviewComponent();
+        if (preview == null) {
+            JOptionPane.showMessageDialog(this, "There is no preview to analyze.",
+                    "Memory Footprint", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        String xmlText = tab.getPreviewText();
+        Path filePath = tab.getFilePath();
+        new SwingWorker<LayoutNode, Void>() {
+            @Override
+            protected LayoutNode doInBackground() throws LayoutParseException {
+                // The parse cache normally already holds the rendered text; fragments may be read from disk
+                return renderingEngine.expandIncludes(renderingEngine.getParseCache().parse(xmlText), filePath);
+            }
+
+            @Override
+            protected void done() {
+                LayoutNode layout;
+                try {
+                    layout = get();
+                } catch (ExecutionException e) {
+                    layout = null; // The footprint is then estimated from the components alone
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                // The preview is walked on the EDT, as it is displayed
+                Footprint footprint = FootprintAnalyzer.analyze(preview, layout);
+                new FootprintDialog(MainFrame.this, tab.getTitle(), footprint, MainFrame.this::exportFootprint)
+                        .setVisible(true);
+            }
+        }.execute();
+    }
+
+    /**
+     * Shows the selected tab's document at several sizes, themes and font
+     * scales.
+     */
+    private void showPreviewMatrix() {
+        DocumentTab tab = getSelectedTab();
+        if (tab == null) {
+            JOptionPane.showMessageDialog(this, "There is no document to preview.",
+                    "Preview Matrix", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        new PreviewMatrixDialog(this, renderingEngine, tab).setVisible(true);
+    }
+
+    /**
+     * Shows the selected tab's document with its includes expanded.
+     */
+    private void showExpandedLayout() {
+        DocumentTab tab = getSelectedTab();
+        if (tab == null) {
+            return;
+        }
+
+        String xmlText = tab.getTextSnapshot().toString();
+        Path filePath = tab.getFilePath();
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() throws LayoutParseException {
+                // Fragments that are not cached yet are read from disk
+                LayoutNode layout = renderingEngine.getParseCache().parse(xmlText);
+                return LayoutWriter.toXml(renderingEngine.expandIncludes(layout, filePath));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    new ExpandedLayoutDialog(MainFrame.this, tab.getTitle(), get(),
+                            renderingEngine.getFragmentCache()).setVisible(true);
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            "The layout cannot be expanded:\n" + e.getCause().getMessage(), "Expanded Layout",
+                            JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Shows the selected tab's undo history.
+     */
+    private void showUndoHistory() {
+        DocumentTab tab = getSelectedTab();
+        if (tab != null) {
+            new UndoHistoryDialog(this, tab).setVisible(true);
+        }
+    }
+
+    private void exportFootprint(Footprint footprint) {
+        JFileChooser csvChooser = new JFileChooser(fileChooser.getCurrentDirectory());
+        csvChooser.setSelectedFile(new File("footprint.csv"));
+        if (csvChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        StringWriter csv = new StringWriter();
+        try {
+            footprint.writeCsv(csv);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter does not fail
+        }
+
+        Path csvPath = csvChooser.getSelectedFile().toPath();
+        new FileSaverWorker(csvPath, csv.toString(), result -> {
+            if (result instanceof FileSaveResult.Error error) {
+                JOptionPane.showMessageDialog(this, "Could not save footprint:\n" + error.exception().getMessage(),
+                        "Memory Footprint", JOptionPane.ERROR_MESSAGE);
+            } else {
+                statusBar.setText("Footprint saved to " + csvPath.getFileName() + ".");
+            }
+        }).execute();
+    }
+
+    /**
+     * Compiles the selected tab's layout to the binary format and saves it.
+     */
+    private void compileLayout() {
+        DocumentTab tab = getSelectedTab();
+        if (tab == null) {
+            return;
+        }
+
+        Rope xmlText = tab.getTextSnapshot();
+        Path filePath = tab.getFilePath();
+        new SwingWorker<byte[], Void>() {
+            @Override
+            protected byte[] doInBackground() throws LayoutParseException {
+                // Fragments that are not cached yet are read from disk
+                LayoutNode layout = renderingEngine.expandIncludes(
+                        renderingEngine.getParseCache().parse(xmlText.toString()), filePath);
+                return new LayoutCompiler(SierraDtdIndex.getShared().getElementNames()).compile(layout);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    saveCompiledLayout(tab, get());
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            "The layout cannot be compiled:\n" + e.getCause().getMessage(), "Compile Layout",
+                            JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Asks where to save a compiled layout and saves it.
+     */
+    private void saveCompiledLayout(DocumentTab tab, byte[] compiled) {
+        JFileChooser compiledChooser = new JFileChooser(fileChooser.getCurrentDirectory());
+        compiledChooser.setSelectedFile(new File(tab.getTitle().replaceFirst("\\.xml$", "") + ".sierrab"));
+        if (compiledChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        Path compiledPath = compiledChooser.getSelectedFile().toPath();
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                Files.write(compiledPath, compiled);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    statusBar.setText(String.format("Compiled layout saved to %s (%,d bytes).",
+                            compiledPath.getFileName(), compiled.length));
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(MainFrame.this, "Could not save compiled layout:\n"
+                            + e.getMessage(), "Compile Layout", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // --- Workspace Search ---
+    /**
+     * Shows the workspace search, first asking for the workspace directory
+     * and indexing it if none is open. Indexing runs in the background; a
+     * previously saved index is loaded and only brought up to date.
+     *
+     * @param chooseWorkspace Whether to ask for a new workspace even if one
+     * is open.
+     */
+    private void searchWorkspace(boolean chooseWorkspace) {
+        if (workspaceIndex != null && !chooseWorkspace) {
+            showWorkspaceSearch();
+            return;
+        }
+
+        JFileChooser directoryChooser = new JFileChooser(fileChooser.getCurrentDirectory());
+        directoryChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        directoryChooser.setDialogTitle("Open Workspace");
+        if (directoryChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path root = directoryChooser.getSelectedFile().toPath();
+        closeWorkspace();
+
+        statusBar.setText("Indexing " + root + "...");
+        new SwingWorker<WorkspaceIndex, Void>() {
+            @Override
+            protected WorkspaceIndex doInBackground() throws IOException {
+                Set<String> layoutElements = Set.copyOf(SierraDtdIndex.getShared().getElementNames());
+                Path indexFile = workspaceIndexFile(root);
+
+                WorkspaceIndex index = null;
+                if (Files.exists(indexFile)) {
+                    try {
+                        index = WorkspaceIndex.load(indexFile, root, layoutElements);
+                    } catch (IOException e) {
+                        System.err.println("Rebuilding workspace index: " + e.getMessage());
+                    }
+                }
+                if (index == null) {
+                    index = new WorkspaceIndex(root, layoutElements);
+                }
+                if (index.refresh() > 0) {
+                    index.save(indexFile);
+                }
+                return index;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    workspaceIndex = get();
+                    workspaceWatcher = new WorkspaceWatcher(workspaceIndex, () -> SwingUtilities.invokeLater(() -> {
+                        if (workspaceSearchDialog != null) {
+                            workspaceSearchDialog.search();
+                        }
+                    }));
+                    statusBar.setText(String.format("Indexed %,d files in %s.", workspaceIndex.getFileCount(), root));
+                    showWorkspaceSearch();
+                } catch (InterruptedException | ExecutionException | IOException e) {
+                    statusBar.setText("Indexing failed.");
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MainFrame.this, "Could not index workspace:\n" + cause.getMessage(),
+                            "Search Workspace", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void showWorkspaceSearch() {
+        if (workspaceSearchDialog == null || !workspaceSearchDialog.isDisplayable()) {
+            workspaceSearchDialog = new WorkspaceSearchDialog(this, workspaceIndex,
+                    match -> loadFile(match.file().toFile(), match.line()));
+        }
+        workspaceSearchDialog.setVisible(true);
+        workspaceSearchDialog.toFront();
+    }
+
+    /**
+     * Stops watching the open workspace and saves its index, so the next
+     * session only re-indexes what changed.
+     */
+    private void closeWorkspace() {
+        if (workspaceIndex == null) {
+            return;
+        }
+        try {
+            workspaceWatcher.close();
+            workspaceIndex.save(workspaceIndexFile(workspaceIndex.getRoot()));
+        } catch (IOException e) {
+            System.err.println("Could not save workspace index: " + e.getMessage());
+        }
+        if (workspaceSearchDialog != null) {
+            workspaceSearchDialog.dispose();
+            workspaceSearchDialog = null;
+        }
+        workspaceIndex = null;
+        workspaceWatcher = null;
+    }
+
+    /**
+     * Gets the file a workspace's index is saved to, in the user's home
+     * directory rather than the workspace itself.
+     */
+    private static Path workspaceIndexFile(Path root) {
+        String name = Integer.toHexString(root.toAbsolutePath().normalize().toString().hashCode());
+        return Path.of(System.getProperty("user.home"), ".sierra-previewer", "index", name + ".idx");
+    }
+
     // --- INNER CLASSES FOR FILE LOAD/SAVE ---
     private sealed interface FileLoadResult {
 
-        record Success(String content, Path path) implements FileLoadResult {
+        record Success(String content, Path path, PreviewCache.Entry cachedPreview) implements FileLoadResult {
 
         }
 
@@ -428,10 +1020,12 @@ public class MainFrame extends JFrame {
     private static class FileLoaderWorker extends SwingWorker<FileLoadResult, Void> {
 
         private final Path filePath;
+        private final PreviewCache previewCache;
         private final Consumer<FileLoadResult> callback;
 
-        FileLoaderWorker(Path filePath, Consumer<FileLoadResult> callback) {
+        FileLoaderWorker(Path filePath, PreviewCache previewCache, Consumer<FileLoadResult> callback) {
             this.filePath = filePath;
+            this.previewCache = previewCache;
             this.callback = callback;
         }
 
@@ -439,7 +1033,8 @@ public class MainFrame extends JFrame {
         protected FileLoadResult doInBackground() {
             try {
                 String content = Files.readString(filePath);
-                return new FileLoadResult.Success(content, filePath);
+                // Shown while the content is rendered, if this content was rendered before
+                return new FileLoadResult.Success(content, filePath, previewCache.load(filePath, content));
             } catch (IOException e) {
                 return new FileLoadResult.Error(e);
             }
@@ -469,10 +1064,10 @@ public class MainFrame extends JFrame {
     private static class FileSaverWorker extends SwingWorker<FileSaveResult, Void> {
 
         private final Path filePath;
-        private final String content;
+        private final CharSequence content;
         private final Consumer<FileSaveResult> callback;
 
-        FileSaverWorker(Path filePath, String content, Consumer<FileSaveResult> callback) {
+        FileSaverWorker(Path filePath, CharSequence content, Consumer<FileSaveResult> callback) {
             this.filePath = filePath;
             this.content = content;
             this.callback = callback;
@@ -499,38 +1094,4 @@ public class MainFrame extends JFrame {
             }
         }
     }
-
-    // --- INNER CLASS FOR RENDERING ---
-    private static class RenderWorker extends SwingWorker<RenderResult, Void> {
-
-        private final String xmlText;
-        private final Path targetPath; // ADDED: Field to hold the target path
-        private final RenderingEngine engine;
-        private final Consumer<RenderResult> callback;
-
-        // MODIFIED: Constructor now accepts Path
-        RenderWorker(String xmlText, Path targetPath, RenderingEngine engine, Consumer<RenderResult> callback) {
-            this.xmlText = xmlText;
-            this.targetPath = targetPath; // Store the path
-            this.engine = engine;
-            this.callback = callback;
-        }
-
-        @Override
-        protected RenderResult doInBackground() throws Exception {
-            // MODIFIED: Pass the path to the rendering engine
-            return engine.render(xmlText, targetPath);
-        }
-
-        @Override
-        protected void done() {
-            try {
-                RenderResult result = get();
-                callback.accept(result);
-            } catch (InterruptedException | ExecutionException e) {
-                System.out.println(e);
-                callback.accept(new RenderResult.Error(new RenderError(e.getMessage(), e)));
-            }
-        }
-    }
 }
@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import com.sierra.previewer.engine.PreviewMatrix;
+import com.sierra.previewer.engine.PreviewMatrix.Configuration;
+import com.sierra.previewer.engine.PreviewMatrix.Snapshot;
+import com.sierra.previewer.engine.PreviewMatrix.Theme;
+import com.sierra.previewer.engine.RenderingEngine;
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.GridLayout;
+import java.awt.Image;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.*;
+
+/**
+ * Shows a document at several window sizes, themes and font scales side by
+ * side. Each cell is filled in as soon as its configuration has rendered.
+ */
+public class PreviewMatrixDialog extends JDialog {
+
+    private static final Dimension[] SIZES = {
+        new Dimension(360, 640), new Dimension(768, 1024), new Dimension(1280, 800)
+    };
+    private static final float[] FONT_SCALES = {1f, 1.25f, 1.5f};
+
+    private final DocumentTab tab;
+    private final PreviewMatrix matrix;
+
+    private final List<JCheckBox> sizeBoxes = new ArrayList<>();
+    private final List<JCheckBox> themeBoxes = new ArrayList<>();
+    private final List<JCheckBox> scaleBoxes = new ArrayList<>();
+
+    private final JPanel grid = new JPanel();
+    private final JLabel summary = new JLabel(" ");
+    private final Map<Configuration, JLabel> cells = new HashMap<>();
+
+    private int renderedCount;
+    private long renderStart;
+
+    /**
+     * Creates the dialog.
+     *
+     * @param owner The owning frame.
+     * @param engine The engine the document is rendered with.
+     * @param tab The document to render.
+     */
+    public PreviewMatrixDialog(Frame owner, RenderingEngine engine, DocumentTab tab) {
+        super(owner, "Preview Matrix - " + tab.getTitle(), false);
+        this.tab = tab;
+        this.matrix = new PreviewMatrix(engine);
+
+        JPanel options = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        options.add(new JLabel("Sizes:"));
+        for (int i = 0; i < SIZES.length; i++) {
+            sizeBoxes.add(addOption(options, SIZES[i].width + " x " + SIZES[i].height, true));
+        }
+        options.add(Box.createHorizontalStrut(12));
+        options.add(new JLabel("Themes:"));
+        for (Theme theme : Theme.values()) {
+            themeBoxes.add(addOption(options, theme.getLabel(), true));
+        }
+        options.add(Box.createHorizontalStrut(12));
+        options.add(new JLabel("Font scales:"));
+        for (float scale : FONT_SCALES) {
+            scaleBoxes.add(addOption(options, Math.round(scale * 100) + "%", scale == 1f));
+        }
+
+        JButton renderButton = new JButton("Render");
+        renderButton.addActionListener(e -> render());
+        options.add(renderButton);
+
+        JPanel header = new JPanel(new BorderLayout());
+        header.add(options, BorderLayout.NORTH);
+        summary.setBorder(BorderFactory.createEmptyBorder(0, 8, 8, 8));
+        header.add(summary, BorderLayout.SOUTH);
+
+        JScrollPane scrollPane = new JScrollPane(grid);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.TRAILING));
+        buttons.add(closeButton);
+
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(header, BorderLayout.NORTH);
+        content.add(scrollPane, BorderLayout.CENTER);
+        content.add(buttons, BorderLayout.SOUTH);
+        setContentPane(content);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                matrix.shutdown();
+            }
+        });
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setSize(1100, 760);
+        setLocationRelativeTo(owner);
+        render();
+    }
+
+    private static JCheckBox addOption(JPanel options, String label, boolean selected) {
+        JCheckBox checkBox = new JCheckBox(label, selected);
+        options.add(checkBox);
+        return checkBox;
+    }
+
+    /**
+     * Renders the current document text in every selected configuration,
+     * with one row per size.
+     */
+    private void render() {
+        List<Configuration> configurations = new ArrayList<>();
+        int columns = 0;
+        for (int i = 0; i < SIZES.length; i++) {
+            if (!sizeBoxes.get(i).isSelected()) {
+                continue;
+            }
+            columns = 0;
+            for (int j = 0; j < Theme.values().length; j++) {
+                for (int k = 0; k < FONT_SCALES.length; k++) {
+                    if (themeBoxes.get(j).isSelected() && scaleBoxes.get(k).isSelected()) {
+                        configurations.add(new Configuration(SIZES[i], Theme.values()[j], FONT_SCALES[k]));
+                        columns++;
+                    }
+                }
+            }
+        }
+
+        cells.clear();
+        grid.removeAll();
+        grid.setLayout(new GridLayout(0, Math.max(1, columns), 8, 8));
+        grid.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        for (Configuration configuration : configurations) {
+            JLabel cell = new JLabel(configuration.label(), SwingConstants.CENTER);
+            cell.setVerticalTextPosition(SwingConstants.BOTTOM);
+            cell.setHorizontalTextPosition(SwingConstants.CENTER);
+            cell.setVerticalAlignment(SwingConstants.TOP);
+            cell.setPreferredSize(new Dimension(PreviewMatrix.MAX_SNAPSHOT_SIZE / 2,
+                    PreviewMatrix.MAX_SNAPSHOT_SIZE / 2 + 40));
+            cells.put(configuration, cell);
+            grid.add(cell);
+        }
+        grid.revalidate();
+        grid.repaint();
+
+        if (configurations.isEmpty()) {
+            matrix.cancel();
+            summary.setText("Select at least one size, theme and font scale.");
+            return;
+        }
+
+        renderedCount = 0;
+        renderStart = System.nanoTime();
+        summary.setText("Rendering " + configurations.size() + " configurations...");
+
+        Map<Configuration, JLabel> renderCells = Map.copyOf(cells);
+        matrix.render(tab.getTextSnapshot().toString(), tab.getFilePath(), configurations,
+                snapshot -> SwingUtilities.invokeLater(() -> showSnapshot(renderCells, snapshot)));
+    }
+
+    private void showSnapshot(Map<Configuration, JLabel> renderCells, Snapshot snapshot) {
+        JLabel cell = renderCells.get(snapshot.configuration());
+        if (cell == null || cells.get(snapshot.configuration()) != cell) {
+            return; // From a render that was replaced
+        }
+
+        String timing = String.format("%.0f ms", snapshot.nanos() / 1e6);
+        if (snapshot.error() != null) {
+            cell.setIcon(null);
+            cell.setText("<html><center>" + snapshot.configuration().label() + " (" + timing + ")<br><b>"
+                    + escape(snapshot.error().toString()) + "</b></center></html>");
+        } else {
+            // Cells show snapshots at half size, so that several fit side by side
+            cell.setIcon(new ImageIcon(snapshot.image().getScaledInstance(
+                    Math.max(1, snapshot.image().getWidth() / 2), Math.max(1, snapshot.image().getHeight() / 2),
+                    Image.SCALE_SMOOTH)));
+            cell.setText(snapshot.configuration().label() + " (" + timing + ")");
+        }
+
+        renderedCount++;
+        summary.setText(String.format("%d of %d configurations rendered in %.0f ms", renderedCount,
+                renderCells.size(), (System.nanoTime() - renderStart) / 1e6));
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
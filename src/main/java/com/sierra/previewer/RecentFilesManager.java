@@ -13,44 +13,152 @@
  */
 package com.sierra.previewer;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
 
 /**
  * Manages the list of recent files using the Preferences API for persistence.
+ * <p>
+ * The list is held as an immutable snapshot that is replaced atomically on
+ * each change, so it can be read from any thread without locking. Changes are
+ * written to the preferences store on a background thread, and bursts of
+ * changes are coalesced into a single write. Whether each file is still
+ * reachable is checked in the background with a timeout, so entries on slow
+ * or unmounted network drives never block the caller.
  */
 public class RecentFilesManager {
 
     private static final int MAX_RECENT_FILES = 5;
     private static final String PREF_KEY_RECENT_FILES = "recent_files_list";
+    private static final String PREF_KEY_RENDER_TIMES = "recent_files_render_times";
     private static final String PATH_SEPARATOR = ";"; // Used to delimit paths in the stored string
+    private static final long SAVE_DELAY_MILLIS = 500;
+    private static final Duration DEFAULT_CHECK_TIMEOUT = Duration.ofSeconds(2);
+
+    /**
+     * Whether a recent file could be reached when it was last checked.
+     */
+    public enum Status {
+        UNKNOWN,
+        REACHABLE,
+        UNREACHABLE
+    }
+
+    /**
+     * A recent file as last seen by the background check.
+     *
+     * @param path The file path.
+     * @param status Whether the file was reachable.
+     * @param size The file size in bytes, or -1 if unknown.
+     * @param lastRendered When the file was last rendered successfully, or
+     * null if it has not been rendered.
+     */
+    public record RecentFile(Path path, Status status, long size, Instant lastRendered) {
+
+        RecentFile(Path path) {
+            this(path, Status.UNKNOWN, -1, null);
+        }
+    }
 
     private final Preferences prefs;
-    private final List<Path> recentFiles = new ArrayList<>();
+    private final Duration checkTimeout;
+    private final AtomicReference<List<RecentFile>> recentFiles = new AtomicReference<>(List.of());
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private final Set<Path> checksInFlight = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService saveExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sierra-recent-files");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // A hung network mount can block a check indefinitely, so checks do not share a bounded pool
+    private final ExecutorService checkExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "sierra-recent-files-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Runnable changeListener = () -> {
+    };
 
     public RecentFilesManager(Class<?> applicationClass) {
         // Get the preferences node for the application
-        this.prefs = Preferences.userNodeForPackage(applicationClass);
+        this(Preferences.userNodeForPackage(applicationClass), DEFAULT_CHECK_TIMEOUT);
+    }
+
+    /**
+     * Creates a manager backed by the given preferences node.
+     *
+     * @param prefs The node the list is stored in.
+     * @param checkTimeout The time a reachability check may take before the
+     * file is reported as unreachable.
+     */
+    RecentFilesManager(Preferences prefs, Duration checkTimeout) {
+        this.prefs = prefs;
+        this.checkTimeout = checkTimeout;
         loadRecentFiles();
     }
 
+    /**
+     * Sets the listener notified when the list or the status of an entry
+     * changes. The listener may be called on any thread.
+     *
+     * @param changeListener The listener.
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
     /**
      * Loads the recent files list from the Preferences store.
      */
     private void loadRecentFiles() {
         String savedList = prefs.get(PREF_KEY_RECENT_FILES, "");
+        String[] renderTimes = prefs.get(PREF_KEY_RENDER_TIMES, "").split(PATH_SEPARATOR);
 
-        if (!savedList.isEmpty()) {
-            // Split the string by the separator, convert to Path objects, and collect.
-            recentFiles.addAll(Arrays.stream(savedList.split(PATH_SEPARATOR))
-                    .filter(s -> !s.trim().isEmpty())
-                    .map(Paths::get)
-                    .collect(Collectors.toList()));
+        List<RecentFile> loaded = new ArrayList<>();
+        String[] paths = savedList.split(PATH_SEPARATOR);
+        for (int i = 0; i < paths.length && loaded.size() < MAX_RECENT_FILES; i++) {
+            if (paths[i].trim().isEmpty()) {
+                continue;
+            }
+            try {
+                Instant lastRendered = i < renderTimes.length ? parseInstant(renderTimes[i]) : null;
+                loaded.add(new RecentFile(Paths.get(paths[i]), Status.UNKNOWN, -1, lastRendered));
+            } catch (InvalidPathException e) {
+                // Written on another platform; drop it
+            }
+        }
+        recentFiles.set(List.copyOf(loaded));
+    }
+
+    private static Instant parseInstant(String value) {
+        try {
+            long millis = Long.parseLong(value.trim());
+            return millis > 0 ? Instant.ofEpochMilli(millis) : null;
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
@@ -58,12 +166,40 @@ public class RecentFilesManager {
      * Saves the current recent files list to the Preferences store.
      */
     private void saveRecentFiles() {
+        // Clear the flag first, so that a change made during the write schedules another one
+        savePending.set(false);
+        List<RecentFile> snapshot = recentFiles.get();
+
         // Convert the list of Paths to a single semicolon-separated string
-        String listToSave = recentFiles.stream()
-                .map(Path::toString)
+        String listToSave = snapshot.stream()
+                .map(file -> file.path().toString())
+                .collect(Collectors.joining(PATH_SEPARATOR));
+        String renderTimes = snapshot.stream()
+                .map(file -> file.lastRendered() == null ? "0" : Long.toString(file.lastRendered().toEpochMilli()))
                 .collect(Collectors.joining(PATH_SEPARATOR));
 
         prefs.put(PREF_KEY_RECENT_FILES, listToSave);
+        prefs.put(PREF_KEY_RENDER_TIMES, renderTimes);
+    }
+
+    private void scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            saveExecutor.schedule(this::saveRecentFiles, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes any pending change to the preferences store and waits for the
+     * write to finish, e.g. before the application exits.
+     */
+    public void flush() {
+        if (savePending.get()) {
+            try {
+                saveExecutor.submit(this::saveRecentFiles).get(SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                System.err.println("Could not save recent files: " + e.getMessage());
+            }
+        }
     }
 
     /**
@@ -73,28 +209,109 @@ public class RecentFilesManager {
      * @param path The path of the file to add.
      */
     public void addFile(Path path) {
-        // 1. Remove existing entry to ensure it moves to the top
-        recentFiles.remove(path);
+        update(files -> {
+            List<RecentFile> updated = new ArrayList<>(files.size() + 1);
+
+            // Move an existing entry to the front, keeping what is known about it
+            RecentFile existing = files.stream().filter(file -> file.path().equals(path)).findFirst().orElse(null);
+            updated.add(existing != null ? existing : new RecentFile(path));
+            for (RecentFile file : files) {
+                if (updated.size() < MAX_RECENT_FILES && !file.path().equals(path)) {
+                    updated.add(file);
+                }
+            }
+            return updated;
+        });
+        check(path);
+    }
 
-        // 2. Add to the front (most recent)
-        recentFiles.add(0, path);
+    /**
+     * Records that a recent file was rendered successfully. Paths that are
+     * not in the list are ignored.
+     *
+     * @param path The rendered file.
+     * @param time When it was rendered.
+     */
+    public void recordRender(Path path, Instant time) {
+        update(files -> files.stream()
+                .map(file -> file.path().equals(path) && !time.equals(file.lastRendered())
+                        ? new RecentFile(path, file.status(), file.size(), time) : file)
+                .toList());
+    }
 
-        // 3. Trim the list if it exceeds the max size
-        if (recentFiles.size() > MAX_RECENT_FILES) {
-            recentFiles.remove(MAX_RECENT_FILES);
+    /**
+     * Replaces the snapshot, then persists and announces it if it changed.
+     */
+    private void update(UnaryOperator<List<RecentFile>> change) {
+        List<RecentFile> previous;
+        List<RecentFile> updated;
+        do {
+            previous = recentFiles.get();
+            updated = List.copyOf(change.apply(previous));
+        } while (!recentFiles.compareAndSet(previous, updated));
+
+        if (!updated.equals(previous)) {
+            scheduleSave();
+            changeListener.run();
         }
+    }
 
-        // 4. Save the updated list
-        saveRecentFiles();
+    /**
+     * Starts checking, in the background, whether each recent file is still
+     * reachable. The change listener is notified as results arrive.
+     */
+    public void refresh() {
+        for (RecentFile file : recentFiles.get()) {
+            check(file.path());
+        }
+    }
+
+    private void check(Path path) {
+        if (!checksInFlight.add(path)) {
+            return; // The previous check of this file has not finished, e.g. on a hung mount
+        }
+
+        CompletableFuture.supplyAsync(() -> readAttributes(path), checkExecutor)
+                .orTimeout(checkTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((attributes, exception) -> {
+                    // A check that timed out is reported as unreachable, but keeps its path blocked until it returns
+                    Status status = attributes != null ? Status.REACHABLE : Status.UNREACHABLE;
+                    long size = attributes != null ? attributes.size() : -1;
+                    update(files -> files.stream()
+                            .map(file -> file.path().equals(path)
+                                    ? new RecentFile(path, status, size, file.lastRendered()) : file)
+                            .toList());
+                });
+    }
+
+    private BasicFileAttributes readAttributes(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? attributes : null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            checksInFlight.remove(path);
+        }
     }
 
     /**
-     * Returns a copy of the recent files list, sorted by most recent first.
+     * Returns the recent files list, sorted by most recent first.
      *
      * @return An unmodifiable list of recent file paths.
      */
     public List<Path> getRecentFiles() {
-        return recentFiles;
+        return recentFiles.get().stream().map(RecentFile::path).toList();
+    }
+
+    /**
+     * Returns the recent files with what is known about each of them. The
+     * list is a snapshot and does not change.
+     *
+     * @return An unmodifiable list of recent files, most recent first.
+     */
+    public List<RecentFile> getEntries() {
+        return recentFiles.get();
     }
 
     /**
@@ -105,4 +322,4 @@ public class RecentFilesManager {
     public int getMaxFiles() {
         return MAX_RECENT_FILES;
     }
-}
\ No newline at end of file
+}
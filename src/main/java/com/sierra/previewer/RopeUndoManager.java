@@ -0,0 +1,247 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import com.sierra.previewer.text.Rope;
+import com.sierra.previewer.text.UndoHistory;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import org.fife.ui.rtextarea.RTextArea;
+import org.fife.ui.rtextarea.RUndoManager;
+
+/**
+ * Replaces RSyntaxTextArea's undo manager, which keeps every edit as a
+ * separate object, with an {@link UndoHistory} of structurally shared text
+ * versions. Typing a run of characters, and edits the text area makes
+ * atomically, become one version.
+ */
+public class RopeUndoManager extends RUndoManager {
+
+    private static final long MERGE_MILLIS = 1000;
+
+    private final RTextArea textArea;
+    private UndoHistory history = null; // Created from the document on first use
+    private Rope text; // The current version's text
+    private int maxVersions = UndoHistory.DEFAULT_MAX_VERSIONS;
+    private long maxBytes = UndoHistory.DEFAULT_MAX_BYTES;
+    private Runnable restoreListener = () -> {};
+
+    private boolean restoring = false;
+    private int atomicDepth = 0;
+    private boolean atomicEditRecorded = false; // Whether the current atomic edit already has a version
+
+    // The last typed edit, which the next one may continue
+    private long lastEditMillis = 0;
+    private int lastEditEnd = -1;
+    private boolean lastEditInsert = false;
+
+    /**
+     * Creates an undo manager.
+     *
+     * @param textArea The text area whose document is tracked.
+     */
+    public RopeUndoManager(RTextArea textArea) {
+        super(textArea);
+        this.textArea = textArea;
+    }
+
+    /**
+     * Sets the listener called after a version was restored.
+     *
+     * @param restoreListener The listener, called on the EDT.
+     */
+    public void setRestoreListener(Runnable restoreListener) {
+        this.restoreListener = restoreListener;
+    }
+
+    /**
+     * Sets the bounds of the history.
+     *
+     * @param maxVersions The most versions to keep.
+     * @param maxBytes The most memory the versions should retain.
+     */
+    public void setLimits(int maxVersions, long maxBytes) {
+        this.maxVersions = maxVersions;
+        this.maxBytes = maxBytes;
+        if (history != null) {
+            history.setLimits(maxVersions, maxBytes);
+            updateActions();
+        }
+    }
+
+    /**
+     * Gets the history, creating it from the document if necessary.
+     *
+     * @return The history.
+     */
+    public UndoHistory getHistory() {
+        if (history == null) {
+            text = Rope.of(read(textArea.getDocument(), 0, textArea.getDocument().getLength()));
+            history = new UndoHistory(text, maxVersions, maxBytes);
+        }
+        return history;
+    }
+
+    // --- Recording ---
+
+    @Override
+    public void undoableEditHappened(UndoableEditEvent e) {
+        if (restoring || !(e.getEdit() instanceof DocumentEvent event)) {
+            return;
+        }
+
+        if (event.getType() == DocumentEvent.EventType.CHANGE) {
+            return; // Attribute changes do not affect the text
+        }
+        Document document = event.getDocument();
+        if (history == null) {
+            getHistory(); // Already includes this edit
+            return;
+        }
+
+        int offset = event.getOffset();
+        int length = event.getLength();
+        boolean insert = event.getType() == DocumentEvent.EventType.INSERT;
+
+        // A run of single characters typed or deleted in place is one version, as is an atomic edit
+        long now = System.currentTimeMillis();
+        boolean merge = atomicDepth > 0 ? atomicEditRecorded
+                : length == 1 && insert == lastEditInsert && now - lastEditMillis < MERGE_MILLIS
+                && (insert ? offset == lastEditEnd : offset + 1 == lastEditEnd || offset == lastEditEnd)
+                && !(insert && read(document, offset, 1).equals("\n"));
+        atomicEditRecorded = atomicDepth > 0;
+
+        text = insert ? text.insert(offset, read(document, offset, length)) : text.delete(offset, length);
+        history.record(text, offset, insert ? 0 : length, insert ? length : 0, merge);
+
+        lastEditMillis = now;
+        lastEditEnd = offset + (insert ? length : 0);
+        lastEditInsert = insert;
+
+        if (text.length() != document.getLength()) {
+            // Out of step, e.g. after a document was replaced; start again from the document's text
+            discardAllEdits();
+        }
+        updateActions();
+    }
+
+    @Override
+    public void beginInternalAtomicEdit() {
+        if (atomicDepth++ == 0) {
+            atomicEditRecorded = false; // The first edit adds a version and the others merge into it
+        }
+    }
+
+    @Override
+    public void endInternalAtomicEdit() {
+        if (atomicDepth > 0 && --atomicDepth == 0) {
+            lastEditEnd = -1; // Typing afterwards starts a new version
+            updateActions();
+        }
+    }
+
+    @Override
+    public void discardAllEdits() {
+        super.discardAllEdits();
+        history = null;
+        lastEditEnd = -1;
+        getHistory();
+        updateActions();
+    }
+
+    // --- Restoring ---
+
+    @Override
+    public boolean canUndo() {
+        return history != null && history.canUndo();
+    }
+
+    @Override
+    public boolean canRedo() {
+        return history != null && history.canRedo();
+    }
+
+    @Override
+    public void undo() {
+        if (!canUndo()) {
+            throw new CannotUndoException();
+        }
+        apply(history.undo());
+    }
+
+    @Override
+    public void redo() {
+        if (!canRedo()) {
+            throw new CannotRedoException();
+        }
+        apply(history.redo());
+    }
+
+    /**
+     * Restores any version of the history.
+     *
+     * @param index The version index.
+     */
+    public void jumpTo(int index) {
+        apply(getHistory().jumpTo(index));
+    }
+
+    private void apply(UndoHistory.Change change) {
+        Document document = textArea.getDocument();
+        String replacement = change.text().toString();
+
+        restoring = true;
+        try {
+            if (document instanceof AbstractDocument abstractDocument) {
+                abstractDocument.replace(change.start(), change.end() - change.start(), replacement, null);
+            } else {
+                document.remove(change.start(), change.end() - change.start());
+                document.insertString(change.start(), replacement, null);
+            }
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e); // The history tracks the document's text
+        } finally {
+            restoring = false;
+        }
+
+        text = history.getVersion(history.getCurrentIndex()).text();
+        lastEditEnd = -1;
+        textArea.setCaretPosition(change.start() + replacement.length());
+        updateActions();
+        restoreListener.run();
+    }
+
+    @Override
+    public String getUndoPresentationName() {
+        return "Undo";
+    }
+
+    @Override
+    public String getRedoPresentationName() {
+        return "Redo";
+    }
+
+    private static String read(Document document, int offset, int length) {
+        try {
+            return document.getText(offset, length);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e); // The range comes from the document itself
+        }
+    }
+}
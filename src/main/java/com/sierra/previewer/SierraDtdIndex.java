@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled element and attribute definitions of sierra.dtd. The DTD is
+ * parsed once and the index is shared by every editor tab.
+ */
+public class SierraDtdIndex {
+
+    // --- DTD Parsing Regex ---
+    private static final Pattern ELEMENT_PATTERN = Pattern.compile("<!ELEMENT\\s+([a-z-]+)");
+    private static final Pattern ENTITY_PATTERN = Pattern.compile("<!ENTITY\\s+%\\s*([A-Za-z0-9]+)\\s+\"([^\"]+)\"");
+    private static final Pattern ATTLIST_PATTERN = Pattern.compile("<!ATTLIST\\s+([a-z-]+)\\s+%([A-Za-z0-9]+);");
+    private static final Pattern PARENT_ENTITY_PATTERN = Pattern.compile("%([A-Za-z0-9]+);");
+    private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("([a-zA-Z]+)\\s+((CDATA|\\([^)]+\\)))");
+
+    private static volatile SierraDtdIndex shared;
+
+    private final Map<String, String> entityDefinitions = new HashMap<>();
+
+    // TagName -> EntityName, e.g. "button" -> "JButton"
+    private final Map<String, String> elementEntities = new HashMap<>();
+
+    // TagName -> {AttributeName -> Description/ValueDefinitionString}
+    private final Map<String, Map<String, String>> elementAttributeDefinitions = new HashMap<>();
+
+    private final List<String> elementNames = new ArrayList<>();
+
+    /**
+     * Gets the index for the bundled /sierra.dtd, parsing it on first use.
+     *
+     * @return The shared index.
+     */
+    public static SierraDtdIndex getShared() {
+        SierraDtdIndex index = shared;
+        if (index == null) {
+            synchronized (SierraDtdIndex.class) {
+                index = shared;
+                if (index == null) {
+                    index = new SierraDtdIndex(loadDTDContent("/sierra.dtd"));
+                    shared = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    SierraDtdIndex(String dtdContent) {
+        parseDTD(dtdContent);
+    }
+
+    /**
+     * Gets the names of all elements declared in the DTD.
+     *
+     * @return The element names, sorted alphabetically.
+     */
+    public List<String> getElementNames() {
+        return Collections.unmodifiableList(elementNames);
+    }
+
+    /**
+     * Gets the component type each element is declared with, e.g. "button"
+     * to "JButton".
+     *
+     * @return Element name to the name of its attribute list entity.
+     */
+    public Map<String, String> getComponentTypes() {
+        return Collections.unmodifiableMap(elementEntities);
+    }
+
+    /**
+     * Gets the attributes of an element, including inherited ones.
+     *
+     * @param tagName The element name.
+     * @return Attribute name to description, or null for an unknown element.
+     */
+    public Map<String, String> getAttributes(String tagName) {
+        Map<String, String> attributes = elementAttributeDefinitions.get(tagName);
+        return attributes == null ? null : Collections.unmodifiableMap(attributes);
+    }
+
+    private static String loadDTDContent(String path) {
+        StringBuilder content = new StringBuilder();
+        try (InputStream is = SierraDtdIndex.class.getResourceAsStream(path)) {
+            if (is == null) {
+                System.err.println("Error: Could not find " + path + " in resources.");
+                return "";
+            }
+            InputStreamReader isr = new InputStreamReader(is, StandardCharsets.UTF_8);
+            BufferedReader reader = new BufferedReader(isr);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                content.append(line).append("\n");
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + path + ": " + e.getMessage());
+        }
+        return content.toString();
+    }
+
+    private void parseDTD(String content) {
+        Map<String, Map<String, String>> entityAttributeMap = new HashMap<>();
+
+        // 1. Find all element tags
+        Matcher elementMatcher = ELEMENT_PATTERN.matcher(content);
+        while (elementMatcher.find()) {
+            elementNames.add(elementMatcher.group(1));
+        }
+        Collections.sort(elementNames);
+
+        // 2. Find all entity definitions
+        Matcher entityMatcher = ENTITY_PATTERN.matcher(content);
+        while (entityMatcher.find()) {
+            entityDefinitions.put(entityMatcher.group(1), entityMatcher.group(2));
+        }
+
+        // 3. Find all ATTLIST mappings
+        Matcher attListMatcher = ATTLIST_PATTERN.matcher(content);
+        while (attListMatcher.find()) {
+            elementEntities.put(attListMatcher.group(1), attListMatcher.group(2));
+        }
+
+        // 4. Resolve the full attribute definition for every entity
+        for (String entityName : entityDefinitions.keySet()) {
+            Map<String, String> resolvedDetails = new HashMap<>();
+            resolveEntityAttributes(entityName, resolvedDetails, new HashSet<>());
+            entityAttributeMap.put(entityName, resolvedDetails);
+        }
+
+        // 5. Map Elements to their Resolved Attribute Definitions
+        for (Map.Entry<String, String> entry : elementEntities.entrySet()) {
+            Map<String, String> attributes = entityAttributeMap.get(entry.getValue());
+            if (attributes != null) {
+                elementAttributeDefinitions.put(entry.getKey(), attributes);
+            }
+        }
+    }
+
+    /**
+     * Recursively resolves all attributes and their value definitions for a given entity.
+     * Note: This method populates a Map<String, String> with attributeName -> formattedDescription.
+     */
+    private void resolveEntityAttributes(String entityName, Map<String, String> resolvedDetails, Set<String> visited) {
+        if (!entityDefinitions.containsKey(entityName) || visited.contains(entityName)) {
+            return;
+        }
+        visited.add(entityName);
+        String definition = entityDefinitions.get(entityName);
+
+        // 1. Find and resolve parent entities (e.g., "%JComponent;")
+        Matcher parentMatcher = PARENT_ENTITY_PATTERN.matcher(definition);
+        while (parentMatcher.find()) {
+            // Merge parent details first (current entity's attributes can override)
+            resolveEntityAttributes(parentMatcher.group(1), resolvedDetails, visited);
+        }
+
+        // 2. Find direct attributes in this entity
+        // Pattern: ([a-zA-Z]+) -> attribute name
+        //          \s+
+        //          ((CDATA|\([^)]+\))) -> attribute definition (capturing CDATA or the enumeration)
+        Matcher attrMatcher = ATTRIBUTE_PATTERN.matcher(definition);
+        while (attrMatcher.find()) {
+            String attrName = attrMatcher.group(1);
+            String rawDefinition = attrMatcher.group(2).trim();
+
+            String formattedDescription;
+            if (rawDefinition.startsWith("CDATA")) {
+                formattedDescription = "Type: String";
+            } else if (rawDefinition.startsWith("(")) {
+                // Example: (true|false) -> Values: true, false
+                String values = rawDefinition.substring(1, rawDefinition.length() - 1)
+                                             .replace("|", ", ");
+                formattedDescription = "Values: " + values;
+            } else {
+                formattedDescription = "Type: Undefined"; // Should not happen with the regex
+            }
+
+            resolvedDetails.put(attrName, formattedDescription);
+        }
+    }
+}
@@ -14,11 +14,60 @@
 package com.sierra.previewer;
 
 import com.formdev.flatlaf.FlatLightLaf;
+import com.sierra.previewer.engine.ComplexityAnalyzer;
+import com.sierra.previewer.engine.ComplexityAnalyzer.Analysis;
+import com.sierra.previewer.engine.ComplexityAnalyzer.Budgets;
+import com.sierra.previewer.engine.FragmentCache;
+import com.sierra.previewer.engine.Json;
+import com.sierra.previewer.engine.LayoutCompiler;
+import com.sierra.previewer.engine.LayoutParseException;
+import com.sierra.previewer.engine.LayoutParser;
+import com.sierra.previewer.engine.RenderingEngine;
+import com.sierra.previewer.model.LayoutNode;
+import com.sierra.previewer.server.RenderServer;
+import com.sierra.previewer.session.EditingSession;
+import com.sierra.previewer.session.SessionReplay;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 import javax.swing.*;
 
 public class SierraPreviewerApp {
 
+    private static final int DEFAULT_SERVER_PORT = 8080;
+    private static final Duration SERVER_RENDER_TIMEOUT = Duration.ofSeconds(10);
+    private static final int BENCHMARK_ITERATIONS = 50;
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            startServer(args.length > 1 ? parsePort(args[1]) : DEFAULT_SERVER_PORT,
+                    args.length > 2 ? parseBindAddress(args[2]) : InetAddress.getLoopbackAddress());
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--compile")) {
+            compile(Path.of(args[1]), args.length > 2 ? Path.of(args[2]) : null);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--analyze")) {
+            analyze(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--replay")) {
+            replay(Path.of(args[1]), args.length > 2 ? parseSpeed(args[2]) : 1);
+            return;
+        }
+
         // Run all UI code on the Event Dispatch Thread (EDT)
         SwingUtilities.invokeLater(() -> {
             try {
@@ -35,4 +84,246 @@ public class SierraPreviewerApp {
             frame.setVisible(true);
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Compiles a layout to the binary format, e.g.
+     * {@code --compile main.xml main.sierrab}, and compares reading the
+     * compiled file against parsing the XML source.
+     */
+    private static void compile(Path xmlPath, Path outputPath) {
+        System.setProperty("java.awt.headless", "true");
+        if (outputPath == null) {
+            String fileName = xmlPath.getFileName().toString().replaceFirst("\\.xml$", "");
+            outputPath = xmlPath.resolveSibling(fileName + ".sierrab");
+        }
+
+        try {
+            String xmlText = Files.readString(xmlPath);
+            LayoutNode layout = new FragmentCache().expand(new LayoutParser().parse(xmlText),
+                    xmlPath.toAbsolutePath().getParent());
+            byte[] compiled = new LayoutCompiler(SierraDtdIndex.getShared().getElementNames()).compile(layout);
+            Files.write(outputPath, compiled);
+
+            long xmlBytes = Files.size(xmlPath);
+            System.out.printf("Compiled %,d elements: %,d bytes (XML %,d bytes, %.0f%%)%n",
+                    layout.size(), compiled.length, xmlBytes, 100.0 * compiled.length / xmlBytes);
+
+            double parseMillis = benchmark(() -> new LayoutParser().parse(Files.readString(xmlPath)));
+            Path compiledPath = outputPath;
+            double decompileMillis = benchmark(
+                    () -> LayoutCompiler.decompile(ByteBuffer.wrap(Files.readAllBytes(compiledPath))));
+            System.out.printf("Read: XML %.3f ms, compiled %.3f ms%n", parseMillis, decompileMillis);
+        } catch (IOException | LayoutParseException e) {
+            System.err.println("Could not compile " + xmlPath + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks layouts against their performance budgets and prints a JSON
+     * report, e.g. {@code --analyze [--budgets ci.properties] src/ui}.
+     * Directories are searched for XML files. Without a budgets file, each
+     * layout uses the nearest {@value ComplexityAnalyzer#BUDGETS_FILE_NAME}.
+     * Exits with status 1 if a layout exceeds a budget or cannot be read.
+     */
+    private static void analyze(String[] args) {
+        Path budgetsPath = null;
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--budgets") && i + 1 < args.length) {
+                budgetsPath = Path.of(args[++i]);
+            } else {
+                paths.add(Path.of(args[i]));
+            }
+        }
+
+        Budgets fixedBudgets = null;
+        List<Path> files = new ArrayList<>();
+        try {
+            if (budgetsPath != null) {
+                fixedBudgets = Budgets.read(budgetsPath);
+            }
+            for (Path path : paths) {
+                if (Files.isDirectory(path)) {
+                    try (Stream<Path> stream = Files.walk(path)) {
+                        stream.filter(file -> file.toString().endsWith(".xml")).sorted().forEach(files::add);
+                    }
+                } else {
+                    files.add(path);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read layouts or budgets: " + e.getMessage());
+            System.exit(1);
+        }
+
+        ComplexityAnalyzer analyzer = new ComplexityAnalyzer(SierraDtdIndex.getShared().getComponentTypes());
+        StringBuilder json = new StringBuilder("{\"files\":[");
+        int violations = 0;
+        int errors = 0;
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"path\":");
+            Json.quote(file.toString(), json);
+            try (Reader reader = Files.newBufferedReader(file)) {
+                Budgets budgets = fixedBudgets != null ? fixedBudgets
+                        : Budgets.find(file.toAbsolutePath().getParent());
+                Analysis analysis = analyzer.analyze(reader, file.toAbsolutePath().getParent(), budgets);
+                violations += analysis.violations().size();
+                analysis.writeJson(json.append(",\"analysis\":"));
+            } catch (IOException e) {
+                errors++;
+                Json.quote(e.getMessage(), json.append(",\"error\":"));
+            } catch (LayoutParseException e) {
+                errors++;
+                Json.quote(e.getMessage(), json.append(",\"error\":")).append(",\"line\":").append(e.getLine());
+            }
+            json.append('}');
+        }
+        json.append("],\"violations\":").append(violations).append(",\"errors\":").append(errors).append('}');
+
+        System.out.println(json);
+        System.exit(violations > 0 || errors > 0 ? 1 : 0);
+    }
+
+    /**
+     * Replays a recorded editing session headless and reports its latencies,
+     * e.g. {@code --replay typing.sierrasession 4} to replay four times
+     * faster than recorded, or 0 to post every edit at once.
+     */
+    private static void replay(Path sessionPath, double speed) {
+        System.setProperty("java.awt.headless", "true");
+        try {
+            UIManager.setLookAndFeel(new FlatLightLaf());
+        } catch (Exception e) {
+            System.err.println("Could not set System Look and Feel.");
+        }
+
+        RenderingEngine engine = new RenderingEngine();
+        engine.setLogging(false);
+        try {
+            EditingSession session = EditingSession.read(sessionPath);
+            System.out.printf("Replaying %,d edits over %.1f s at %sx speed%n", session.edits().size(),
+                    session.getDurationNanos() / 1e9, speed > 0 ? speed : "maximum");
+            new SessionReplay(engine).replay(session, speed).print(System.out);
+            System.exit(0); // The tab's timers keep the EDT alive
+        } catch (IOException | TimeoutException e) {
+            System.err.println("Could not replay " + sessionPath + ": " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Measures the mean time of an operation after warming it up.
+     *
+     * @return The mean time in milliseconds.
+     */
+    private static double benchmark(Callable<?> operation) {
+        try {
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                operation.call();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                operation.call();
+            }
+            return (System.nanoTime() - start) / 1e6 / BENCHMARK_ITERATIONS;
+        } catch (Exception e) {
+            System.err.println("Benchmark failed: " + e);
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Parses the {@code --replay} speed, exiting with a usage message if it is
+     * not a finite number of at least 0 (0 posts every edit at once).
+     */
+    private static double parseSpeed(String value) {
+        try {
+            double speed = Double.parseDouble(value);
+            if (speed >= 0 && !Double.isInfinite(speed)) {
+                return speed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.err.println("Invalid speed: " + value);
+        System.err.println("Usage: --replay session-file [speed], where speed is how many times faster than"
+                + " recorded to replay (default 1), or 0 to post every edit at once");
+        System.exit(1);
+        return -1;
+    }
+
+    /**
+     * Parses the {@code --server} port, exiting with a usage message if it is
+     * not a number from 0 to 65535 (0 picks a free port).
+     */
+    private static int parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            if (port >= 0 && port <= 65535) {
+                return port;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.err.println("Invalid port: " + value);
+        printServerUsage();
+        System.exit(1);
+        return -1;
+    }
+
+    /**
+     * Parses the {@code --server} bind address, exiting with a usage message
+     * if it cannot be resolved.
+     */
+    private static InetAddress parseBindAddress(String value) {
+        try {
+            return InetAddress.getByName(value);
+        } catch (UnknownHostException e) {
+            System.err.println("Invalid bind address: " + value);
+            printServerUsage();
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static void printServerUsage() {
+        System.err.println("Usage: --server [port [bind-address]], where port is 0-65535 (default "
+                + DEFAULT_SERVER_PORT + ") and the server listens on the loopback address unless another is given");
+    }
+
+    /**
+     * Runs the headless render server, e.g. {@code --server 8080}, or
+     * {@code --server 8080 0.0.0.0} to accept connections from other hosts.
+     */
+    private static void startServer(int port, InetAddress address) {
+        System.setProperty("java.awt.headless", "true");
+        try {
+            UIManager.setLookAndFeel(new FlatLightLaf());
+        } catch (Exception e) {
+            System.err.println("Could not set System Look and Feel.");
+        }
+
+        RenderingEngine engine = new RenderingEngine(Runtime.getRuntime().availableProcessors());
+        engine.setLogging(false);
+
+        try {
+            RenderServer server = new RenderServer(address, port, engine, SERVER_RENDER_TIMEOUT);
+            if (!address.isLoopbackAddress()) {
+                System.err.println("Warning: rendered layouts can read local files, and the server accepts"
+                        + " connections on " + address.getHostAddress());
+            }
+            server.start();
+            System.out.println("Sierra render server listening on " + server.getAddress());
+        } catch (IOException e) {
+            System.err.println("Could not start render server: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import java.awt.AWTEvent;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.event.MouseEvent;
+import java.util.function.Consumer;
+import javax.swing.JComponent;
+import javax.swing.JLayer;
+import javax.swing.SwingUtilities;
+import javax.swing.plaf.LayerUI;
+
+/**
+ * Decorates the preview with an outline around the component whose source
+ * the editor caret is in, and reports components the user picks with the
+ * menu shortcut key (Ctrl or Cmd) held down.
+ */
+public class SourceHighlightUI extends LayerUI<JComponent> {
+
+    private static final Color OUTLINE = new Color(0x2f, 0x80, 0xed);
+    private static final Color FILL = new Color(0x2f, 0x80, 0xed, 0x30);
+
+    private final Consumer<Component> pickListener;
+    private Component highlighted = null;
+
+    /**
+     * Creates the decoration.
+     *
+     * @param pickListener Called with the deepest component under the mouse
+     * when the user picks one.
+     */
+    public SourceHighlightUI(Consumer<Component> pickListener) {
+        this.pickListener = pickListener;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void installUI(JComponent component) {
+        super.installUI(component);
+        ((JLayer<JComponent>) component).setLayerEventMask(AWTEvent.MOUSE_EVENT_MASK);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void uninstallUI(JComponent component) {
+        ((JLayer<JComponent>) component).setLayerEventMask(0);
+        super.uninstallUI(component);
+    }
+
+    /**
+     * Outlines a component, replacing the previous outline.
+     *
+     * @param component The component, or null to remove the outline.
+     * @param layer The decorated layer.
+     */
+    public void setHighlighted(Component component, JLayer<JComponent> layer) {
+        if (component == highlighted) {
+            return;
+        }
+        highlighted = component;
+        layer.repaint();
+
+        if (component instanceof JComponent jComponent && jComponent.isShowing()) {
+            jComponent.scrollRectToVisible(new Rectangle(jComponent.getSize()));
+        }
+    }
+
+    @Override
+    public void paint(Graphics g, JComponent component) {
+        super.paint(g, component);
+
+        if (highlighted == null || !highlighted.isShowing()
+                || !SwingUtilities.isDescendingFrom(highlighted, component)) {
+            return;
+        }
+        Rectangle bounds = SwingUtilities.convertRectangle(highlighted.getParent(), highlighted.getBounds(), component);
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setColor(FILL);
+            g2.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+            g2.setColor(OUTLINE);
+            g2.drawRect(bounds.x, bounds.y, bounds.width - 1, bounds.height - 1);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    @Override
+    protected void processMouseEvent(MouseEvent e, JLayer<? extends JComponent> layer) {
+        int shortcut = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        if ((e.getModifiersEx() & shortcut) == 0 || e.getComponent() == null) {
+            return;
+        }
+
+        // The pick replaces the click, so buttons in the preview are not activated
+        if (e.getID() == MouseEvent.MOUSE_PRESSED) {
+            Point point = SwingUtilities.convertPoint(e.getComponent(), e.getPoint(), layer);
+            Component target = SwingUtilities.getDeepestComponentAt(layer, point.x, point.y);
+            if (target != null && target != layer) {
+                pickListener.accept(target);
+            }
+        }
+        e.consume();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import com.sierra.previewer.text.UndoHistory;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import javax.swing.*;
+
+/**
+ * Moves a document to any version in its undo history with a slider, and
+ * sets how much history is kept. The preview follows each version as it is
+ * restored.
+ */
+public class UndoHistoryDialog extends JDialog {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofLocalizedTime(FormatStyle.MEDIUM)
+            .withZone(ZoneId.systemDefault());
+
+    private final RopeUndoManager undoManager;
+    private final JSlider slider = new JSlider();
+    private final JLabel versionLabel = new JLabel(" ");
+    private final JLabel memoryLabel = new JLabel(" ");
+    private boolean updating = false;
+
+    /**
+     * Creates the dialog.
+     *
+     * @param owner The owning frame.
+     * @param tab The document whose history is shown.
+     */
+    public UndoHistoryDialog(Frame owner, DocumentTab tab) {
+        super(owner, "Undo History - " + tab.getTitle(), false);
+        this.undoManager = tab.getUndoManager();
+
+        slider.addChangeListener(e -> {
+            if (!updating && slider.getValue() != undoManager.getHistory().getCurrentIndex()) {
+                undoManager.jumpTo(slider.getValue());
+                refresh();
+            }
+        });
+
+        UndoHistory history = undoManager.getHistory();
+        JSpinner versionsSpinner = new JSpinner(new SpinnerNumberModel(history.getMaxVersions(), 2, 1_000_000, 100));
+        JSpinner megabytesSpinner = new JSpinner(new SpinnerNumberModel(
+                (int) (history.getMaxBytes() / (1024 * 1024)), 1, 4096, 16));
+        JButton applyButton = new JButton("Apply");
+        applyButton.addActionListener(e -> {
+            undoManager.setLimits((Integer) versionsSpinner.getValue(),
+                    (Integer) megabytesSpinner.getValue() * 1024L * 1024);
+            refresh();
+        });
+
+        JPanel limits = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        limits.add(new JLabel("Keep at most"));
+        limits.add(versionsSpinner);
+        limits.add(new JLabel("versions and"));
+        limits.add(megabytesSpinner);
+        limits.add(new JLabel("MB"));
+        limits.add(applyButton);
+
+        JPanel labels = new JPanel(new BorderLayout(0, 4));
+        labels.add(versionLabel, BorderLayout.NORTH);
+        labels.add(memoryLabel, BorderLayout.SOUTH);
+
+        JPanel content = new JPanel(new BorderLayout(0, 8));
+        content.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        content.add(slider, BorderLayout.NORTH);
+        content.add(labels, BorderLayout.CENTER);
+        content.add(limits, BorderLayout.SOUTH);
+        setContentPane(content);
+
+        // The document may have been edited while the dialog was in the background
+        addWindowFocusListener(new WindowAdapter() {
+            @Override
+            public void windowGainedFocus(WindowEvent e) {
+                refresh();
+            }
+        });
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        pack();
+        setSize(Math.max(getWidth(), 560), getHeight());
+        setLocationRelativeTo(owner);
+        refresh();
+    }
+
+    private void refresh() {
+        UndoHistory history = undoManager.getHistory();
+        int current = history.getCurrentIndex();
+
+        updating = true;
+        try {
+            slider.setMaximum(history.size() - 1);
+            slider.setValue(current);
+        } finally {
+            updating = false;
+        }
+
+        UndoHistory.Version version = history.getVersion(current);
+        versionLabel.setText(String.format("Version %,d of %,d, recorded at %s (%,d characters)", current + 1,
+                history.size(), TIME_FORMAT.format(Instant.ofEpochMilli(version.timeMillis())),
+                version.text().length()));
+        memoryLabel.setText(String.format("History retains about %.1f MB of %,d MB.",
+                history.getRetainedBytes() / (1024.0 * 1024), history.getMaxBytes() / (1024 * 1024)));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import com.sierra.previewer.workspace.WorkspaceIndex;
+import com.sierra.previewer.workspace.WorkspaceIndex.Match;
+import java.awt.BorderLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Searches the layouts of a workspace for elements by name and attribute,
+ * re-running the query as it is typed and whenever the index changes.
+ */
+public class WorkspaceSearchDialog extends JDialog {
+
+    private final WorkspaceIndex index;
+    private final JTextField queryField = new JTextField();
+    private final JLabel summary = new JLabel(" ");
+    private final DefaultTableModel results = new DefaultTableModel(new String[] {"File", "Line", "Element"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private List<Match> matches = List.of();
+
+    /**
+     * Creates the dialog.
+     *
+     * @param owner The owning frame.
+     * @param index The workspace index to search.
+     * @param openAction Called with a match the user chose to open.
+     */
+    public WorkspaceSearchDialog(Frame owner, WorkspaceIndex index, Consumer<Match> openAction) {
+        super(owner, "Search Workspace - " + index.getRoot(), false);
+        this.index = index;
+
+        queryField.setToolTipText("<html>Element names and attributes, e.g. <tt>combo-box editable=true</tt>, "
+                + "<tt>name=statusBar</tt> or <tt>icon=*</tt></html>");
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                search();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                search();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
+        JTable table = new JTable(results);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(0).setPreferredWidth(400);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && table.getSelectedRow() >= 0) {
+                    openAction.accept(matches.get(table.convertRowIndexToModel(table.getSelectedRow())));
+                }
+            }
+        });
+        table.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "open");
+        table.getActionMap().put("open", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (table.getSelectedRow() >= 0) {
+                    openAction.accept(matches.get(table.convertRowIndexToModel(table.getSelectedRow())));
+                }
+            }
+        });
+
+        JPanel header = new JPanel(new BorderLayout(0, 4));
+        header.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        header.add(queryField, BorderLayout.NORTH);
+        header.add(summary, BorderLayout.SOUTH);
+
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(header, BorderLayout.NORTH);
+        content.add(new JScrollPane(table), BorderLayout.CENTER);
+        setContentPane(content);
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setSize(720, 480);
+        setLocationRelativeTo(owner);
+        search();
+    }
+
+    /**
+     * Runs the current query again, e.g. after the index changed.
+     */
+    public void search() {
+        long start = System.nanoTime();
+        matches = index.search(queryField.getText());
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        results.setRowCount(0);
+        for (Match match : matches) {
+            results.addRow(new Object[] {index.getRoot().relativize(match.file()).toString(), match.line(),
+                match.element()});
+        }
+        summary.setText(String.format("%,d matches in %.1f ms (%,d files, %,d terms indexed)",
+                matches.size(), millis, index.getFileCount(), index.getTermCount()));
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Font;
+import java.awt.Insets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.swing.JComponent;
+import javax.swing.border.Border;
+import javax.swing.border.CompoundBorder;
+import javax.swing.border.EmptyBorder;
+import javax.swing.border.LineBorder;
+import javax.swing.border.MatteBorder;
+
+/**
+ * Replaces the fonts, colors and borders UILoader creates for each component
+ * with one shared instance per distinct value, across renders and documents.
+ * Identical attribute values repeat thousands of times in large layouts, and
+ * without interning every component of every retained preview keeps its own
+ * copies alive.
+ * <p>
+ * Only values of the plain immutable types are interned. Look and feel
+ * resources ({@link javax.swing.plaf.UIResource}) and subclasses are left
+ * alone, so that they are still replaced when the look and feel changes.
+ * All methods are thread-safe.
+ */
+public class AttributeInterner {
+
+    private static final int MAX_ENTRIES = 4096;
+
+    private final Map<Object, Object> values = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+
+    private record EmptyKey(Insets insets) {
+    }
+
+    private record LineKey(Color color, int thickness, boolean rounded) {
+    }
+
+    private record MatteKey(Insets insets, Color color) {
+    }
+
+    private record CompoundKey(Object outside, Object inside) {
+    }
+
+    /**
+     * Replaces the attribute values of every component in a tree with their
+     * shared instances.
+     *
+     * @param root The root of a tree that is not yet displayed.
+     */
+    public void apply(Component root) {
+        Font font = root.isFontSet() ? root.getFont() : null;
+        if (font != null && font.getClass() == Font.class) {
+            Font internedFont = intern(font, font);
+            if (internedFont != font) {
+                root.setFont(internedFont);
+            }
+        }
+
+        Color foreground = root.isForegroundSet() ? root.getForeground() : null;
+        if (foreground != null && foreground.getClass() == Color.class) {
+            Color internedForeground = intern(foreground, foreground);
+            if (internedForeground != foreground) {
+                root.setForeground(internedForeground);
+            }
+        }
+
+        Color background = root.isBackgroundSet() ? root.getBackground() : null;
+        if (background != null && background.getClass() == Color.class) {
+            Color internedBackground = intern(background, background);
+            if (internedBackground != background) {
+                root.setBackground(internedBackground);
+            }
+        }
+
+        if (root instanceof JComponent component && component.getBorder() != null) {
+            Border border = component.getBorder();
+            Border internedBorder = intern(border);
+            if (internedBorder != border) {
+                component.setBorder(internedBorder);
+            }
+        }
+
+        if (root instanceof Container container) {
+            for (Component child : container.getComponents()) {
+                apply(child);
+            }
+        }
+    }
+
+    /**
+     * Gets the shared instance of a border.
+     *
+     * @param border The border.
+     * @return An equal shared border, or the border itself if it is not of a
+     * type that can be interned.
+     */
+    public Border intern(Border border) {
+        Object key = borderKey(border);
+        return key != null ? intern(key, border) : border;
+    }
+
+    /**
+     * Builds a key identifying a border by value, or null if the border's
+     * class is not one of the immutable Swing border types.
+     */
+    private Object borderKey(Border border) {
+        if (border.getClass() == EmptyBorder.class) {
+            return new EmptyKey(((EmptyBorder) border).getBorderInsets());
+        }
+        if (border.getClass() == LineBorder.class) {
+            LineBorder line = (LineBorder) border;
+            return line.getLineColor().getClass() == Color.class
+                    ? new LineKey(line.getLineColor(), line.getThickness(), line.getRoundedCorners()) : null;
+        }
+        if (border.getClass() == MatteBorder.class) {
+            MatteBorder matte = (MatteBorder) border;
+            // Tiled icon borders are left alone
+            return matte.getTileIcon() == null && matte.getMatteColor() != null
+                    && matte.getMatteColor().getClass() == Color.class
+                    ? new MatteKey(matte.getBorderInsets(), matte.getMatteColor()) : null;
+        }
+        if (border.getClass() == CompoundBorder.class) {
+            CompoundBorder compound = (CompoundBorder) border;
+            if (compound.getOutsideBorder() == null || compound.getInsideBorder() == null) {
+                return null;
+            }
+            Object outside = borderKey(compound.getOutsideBorder());
+            Object inside = borderKey(compound.getInsideBorder());
+            return outside != null && inside != null ? new CompoundKey(outside, inside) : null;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T intern(Object key, T value) {
+        Object existing = values.get(key);
+        if (existing != null) {
+            if (existing != value) {
+                shared.increment();
+            }
+            return (T) existing;
+        }
+        if (values.size() >= MAX_ENTRIES) {
+            return value;
+        }
+        existing = values.putIfAbsent(key, value);
+        return existing != null ? (T) existing : value;
+    }
+
+    /**
+     * Gets the number of values replaced by a shared instance.
+     *
+     * @return The replacement count.
+     */
+    public long getSharedCount() {
+        return shared.sum();
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Measures how expensive a layout is to load without building it, and checks
+ * the measurements against performance budgets. The XML is read as a stream,
+ * so memory use depends on the nesting depth rather than the document size.
+ * <p>
+ * The construction cost is an estimate in units of one label: each element
+ * is charged the relative cost of the component sierra.dtd declares for it.
+ * Image sizes are those of the decoded ARGB pixels, read from the image file
+ * headers; images the renderer scales down are still counted at full size.
+ */
+public class ComplexityAnalyzer {
+
+    /**
+     * The budgets file looked up in a layout's directory and its parents.
+     */
+    public static final String BUDGETS_FILE_NAME = "sierra-budgets.properties";
+
+    private static final double DEFAULT_COST = 2;
+    private static final Map<String, Double> COMPONENT_COSTS = Map.ofEntries(
+            Map.entry("Spacer", 0.5),
+            Map.entry("JSeparator", 0.5),
+            Map.entry("JLabel", 1.0),
+            Map.entry("ColumnPanel", 1.0),
+            Map.entry("RowPanel", 1.0),
+            Map.entry("StackPanel", 1.0),
+            Map.entry("JButton", 1.5),
+            Map.entry("JToggleButton", 1.5),
+            Map.entry("JCheckBox", 1.5),
+            Map.entry("JRadioButton", 1.5),
+            Map.entry("ImagePane", 2.0),
+            Map.entry("JProgressBar", 2.0),
+            Map.entry("ActivityIndicator", 2.0),
+            Map.entry("JTextField", 3.0),
+            Map.entry("JPasswordField", 3.0),
+            Map.entry("JSlider", 3.0),
+            Map.entry("JScrollPane", 3.0),
+            Map.entry("MenuButton", 3.0),
+            Map.entry("JFormattedTextField", 4.0),
+            Map.entry("NumberField", 4.0),
+            Map.entry("ValidatedTextField", 4.0),
+            Map.entry("JTextArea", 4.0),
+            Map.entry("JComboBox", 5.0),
+            Map.entry("JList", 5.0),
+            Map.entry("JSpinner", 5.0),
+            Map.entry("TextPane", 6.0),
+            Map.entry("TimePicker", 6.0),
+            Map.entry("SuggestionPicker", 6.0),
+            Map.entry("DatePicker", 8.0),
+            Map.entry("JTree", 8.0),
+            Map.entry("JTable", 10.0),
+            Map.entry("JColorChooser", 40.0));
+
+    /**
+     * A measurement that is checked against a budget.
+     */
+    public enum Measure {
+        /** The deepest element nesting. */
+        DEPTH("maxDepth", "Nesting depth"),
+        /** The number of components. */
+        COMPONENTS("maxComponents", "Component count"),
+        /** The estimated construction cost. */
+        COST("maxCost", "Estimated construction cost"),
+        /** The decoded size of the distinct images. */
+        IMAGE_BYTES("maxImageBytes", "Decoded image size");
+
+        private final String key;
+        private final String label;
+
+        Measure(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+
+        /**
+         * Gets the key of the measure's budget in a budgets file.
+         *
+         * @return The property key.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Formats a value of the measure for display.
+         *
+         * @param value The value.
+         * @return The formatted value.
+         */
+        public String format(double value) {
+            return this == IMAGE_BYTES ? String.format("%.1f MB", value / (1024 * 1024))
+                    : String.format("%,.0f", value);
+        }
+    }
+
+    /**
+     * The limits a layout should stay within.
+     *
+     * @param maxDepth The deepest element nesting, the root being 1.
+     * @param maxComponents The most components.
+     * @param maxCost The highest estimated construction cost.
+     * @param maxImageBytes The largest decoded size of the distinct images.
+     */
+    public record Budgets(int maxDepth, int maxComponents, double maxCost, long maxImageBytes) {
+
+        /**
+         * The budgets used when none are configured.
+         */
+        public static final Budgets DEFAULTS = new Budgets(12, 1000, 2000, 16L * 1024 * 1024);
+
+        /**
+         * Gets the limit of a measure.
+         *
+         * @param measure The measure.
+         * @return The limit.
+         */
+        public double limit(Measure measure) {
+            return switch (measure) {
+                case DEPTH -> maxDepth;
+                case COMPONENTS -> maxComponents;
+                case COST -> maxCost;
+                case IMAGE_BYTES -> maxImageBytes;
+            };
+        }
+
+        /**
+         * Reads budgets from a properties file, e.g. {@code maxDepth=10}.
+         * Budgets the file leaves out keep their default.
+         *
+         * @param file The properties file.
+         * @return The budgets.
+         * @throws IOException If the file cannot be read or has an invalid
+         * value.
+         */
+        public static Budgets read(Path file) throws IOException {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file)) {
+                properties.load(reader);
+            }
+
+            try {
+                return new Budgets(
+                        Integer.parseInt(properties.getProperty(Measure.DEPTH.getKey(),
+                                String.valueOf(DEFAULTS.maxDepth())).trim()),
+                        Integer.parseInt(properties.getProperty(Measure.COMPONENTS.getKey(),
+                                String.valueOf(DEFAULTS.maxComponents())).trim()),
+                        Double.parseDouble(properties.getProperty(Measure.COST.getKey(),
+                                String.valueOf(DEFAULTS.maxCost())).trim()),
+                        Long.parseLong(properties.getProperty(Measure.IMAGE_BYTES.getKey(),
+                                String.valueOf(DEFAULTS.maxImageBytes())).trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid budget in " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Reads the budgets that apply to layouts in a directory, from the
+         * nearest {@value #BUDGETS_FILE_NAME} in it or its parents.
+         *
+         * @param directory The layout's directory, or null for an unsaved
+         * layout.
+         * @return The budgets, or the defaults if there is no budgets file.
+         * @throws IOException If the budgets file cannot be read.
+         */
+        public static Budgets find(Path directory) throws IOException {
+            for (Path parent = directory != null ? directory.toAbsolutePath() : null; parent != null;
+                    parent = parent.getParent()) {
+                Path file = parent.resolve(BUDGETS_FILE_NAME);
+                if (Files.isRegularFile(file)) {
+                    return read(file);
+                }
+            }
+            return DEFAULTS;
+        }
+    }
+
+    /**
+     * A budget the layout exceeds.
+     *
+     * @param measure The exceeded measure.
+     * @param value The layout's value.
+     * @param limit The budget.
+     * @param line The line of the element at which the budget was first
+     * exceeded.
+     */
+    public record Violation(Measure measure, double value, double limit, int line) {
+
+        /**
+         * Describes the violation.
+         *
+         * @return The message.
+         */
+        public String getMessage() {
+            return measure.label + " " + measure.format(value) + " exceeds the budget of " + measure.format(limit)
+                    + ".";
+        }
+    }
+
+    /**
+     * The measurements of a layout.
+     *
+     * @param depth The deepest element nesting, the root being 1.
+     * @param components The number of elements, each of which builds a
+     * component.
+     * @param componentsByTag The number of elements per tag, by tag name.
+     * @param cost The estimated construction cost.
+     * @param images The number of distinct local images.
+     * @param imageBytes The decoded size of the distinct images.
+     * @param violations The exceeded budgets, in the order of {@link Measure}.
+     * @param analysisNanos The time the analysis took.
+     */
+    public record Analysis(int depth, int components, Map<String, Integer> componentsByTag, double cost, int images,
+            long imageBytes, List<Violation> violations, long analysisNanos) {
+
+        /**
+         * Whether the layout stays within all budgets.
+         *
+         * @return True if there are no violations.
+         */
+        public boolean isWithinBudgets() {
+            return violations.isEmpty();
+        }
+
+        /**
+         * Appends the analysis as a JSON object.
+         *
+         * @param json The output.
+         * @return The output, for chaining.
+         */
+        public StringBuilder writeJson(StringBuilder json) {
+            json.append("{\"depth\":").append(depth)
+                    .append(",\"components\":").append(components)
+                    .append(",\"cost\":").append(Math.round(cost * 10) / 10.0)
+                    .append(",\"images\":").append(images)
+                    .append(",\"imageBytes\":").append(imageBytes)
+                    .append(",\"analysisMillis\":").append(Math.round(analysisNanos / 1e3) / 1e3)
+                    .append(",\"componentsByTag\":{");
+            boolean first = true;
+            for (Map.Entry<String, Integer> entry : componentsByTag.entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                Json.quote(entry.getKey(), json).append(':').append(entry.getValue());
+            }
+            json.append("},\"violations\":[");
+            for (int i = 0; i < violations.size(); i++) {
+                Violation violation = violations.get(i);
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"budget\":");
+                Json.quote(violation.measure().getKey(), json)
+                        .append(",\"value\":").append(violation.value())
+                        .append(",\"limit\":").append(violation.limit())
+                        .append(",\"line\":").append(violation.line())
+                        .append(",\"message\":");
+                Json.quote(violation.getMessage(), json).append('}');
+            }
+            return json.append("]}");
+        }
+    }
+
+    private record ImageSize(long modifiedMillis, long bytes) {
+    }
+
+    private final Map<String, String> componentTypes;
+    private final Map<Path, ImageSize> imageSizes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an analyzer.
+     *
+     * @param componentTypes The component type declared for each element in
+     * sierra.dtd, e.g. "button" to "JButton". Other elements are charged a
+     * default cost.
+     */
+    public ComplexityAnalyzer(Map<String, String> componentTypes) {
+        this.componentTypes = Map.copyOf(componentTypes);
+    }
+
+    /**
+     * Analyzes a layout. Image headers are read once per file and version,
+     * so repeated analyses of a layout do not touch the disk.
+     *
+     * @param input The Sierra XML content.
+     * @param baseDirectory The directory relative image paths are resolved
+     * against, or null to skip images.
+     * @param budgets The budgets to check.
+     * @return The analysis.
+     * @throws LayoutParseException If the text is not well-formed.
+     */
+    public Analysis analyze(Reader input, Path baseDirectory, Budgets budgets) throws LayoutParseException {
+        long start = System.nanoTime();
+        Map<String, Integer> componentsByTag = new TreeMap<>();
+        Set<Path> images = new HashSet<>();
+        Map<Measure, Integer> exceededAt = new EnumMap<>(Measure.class);
+        int depth = 0;
+        int maxDepth = 0;
+        int components = 0;
+        double cost = 0;
+        long imageBytes = 0;
+
+        XMLStreamReader reader = null;
+        try {
+            reader = LayoutParser.inputFactory().createXMLStreamReader(input);
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        String tag = reader.getLocalName();
+                        maxDepth = Math.max(maxDepth, ++depth);
+                        components++;
+                        componentsByTag.merge(tag, 1, Integer::sum);
+                        cost += cost(tag);
+
+                        if (baseDirectory != null) {
+                            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                                if (ImageBinder.IMAGE_ATTRIBUTES.contains(reader.getAttributeLocalName(i))) {
+                                    Path image = ImageBinder.resolve(baseDirectory, reader.getAttributeValue(i));
+                                    if (image != null && images.add(image)) {
+                                        imageBytes += imageBytes(image);
+                                    }
+                                }
+                            }
+                        }
+
+                        // Violations point at the element that first exceeds each budget
+                        int line = reader.getLocation().getLineNumber();
+                        checkBudget(Measure.DEPTH, depth, budgets, line, exceededAt);
+                        checkBudget(Measure.COMPONENTS, components, budgets, line, exceededAt);
+                        checkBudget(Measure.COST, cost, budgets, line, exceededAt);
+                        checkBudget(Measure.IMAGE_BYTES, imageBytes, budgets, line, exceededAt);
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> depth--;
+                    default -> {
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            Location location = e.getLocation();
+            throw new LayoutParseException(LayoutParser.stripLocationPrefix(e.getMessage()),
+                    location == null ? -1 : location.getLineNumber(),
+                    location == null ? -1 : location.getColumnNumber(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        if (components == 0) {
+            throw new LayoutParseException("Document has no root element.", 1, 1, null);
+        }
+
+        double[] values = {maxDepth, components, cost, imageBytes};
+        List<Violation> violations = new ArrayList<>();
+        for (Map.Entry<Measure, Integer> entry : exceededAt.entrySet()) {
+            Measure measure = entry.getKey();
+            violations.add(new Violation(measure, values[measure.ordinal()], budgets.limit(measure),
+                    entry.getValue()));
+        }
+
+        return new Analysis(maxDepth, components, componentsByTag, cost, images.size(), imageBytes,
+                List.copyOf(violations), System.nanoTime() - start);
+    }
+
+    private double cost(String tag) {
+        String type = componentTypes.get(tag);
+        return type != null ? COMPONENT_COSTS.getOrDefault(type, DEFAULT_COST) : DEFAULT_COST;
+    }
+
+    private static void checkBudget(Measure measure, double value, Budgets budgets, int line,
+            Map<Measure, Integer> exceededAt) {
+        if (value > budgets.limit(measure)) {
+            exceededAt.putIfAbsent(measure, line);
+        }
+    }
+
+    /**
+     * Gets the decoded size of an image from its header.
+     *
+     * @return The size in bytes, or 0 if the image cannot be read.
+     */
+    private long imageBytes(Path path) {
+        try {
+            long modifiedMillis = Files.getLastModifiedTime(path).toMillis();
+            ImageSize cached = imageSizes.get(path);
+            if (cached != null && cached.modifiedMillis() == modifiedMillis) {
+                return cached.bytes();
+            }
+
+            long bytes = 0;
+            try (ImageInputStream stream = ImageIO.createImageInputStream(path.toFile())) {
+                Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+                if (readers != null && readers.hasNext()) {
+                    ImageReader imageReader = readers.next();
+                    try {
+                        imageReader.setInput(stream, true, true);
+                        bytes = 4L * imageReader.getWidth(0) * imageReader.getHeight(0);
+                    } finally {
+                        imageReader.dispose();
+                    }
+                }
+            }
+            imageSizes.put(path, new ImageSize(modifiedMillis, bytes));
+            return bytes;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import javax.swing.*;
+
+/**
+ * A recycling pool for preview components, keyed by exact component type.
+ * Components released from a discarded preview tree are reset to their
+ * look-and-feel defaults and handed back to callers that build previewer-owned
+ * components (placeholders, empty previews) instead of allocating new ones and
+ * re-installing their UI delegates.
+ * <p>
+ * Only the panels and labels the previewer creates itself are pooled. UILoader
+ * allocates every component it builds, so pooled buttons or tables would never
+ * be handed out again and would only add reset cost and retained memory.
+ * <p>
+ * Pooled instances are held through soft references and each type is capped,
+ * so the pool gives memory back to the GC under pressure. Components are only
+ * reset once there is room for them, and a released tree is walked only until
+ * every pool is full; the rest of it is left to the GC. The pool is
+ * thread-safe, so render threads can release trees that were never displayed.
+ */
+public class ComponentPool {
+
+    private static final int DEFAULT_MAX_PER_TYPE = 32;
+
+    // Only the exact types the previewer acquires, whose state can be fully reset without updateUI()
+    private static final Set<Class<?>> RECYCLABLE_TYPES = Set.of(JPanel.class, JLabel.class);
+
+    private final int maxPerType;
+    private final Map<Class<?>, Deque<SoftReference<JComponent>>> pools = new HashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ComponentPool() {
+        this(DEFAULT_MAX_PER_TYPE);
+    }
+
+    public ComponentPool(int maxPerType) {
+        this.maxPerType = maxPerType;
+    }
+
+    /**
+     * Returns a recycled component of the given type, or a new one from the
+     * factory if none is available.
+     *
+     * @param type The exact component class.
+     * @param factory Creates a new instance when the pool is empty.
+     * @return A component in its default state.
+     */
+    public synchronized <T extends JComponent> T acquire(Class<T> type, Supplier<T> factory) {
+        Deque<SoftReference<JComponent>> pool = pools.get(type);
+        while (pool != null && !pool.isEmpty()) {
+            JComponent component = pool.pollFirst().get();
+            if (component != null) {
+                hits++;
+                return type.cast(component);
+            }
+            // Cleared by the GC under memory pressure
+            evictions++;
+        }
+        misses++;
+        return factory.get();
+    }
+
+    /**
+     * Detaches a discarded component tree and recycles the components of a
+     * supported type that the pools have room for. Can be called on any thread for a tree that was never
+     * displayed, e.g. one whose render was superseded; a tree that has been
+     * displayed must be released on the EDT once it is no longer shown.
+     *
+     * @param root The root of the discarded tree.
+     */
+    public void release(JComponent root) {
+        if (root.getParent() != null) {
+            root.getParent().remove(root);
+        }
+        recycle(root);
+    }
+
+    /**
+     * Recycles a component and its descendants.
+     *
+     * @return False once every pool is full, so that the walk can stop.
+     */
+    private boolean recycle(Component component) {
+        // Post-order: children are recycled before their parent is cleared
+        if (component instanceof Container container) {
+            for (Component child : container.getComponents()) {
+                if (!recycle(child)) {
+                    return false;
+                }
+            }
+        }
+
+        if (component instanceof JComponent jComponent && RECYCLABLE_TYPES.contains(component.getClass())
+                && hasRoom(component.getClass())) {
+            jComponent.removeAll();
+            if (jComponent.getParent() != null) {
+                jComponent.getParent().remove(jComponent);
+            }
+            reset(jComponent);
+            offer(jComponent);
+        }
+        return !isFull();
+    }
+
+    private synchronized boolean hasRoom(Class<?> type) {
+        Deque<SoftReference<JComponent>> pool = pools.get(type);
+        return pool == null || pool.size() < maxPerType;
+    }
+
+    private synchronized boolean isFull() {
+        for (Class<?> type : RECYCLABLE_TYPES) {
+            if (hasRoom(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void offer(JComponent component) {
+        Deque<SoftReference<JComponent>> pool = pools.computeIfAbsent(component.getClass(), k -> new ArrayDeque<>());
+        if (pool.size() < maxPerType) { // Another thread may have filled it since
+            pool.addFirst(new SoftReference<>(component));
+        }
+    }
+
+    /**
+     * Restores the properties the Sierra attributes may have changed to the
+     * current look-and-feel defaults.
+     */
+    private static void reset(JComponent component) {
+        String prefix = component.getUIClassID().replaceFirst("UI$", "");
+
+        component.setName(null);
+        component.putClientProperty(SourceMap.class, null);
+        component.setToolTipText(null);
+        component.setBorder(null);
+        component.setEnabled(true);
+        component.setVisible(true);
+        component.setPreferredSize(null);
+        component.setMinimumSize(null);
+        component.setMaximumSize(null);
+        component.setFont(UIManager.getFont(prefix + ".font"));
+        component.setForeground(UIManager.getColor(prefix + ".foreground"));
+        component.setBackground(UIManager.getColor(prefix + ".background"));
+
+        switch (component) {
+            case JLabel label -> {
+                label.setText(null);
+                label.setIcon(null);
+                label.setDisabledIcon(null);
+                label.setHorizontalAlignment(SwingConstants.LEADING);
+                label.setVerticalAlignment(SwingConstants.CENTER);
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Drops every pooled component.
+     */
+    public synchronized void clear() {
+        pools.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of components currently pooled, including references
+     * the GC may already have cleared.
+     *
+     * @return The pooled component count.
+     */
+    public synchronized int size() {
+        return pools.values().stream().mapToInt(Deque::size).sum();
+    }
+}
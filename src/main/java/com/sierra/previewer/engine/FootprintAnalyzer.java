@@ -0,0 +1,335 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.AbstractButton;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JScrollPane;
+import javax.swing.text.JTextComponent;
+import org.httprpc.sierra.ImagePane;
+
+/**
+ * Estimates the memory retained by a rendered preview. The component tree is
+ * walked in step with the layout it was built from, so sizes can be reported
+ * both per component type and per XML element subtree.
+ * <p>
+ * Sizes are estimates: each component is charged a fixed base cost, plus its
+ * text, its listeners and the pixel data of the images it displays. Images
+ * and fonts shared between components are only counted once. Must be called
+ * on the EDT for trees that are displayed.
+ */
+public class FootprintAnalyzer {
+
+    private static final long COMPONENT_BYTES = 512;
+    private static final long LISTENER_BYTES = 48;
+    private static final double FULL_RESOLUTION_RATIO = 2.0;
+
+    /**
+     * The footprint of all components of one type.
+     *
+     * @param type The component class name.
+     * @param count The number of components.
+     * @param bytes The estimated retained size.
+     */
+    public record TypeFootprint(String type, int count, long bytes) {
+    }
+
+    /**
+     * The footprint of an XML element and everything built from its
+     * descendants.
+     *
+     * @param elementPath The element's path, e.g. "/column-panel/row-panel[2]".
+     * @param line The element's source line.
+     * @param components The number of components built for the subtree.
+     * @param bytes The estimated retained size.
+     */
+    public record SubtreeFootprint(String elementPath, int line, int components, long bytes) {
+    }
+
+    /**
+     * An image-pane whose image is decoded at a much higher resolution than
+     * it is displayed at.
+     *
+     * @param elementPath The image-pane's element path, or its component
+     * type if it could not be matched to an element.
+     * @param line The element's source line, or -1 if unknown.
+     * @param imageSize The decoded image size.
+     * @param displaySize The size the image-pane is displayed at.
+     * @param bytes The decoded image size in bytes.
+     */
+    public record ImageWarning(String elementPath, int line, Dimension imageSize, Dimension displaySize, long bytes) {
+    }
+
+    /**
+     * The result of an analysis.
+     *
+     * @param totalBytes The estimated retained size of the whole tree.
+     * @param components The number of components.
+     * @param listeners The number of registered listeners.
+     * @param images The number of distinct images.
+     * @param imageBytes The decoded size of the distinct images.
+     * @param fonts The number of distinct font instances.
+     * @param byType The footprint per component type, largest first.
+     * @param bySubtree The footprint per element subtree, largest first.
+     * @param imageWarnings The image-panes displaying oversized images.
+     */
+    public record Footprint(long totalBytes, int components, int listeners, int images, long imageBytes, int fonts,
+            List<TypeFootprint> byType, List<SubtreeFootprint> bySubtree, List<ImageWarning> imageWarnings) {
+
+        /**
+         * Writes the footprint as CSV, one row per type, subtree and image
+         * warning.
+         *
+         * @param writer The output.
+         * @throws IOException If the output cannot be written.
+         */
+        public void writeCsv(Writer writer) throws IOException {
+            writer.write("section,name,line,count,bytes,detail\n");
+            writer.write(csvRow("total", "preview", -1, components, totalBytes,
+                    listeners + " listeners; " + images + " images (" + imageBytes + " bytes); " + fonts + " fonts"));
+            for (TypeFootprint type : byType) {
+                writer.write(csvRow("type", type.type(), -1, type.count(), type.bytes(), ""));
+            }
+            for (SubtreeFootprint subtree : bySubtree) {
+                writer.write(csvRow("subtree", subtree.elementPath(), subtree.line(), subtree.components(),
+                        subtree.bytes(), ""));
+            }
+            for (ImageWarning warning : imageWarnings) {
+                writer.write(csvRow("image", warning.elementPath(), warning.line(), 1, warning.bytes(),
+                        "decoded " + warning.imageSize().width + "x" + warning.imageSize().height
+                        + ", displayed " + warning.displaySize().width + "x" + warning.displaySize().height));
+            }
+            writer.flush();
+        }
+
+        private static String csvRow(String section, String name, int line, int count, long bytes, String detail) {
+            return section + ',' + csvQuote(name) + ',' + (line > 0 ? String.valueOf(line) : "") + ','
+                    + count + ',' + bytes + ',' + csvQuote(detail) + '\n';
+        }
+
+        private static String csvQuote(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private final Map<String, long[]> types = new HashMap<>(); // Count and bytes
+    private final List<SubtreeFootprint> subtrees = new ArrayList<>();
+    private final List<ImageWarning> imageWarnings = new ArrayList<>();
+    private final Set<Image> images = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Font> fonts = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long imageBytes = 0;
+    private int components = 0;
+    private int listeners = 0;
+
+    private FootprintAnalyzer() {
+    }
+
+    /**
+     * Analyzes a rendered preview.
+     *
+     * @param root The root of the rendered tree.
+     * @param layout The layout the tree was built from, or null to report
+     * per-type sizes only.
+     * @return The footprint.
+     */
+    public static Footprint analyze(JComponent root, LayoutNode layout) {
+        FootprintAnalyzer analyzer = new FootprintAnalyzer();
+        long total = layout != null
+                ? analyzer.visitElement(root, layout, "/" + layout.tag())
+                : analyzer.visitComponent(root, null, -1);
+
+        List<TypeFootprint> byType = new ArrayList<>();
+        analyzer.types.forEach((type, totals) -> byType.add(new TypeFootprint(type, (int) totals[0], totals[1])));
+        byType.sort(Comparator.comparingLong(TypeFootprint::bytes).reversed());
+        analyzer.subtrees.sort(Comparator.comparingLong(SubtreeFootprint::bytes).reversed());
+
+        return new Footprint(total, analyzer.components, analyzer.listeners, analyzer.images.size(),
+                analyzer.imageBytes, analyzer.fonts.size(), List.copyOf(byType), List.copyOf(analyzer.subtrees),
+                List.copyOf(analyzer.imageWarnings));
+    }
+
+    /**
+     * Visits the component built for an element. While the component's
+     * children correspond one to one with the element's children, they are
+     * visited as element subtrees; otherwise they are charged to this element.
+     *
+     * @return The estimated size of the subtree.
+     */
+    private long visitElement(Component component, LayoutNode node, String path) {
+        int componentsBefore = components;
+        long bytes = shallowSize(component, path, node.line());
+
+        Component[] children = children(component);
+        if (children.length == node.children().size()) {
+            Map<String, Integer> tagCounts = new HashMap<>();
+            for (int i = 0; i < children.length; i++) {
+                LayoutNode child = node.children().get(i);
+                int index = tagCounts.merge(child.tag(), 1, Integer::sum);
+                String childPath = path + '/' + child.tag() + (index > 1 ? "[" + index + "]" : "");
+                bytes += visitElement(children[i], child, childPath);
+            }
+        } else {
+            for (Component child : children) {
+                bytes += visitComponent(child, path, node.line());
+            }
+        }
+
+        subtrees.add(new SubtreeFootprint(path, node.line(), components - componentsBefore, bytes));
+        return bytes;
+    }
+
+    private long visitComponent(Component component, String path, int line) {
+        long bytes = shallowSize(component, path, line);
+        for (Component child : children(component)) {
+            bytes += visitComponent(child, path, line);
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the children Sierra added to a component, looking through the
+     * viewport of scroll panes.
+     */
+    private static Component[] children(Component component) {
+        if (component instanceof JScrollPane scrollPane) {
+            Component view = scrollPane.getViewport().getView();
+            return view != null ? new Component[] {view} : new Component[0];
+        }
+        return component instanceof Container container ? container.getComponents() : new Component[0];
+    }
+
+    private long shallowSize(Component component, String path, int line) {
+        components++;
+        long bytes = COMPONENT_BYTES;
+
+        int componentListeners = countListeners(component);
+        listeners += componentListeners;
+        bytes += componentListeners * LISTENER_BYTES;
+
+        String text = switch (component) {
+            case JLabel label -> label.getText();
+            case AbstractButton button -> button.getText();
+            case JTextComponent textComponent -> textComponent.getText();
+            default -> null;
+        };
+        if (text != null) {
+            bytes += 24 + 2L * text.length();
+        }
+
+        Font font = component.getFont();
+        if (font != null) {
+            fonts.add(font);
+        }
+
+        Icon icon = switch (component) {
+            case JLabel label -> label.getIcon();
+            case AbstractButton button -> button.getIcon();
+            default -> null;
+        };
+        if (icon instanceof ImageIcon imageIcon) {
+            bytes += chargeImage(imageIcon.getImage());
+        }
+        if (component instanceof ImagePane imagePane && imagePane.getImage() != null) {
+            Image image = imagePane.getImage();
+            long decoded = imageBytes(image);
+            bytes += chargeImage(image);
+            checkResolution(imagePane, image, decoded, path, line);
+        }
+
+        long[] totals = types.computeIfAbsent(component.getClass().getSimpleName(), type -> new long[2]);
+        totals[0]++;
+        totals[1] += bytes;
+        return bytes;
+    }
+
+    private static int countListeners(Component component) {
+        int count = component.getMouseListeners().length
+                + component.getMouseMotionListeners().length
+                + component.getMouseWheelListeners().length
+                + component.getKeyListeners().length
+                + component.getFocusListeners().length
+                + component.getComponentListeners().length
+                + component.getHierarchyListeners().length
+                + component.getPropertyChangeListeners().length;
+        if (component instanceof JComponent jComponent) {
+            count += jComponent.getAncestorListeners().length + jComponent.getVetoableChangeListeners().length;
+        }
+        if (component instanceof AbstractButton button) {
+            count += button.getActionListeners().length + button.getChangeListeners().length
+                    + button.getItemListeners().length;
+        }
+        return count;
+    }
+
+    /**
+     * Charges an image to the first component that displays it.
+     */
+    private long chargeImage(Image image) {
+        if (image == null || !images.add(image)) {
+            return 0;
+        }
+        long bytes = imageBytes(image);
+        imageBytes += bytes;
+        return bytes;
+    }
+
+    private static long imageBytes(Image image) {
+        if (image instanceof BufferedImage bufferedImage) {
+            DataBuffer buffer = bufferedImage.getRaster().getDataBuffer();
+            return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        }
+        int width = image.getWidth(null);
+        int height = image.getHeight(null);
+        return width > 0 && height > 0 ? 4L * width * height : 0;
+    }
+
+    private void checkResolution(ImagePane imagePane, Image image, long decoded, String path, int line) {
+        int imageWidth = image.getWidth(null);
+        int imageHeight = image.getHeight(null);
+        int displayWidth = imagePane.getWidth();
+        int displayHeight = imagePane.getHeight();
+        if (imageWidth <= 0 || imageHeight <= 0 || displayWidth <= 0 || displayHeight <= 0) {
+            return;
+        }
+
+        if ((double) imageWidth * imageHeight > FULL_RESOLUTION_RATIO * displayWidth * displayHeight) {
+            imageWarnings.add(new ImageWarning(path != null ? path : imagePane.getClass().getSimpleName(), line,
+                    new Dimension(imageWidth, imageHeight), new Dimension(displayWidth, displayHeight), decoded));
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expands {@code <include src="header.xml"/>} elements into the layout of
+ * the referenced fragment file. Attributes of the include element other than
+ * src are set on the fragment's root element, so that an included fragment
+ * can be named or sized where it is used.
+ * <p>
+ * Each fragment is parsed and expanded once, and the resulting subtree is
+ * shared by every document that includes it, including its fingerprints.
+ * A cached fragment is valid while neither its file nor any fragment it
+ * includes has changed on disk. Fragment elements carry no source
+ * positions, since they are not part of the including document's text; the
+ * root of each inclusion takes the position of its include element.
+ */
+public class FragmentCache {
+
+    /**
+     * The element replaced by a fragment.
+     */
+    public static final String INCLUDE_TAG = "include";
+
+    /**
+     * The include element's attribute naming the fragment file, relative to
+     * the including file's directory.
+     */
+    public static final String SOURCE_ATTRIBUTE = "src";
+
+    private record Stamp(Path path, long modifiedMillis, long size) {
+    }
+
+    private record Fragment(LayoutNode root, List<Stamp> dependencies) {
+    }
+
+    private final Map<Path, Fragment> fragments = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Expands the includes in a layout.
+     *
+     * @param layout The layout.
+     * @param baseDirectory The directory the layout's include paths are
+     * resolved against.
+     * @return The expanded layout, or the layout itself if it includes
+     * nothing.
+     * @throws LayoutParseException If a fragment cannot be read, is not
+     * well-formed, or includes itself.
+     */
+    public LayoutNode expand(LayoutNode layout, Path baseDirectory) throws LayoutParseException {
+        return expand(layout, baseDirectory, new HashSet<>(), null);
+    }
+
+    /**
+     * Gets the number of cached fragments.
+     *
+     * @return The fragment count.
+     */
+    public int size() {
+        return fragments.size();
+    }
+
+    /**
+     * Gets the number of includes served from the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of includes whose fragment had to be read.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Discards all cached fragments.
+     */
+    public void clear() {
+        fragments.clear();
+    }
+
+    /**
+     * Expands a subtree, copying only the elements on the path to an
+     * include.
+     *
+     * @param including The fragments being expanded, to detect cycles.
+     * @param dependencies Collects the fragments the subtree includes, or
+     * null if they are not needed.
+     */
+    private LayoutNode expand(LayoutNode node, Path baseDirectory, Set<Path> including, List<Stamp> dependencies)
+            throws LayoutParseException {
+        if (node.tag().equals(INCLUDE_TAG)) {
+            return include(node, baseDirectory, including, dependencies);
+        }
+
+        List<LayoutNode> children = node.children();
+        List<LayoutNode> expandedChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            LayoutNode child = expand(children.get(i), baseDirectory, including, dependencies);
+            if (child != children.get(i) && expandedChildren == null) {
+                expandedChildren = new ArrayList<>(children.subList(0, i));
+            }
+            if (expandedChildren != null) {
+                expandedChildren.add(child);
+            }
+        }
+
+        if (expandedChildren == null) {
+            return node;
+        }
+        return new LayoutNode(node.tag(), node.attributes(), expandedChildren, node.line(), node.column(),
+                node.startOffset(), node.endOffset());
+    }
+
+    private LayoutNode include(LayoutNode include, Path baseDirectory, Set<Path> including,
+            List<Stamp> dependencies) throws LayoutParseException {
+        String source = include.attribute(SOURCE_ATTRIBUTE);
+        if (source == null || source.isBlank()) {
+            throw error(include, "The include element requires a " + SOURCE_ATTRIBUTE + " attribute.", null);
+        }
+
+        Path path;
+        try {
+            path = baseDirectory.resolve(source).toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            throw error(include, "Invalid fragment path \"" + source + "\".", e);
+        }
+        if (!including.add(path)) {
+            throw error(include, "Fragment " + source + " includes itself.", null);
+        }
+
+        Fragment fragment;
+        try {
+            fragment = fragment(include, source, path, including);
+        } finally {
+            including.remove(path);
+        }
+        if (dependencies != null) {
+            dependencies.addAll(fragment.dependencies());
+        }
+
+        // The root stands for the include element in the including document
+        LayoutNode root = fragment.root();
+        Map<String, String> attributes = new LinkedHashMap<>(root.attributes());
+        for (Map.Entry<String, String> attribute : include.attributes().entrySet()) {
+            if (!attribute.getKey().equals(SOURCE_ATTRIBUTE)) {
+                attributes.put(attribute.getKey(), attribute.getValue());
+            }
+        }
+        return attributes.equals(root.attributes())
+                ? new LayoutNode(root.tag(), attributes, root.children(), include.line(), include.column(),
+                        include.startOffset(), include.endOffset(), root.fingerprint())
+                : new LayoutNode(root.tag(), attributes, root.children(), include.line(), include.column(),
+                        include.startOffset(), include.endOffset());
+    }
+
+    private Fragment fragment(LayoutNode include, String source, Path path, Set<Path> including)
+            throws LayoutParseException {
+        Fragment fragment = fragments.get(path);
+        if (fragment != null && isCurrent(fragment)) {
+            hits.incrementAndGet();
+            return fragment;
+        }
+        misses.incrementAndGet();
+
+        // Stamped before reading, so that a change while reading invalidates the entry
+        List<Stamp> dependencies = new ArrayList<>();
+        String text;
+        try {
+            dependencies.add(stamp(path));
+            text = Files.readString(path);
+        } catch (NoSuchFileException e) {
+            throw error(include, "Fragment " + source + " does not exist.", e);
+        } catch (IOException e) {
+            throw error(include, "Could not read fragment " + source + ": " + e.getMessage(), e);
+        }
+
+        LayoutNode root;
+        try {
+            root = new LayoutParser().parse(text);
+        } catch (LayoutParseException e) {
+            throw error(include, "Fragment " + source + ", line " + e.getLine() + ": " + e.getMessage(), e);
+        }
+        try {
+            root = expand(withoutPositions(root), path.getParent(), including, dependencies);
+        } catch (LayoutParseException e) {
+            // Nested fragments have no position in the document, so the error is reported here
+            throw error(include, "In fragment " + source + ": " + e.getMessage(), e);
+        }
+
+        fragment = new Fragment(root, List.copyOf(dependencies));
+        fragments.put(path, fragment);
+        return fragment;
+    }
+
+    private static boolean isCurrent(Fragment fragment) {
+        for (Stamp stamp : fragment.dependencies()) {
+            try {
+                if (!stamp(stamp.path()).equals(stamp)) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Stamp stamp(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new Stamp(path, attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+
+    /**
+     * Copies a fragment without the positions of its own file, keeping the
+     * fingerprints, which do not depend on them.
+     */
+    private static LayoutNode withoutPositions(LayoutNode node) {
+        List<LayoutNode> children = new ArrayList<>(node.children().size());
+        for (LayoutNode child : node.children()) {
+            children.add(withoutPositions(child));
+        }
+        return new LayoutNode(node.tag(), node.attributes(), children, 0, 0, -1, -1, node.fingerprint());
+    }
+
+    private static LayoutParseException error(LayoutNode include, String message, Throwable cause) {
+        return new LayoutParseException(message, include.line(), include.column(), cause);
+    }
+}
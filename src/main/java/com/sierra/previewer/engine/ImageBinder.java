@@ -0,0 +1,279 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+import javax.swing.AbstractButton;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import org.httprpc.sierra.ImagePane;
+
+/**
+ * Routes a layout's image attributes through the {@link ImageCache}. The
+ * attributes are removed from the layout UILoader builds, and the elements
+ * that carried them are given temporary names; once the tree is built, the
+ * cached images are set on the named components and their own names are
+ * restored. Decoding starts as soon as the binder is prepared, so it runs
+ * while UILoader builds the tree.
+ * <p>
+ * Only local files ImageIO can decode are cached. Other values, such as
+ * remote URLs or SVG icons, are left for UILoader to resolve.
+ */
+final class ImageBinder {
+
+    static final Set<String> IMAGE_ATTRIBUTES = Set.of("image", "icon", "disabledIcon",
+            "disabledSelectedIcon", "pressedIcon", "rolloverIcon", "rolloverSelectedIcon", "selectedIcon");
+    private static final String NAME_PREFIX = "sierra-image-";
+    static final Pattern URL_SCHEME = Pattern.compile("[a-zA-Z][a-zA-Z0-9+.-]+:.*");
+    private static final int DISPLAY_SCALE = 2; // Keep enough pixels for HiDPI screens
+
+    private record Binding(String originalName, Map<String, CompletableFuture<BufferedImage>> images) {
+    }
+
+    private final Path baseDirectory;
+    private final ImageCache cache;
+    private final Map<String, Binding> bindings = new HashMap<>();
+    private LayoutNode layout;
+
+    private ImageBinder(Path baseDirectory, ImageCache cache) {
+        this.baseDirectory = baseDirectory;
+        this.cache = cache;
+    }
+
+    /**
+     * Starts loading a layout's cacheable images.
+     *
+     * @param layout The layout to build.
+     * @param baseDirectory The directory relative image paths are resolved
+     * against.
+     * @param cache The image cache.
+     * @return The binder, or null if the layout has no cacheable images.
+     */
+    static ImageBinder prepare(LayoutNode layout, Path baseDirectory, ImageCache cache) {
+        ImageBinder binder = new ImageBinder(baseDirectory, cache);
+        binder.layout = binder.rewrite(layout);
+        return binder.bindings.isEmpty() ? null : binder;
+    }
+
+    /**
+     * Gets the layout to build, without the cached image attributes.
+     *
+     * @return The rewritten layout.
+     */
+    LayoutNode getLayout() {
+        return layout;
+    }
+
+    private LayoutNode rewrite(LayoutNode node) {
+        Map<String, CompletableFuture<BufferedImage>> images = null;
+        Map<String, String> attributes = node.attributes();
+
+        for (Map.Entry<String, String> attribute : node.attributes().entrySet()) {
+            if (!IMAGE_ATTRIBUTES.contains(attribute.getKey())) {
+                continue;
+            }
+            CompletableFuture<BufferedImage> image = load(node, attribute.getValue());
+            if (image != null) {
+                if (images == null) {
+                    images = new LinkedHashMap<>();
+                    attributes = new LinkedHashMap<>(node.attributes());
+                }
+                images.put(attribute.getKey(), image);
+                attributes.remove(attribute.getKey());
+            }
+        }
+
+        if (images != null) {
+            String name = NAME_PREFIX + bindings.size();
+            bindings.put(name, new Binding(node.attribute("name"), images));
+            attributes.put("name", name);
+        }
+
+        List<LayoutNode> children = node.children();
+        List<LayoutNode> rewrittenChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            LayoutNode child = rewrite(children.get(i));
+            if (child != children.get(i) && rewrittenChildren == null) {
+                rewrittenChildren = new ArrayList<>(children.subList(0, i));
+            }
+            if (rewrittenChildren != null) {
+                rewrittenChildren.add(child);
+            }
+        }
+
+        if (images == null && rewrittenChildren == null) {
+            return node;
+        }
+        return new LayoutNode(node.tag(), attributes, rewrittenChildren != null ? rewrittenChildren : children,
+                node.line(), node.column(), node.startOffset(), node.endOffset());
+    }
+
+    private CompletableFuture<BufferedImage> load(LayoutNode node, String value) {
+        Path path = resolve(baseDirectory, value);
+        if (path == null) {
+            return null;
+        }
+
+        // An image-pane that fills its width or height never shows more pixels than its size
+        int maxWidth = 0;
+        int maxHeight = 0;
+        String size = node.attribute("size");
+        String scaleMode = node.attribute("scaleMode");
+        if (node.tag().equals("image-pane") && size != null && scaleMode != null && !scaleMode.equals("none")) {
+            int[] dimensions = parseSize(size);
+            if (dimensions != null) {
+                maxWidth = scaleMode.equals("fill-width") ? DISPLAY_SCALE * dimensions[0] : Integer.MAX_VALUE;
+                maxHeight = scaleMode.equals("fill-height") ? DISPLAY_SCALE * dimensions[1] : Integer.MAX_VALUE;
+            }
+        }
+
+        try {
+            return cache.load(path, maxWidth, maxHeight);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Resolves an image attribute to a local file the cache can decode.
+     *
+     * @param baseDirectory The directory relative paths are resolved against.
+     * @param value The attribute value.
+     * @return The image file, or null if the value is not one.
+     */
+    static Path resolve(Path baseDirectory, String value) {
+        if (value == null || value.isBlank() || URL_SCHEME.matcher(value).matches()) {
+            return null;
+        }
+        try {
+            Path path = baseDirectory.resolve(value).normalize();
+            return Files.isRegularFile(path) && ImageCache.isSupported(path) ? path : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private static int[] parseSize(String size) {
+        int comma = size.indexOf(',');
+        if (comma < 0) {
+            return null;
+        }
+        try {
+            int width = Integer.parseInt(size.substring(0, comma).trim());
+            int height = Integer.parseInt(size.substring(comma + 1).trim());
+            return width > 0 && height > 0 ? new int[] {width, height} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sets the cached images on a built tree and restores the names of the
+     * components that carried them. Images that failed to decode are left
+     * unset.
+     *
+     * @param root The tree built from {@link #getLayout()}.
+     * @param timeoutMillis The maximum time to wait for decoding, or 0 to
+     * wait indefinitely.
+     * @throws TimeoutException If decoding did not finish in time.
+     * @throws InterruptedException If the thread was interrupted while
+     * waiting.
+     */
+    void apply(Component root, long timeoutMillis) throws TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Map<BufferedImage, ImageIcon> icons = new IdentityHashMap<>();
+        applyRecursively(root, timeoutMillis > 0 ? deadline : 0, icons);
+    }
+
+    private void applyRecursively(Component component, long deadline, Map<BufferedImage, ImageIcon> icons)
+            throws TimeoutException, InterruptedException {
+        String name = component.getName();
+        Binding binding = name != null && name.startsWith(NAME_PREFIX) ? bindings.get(name) : null;
+        if (binding != null) {
+            component.setName(binding.originalName());
+            for (Map.Entry<String, CompletableFuture<BufferedImage>> image : binding.images().entrySet()) {
+                BufferedImage decoded = await(image.getValue(), deadline);
+                if (decoded != null) {
+                    setImage(component, image.getKey(), decoded, icons);
+                }
+            }
+        }
+
+        if (component instanceof Container container) {
+            for (Component child : container.getComponents()) {
+                applyRecursively(child, deadline, icons);
+            }
+        }
+    }
+
+    private static BufferedImage await(CompletableFuture<BufferedImage> future, long deadline)
+            throws TimeoutException, InterruptedException {
+        try {
+            return deadline == 0 ? future.get() : future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static void setImage(Component component, String attribute, BufferedImage image,
+            Map<BufferedImage, ImageIcon> icons) {
+        if (component instanceof ImagePane imagePane) {
+            if (attribute.equals("image")) {
+                imagePane.setImage(image);
+            }
+            return;
+        }
+
+        ImageIcon icon = icons.computeIfAbsent(image, ImageIcon::new);
+        if (component instanceof AbstractButton button) {
+            switch (attribute) {
+                case "icon" -> button.setIcon(icon);
+                case "disabledIcon" -> button.setDisabledIcon(icon);
+                case "disabledSelectedIcon" -> button.setDisabledSelectedIcon(icon);
+                case "pressedIcon" -> button.setPressedIcon(icon);
+                case "rolloverIcon" -> button.setRolloverIcon(icon);
+                case "rolloverSelectedIcon" -> button.setRolloverSelectedIcon(icon);
+                case "selectedIcon" -> button.setSelectedIcon(icon);
+                default -> {
+                }
+            }
+        } else if (component instanceof JLabel label) {
+            switch (attribute) {
+                case "icon" -> label.setIcon(icon);
+                case "disabledIcon" -> label.setDisabledIcon(icon);
+                default -> {
+                }
+            }
+        }
+    }
+}
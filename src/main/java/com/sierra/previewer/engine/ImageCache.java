@@ -0,0 +1,219 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * A size-bounded cache of decoded images shared by every render. Images are
+ * keyed by their file, its modification time and the size they are scaled
+ * down to, so editing an image on disk invalidates its entries. Decoding runs
+ * on a small background pool, and concurrent requests for the same image
+ * share one decode.
+ * <p>
+ * Entries are held through soft references and evicted least recently used
+ * first once the decoded size exceeds the budget; the garbage collector may
+ * clear them earlier under memory pressure. All methods are thread-safe.
+ */
+public class ImageCache {
+
+    private record Key(Path path, long modified, int maxWidth, int maxHeight) {
+    }
+
+    private record Entry(SoftReference<BufferedImage> image, long bytes) {
+    }
+
+    private final long maxBytes;
+    private final RenderMetrics metrics;
+    private final ExecutorService decodeExecutor;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Key, CompletableFuture<BufferedImage>> decoding = new HashMap<>();
+    private long bytes = 0;
+
+    /**
+     * Creates an image cache.
+     *
+     * @param maxBytes The maximum decoded size of the cached images.
+     * @param decodeThreads The number of background decoding threads.
+     * @param metrics Receives cache hits, misses and evictions.
+     */
+    public ImageCache(long maxBytes, int decodeThreads, RenderMetrics metrics) {
+        this.maxBytes = maxBytes;
+        this.metrics = metrics;
+
+        AtomicInteger count = new AtomicInteger();
+        this.decodeExecutor = Executors.newFixedThreadPool(decodeThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sierra-image-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Whether the cache can decode an image file, judged by its extension.
+     *
+     * @param path The image file.
+     * @return True if ImageIO has a reader for the file type.
+     */
+    public static boolean isSupported(Path path) {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 && ImageIO.getImageReadersBySuffix(fileName.substring(dot + 1)).hasNext();
+    }
+
+    /**
+     * Gets a decoded image, decoding it in the background if it is not
+     * cached.
+     *
+     * @param path The image file.
+     * @param maxWidth The width to scale larger images down to, or 0 to keep
+     * the image's own size.
+     * @param maxHeight The height to scale larger images down to, or 0 to
+     * keep the image's own size.
+     * @return The image, completed immediately on a cache hit.
+     * @throws IOException If the file's modification time cannot be read.
+     */
+    public CompletableFuture<BufferedImage> load(Path path, int maxWidth, int maxHeight) throws IOException {
+        Key key = new Key(path, Files.getLastModifiedTime(path).toMillis(), maxWidth, maxHeight);
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                BufferedImage image = entry.image().get();
+                if (image != null) {
+                    metrics.recordImageLookup(true);
+                    return CompletableFuture.completedFuture(image);
+                }
+                // Cleared by the garbage collector
+                remove(key, entry);
+            }
+
+            CompletableFuture<BufferedImage> pending = decoding.get(key);
+            if (pending != null) {
+                metrics.recordImageLookup(true);
+                return pending;
+            }
+
+            metrics.recordImageLookup(false);
+            CompletableFuture<BufferedImage> future = CompletableFuture.supplyAsync(() -> decode(key), decodeExecutor);
+            decoding.put(key, future);
+            future.whenComplete((image, exception) -> completed(key, image));
+            return future;
+        }
+    }
+
+    private static BufferedImage decode(Key key) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(key.path().toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (image == null) {
+            throw new UncheckedIOException(new IOException("Unsupported image format: " + key.path()));
+        }
+        return scaleDown(image, key.maxWidth(), key.maxHeight());
+    }
+
+    /**
+     * Scales an image down, preserving its aspect ratio, so that it fits the
+     * given size. Smaller images are returned unchanged.
+     */
+    static BufferedImage scaleDown(BufferedImage image, int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0 || (image.getWidth() <= maxWidth && image.getHeight() <= maxHeight)) {
+            return image;
+        }
+
+        double scale = Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private synchronized void completed(Key key, BufferedImage image) {
+        decoding.remove(key);
+        if (image == null) {
+            return; // Failed; the next request tries again
+        }
+
+        long imageBytes = 4L * image.getWidth() * image.getHeight();
+        entries.put(key, new Entry(new SoftReference<>(image), imageBytes));
+        bytes += imageBytes;
+
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Key, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue; // Keep the image that was just requested
+            }
+            iterator.remove();
+            bytes -= eldest.getValue().bytes();
+            metrics.recordImageEviction();
+        }
+    }
+
+    private void remove(Key key, Entry entry) {
+        entries.remove(key);
+        bytes -= entry.bytes();
+        metrics.recordImageEviction();
+    }
+
+    /**
+     * Gets the decoded size of the cached images, including any the garbage
+     * collector has cleared but the cache has not yet noticed.
+     *
+     * @return The cached size in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Discards every cached image.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+}
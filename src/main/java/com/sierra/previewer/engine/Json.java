@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+/**
+ * Minimal JSON encoding helpers for the previewer's machine-readable output.
+ */
+public class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Appends a value as a JSON string literal, or null.
+     *
+     * @param value The value to quote. Can be null.
+     * @param json The output.
+     * @return The output, for chaining.
+     */
+    public static StringBuilder quote(String value, StringBuilder json) {
+        if (value == null) {
+            return json.append("null");
+        }
+
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Returns a value as a JSON string literal, or null.
+     *
+     * @param value The value to quote. Can be null.
+     * @return The JSON literal.
+     */
+    public static String quote(String value) {
+        return quote(value, new StringBuilder()).toString();
+    }
+}
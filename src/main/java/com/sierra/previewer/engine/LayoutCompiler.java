@@ -0,0 +1,303 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.swing.JComponent;
+import org.httprpc.sierra.UILoader;
+
+/**
+ * Compiles a validated layout into a compact binary form, and reads it back.
+ * <p>
+ * A compiled layout starts with a table of the element names it uses and a
+ * table of every other distinct string, so that each element is written as
+ * an opcode and each attribute name and text value as a number. Boolean,
+ * integer and color values are stored pre-parsed rather than as text.
+ * Integers are written as variable-length quantities, so most elements take
+ * only a few bytes. Decoding does not involve an XML parser.
+ * <p>
+ * The format is:
+ * <pre>
+ * int magic, int version
+ * varint elementCount, string[elementCount]
+ * varint stringCount, string[stringCount]
+ * node: varint opcode, varint line, varint attributeCount,
+ *       (varint nameId, byte type, value)[attributeCount],
+ *       varint childCount, node[childCount]
+ * </pre>
+ * where a string is a varint byte length followed by UTF-8 bytes.
+ */
+public class LayoutCompiler {
+
+    private static final int MAGIC = 0x53584c42; // "SXLB"
+    private static final int VERSION = 1;
+
+    private static final byte STRING = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte COLOR = 4; // Written in lower case
+    private static final byte UPPER_CASE_COLOR = 5;
+
+    private static final Pattern INTEGER_PATTERN = Pattern.compile("-?(0|[1-9][0-9]{0,8})");
+    private static final Pattern COLOR_PATTERN = Pattern.compile("#[0-9a-fA-F]{6}");
+
+    private final Set<String> elementNames;
+
+    /**
+     * Creates a compiler.
+     *
+     * @param elementNames The element names a layout may use, typically
+     * those declared in sierra.dtd.
+     */
+    public LayoutCompiler(Collection<String> elementNames) {
+        this.elementNames = Set.copyOf(elementNames);
+    }
+
+    // --- Compiling ---
+
+    /**
+     * Compiles a layout.
+     *
+     * @param root The root element.
+     * @return The compiled layout.
+     * @throws LayoutParseException If the layout uses an element that is not
+     * a known Sierra element.
+     */
+    public byte[] compile(LayoutNode root) throws LayoutParseException {
+        Map<String, Integer> opcodes = new LinkedHashMap<>();
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        Output body = new Output();
+        writeNode(root, "", opcodes, strings, body);
+
+        Output output = new Output();
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeVarint(opcodes.size());
+        for (String element : opcodes.keySet()) {
+            output.writeString(element);
+        }
+        output.writeVarint(strings.size());
+        for (String string : strings.keySet()) {
+            output.writeString(string);
+        }
+        body.writeTo(output);
+        return output.toByteArray();
+    }
+
+    private void writeNode(LayoutNode node, String parentPath, Map<String, Integer> opcodes,
+            Map<String, Integer> strings, Output output) throws LayoutParseException {
+        String path = parentPath + "/" + node.tag();
+        if (!elementNames.contains(node.tag())) {
+            throw new LayoutParseException("Unknown element <" + node.tag() + ">.", node.line(), node.column(),
+                    path, null);
+        }
+
+        output.writeVarint(opcodes.computeIfAbsent(node.tag(), key -> opcodes.size()));
+        output.writeVarint(Math.max(0, node.line()));
+        output.writeVarint(node.attributes().size());
+        for (Map.Entry<String, String> attribute : node.attributes().entrySet()) {
+            output.writeVarint(stringId(strings, attribute.getKey()));
+            writeValue(attribute.getValue(), strings, output);
+        }
+
+        output.writeVarint(node.children().size());
+        for (LayoutNode child : node.children()) {
+            writeNode(child, path, opcodes, strings, output);
+        }
+    }
+
+    /**
+     * Writes a value with the most compact type that reproduces its text
+     * exactly, so that decoding yields the original attribute.
+     */
+    private static void writeValue(String value, Map<String, Integer> strings, Output output) {
+        if (value.equals("true")) {
+            output.write(TRUE);
+        } else if (value.equals("false")) {
+            output.write(FALSE);
+        } else if (INTEGER_PATTERN.matcher(value).matches() && !value.equals("-0")) {
+            output.write(INTEGER);
+            int number = Integer.parseInt(value);
+            output.writeVarint((number << 1) ^ (number >> 31)); // Zigzag, so small negative numbers stay short
+        } else if (COLOR_PATTERN.matcher(value).matches()
+                && (value.equals(value.toLowerCase(Locale.ROOT)) || value.equals(value.toUpperCase(Locale.ROOT)))) {
+            output.write(value.equals(value.toLowerCase(Locale.ROOT)) ? COLOR : UPPER_CASE_COLOR);
+            output.writeInt(Integer.parseInt(value.substring(1), 16));
+        } else {
+            output.write(STRING);
+            output.writeVarint(stringId(strings, value));
+        }
+    }
+
+    private static int stringId(Map<String, Integer> strings, String string) {
+        return strings.computeIfAbsent(string, key -> strings.size());
+    }
+
+    // --- Loading ---
+
+    /**
+     * Reads a compiled layout.
+     *
+     * @param compiled The compiled layout, positioned at its start.
+     * @return The root element. Nodes keep their lines; columns are 0 and
+     * source offsets -1, since there is no source text.
+     * @throws IOException If the data is not a compiled layout of a
+     * supported version, or is truncated.
+     */
+    public static LayoutNode decompile(ByteBuffer compiled) throws IOException {
+        try {
+            if (compiled.getInt() != MAGIC) {
+                throw new IOException("Not a compiled Sierra layout.");
+            }
+            int version = compiled.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported compiled layout version " + version + ".");
+            }
+
+            String[] elements = readStrings(compiled);
+            String[] strings = readStrings(compiled);
+            return readNode(compiled, elements, strings);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            throw new IOException("Compiled layout is corrupt.", e);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer input) {
+        String[] strings = new String[readVarint(input)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] encoded = new byte[readVarint(input)];
+            input.get(encoded);
+            strings[i] = new String(encoded, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static LayoutNode readNode(ByteBuffer input, String[] elements, String[] strings) {
+        String tag = elements[readVarint(input)];
+        int line = readVarint(input);
+
+        int attributeCount = readVarint(input);
+        Map<String, String> attributes = new LinkedHashMap<>(attributeCount * 2);
+        for (int i = 0; i < attributeCount; i++) {
+            String name = strings[readVarint(input)];
+            String value = switch (input.get()) {
+                case STRING -> strings[readVarint(input)];
+                case TRUE -> "true";
+                case FALSE -> "false";
+                case INTEGER -> {
+                    int zigzag = readVarint(input);
+                    yield Integer.toString((zigzag >>> 1) ^ -(zigzag & 1));
+                }
+                case COLOR -> String.format("#%06x", input.getInt());
+                case UPPER_CASE_COLOR -> String.format("#%06X", input.getInt());
+                default -> throw new IllegalArgumentException("Unknown value type.");
+            };
+            attributes.put(name, value);
+        }
+
+        int childCount = readVarint(input);
+        List<LayoutNode> children = new ArrayList<>(childCount);
+        for (int i = 0; i < childCount; i++) {
+            children.add(readNode(input, elements, strings));
+        }
+        return new LayoutNode(tag, attributes, children, line, 0, -1, -1);
+    }
+
+    private static int readVarint(ByteBuffer input) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = input.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint.");
+    }
+
+    /**
+     * Builds the component tree of a compiled layout. UILoader only builds
+     * from XML, so the layout is decompiled and written back out as XML to a
+     * short-lived file in the system temp directory first; this is a
+     * convenience for checking compiled files, not a faster way to load a
+     * layout than {@link UILoader#load(Path)} on its source.
+     *
+     * @param compiledPath The compiled layout file.
+     * @return The root component.
+     * @throws IOException If the file cannot be read or is not a compiled
+     * layout.
+     */
+    public static JComponent load(Path compiledPath) throws IOException {
+        LayoutNode root = decompile(ByteBuffer.wrap(Files.readAllBytes(compiledPath)));
+
+        Path scratchPath = ScratchLayout.write(root, compiledPath.toAbsolutePath().getParent());
+        try {
+            return UILoader.load(scratchPath);
+        } finally {
+            Files.deleteIfExists(scratchPath);
+        }
+    }
+
+    /**
+     * A growable byte buffer with the encodings used by the format.
+     */
+    private static class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(1024);
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeString(String string) {
+            byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(encoded.length);
+            write(encoded, 0, encoded.length);
+        }
+
+        void writeTo(Output output) {
+            output.write(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+/**
+ * Thrown when a Sierra layout is not well-formed XML.
+ */
+public class LayoutParseException extends Exception {
+
+    private final int line;
+    private final int column;
+    private final String elementPath;
+
+    public LayoutParseException(String message, int line, int column, Throwable cause) {
+        this(message, line, column, null, cause);
+    }
+
+    public LayoutParseException(String message, int line, int column, String elementPath, Throwable cause) {
+        super(message, cause);
+        this.line = line;
+        this.column = column;
+        this.elementPath = elementPath;
+    }
+
+    /**
+     * Gets the 1-based line of the error, or -1 if unknown.
+     *
+     * @return The line number.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Gets the 1-based column of the error, or -1 if unknown.
+     *
+     * @return The column number.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Gets the path of the innermost element open at the error, e.g.
+     * "/column-panel/row-panel[2]", or null if the error precedes the root.
+     *
+     * @return The element path.
+     */
+    public String getElementPath() {
+        return elementPath;
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parses Sierra XML into an immutable {@link LayoutNode} tree using StAX. The
+ * DOCTYPE is not resolved, so documents referencing "sierra.dtd" parse
+ * without access to the DTD file.
+ */
+public class LayoutParser {
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    });
+
+    /**
+     * Gets the StAX factory of the current thread, configured as the parser
+     * uses it.
+     *
+     * @return The factory.
+     */
+    static XMLInputFactory inputFactory() {
+        return INPUT_FACTORY.get();
+    }
+
+    /**
+     * Parses the given XML text.
+     *
+     * @param xmlText The Sierra XML content.
+     * @return The root element.
+     * @throws LayoutParseException If the text is not well-formed.
+     */
+    public LayoutNode parse(String xmlText) throws LayoutParseException {
+        LineIndex lines = new LineIndex(xmlText);
+        Deque<Builder> stack = new ArrayDeque<>();
+        LayoutNode root = null;
+
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory().createXMLStreamReader(new StringReader(xmlText));
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        // The reader is positioned just past the start tag's '>'
+                        int tagEnd = lines.offsetOf(reader.getLocation());
+                        int start = Math.max(0, xmlText.lastIndexOf('<', tagEnd - 1));
+
+                        Map<String, String> attributes = new LinkedHashMap<>();
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                        }
+                        stack.push(new Builder(reader.getLocalName(), attributes, start));
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        Builder builder = stack.pop();
+                        int end = lines.offsetOf(reader.getLocation());
+                        LayoutNode node = builder.build(lines, end);
+                        if (stack.isEmpty()) {
+                            root = node;
+                        } else {
+                            stack.peek().children.add(node);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            Location location = e.getLocation();
+            throw new LayoutParseException(stripLocationPrefix(e.getMessage()),
+                    location == null ? -1 : location.getLineNumber(),
+                    location == null ? -1 : location.getColumnNumber(), elementPath(stack), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        if (root == null) {
+            throw new LayoutParseException("Document has no root element.", 1, 1, null);
+        }
+        return root;
+    }
+
+    /**
+     * Receives the parts of a layout as they are streamed.
+     */
+    public interface StreamListener {
+
+        /**
+         * Called when the root element's start tag has been read.
+         *
+         * @param tag The root element name.
+         * @param attributes The root element's attributes.
+         * @return True to stream the root's children, or false to stop.
+         */
+        boolean rootStarted(String tag, Map<String, String> attributes);
+
+        /**
+         * Called when a child of the root element has been read completely.
+         *
+         * @param child The child subtree.
+         * @return True to continue, or false to stop.
+         */
+        boolean childParsed(LayoutNode child);
+    }
+
+    /**
+     * Parses a layout incrementally, handing each child of the root element
+     * to the listener as soon as its end tag has been read. Source offsets
+     * are not tracked, since the text is never held in full: streamed nodes
+     * have the line their start tag ends on, a column of 0 and offsets of
+     * -1.
+     *
+     * @param input The Sierra XML content.
+     * @param listener Receives the root and its children.
+     * @return True if the whole document was read, or false if the listener
+     * stopped early.
+     * @throws LayoutParseException If the text is not well-formed.
+     */
+    public boolean stream(Reader input, StreamListener listener) throws LayoutParseException {
+        Deque<Builder> stack = new ArrayDeque<>();
+        boolean rootSeen = false;
+
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory().createXMLStreamReader(input);
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        Map<String, String> attributes = new LinkedHashMap<>();
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                        }
+                        if (!rootSeen) {
+                            rootSeen = true;
+                            if (!listener.rootStarted(reader.getLocalName(), attributes)) {
+                                return false;
+                            }
+                        }
+                        Builder builder = new Builder(reader.getLocalName(), attributes, -1);
+                        builder.line = reader.getLocation().getLineNumber();
+                        stack.push(builder);
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        Builder builder = stack.pop();
+                        LayoutNode node = new LayoutNode(builder.tag, builder.attributes, builder.children,
+                                builder.line, 0, -1, -1);
+                        if (stack.size() == 1) {
+                            if (!listener.childParsed(node)) {
+                                return false;
+                            }
+                        } else if (stack.size() > 1) {
+                            stack.peek().children.add(node);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            Location location = e.getLocation();
+            throw new LayoutParseException(stripLocationPrefix(e.getMessage()),
+                    location == null ? -1 : location.getLineNumber(),
+                    location == null ? -1 : location.getColumnNumber(), elementPath(stack), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        if (!rootSeen) {
+            throw new LayoutParseException("Document has no root element.", 1, 1, null);
+        }
+        return true;
+    }
+
+    /**
+     * Describes the open elements as a path from the root. Elements with
+     * preceding siblings of the same name are qualified by their 1-based
+     * position among them.
+     */
+    private static String elementPath(Deque<Builder> stack) {
+        if (stack.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder path = new StringBuilder();
+        Builder parent = null;
+        for (Iterator<Builder> iterator = stack.descendingIterator(); iterator.hasNext();) {
+            Builder builder = iterator.next();
+            path.append('/').append(builder.tag);
+            if (parent != null) {
+                int index = 1;
+                for (LayoutNode sibling : parent.children) {
+                    if (sibling.tag().equals(builder.tag)) {
+                        index++;
+                    }
+                }
+                if (index > 1) {
+                    path.append('[').append(index).append(']');
+                }
+            }
+            parent = builder;
+        }
+        return path.toString();
+    }
+
+    /**
+     * The JDK parser prefixes messages with "ParseError at [row,col]:[..]",
+     * which is reported separately.
+     */
+    static String stripLocationPrefix(String message) {
+        if (message != null && message.startsWith("ParseError at")) {
+            int index = message.indexOf("Message: ");
+            if (index >= 0) {
+                return message.substring(index + "Message: ".length());
+            }
+        }
+        return message;
+    }
+
+    private static class Builder {
+
+        final String tag;
+        final Map<String, String> attributes;
+        final int startOffset;
+        final List<LayoutNode> children = new ArrayList<>();
+        int line; // Only tracked while streaming
+
+        Builder(String tag, Map<String, String> attributes, int startOffset) {
+            this.tag = tag;
+            this.attributes = attributes;
+            this.startOffset = startOffset;
+        }
+
+        LayoutNode build(LineIndex lines, int endOffset) {
+            int line = lines.lineOf(startOffset);
+            int column = startOffset - lines.lineStart(line) + 1;
+            return new LayoutNode(tag, attributes, children, line, column, startOffset, endOffset);
+        }
+    }
+
+    /**
+     * Maps between character offsets and 1-based line numbers. Locations are
+     * converted through line and column because the JDK parser's character
+     * offsets are not reliable once an XML declaration has been read.
+     */
+    static class LineIndex {
+
+        private final int[] lineStarts;
+        private final int lineCount;
+
+        LineIndex(CharSequence text) {
+            int[] starts = new int[64];
+            int count = 1;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = i + 1;
+                }
+            }
+            this.lineStarts = starts;
+            this.lineCount = count;
+        }
+
+        int lineOf(int offset) {
+            int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+            return (index >= 0 ? index : -index - 2) + 1;
+        }
+
+        int lineStart(int line) {
+            return lineStarts[line - 1];
+        }
+
+        int offsetOf(Location location) {
+            int line = Math.min(Math.max(location.getLineNumber(), 1), lineCount);
+            return lineStarts[line - 1] + location.getColumnNumber() - 1;
+        }
+    }
+}
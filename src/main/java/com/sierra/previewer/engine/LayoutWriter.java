@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.util.Map;
+
+/**
+ * Serializes a {@link LayoutNode} tree back to Sierra XML, so that subtrees or
+ * rewritten layouts can be handed to UILoader.
+ */
+public class LayoutWriter {
+
+    private static final String INDENT = "    ";
+
+    private LayoutWriter() {
+    }
+
+    /**
+     * Writes a layout as a standalone XML document.
+     *
+     * @param root The root element.
+     * @return The XML text.
+     */
+    public static String toXml(LayoutNode root) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        write(root, xml, 0);
+        return xml.toString();
+    }
+
+    private static void write(LayoutNode node, StringBuilder xml, int depth) {
+        xml.append(INDENT.repeat(depth)).append('<').append(node.tag());
+        for (Map.Entry<String, String> attribute : node.attributes().entrySet()) {
+            xml.append(' ').append(attribute.getKey()).append("=\"");
+            escape(attribute.getValue(), xml);
+            xml.append('"');
+        }
+
+        if (node.children().isEmpty()) {
+            xml.append("/>\n");
+            return;
+        }
+
+        xml.append(">\n");
+        for (LayoutNode child : node.children()) {
+            write(child, xml, depth + 1);
+        }
+        xml.append(INDENT.repeat(depth)).append("</").append(node.tag()).append(">\n");
+    }
+
+    private static void escape(String value, StringBuilder xml) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> xml.append("&amp;");
+                case '<' -> xml.append("&lt;");
+                case '>' -> xml.append("&gt;");
+                case '"' -> xml.append("&quot;");
+                case '\n' -> xml.append("&#10;");
+                case '\r' -> xml.append("&#13;");
+                case '\t' -> xml.append("&#9;");
+                default -> xml.append(c);
+            }
+        }
+    }
+}
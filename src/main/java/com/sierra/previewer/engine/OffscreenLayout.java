@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import javax.swing.JComponent;
+
+/**
+ * Lays out and paints component trees that are not yet displayed. Swing only
+ * treats components with a native peer as valid, so this cannot replace the
+ * final validate() on the EDT, but it performs the expensive first-time work
+ * (preferred size calculation, text and glyph measurement, lazy UI resources)
+ * on the render thread so that the swap into the live preview is cheap.
+ * <p>
+ * Only components that have never been displayed may be passed here.
+ */
+public class OffscreenLayout {
+
+    private OffscreenLayout() {
+    }
+
+    /**
+     * Sizes a detached component tree to the given area and lays out every
+     * container in it.
+     *
+     * @param component The root of the detached tree.
+     * @param size The size of the area the tree will be displayed in.
+     */
+    public static void layout(Component component, Dimension size) {
+        layout(component, size, null);
+    }
+
+    /**
+     * Sizes and lays out a detached component tree, recording the time spent
+     * laying out each container and its descendants.
+     *
+     * @param component The root of the detached tree.
+     * @param size The size of the area the tree will be displayed in.
+     * @param tracer The tracer to record layout spans in. Can be null.
+     */
+    public static void layout(Component component, Dimension size, RenderTracer tracer) {
+        component.setSize(size);
+        layoutRecursively(component, tracer != null && tracer.isEnabled() ? tracer : null);
+    }
+
+    private static void layoutRecursively(Component component, RenderTracer tracer) {
+        if (component instanceof Container container) {
+            long start = tracer != null ? tracer.begin() : 0;
+
+            // doLayout() sizes the children, which are then laid out in turn
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                layoutRecursively(child, tracer);
+            }
+
+            if (tracer != null) {
+                tracer.end(RenderTracer.Category.LAYOUT, tracer.nameId(container.getClass()), start, 0);
+            }
+        }
+    }
+
+    /**
+     * Paints a laid out, detached tree into a new image, for callers that
+     * display or encode the result rather than the live tree.
+     *
+     * @param component The root of the detached tree.
+     * @return The rendered image, or null if the component has no area or
+     * could not be painted off screen.
+     */
+    public static BufferedImage paint(JComponent component) {
+        int width = component.getWidth();
+        int height = component.getHeight();
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            component.paint(graphics);
+            return image;
+        } catch (RuntimeException e) {
+            // Some delegates assume a displayable component; the EDT paints them instead
+            return null;
+        } finally {
+            graphics.dispose();
+        }
+    }
+}
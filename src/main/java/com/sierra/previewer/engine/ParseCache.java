@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of parsed layouts, keyed by a digest of the XML text so
+ * that documents with identical content (e.g. the same file open in two tabs,
+ * or an undo back to a previous state) are parsed only once.
+ * <p>
+ * The cache is bounded both by entry count and by the total length of the
+ * cached texts, which parsed trees grow with, so that a few very large
+ * documents cannot pin a large amount of memory. Texts longer than the whole
+ * budget are parsed but not cached.
+ */
+public class ParseCache {
+
+    private static final int DEFAULT_CAPACITY = 32;
+    private static final long DEFAULT_MAX_CHARS = 8L * 1024 * 1024;
+
+    private record Entry(LayoutNode root, int length) {
+    }
+
+    private final LayoutParser parser = new LayoutParser();
+    private final int capacity;
+    private final long maxChars;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public ParseCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ParseCache(int capacity) {
+        this(capacity, DEFAULT_MAX_CHARS);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity The most layouts to keep.
+     * @param maxChars The most characters of text the kept layouts may have
+     * been parsed from in total.
+     */
+    public ParseCache(int capacity, long maxChars) {
+        this.capacity = capacity;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Returns the parsed layout for the given text, parsing it on a miss.
+     * Parse failures are not cached.
+     *
+     * @param xmlText The Sierra XML content.
+     * @return The root element.
+     * @throws LayoutParseException If the text is not well-formed.
+     */
+    public LayoutNode parse(String xmlText) throws LayoutParseException {
+        String key = digest(xmlText);
+
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached.root();
+            }
+            misses++;
+        }
+
+        // Parse outside the lock so concurrent tabs do not serialize on each other
+        LayoutNode root = parser.parse(xmlText);
+
+        if (xmlText.length() <= maxChars) {
+            synchronized (this) {
+                Entry previous = entries.put(key, new Entry(root, xmlText.length()));
+                chars += xmlText.length() - (previous != null ? previous.length() : 0);
+                evict();
+            }
+        }
+        return root;
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator(); // get() would reorder
+        while (entries.size() > capacity || chars > maxChars) {
+            chars -= eldest.next().length();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Gets the number of cached layouts.
+     *
+     * @return The entry count.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static String digest(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
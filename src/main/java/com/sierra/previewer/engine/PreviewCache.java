@@ -0,0 +1,395 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+
+/**
+ * A persistent, size-bounded cache of rendered preview snapshots, so that a
+ * file reopened later can show its last preview at once while it is
+ * rendered again. Entries are keyed by the file's path and a digest of its
+ * content, so a file edited elsewhere misses the cache rather than showing
+ * a stale preview. Each entry holds a PNG snapshot and a summary of the
+ * parsed layout.
+ * <p>
+ * Entries are written to a temporary file, forced to disk and atomically
+ * moved into place, and carry a checksum, so a crash leaves either the old
+ * entry, the new one, or a damaged file that is discarded when read. The
+ * least recently used entries are deleted once the cache exceeds its size;
+ * use is recorded in the files' modification times, so the order survives
+ * restarts.
+ * <p>
+ * {@link #load} reads from disk and must not be called on the EDT; entries
+ * are written on a background thread. All methods are thread-safe.
+ */
+public class PreviewCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x53585043; // "SXPC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final String ENTRY_SUFFIX = ".preview";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * A summary of the layout a snapshot was rendered from.
+     *
+     * @param rootTag The root element's name.
+     * @param elementCount The number of elements.
+     * @param depth The nesting depth.
+     * @param renderedAt When the snapshot was taken.
+     */
+    public record Metadata(String rootTag, int elementCount, int depth, Instant renderedAt) {
+    }
+
+    /**
+     * A cached preview.
+     *
+     * @param image The snapshot.
+     * @param metadata The summary of its layout.
+     */
+    public record Entry(BufferedImage image, Metadata metadata) {
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private final ParseCache parseCache;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sierra-preview-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true); // Key to file size
+    private long bytes = 0;
+    private boolean indexed = false;
+
+    /**
+     * Creates a cache. The directory is read when the cache is first used.
+     *
+     * @param directory The directory holding the entries; created if
+     * necessary.
+     * @param maxBytes The most disk space the entries may use.
+     * @param parseCache Supplies the layouts whose summaries are stored.
+     */
+    public PreviewCache(Path directory, long maxBytes, ParseCache parseCache) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Gets the directory the application keeps its preview cache in.
+     *
+     * @return The directory.
+     */
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".sierra-previewer", "previews");
+    }
+
+    // --- Lookup ---
+
+    /**
+     * Reads the cached preview of a file's content.
+     *
+     * @param file The file.
+     * @param content The file's current content.
+     * @return The cached preview, or null if there is none or it is damaged.
+     */
+    public Entry load(Path file, CharSequence content) {
+        String key = key(file, content);
+        synchronized (this) {
+            index();
+            if (entries.get(key) == null) {
+                return null;
+            }
+        }
+
+        Path path = entryPath(key);
+        try {
+            Entry entry = decode(Files.readAllBytes(path));
+            if (entry != null) {
+                Files.setLastModifiedTime(path, FileTime.from(Instant.now())); // Most recently used
+                return entry;
+            }
+        } catch (IOException e) {
+            // Treated as damaged
+        }
+
+        synchronized (this) {
+            remove(key);
+        }
+        return null;
+    }
+
+    // --- Storage ---
+
+    /**
+     * Stores the preview of a file's content in the background, replacing
+     * any older preview of the same content.
+     *
+     * @param file The file.
+     * @param content The content the preview was rendered from.
+     * @param image The snapshot, which must not be modified afterwards.
+     * @return Completes when the entry has been written, or exceptionally if
+     * it could not be.
+     */
+    public CompletableFuture<Void> store(Path file, CharSequence content, BufferedImage image) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                write(file, content.toString(), image);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, writeExecutor);
+    }
+
+    private void write(Path file, String content, BufferedImage image) throws IOException {
+        LayoutNode layout;
+        try {
+            layout = parseCache.parse(content);
+        } catch (LayoutParseException e) {
+            return; // Only rendered content is stored, so this does not happen
+        }
+        Metadata metadata = new Metadata(layout.tag(), layout.size(), layout.depth(), Instant.now());
+        byte[] encoded = encode(image, metadata);
+
+        String key = key(file, content);
+        synchronized (this) {
+            index();
+        }
+
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, ".entry", TEMPORARY_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(encoded);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true); // On disk before it becomes visible under its name
+            }
+            try {
+                Files.move(temporary, entryPath(key), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entryPath(key), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        synchronized (this) {
+            Long previous = entries.put(key, (long) encoded.length);
+            bytes += encoded.length - (previous != null ? previous : 0);
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits its size,
+     * keeping at least the newest one.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator(); // get() would reorder
+        while (bytes > maxBytes && entries.size() > 1) {
+            Map.Entry<String, Long> entry = eldest.next();
+            bytes -= entry.getValue();
+            eldest.remove();
+            deleteQuietly(entryPath(entry.getKey()));
+        }
+    }
+
+    private void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            bytes -= size;
+        }
+        deleteQuietly(entryPath(key));
+    }
+
+    /**
+     * Reads the entries in the directory on first use, ordered by their last
+     * use, and deletes temporary files left by an interrupted write.
+     */
+    private void index() {
+        if (indexed) {
+            return;
+        }
+        indexed = true;
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(ENTRY_SUFFIX)) {
+                    files.add(path);
+                } else if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    deleteQuietly(path);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return; // Nothing cached yet
+        } catch (IOException e) {
+            return; // The cache starts empty and entries are written as usual
+        }
+
+        Map<Path, FileTime> modified = new LinkedHashMap<>();
+        for (Path path : files) {
+            try {
+                modified.put(path, Files.getLastModifiedTime(path));
+            } catch (IOException e) {
+                // Deleted meanwhile
+            }
+        }
+        modified.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue(Comparator.naturalOrder()))
+                .forEach(file -> {
+                    try {
+                        long size = Files.size(file.getKey());
+                        String name = file.getKey().getFileName().toString();
+                        entries.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+                        bytes += size;
+                    } catch (IOException e) {
+                        // Deleted meanwhile
+                    }
+                });
+        evict();
+    }
+
+    public synchronized int size() {
+        index();
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        index();
+        return bytes;
+    }
+
+    // --- Format ---
+
+    /**
+     * Encodes an entry as: int magic, int version, int payloadLength,
+     * int crc32(payload), then the payload: UTF rootTag, int elementCount,
+     * int depth, long renderedAtMillis, PNG image.
+     */
+    private static byte[] encode(BufferedImage image, Metadata metadata) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(payload);
+        output.writeUTF(metadata.rootTag());
+        output.writeInt(metadata.elementCount());
+        output.writeInt(metadata.depth());
+        output.writeLong(metadata.renderedAt().toEpochMilli());
+        ImageIO.write(image, "png", output);
+        output.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        ByteBuffer encoded = ByteBuffer.allocate(HEADER_BYTES + payload.size());
+        encoded.putInt(MAGIC).putInt(VERSION).putInt(payload.size()).putInt((int) crc.getValue());
+        encoded.put(payload.toByteArray());
+        return encoded.array();
+    }
+
+    /**
+     * Decodes an entry.
+     *
+     * @return The entry, or null if it is damaged or of another version.
+     */
+    private static Entry decode(byte[] encoded) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        if (encoded.length < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length != encoded.length - HEADER_BYTES) {
+            return null; // Truncated
+        }
+        CRC32 crc = new CRC32();
+        crc.update(encoded, HEADER_BYTES, length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(encoded, HEADER_BYTES, length));
+        Metadata metadata = new Metadata(input.readUTF(), input.readInt(), input.readInt(),
+                Instant.ofEpochMilli(input.readLong()));
+        BufferedImage image = ImageIO.read(input);
+        return image != null ? new Entry(image, metadata) : null;
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + ENTRY_SUFFIX);
+    }
+
+    /**
+     * Derives an entry's key from the file's absolute path and a digest of
+     * its content.
+     */
+    private static String key(Path file, CharSequence content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(file.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(content.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Ignore; a leftover entry is deleted again when it is next found
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import com.sierra.previewer.model.RenderError;
+import com.sierra.previewer.model.RenderResult;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.JComponent;
+import javax.swing.LookAndFeel;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+
+/**
+ * Renders one document in several configurations at once, e.g. at each
+ * supported window size under both the light and the dark theme.
+ * <p>
+ * The document is parsed once; each configuration is then built, laid out
+ * and painted off screen on its own worker thread. Because the look and feel
+ * is global to Swing, configurations with a theme other than the current one
+ * are re-skinned and painted on the event dispatch thread instead, in one
+ * batch per theme, and the application's look and feel is restored
+ * afterwards.
+ */
+public class PreviewMatrix {
+
+    /**
+     * The largest snapshot dimension, in pixels. Larger snapshots are scaled
+     * down, so that a full matrix does not hold several full-size images.
+     */
+    public static final int MAX_SNAPSHOT_SIZE = 480;
+
+    /**
+     * A look and feel a configuration can be rendered under.
+     */
+    public enum Theme {
+        LIGHT("Light", "com.formdev.flatlaf.FlatLightLaf"),
+        DARK("Dark", "com.formdev.flatlaf.FlatDarkLaf");
+
+        private final String label;
+        private final String className;
+
+        Theme(String label, String className) {
+            this.label = label;
+            this.className = className;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        boolean isCurrent() {
+            LookAndFeel lookAndFeel = UIManager.getLookAndFeel();
+            return lookAndFeel != null && lookAndFeel.getClass().getName().equals(className);
+        }
+    }
+
+    /**
+     * A combination of window size, theme and font scale.
+     *
+     * @param size The size the layout is given.
+     * @param theme The look and feel.
+     * @param fontScale The factor every font is scaled by, e.g. 1.25f.
+     */
+    public record Configuration(Dimension size, Theme theme, float fontScale) {
+
+        /**
+         * Returns a short description, e.g. "360 x 640, Dark, 125%".
+         *
+         * @return The label.
+         */
+        public String label() {
+            return size.width + " x " + size.height + ", " + theme.getLabel() + ", "
+                    + Math.round(fontScale * 100) + "%";
+        }
+    }
+
+    /**
+     * The outcome of rendering one configuration.
+     *
+     * @param configuration The configuration.
+     * @param image The snapshot, at most {@link #MAX_SNAPSHOT_SIZE} pixels
+     * wide and high, or null if rendering failed.
+     * @param error Why rendering failed, or null.
+     * @param nanos The time spent building, laying out and painting.
+     */
+    public record Snapshot(Configuration configuration, BufferedImage image, RenderError error, long nanos) {
+    }
+
+    /**
+     * A built tree waiting for its theme to be applied on the event dispatch
+     * thread.
+     */
+    private record Pending(int generation, Configuration configuration, JComponent root, long nanos,
+            Consumer<Snapshot> listener) {
+    }
+
+    private final RenderingEngine engine;
+    private final ExecutorService executor;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean themeBatchScheduled = new AtomicBoolean();
+
+    /**
+     * Creates a matrix with one worker per available processor.
+     *
+     * @param engine The engine the configurations are built with.
+     */
+    public PreviewMatrix(RenderingEngine engine) {
+        this.engine = engine;
+
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "sierra-matrix-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Renders a document in each of the given configurations, replacing any
+     * render still in progress. Snapshots are delivered as configurations
+     * finish, in no particular order, on a worker thread or the event
+     * dispatch thread.
+     *
+     * @param xmlText The document text.
+     * @param targetPath The document's file path. Can be null.
+     * @param configurations The configurations to render.
+     * @param listener Called with each snapshot.
+     */
+    public void render(String xmlText, Path targetPath, List<Configuration> configurations,
+            Consumer<Snapshot> listener) {
+        int renderGeneration = generation.incrementAndGet();
+        executor.execute(() -> {
+            LayoutNode layout;
+            try {
+                layout = engine.getParseCache().parse(xmlText);
+            } catch (LayoutParseException e) {
+                RenderError error = new RenderError(e.getMessage(), e, RenderError.Reason.INVALID_DOCUMENT);
+                for (Configuration configuration : configurations) {
+                    listener.accept(new Snapshot(configuration, null, error, 0));
+                }
+                return;
+            }
+
+            for (Configuration configuration : configurations) {
+                executor.execute(() -> build(renderGeneration, layout, targetPath, configuration, listener));
+            }
+        });
+    }
+
+    /**
+     * Abandons the render in progress, if any. Snapshots that are already
+     * being painted may still be delivered.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    // --- Rendering ---
+
+    private void build(int renderGeneration, LayoutNode layout, Path targetPath, Configuration configuration,
+            Consumer<Snapshot> listener) {
+        if (renderGeneration != generation.get()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        RenderResult result = engine.renderLayout(layout, targetPath);
+        JComponent root = switch (result) {
+            case RenderResult.Success success -> success.component();
+            case RenderResult.Error error -> {
+                listener.accept(new Snapshot(configuration, null, error.details(), System.nanoTime() - start));
+                yield null;
+            }
+            case RenderResult.Unchanged unchanged -> throw new IllegalStateException("Layouts are always built");
+        };
+        if (root == null) {
+            return;
+        }
+
+        if (configuration.theme().isCurrent()) {
+            scaleFonts(root, configuration.fontScale());
+            Snapshot snapshot;
+            try {
+                snapshot = snapshot(configuration, root, System.nanoTime() - start);
+            } finally {
+                engine.getComponentPool().release(root);
+            }
+            listener.accept(snapshot);
+        } else {
+            pending.add(new Pending(renderGeneration, configuration, root, System.nanoTime() - start, listener));
+            if (themeBatchScheduled.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(this::paintThemeBatch);
+            }
+        }
+    }
+
+    /**
+     * Paints every tree waiting for a theme other than the current one,
+     * switching the look and feel once per theme. The trees are released and
+     * the snapshots delivered once the application's look and feel has been
+     * restored, so that pooled components are reset to its defaults and
+     * listeners never observe the temporary one.
+     */
+    private void paintThemeBatch() {
+        themeBatchScheduled.set(false);
+
+        Map<Theme, List<Pending>> byTheme = new LinkedHashMap<>();
+        for (Pending next = pending.poll(); next != null; next = pending.poll()) {
+            if (next.generation() == generation.get()) {
+                byTheme.computeIfAbsent(next.configuration().theme(), theme -> new ArrayList<>()).add(next);
+            } else {
+                engine.getComponentPool().release(next.root());
+            }
+        }
+        if (byTheme.isEmpty()) {
+            return;
+        }
+
+        List<Pending> painted = new ArrayList<>();
+        List<Snapshot> snapshots = new ArrayList<>();
+        String original = UIManager.getLookAndFeel().getClass().getName();
+        try {
+            for (Map.Entry<Theme, List<Pending>> entry : byTheme.entrySet()) {
+                Exception failure = null;
+                try {
+                    UIManager.setLookAndFeel(entry.getKey().getClassName());
+                } catch (Exception e) {
+                    failure = e;
+                }
+
+                for (Pending next : entry.getValue()) {
+                    painted.add(next);
+                    if (failure != null) {
+                        snapshots.add(new Snapshot(next.configuration(), null, new RenderError(
+                                "The " + entry.getKey().getLabel() + " theme is not available.", failure),
+                                next.nanos()));
+                        continue;
+                    }
+
+                    long start = System.nanoTime();
+                    SwingUtilities.updateComponentTreeUI(next.root());
+                    // Fonts are scaled after re-skinning, which replaces them with the theme's
+                    scaleFonts(next.root(), next.configuration().fontScale());
+                    snapshots.add(snapshot(next.configuration(), next.root(),
+                            next.nanos() + System.nanoTime() - start));
+                }
+            }
+        } finally {
+            try {
+                UIManager.setLookAndFeel(original);
+            } catch (Exception e) {
+                System.err.println("Could not restore look and feel: " + e.getMessage());
+            }
+            for (List<Pending> themed : byTheme.values()) {
+                for (Pending next : themed) {
+                    engine.getComponentPool().release(next.root());
+                }
+            }
+        }
+
+        for (int i = 0; i < snapshots.size(); i++) {
+            painted.get(i).listener().accept(snapshots.get(i));
+        }
+    }
+
+    /**
+     * Lays out and paints a tree. The caller releases the tree.
+     */
+    private static Snapshot snapshot(Configuration configuration, JComponent root, long nanos) {
+        long start = System.nanoTime();
+        OffscreenLayout.layout(root, configuration.size());
+        BufferedImage image = OffscreenLayout.paint(root);
+        nanos += System.nanoTime() - start;
+
+        if (image == null) {
+            return new Snapshot(configuration, null,
+                    new RenderError("The layout could not be painted off screen.", null), nanos);
+        }
+        return new Snapshot(configuration, ImageCache.scaleDown(image, MAX_SNAPSHOT_SIZE, MAX_SNAPSHOT_SIZE),
+                null, nanos);
+    }
+
+    /**
+     * Scales the font of every component in a tree. Fonts are read before any
+     * is changed, since components without a font of their own inherit their
+     * parent's.
+     */
+    static void scaleFonts(JComponent root, float scale) {
+        if (scale == 1f) {
+            return;
+        }
+
+        List<Component> components = new ArrayList<>();
+        List<Font> fonts = new ArrayList<>();
+        collectFonts(root, components, fonts);
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).setFont(fonts.get(i).deriveFont(fonts.get(i).getSize2D() * scale));
+        }
+    }
+
+    private static void collectFonts(Component component, List<Component> components, List<Font> fonts) {
+        Font font = component.getFont();
+        if (font != null) {
+            components.add(component);
+            fonts.add(font);
+        }
+        if (component instanceof Container container) {
+            for (Component child : container.getComponents()) {
+                collectFonts(child, components, fonts);
+            }
+        }
+    }
+}
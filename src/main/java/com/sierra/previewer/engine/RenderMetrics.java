@@ -0,0 +1,292 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.RenderPhase;
+import com.sierra.previewer.model.RenderTimings;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the work done by the rendering engine. All methods are
+ * thread-safe.
+ */
+public class RenderMetrics {
+
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final AtomicLong lastAllocatedBytes = new AtomicLong();
+    private final LongAdder swaps = new LongAdder();
+    private final LongAdder swapNanos = new LongAdder();
+    private final AtomicLong maxSwapNanos = new AtomicLong();
+    private final LongAdder skippedRenders = new LongAdder();
+    private final LongAdder streamedRenders = new LongAdder();
+    private final LongAdder firstContentNanos = new LongAdder();
+    private final LongAdder imageHits = new LongAdder();
+    private final LongAdder imageMisses = new LongAdder();
+    private final LongAdder imageEvictions = new LongAdder();
+    private final LongAdder[] phaseNanos = new LongAdder[RenderPhase.values().length];
+
+    private final long startNanos = System.nanoTime();
+
+    public RenderMetrics() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a completed render.
+     *
+     * @param success Whether the render produced a component tree.
+     * @param allocated The bytes allocated by the rendering thread, or -1 if
+     * allocation tracking is unavailable.
+     */
+    public void recordRender(boolean success, long allocated) {
+        renders.increment();
+        if (!success) {
+            failures.increment();
+        }
+        if (allocated >= 0) {
+            allocatedBytes.add(allocated);
+            lastAllocatedBytes.set(allocated);
+        }
+    }
+
+    /**
+     * Adds a render's phase durations to the per-phase totals.
+     *
+     * @param timings The render's timings.
+     */
+    public void recordTimings(RenderTimings timings) {
+        for (RenderPhase phase : RenderPhase.values()) {
+            phaseNanos[phase.ordinal()].add(timings.getNanos(phase));
+        }
+    }
+
+    /**
+     * Gets the total time renders have spent in a phase.
+     *
+     * @param phase The phase.
+     * @return The total duration in nanoseconds.
+     */
+    public long getPhaseNanos(RenderPhase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Records an image cache lookup.
+     *
+     * @param hit Whether the image was cached or already being decoded.
+     */
+    public void recordImageLookup(boolean hit) {
+        (hit ? imageHits : imageMisses).increment();
+    }
+
+    /**
+     * Records an image evicted from the image cache.
+     */
+    public void recordImageEviction() {
+        imageEvictions.increment();
+    }
+
+    public long getImageHits() {
+        return imageHits.sum();
+    }
+
+    public long getImageMisses() {
+        return imageMisses.sum();
+    }
+
+    public long getImageEvictions() {
+        return imageEvictions.sum();
+    }
+
+    /**
+     * Gets the fraction of image lookups served without decoding.
+     *
+     * @return The hit rate between 0 and 1, or 0 if no image was looked up.
+     */
+    public double getImageHitRate() {
+        long hits = imageHits.sum();
+        long lookups = hits + imageMisses.sum();
+        return lookups > 0 ? (double) hits / lookups : 0;
+    }
+
+    /**
+     * Records the time the EDT was blocked swapping a rendered tree into the
+     * live preview.
+     *
+     * @param nanos The swap duration in nanoseconds.
+     */
+    public void recordSwap(long nanos) {
+        swaps.increment();
+        swapNanos.add(nanos);
+        maxSwapNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getSwapCount() {
+        return swaps.sum();
+    }
+
+    /**
+     * Gets the mean EDT blocking time per preview swap.
+     *
+     * @return The mean swap time in milliseconds.
+     */
+    public double getMeanSwapMillis() {
+        long count = swaps.sum();
+        return count > 0 ? swapNanos.sum() / 1e6 / count : 0;
+    }
+
+    public double getMaxSwapMillis() {
+        return maxSwapNanos.get() / 1e6;
+    }
+
+    /**
+     * Records a render whose build and swap were skipped because it would
+     * have built the displayed preview again.
+     */
+    public void recordSkippedRender() {
+        skippedRenders.increment();
+    }
+
+    public long getSkippedRenderCount() {
+        return skippedRenders.sum();
+    }
+
+    /**
+     * Gets the fraction of renders that were skipped as unchanged.
+     *
+     * @return The skip rate between 0 and 1, or 0 if nothing was rendered.
+     */
+    public double getSkippedRenderRate() {
+        long count = renders.sum();
+        return count > 0 ? (double) skippedRenders.sum() / count : 0;
+    }
+
+    /**
+     * Records the time a streamed render took to produce its first visible
+     * content.
+     *
+     * @param nanos The time from the start of the render in nanoseconds.
+     */
+    public void recordFirstContent(long nanos) {
+        streamedRenders.increment();
+        firstContentNanos.add(nanos);
+    }
+
+    public long getStreamedRenderCount() {
+        return streamedRenders.sum();
+    }
+
+    /**
+     * Gets the mean time streamed renders took to produce their first
+     * visible content.
+     *
+     * @return The mean time to first content in milliseconds.
+     */
+    public double getMeanFirstContentMillis() {
+        long count = streamedRenders.sum();
+        return count > 0 ? firstContentNanos.sum() / 1e6 / count : 0;
+    }
+
+    public long getRenderCount() {
+        return renders.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    public long getLastAllocatedBytes() {
+        return lastAllocatedBytes.get();
+    }
+
+    /**
+     * Gets the average number of bytes allocated by rendering per second since
+     * the engine was created.
+     *
+     * @return The allocation rate in bytes per second.
+     */
+    public double getAllocationRate() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? getAllocatedBytes() / seconds : 0;
+    }
+
+    /**
+     * Writes the counters in the Prometheus text exposition format.
+     *
+     * @param output The output to append to.
+     */
+    public void writePrometheus(StringBuilder output) {
+        writeMetric(output, "sierra_renders_total", "counter", "Completed renders.", getRenderCount());
+        writeMetric(output, "sierra_render_failures_total", "counter", "Renders that produced an error.", getFailureCount());
+        writeMetric(output, "sierra_render_allocated_bytes_total", "counter", "Bytes allocated by render threads.", getAllocatedBytes());
+        writeMetric(output, "sierra_preview_swaps_total", "counter", "Previews swapped into the UI.", getSwapCount());
+        writeMetric(output, "sierra_preview_swap_max_seconds", "gauge", "Longest EDT blocking time of a swap.", getMaxSwapMillis() / 1000);
+        writeMetric(output, "sierra_renders_skipped_total", "counter", "Renders skipped because the preview was unchanged.", getSkippedRenderCount());
+        writeMetric(output, "sierra_streamed_renders_total", "counter", "Renders streamed into the preview.", getStreamedRenderCount());
+        writeMetric(output, "sierra_render_first_content_seconds_total", "counter", "Time streamed renders took to show content.", firstContentNanos.sum() / 1e9);
+        writeMetric(output, "sierra_image_cache_hits_total", "counter", "Images served from the image cache.", getImageHits());
+        writeMetric(output, "sierra_image_cache_misses_total", "counter", "Images decoded for the image cache.", getImageMisses());
+        writeMetric(output, "sierra_image_cache_evictions_total", "counter", "Images evicted from the image cache.", getImageEvictions());
+        for (RenderPhase phase : RenderPhase.values()) {
+            String name = phase.name().toLowerCase();
+            writeMetric(output, "sierra_render_" + name + "_seconds_total", "counter",
+                    "Time renders spent in the " + name + " phase.", getPhaseNanos(phase) / 1e9);
+        }
+    }
+
+    /**
+     * Appends one metric sample with its HELP and TYPE lines.
+     *
+     * @param output The output to append to.
+     * @param name The metric name.
+     * @param type The Prometheus metric type, e.g. "counter".
+     * @param help The description of the metric.
+     * @param value The sample value.
+     */
+    public static void writeMetric(StringBuilder output, String name, String type, String help, double value) {
+        output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        output.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        output.append(name).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            output.append((long) value);
+        } else {
+            output.append(value);
+        }
+        output.append('\n');
+    }
+
+    /**
+     * Returns the total number of bytes allocated by the current thread, or -1
+     * if the JVM does not support per-thread allocation accounting.
+     *
+     * @return The allocated byte count.
+     */
+    static long currentThreadAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemoryEnabled()) {
+            return threadBean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.RenderPhase;
+import com.sierra.previewer.model.RenderTimings;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records timed spans of rendering work into a fixed-size ring buffer and
+ * exports them in the Chrome trace-event format, which chrome://tracing and
+ * Perfetto display as a flame view.
+ * <p>
+ * Events are stored in preallocated parallel arrays and span names are
+ * interned to integer ids, so recording an event does not allocate. When the
+ * buffer is full the oldest events are overwritten. Events recorded while an
+ * export is in progress may appear torn in that export.
+ */
+public class RenderTracer {
+
+    /**
+     * The kind of work a span measures, exported as the event category.
+     */
+    public enum Category {
+        RENDER, PHASE, BUILD, LAYOUT
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+
+    private final int capacity;
+    private final long[] starts;
+    private final long[] durations;
+    private final int[] names;
+    private final byte[] categories;
+    private final long[] threads;
+    private final int[] lines;
+    private final AtomicLong cursor = new AtomicLong();
+
+    private final Map<String, Integer> nameIds = new ConcurrentHashMap<>();
+    private final List<String> nameTable = new ArrayList<>();
+    private final ClassValue<Integer> classNameIds = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return nameId(type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName());
+        }
+    };
+    private final int[] phaseNameIds = new int[RenderPhase.values().length];
+    private final int renderNameId;
+
+    private volatile boolean enabled = false;
+
+    /**
+     * Creates a tracer.
+     *
+     * @param capacity The number of events retained.
+     */
+    public RenderTracer(int capacity) {
+        this.capacity = capacity;
+        starts = new long[capacity];
+        durations = new long[capacity];
+        names = new int[capacity];
+        categories = new byte[capacity];
+        threads = new long[capacity];
+        lines = new int[capacity];
+
+        for (RenderPhase phase : RenderPhase.values()) {
+            phaseNameIds[phase.ordinal()] = nameId(phase.name().toLowerCase());
+        }
+        renderNameId = nameId("render");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the id of a span name, registering it if necessary.
+     *
+     * @param name The span name.
+     * @return The name id.
+     */
+    public int nameId(String name) {
+        return nameIds.computeIfAbsent(name, key -> {
+            synchronized (nameTable) {
+                nameTable.add(key);
+                return nameTable.size() - 1;
+            }
+        });
+    }
+
+    /**
+     * Gets the id of the span name for a component type.
+     *
+     * @param type The component class.
+     * @return The name id.
+     */
+    public int nameId(Class<?> type) {
+        return classNameIds.get(type);
+    }
+
+    /**
+     * Starts timing a span.
+     *
+     * @return The start time to pass to {@link #end}, or 0 if tracing is
+     * disabled.
+     */
+    public long begin() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a span that started at the given time and ends now. Does
+     * nothing if the span was begun while tracing was disabled.
+     *
+     * @param category The kind of work.
+     * @param nameId The span name id.
+     * @param start The value returned by {@link #begin()}.
+     * @param line The source line of the element concerned, or 0.
+     */
+    public void end(Category category, int nameId, long start, int line) {
+        if (start != 0) {
+            record(category, nameId, start, System.nanoTime() - start, line);
+        }
+    }
+
+    /**
+     * Records a render and its phases, which run back to back.
+     *
+     * @param start The System.nanoTime() at which the render started.
+     * @param timings The render's phase durations.
+     */
+    public void recordRender(long start, RenderTimings timings) {
+        if (!enabled) {
+            return;
+        }
+        record(Category.RENDER, renderNameId, start, timings.getTotalNanos(), 0);
+        long phaseStart = start;
+        for (RenderPhase phase : RenderPhase.values()) {
+            long nanos = timings.getNanos(phase);
+            if (nanos > 0) {
+                record(Category.PHASE, phaseNameIds[phase.ordinal()], phaseStart, nanos, 0);
+                phaseStart += nanos;
+            }
+        }
+    }
+
+    private void record(Category category, int nameId, long start, long duration, int line) {
+        int slot = (int) (cursor.getAndIncrement() % capacity);
+        starts[slot] = start;
+        durations[slot] = duration;
+        names[slot] = nameId;
+        categories[slot] = (byte) category.ordinal();
+        threads[slot] = Thread.currentThread().threadId();
+        lines[slot] = line;
+    }
+
+    /**
+     * Gets the number of events currently retained.
+     *
+     * @return The event count.
+     */
+    public int size() {
+        return (int) Math.min(cursor.get(), capacity);
+    }
+
+    /**
+     * Discards all recorded events.
+     */
+    public void clear() {
+        cursor.set(0);
+    }
+
+    /**
+     * Writes the retained events, oldest first, as a Chrome trace-event JSON
+     * document.
+     *
+     * @param writer The output.
+     * @throws IOException If the output cannot be written.
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        long end = cursor.get();
+        long first = Math.max(0, end - capacity);
+
+        String[] nameArray;
+        synchronized (nameTable) {
+            nameArray = nameTable.toArray(new String[0]);
+        }
+
+        StringBuilder json = new StringBuilder(256);
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        for (long i = first; i < end; i++) {
+            int slot = (int) (i % capacity);
+            json.setLength(0);
+            if (i > first) {
+                json.append(',');
+            }
+            json.append("\n{\"name\":");
+            Json.quote(nameArray[names[slot]], json);
+            json.append(",\"cat\":");
+            Json.quote(CATEGORIES[categories[slot]].name().toLowerCase(), json);
+            json.append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(threads[slot])
+                    .append(",\"ts\":").append(starts[slot] / 1000.0)
+                    .append(",\"dur\":").append(durations[slot] / 1000.0);
+            if (lines[slot] > 0) {
+                json.append(",\"args\":{\"line\":").append(lines[slot]).append('}');
+            }
+            json.append('}');
+            writer.write(json.toString());
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+}
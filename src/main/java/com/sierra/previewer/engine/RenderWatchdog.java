@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.JComponent;
+
+/**
+ * Runs component tree builds under a time limit. UILoader cannot be
+ * interrupted, so a build that exceeds its limit is abandoned rather than
+ * stopped: the caller gets a {@link TimeoutException} and its render thread is
+ * freed immediately, while the build finishes on its own thread and its tree
+ * is discarded. The number of abandoned builds still running is capped, so
+ * that a stream of pathological documents cannot exhaust the JVM's threads.
+ */
+public class RenderWatchdog {
+
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int ABANDONED = 3;
+
+    private final ExecutorService buildExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "sierra-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int maxAbandoned;
+    private final Consumer<JComponent> discard;
+    private final AtomicInteger abandoned = new AtomicInteger();
+
+    /**
+     * Creates a watchdog.
+     *
+     * @param maxAbandoned The number of abandoned builds that may still be
+     * running before further builds are refused.
+     * @param discard Receives trees whose builds finished after being
+     * abandoned.
+     */
+    public RenderWatchdog(int maxAbandoned, Consumer<JComponent> discard) {
+        this.maxAbandoned = maxAbandoned;
+        this.discard = discard;
+    }
+
+    /**
+     * Gets the number of builds that timed out and are still running.
+     *
+     * @return The abandoned build count.
+     */
+    public int getAbandonedCount() {
+        return abandoned.get();
+    }
+
+    /**
+     * Builds a component tree, waiting at most the given time.
+     *
+     * @param build The build to run.
+     * @param timeoutMillis The time limit in milliseconds, or 0 to run the
+     * build on the calling thread without a limit.
+     * @return The built tree.
+     * @throws TimeoutException If the build did not finish in time.
+     * @throws SaturatedException If too many abandoned builds are running.
+     * @throws InterruptedException If the calling thread was interrupted while
+     * waiting; the build is abandoned.
+     * @throws Exception If the build failed.
+     */
+    public JComponent build(Callable<JComponent> build, long timeoutMillis) throws Exception {
+        if (timeoutMillis <= 0) {
+            return build.call();
+        }
+        if (abandoned.get() >= maxAbandoned) {
+            throw new SaturatedException(abandoned.get());
+        }
+
+        // Exactly one side releases an abandoned build's slot: the build, once it has started, or else nobody
+        AtomicInteger state = new AtomicInteger(PENDING);
+        Future<JComponent> future = buildExecutor.submit(() -> {
+            if (!state.compareAndSet(PENDING, RUNNING)) {
+                return null; // Abandoned before it started
+            }
+            JComponent component = null;
+            try {
+                component = build.call();
+                return component;
+            } finally {
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    // Nobody is waiting for this tree any more
+                    abandoned.decrementAndGet();
+                    if (component != null) {
+                        discard.accept(component);
+                    }
+                }
+            }
+        });
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (state.compareAndSet(PENDING, ABANDONED)) {
+                // The build will not run, so it holds no slot
+                future.cancel(false);
+                throw e;
+            }
+            if (state.compareAndSet(RUNNING, ABANDONED)) {
+                abandoned.incrementAndGet();
+                future.cancel(true);
+                throw e;
+            }
+            // The build finished just as the wait ended
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return unwrap(future);
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static JComponent unwrap(Future<JComponent> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static Exception rethrow(ExecutionException e) {
+        if (e.getCause() instanceof Error error) {
+            throw error;
+        }
+        return e.getCause() instanceof Exception exception ? exception : e;
+    }
+
+    /**
+     * Thrown when a build is refused because too many abandoned builds are
+     * still running.
+     */
+    public static class SaturatedException extends Exception {
+
+        SaturatedException(int abandoned) {
+            super(abandoned + " timed out renders are still running");
+        }
+    }
+}
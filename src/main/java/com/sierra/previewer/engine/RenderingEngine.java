@@ -13,19 +13,292 @@
  */
 package com.sierra.previewer.engine;
 
+import com.sierra.previewer.model.LayoutNode;
 import com.sierra.previewer.model.RenderError;
+import com.sierra.previewer.model.RenderPhase;
 import com.sierra.previewer.model.RenderResult;
+import com.sierra.previewer.model.RenderTimings;
+import com.sierra.previewer.text.Rope;
+import java.awt.Dimension;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import javax.swing.*;
 import org.httprpc.sierra.UILoader;
 
 public class RenderingEngine {
 
+    private static final int DEFAULT_RENDER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int RENDER_QUEUE_CAPACITY = 32;
+    private static final int DEFAULT_VIRTUALIZATION_THRESHOLD = 2000;
+    private static final long DEFAULT_RENDER_TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_ELEMENT_BUDGET = 20000;
+    private static final int DEFAULT_DEPTH_BUDGET = 200;
+    private static final int MAX_ABANDONED_BUILDS = 4;
+    private static final int TRACE_CAPACITY = 1 << 16;
+    private static final long IMAGE_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final int IMAGE_DECODE_THREADS = 2;
+    private static final int DEFAULT_STREAMING_THRESHOLD = 512 * 1024;
+    private static final int FIRST_STREAM_BATCH = 16;
+    private static final int STREAM_BATCH = 64;
+
+    private final ComponentPool componentPool = new ComponentPool();
+    private final RenderMetrics metrics = new RenderMetrics();
+    private final ParseCache parseCache = new ParseCache();
+    private final FragmentCache fragmentCache = new FragmentCache();
+    private final RenderTracer tracer = new RenderTracer(TRACE_CAPACITY);
+    private final ImageCache imageCache = new ImageCache(IMAGE_CACHE_BYTES, IMAGE_DECODE_THREADS, metrics);
+    private final AttributeInterner attributeInterner = new AttributeInterner();
+    private final RenderWatchdog watchdog = new RenderWatchdog(MAX_ABANDONED_BUILDS, componentPool::release);
+    private final ExecutorService renderExecutor;
+
+    private volatile int virtualizationThreshold = DEFAULT_VIRTUALIZATION_THRESHOLD;
+    private volatile long renderTimeoutMillis = DEFAULT_RENDER_TIMEOUT_MILLIS;
+    private volatile int elementBudget = DEFAULT_ELEMENT_BUDGET;
+    private volatile int depthBudget = DEFAULT_DEPTH_BUDGET;
+    private volatile boolean logging = true;
+    private volatile boolean imageCaching = true;
+    private volatile int streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+
     public RenderingEngine() {
+        this(DEFAULT_RENDER_THREADS);
+    }
+
+    /**
+     * Creates an engine with the given number of render threads.
+     *
+     * @param renderThreads The size of the render executor's thread pool.
+     */
+    public RenderingEngine(int renderThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(renderThreads, renderThreads,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(RENDER_QUEUE_CAPACITY),
+                new RenderThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        this.renderExecutor = executor;
+    }
+
+    /**
+     * Gets the bounded executor shared by every document's render workers.
+     * Submissions beyond the queue capacity are rejected with a
+     * {@link java.util.concurrent.RejectedExecutionException}.
+     *
+     * @return The render executor.
+     */
+    public ExecutorService getRenderExecutor() {
+        return renderExecutor;
+    }
+
+    /**
+     * Gets the number of renders waiting for a render thread.
+     *
+     * @return The render queue depth.
+     */
+    public int getQueuedRenderCount() {
+        return ((ThreadPoolExecutor) renderExecutor).getQueue().size();
+    }
+
+    /**
+     * Enables or disables the per-render console output, which is too
+     * verbose for server use.
+     *
+     * @param logging Whether to log each render.
+     */
+    public void setLogging(boolean logging) {
+        this.logging = logging;
+    }
+
+    /**
+     * Gets the cache of parsed layouts shared by every document.
+     *
+     * @return The parse cache.
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Gets the cache of included fragments shared by every document.
+     *
+     * @return The fragment cache.
+     */
+    public FragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
+    /**
+     * Expands the includes in a layout from the shared fragment cache.
+     *
+     * @param layout The parsed layout.
+     * @param targetPath The document's file path, against which include paths
+     * are resolved. Can be null.
+     * @return The expanded layout, or the layout itself if it includes
+     * nothing.
+     * @throws LayoutParseException If an included fragment cannot be read or
+     * is not well-formed.
+     */
+    public LayoutNode expandIncludes(LayoutNode layout, Path targetPath) throws LayoutParseException {
+        Path directory = targetPath == null ? null : targetPath.toAbsolutePath().getParent();
+        return fragmentCache.expand(layout, directory != null ? directory : Path.of("").toAbsolutePath());
+    }
+
+    /**
+     * Gets the pool that discarded preview trees should be released into.
+     *
+     * @return The shared component pool.
+     */
+    public ComponentPool getComponentPool() {
+        return componentPool;
+    }
 
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the element count at which a layout is previewed in a
+     * {@link VirtualizedPreview} rather than built in full.
+     *
+     * @return The threshold, or 0 if virtualization is disabled.
+     */
+    public int getVirtualizationThreshold() {
+        return virtualizationThreshold;
+    }
+
+    public void setVirtualizationThreshold(int virtualizationThreshold) {
+        this.virtualizationThreshold = virtualizationThreshold;
+    }
+
+    /**
+     * Gets the document length at which a layout is streamed into the
+     * preview with {@link #renderStreaming} rather than parsed in full before
+     * anything is built.
+     *
+     * @return The threshold in characters, or 0 if streaming is disabled.
+     */
+    public int getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    public void setStreamingThreshold(int streamingThreshold) {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    /**
+     * Gets the cache of decoded images shared by every document.
+     *
+     * @return The image cache.
+     */
+    public ImageCache getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * Gets the interner that shares equal fonts, colors and borders between
+     * all built trees.
+     *
+     * @return The attribute interner.
+     */
+    public AttributeInterner getAttributeInterner() {
+        return attributeInterner;
+    }
+
+    /**
+     * Enables or disables serving image and icon attributes from the image
+     * cache. When disabled, UILoader decodes every image on every render.
+     *
+     * @param imageCaching Whether to use the image cache.
+     */
+    public void setImageCaching(boolean imageCaching) {
+        this.imageCaching = imageCaching;
+    }
+
+    /**
+     * Gets the tracer that records render, phase, fragment build and layout
+     * spans while tracing is enabled.
+     *
+     * @return The render tracer.
+     */
+    public RenderTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Gets the watchdog that enforces the render timeout.
+     *
+     * @return The render watchdog.
+     */
+    public RenderWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Gets the time a single component tree build may take before it is
+     * abandoned and reported as {@link RenderError.Reason#TIMEOUT}.
+     *
+     * @return The timeout in milliseconds, or 0 if builds are not limited.
+     */
+    public long getRenderTimeoutMillis() {
+        return renderTimeoutMillis;
+    }
+
+    public void setRenderTimeoutMillis(long renderTimeoutMillis) {
+        this.renderTimeoutMillis = renderTimeoutMillis;
+    }
+
+    /**
+     * Gets the number of elements a layout may have before it is rejected as
+     * {@link RenderError.Reason#BUDGET_EXCEEDED}. Virtualized layouts are
+     * exempt, since they only build what is scrolled into view.
+     *
+     * @return The element budget, or 0 if the element count is not limited.
+     */
+    public int getElementBudget() {
+        return elementBudget;
+    }
+
+    public void setElementBudget(int elementBudget) {
+        this.elementBudget = elementBudget;
+    }
+
+    /**
+     * Gets the nesting depth a layout may have before it is rejected as
+     * {@link RenderError.Reason#BUDGET_EXCEEDED}.
+     *
+     * @return The depth budget, or 0 if the depth is not limited.
+     */
+    public int getDepthBudget() {
+        return depthBudget;
+    }
+
+    public void setDepthBudget(int depthBudget) {
+        this.depthBudget = depthBudget;
+    }
+
+    /**
+     * Renders the given XML text without laying it out.
+     *
+     * @param xmlText The XML content to render.
+     * @param targetPath The file path to save the XML content to. Can be null.
+     * @return The result of the rendering operation.
+     * @see #render(String, Path, Dimension)
+     */
+    public RenderResult render(String xmlText, Path targetPath) {
+        return render(xmlText, targetPath, null);
     }
 
     /**
@@ -34,36 +307,474 @@ public class RenderingEngine {
      * If targetPath is null, it saves to a temporary file.
      * * @param xmlText The XML content to render.
      * @param targetPath The file path to save the XML content to. Can be null.
+     * @param layoutSize If not null, the built tree is laid out off screen at
+     * this size, so that displaying it is cheap.
+     * @return The result of the rendering operation.
+     */
+    public RenderResult render(String xmlText, Path targetPath, Dimension layoutSize) {
+        return render(xmlText, targetPath, layoutSize, RenderResult.NO_FINGERPRINT);
+    }
+
+    /**
+     * Renders the given XML text, unless it would build the preview that is
+     * already displayed. The text is still saved, but if the parsed layout
+     * has the displayed preview's fingerprint, building, layout and the swap
+     * are skipped and {@link RenderResult.Unchanged} is returned.
+     *
+     * @param xmlText The XML content to render.
+     * @param targetPath The file path to save the XML content to. Can be null.
+     * @param layoutSize If not null, the built tree is laid out off screen at
+     * this size.
+     * @param displayedFingerprint The fingerprint of the displayed preview's
+     * render, or {@link RenderResult#NO_FINGERPRINT}.
      * @return The result of the rendering operation.
      */
-    public RenderResult render(String xmlText, Path targetPath) { // MODIFIED SIGNATURE
+    public RenderResult render(String xmlText, Path targetPath, Dimension layoutSize, long displayedFingerprint) {
+        return render(xmlText, targetPath, layoutSize, displayedFingerprint, false);
+    }
+
+    /**
+     * Renders the given XML text, saving it first unless the caller already
+     * saved it to the target file.
+     */
+    private RenderResult render(String xmlText, Path targetPath, Dimension layoutSize, long displayedFingerprint,
+            boolean saved) {
         if (xmlText == null || xmlText.isBlank()) {
-            return new RenderResult.Success(new JPanel());
+            return new RenderResult.Success(componentPool.acquire(JPanel.class, JPanel::new));
         }
         
         Path savePath = targetPath;
+        boolean temporary = targetPath == null;
+        long allocatedBefore = RenderMetrics.currentThreadAllocatedBytes();
+        RenderTimings.Recorder timer = new RenderTimings.Recorder();
+        long renderStart = System.nanoTime();
 
         try {
-            if (savePath == null) {
+            timer.begin(RenderPhase.IO);
+            if (temporary) {
                 // If no file is open, create a temporary file as fallback
                 savePath = Files.createTempFile("sierrapreview", ".xml");
-                // Only delete temporary files on exit
-                savePath.toFile().deleteOnExit(); 
             }
             
             // Write the content to the chosen path (either the open file or the temp file)
             // This is the core change: saving to the targetPath instead of always a temp file.
-            Files.write(savePath, xmlText.getBytes("UTF-8"), 
-                    StandardOpenOption.CREATE, 
-                    StandardOpenOption.TRUNCATE_EXISTING, 
-                    StandardOpenOption.WRITE);
+            if (!saved) {
+                Files.write(savePath, xmlText.getBytes("UTF-8"),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+
+                if (logging) {
+                    System.out.println("Data saved for rendering to file: " + savePath.toAbsolutePath());
+                }
+            }
+
+            // Reject malformed documents before handing them to UILoader
+            timer.begin(RenderPhase.PARSE);
+            LayoutNode parsed = parseCache.parse(xmlText);
+            LayoutNode layout = expandIncludes(parsed, targetPath);
+
+            // Very large layouts only build the part that is scrolled into view
+            int size = layout.size();
+            LayoutNode virtualColumn = virtualizationThreshold > 0 && size >= virtualizationThreshold
+                    ? VirtualizedPreview.findVirtualColumn(layout) : null;
+
+            RenderError overBudget = checkBudget(layout, size, virtualColumn != null);
+            if (overBudget != null) {
+                return failed(overBudget, timer, renderStart, allocatedBefore);
+            }
+
+            // Formatting edits, such as whitespace or comments, leave the fingerprint unchanged
+            long fingerprint = fingerprint(layout, targetPath, virtualColumn != null);
+            if (fingerprint == displayedFingerprint) {
+                RenderTimings timings = timer.finish();
+                tracer.recordRender(renderStart, timings);
+                recordRender(true, timings, allocatedBefore);
+                metrics.recordSkippedRender();
+                return new RenderResult.Unchanged(layout, timings);
+            }
+
+            timer.begin(RenderPhase.BUILD);
+            JComponent rootComponent = virtualColumn != null
+                    ? new VirtualizedPreview(this, virtualColumn, targetPath)
+                    : build(layout, layout == parsed ? savePath : null, targetPath);
+            if (virtualColumn == null) {
+                // Virtualized previews build their components later, so only complete trees are mapped
+                SourceMap.attach(rootComponent, SourceMap.build(rootComponent, layout));
+            }
+
+            if (layoutSize != null) {
+                timer.begin(RenderPhase.LAYOUT);
+                OffscreenLayout.layout(rootComponent, layoutSize, tracer);
+            }
+
+            RenderTimings timings = timer.finish();
+            tracer.recordRender(renderStart, timings);
+            recordRender(true, timings, allocatedBefore);
+            return new RenderResult.Success(rootComponent, timings, fingerprint);
+        } catch (LayoutParseException e) {
+            RenderError.Location location = new RenderError.Location(e.getLine(), e.getColumn(), e.getElementPath());
+            return failed(new RenderError(e.getMessage(), e, RenderError.Reason.INVALID_DOCUMENT,
+                    RenderPhase.PARSE, location, null), timer, renderStart, allocatedBefore);
+        } catch (Exception | StackOverflowError e) {
+            return failed(buildError(e), timer, renderStart, allocatedBefore);
+        } finally {
+            // Temporary files are only needed while UILoader reads them
+            if (temporary) {
+                deleteQuietly(savePath);
+            }
+        }
+    }
+
+    /**
+     * Renders a large layout progressively. The text is parsed as a stream,
+     * and as soon as the first children of a root column have been read they
+     * are handed to the caller in a {@link VirtualizedPreview}, which builds
+     * the visible ones on the render executor while the rest of the document
+     * is still being parsed. Later children are appended to the displayed
+     * preview on the EDT.
+     * <p>
+     * Layouts whose root is not a column, or that are empty, are rendered
+     * with {@link #render(String, Path, Dimension)} instead.
+     *
+     * The text is saved before it is parsed, as by {@link #render(String,
+     * Path)}, and each child is checked against the depth budget before it
+     * is streamed in.
+     *
+     * @param xmlText The XML content to render.
+     * @param targetPath The file path to save the XML content to. Can be
+     * null.
+     * @param layoutSize The layout size used by the fallback render. Can be
+     * null.
+     * @param firstContent Called on the render thread with the preview once
+     * its first children are known; the caller displays it on the EDT.
+     * @param cancelled Polled as each child is parsed; streaming stops when
+     * it returns true.
+     * @return The result of the rendering operation. A successful streamed
+     * render returns the preview passed to {@code firstContent}.
+     */
+    public RenderResult renderStreaming(Rope xmlText, Path targetPath, Dimension layoutSize,
+            Consumer<JComponent> firstContent, BooleanSupplier cancelled) {
+        long allocatedBefore = RenderMetrics.currentThreadAllocatedBytes();
+        RenderTimings.Recorder timer = new RenderTimings.Recorder();
+        long renderStart = System.nanoTime();
+
+        StreamingBuilder builder = new StreamingBuilder(targetPath, firstContent, cancelled, renderStart);
+        try {
+            // Saved first, so that invalid documents are saved as they are by render()
+            if (targetPath != null) {
+                timer.begin(RenderPhase.IO);
+                Files.writeString(targetPath, xmlText, StandardCharsets.UTF_8);
+            }
+
+            timer.begin(RenderPhase.PARSE);
+            boolean complete = new LayoutParser().stream(xmlText.reader(), builder);
+            if (builder.includeError != null) {
+                throw builder.includeError;
+            }
+            if (builder.preview == null) {
+                return render(xmlText.toString(), targetPath, layoutSize, RenderResult.NO_FINGERPRINT,
+                        targetPath != null);
+            }
+            if (builder.overBudget != null) {
+                return failed(builder.overBudget, timer, renderStart, allocatedBefore);
+            }
+            if (!complete) {
+                return failed(new RenderError("Render cancelled", null), timer, renderStart, allocatedBefore);
+            }
+            builder.flush();
+
+            RenderTimings timings = timer.finish();
+            tracer.recordRender(renderStart, timings);
+            recordRender(true, timings, allocatedBefore);
+            return new RenderResult.Success(builder.preview, timings);
+        } catch (LayoutParseException e) {
+            RenderError.Location location = new RenderError.Location(e.getLine(), e.getColumn(), e.getElementPath());
+            return failed(new RenderError(e.getMessage(), e, RenderError.Reason.INVALID_DOCUMENT,
+                    RenderPhase.PARSE, location, null), timer, renderStart, allocatedBefore);
+        } catch (Exception e) {
+            return failed(buildError(e), timer, renderStart, allocatedBefore);
+        }
+    }
+
+    /**
+     * Collects streamed children into batches for a virtualized preview.
+     */
+    private class StreamingBuilder implements LayoutParser.StreamListener {
+
+        private final Path targetPath;
+        private final Consumer<JComponent> firstContent;
+        private final BooleanSupplier cancelled;
+        private final long renderStart;
+
+        private VirtualizedPreview preview = null;
+        private List<LayoutNode> batch = new ArrayList<>();
+        private boolean published = false;
+        private LayoutParseException includeError = null;
+        private RenderError overBudget = null;
+
+        StreamingBuilder(Path targetPath, Consumer<JComponent> firstContent, BooleanSupplier cancelled,
+                long renderStart) {
+            this.targetPath = targetPath;
+            this.firstContent = firstContent;
+            this.cancelled = cancelled;
+            this.renderStart = renderStart;
+        }
+
+        @Override
+        public boolean rootStarted(String tag, Map<String, String> attributes) {
+            if (!tag.equals("column-panel")) {
+                return false;
+            }
+            preview = new VirtualizedPreview(RenderingEngine.this, tag, attributes, targetPath);
+            return true;
+        }
+
+        @Override
+        public boolean childParsed(LayoutNode child) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            LayoutNode expanded;
+            try {
+                expanded = expandIncludes(child, targetPath);
+            } catch (LayoutParseException e) {
+                includeError = e;
+                return false;
+            }
+
+            // Streamed previews are virtualized, so only the depth is limited, as in render()
+            overBudget = checkDepth(expanded.depth() + 1);
+            if (overBudget != null) {
+                return false;
+            }
+            batch.add(expanded);
+            if (batch.size() >= (published ? STREAM_BATCH : FIRST_STREAM_BATCH)) {
+                flush();
+            }
+            return true;
+        }
+
+        /**
+         * Hands the pending children to the preview. The first batch is added
+         * before the preview is published, so no synchronization is needed;
+         * later ones are appended on the EDT, which owns the displayed
+         * preview.
+         */
+        void flush() {
+            if (!published) {
+                preview.append(batch);
+                published = true;
+                metrics.recordFirstContent(System.nanoTime() - renderStart);
+                firstContent.accept(preview);
+            } else if (!batch.isEmpty()) {
+                List<LayoutNode> children = batch;
+                VirtualizedPreview target = preview;
+                SwingUtilities.invokeLater(() -> target.append(children));
+            }
+            batch = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Builds a parsed layout that is not part of the document being edited,
+     * e.g. one of several configurations of the same document. The layout's
+     * includes are expanded, and it is checked against the element and depth
+     * budgets first.
+     *
+     * @param layout The layout to build.
+     * @param targetPath The document's file path, against which relative
+     * resources are resolved. Can be null.
+     * @return The result of the rendering operation.
+     */
+    public RenderResult renderLayout(LayoutNode layout, Path targetPath) {
+        try {
+            layout = expandIncludes(layout, targetPath);
+        } catch (LayoutParseException e) {
+            RenderError.Location location = new RenderError.Location(e.getLine(), e.getColumn(), e.getElementPath());
+            return new RenderResult.Error(new RenderError(e.getMessage(), e, RenderError.Reason.INVALID_DOCUMENT,
+                    RenderPhase.PARSE, location, null));
+        }
+
+        RenderError overBudget = checkBudget(layout, layout.size(), false);
+        if (overBudget != null) {
+            return new RenderResult.Error(overBudget);
+        }
+
+        try {
+            return new RenderResult.Success(build(layout, null, targetPath));
+        } catch (Exception | StackOverflowError e) {
+            return new RenderResult.Error(buildError(e));
+        }
+    }
+
+    /**
+     * Builds a detached subtree of a layout. The fragment is written to a
+     * short-lived file in the system temp directory, with relative resource
+     * references resolved against the target file's directory as they are
+     * for the whole document.
+     *
+     * @param fragment The subtree to build.
+     * @param targetPath The document's file path. Can be null.
+     * @return The result of the rendering operation.
+     */
+    public RenderResult renderFragment(LayoutNode fragment, Path targetPath) {
+        long start = tracer.begin();
+
+        try {
+            return new RenderResult.Success(build(fragment, null, targetPath));
+        } catch (Exception | StackOverflowError e) {
+            return new RenderResult.Error(buildError(e));
+        } finally {
+            // Fragments wrap a single element of the virtualized column
+            LayoutNode element = fragment.children().isEmpty() ? fragment : fragment.children().get(0);
+            tracer.end(RenderTracer.Category.BUILD, tracer.nameId(element.tag()), start, element.line());
+        }
+    }
+
+    /**
+     * Builds a layout with UILoader under the watchdog, serving its images
+     * from the image cache and sharing its fonts, colors and borders.
+     * Layouts that need rewriting, or have no source file, are written to a
+     * short-lived file in the system temp directory, with relative resource
+     * references resolved against the target file's directory.
+     *
+     * @param layout The layout to build.
+     * @param sourcePath A file holding the layout's text, or null.
+     * @param targetPath The document's file path. Can be null.
+     * @return The built tree.
+     */
+    private JComponent build(LayoutNode layout, Path sourcePath, Path targetPath) throws Exception {
+        Path directory = targetPath != null ? targetPath.toAbsolutePath().getParent() : Path.of("").toAbsolutePath();
+        ImageBinder images = imageCaching ? ImageBinder.prepare(layout, directory, imageCache) : null;
+        if (images == null && sourcePath != null) {
+            JComponent rootComponent = watchdog.build(() -> UILoader.load(sourcePath), renderTimeoutMillis);
+            attributeInterner.apply(rootComponent);
+            return rootComponent;
+        }
+
+        Path scratchPath = null;
+        try {
+            scratchPath = ScratchLayout.write(images != null ? images.getLayout() : layout, directory);
+
+            Path loadPath = scratchPath;
+            JComponent rootComponent = watchdog.build(() -> UILoader.load(loadPath), renderTimeoutMillis);
+            if (images != null) {
+                try {
+                    images.apply(rootComponent, renderTimeoutMillis);
+                } catch (Exception e) {
+                    componentPool.release(rootComponent);
+                    throw e;
+                }
+            }
+            attributeInterner.apply(rootComponent);
+            return rootComponent;
+        } finally {
+            deleteQuietly(scratchPath);
+        }
+    }
+
+    /**
+     * Identifies what a render builds: the layout's structure and attribute
+     * values, the directory relative resources are resolved against, and
+     * whether the layout is virtualized.
+     */
+    private static long fingerprint(LayoutNode layout, Path targetPath, boolean virtualized) {
+        Path directory = targetPath == null ? null : targetPath.toAbsolutePath().getParent();
+        long fingerprint = layout.fingerprint() * 31 + (directory == null ? 0 : directory.hashCode());
+        fingerprint = fingerprint * 31 + (virtualized ? 1 : 0);
+        return fingerprint != RenderResult.NO_FINGERPRINT ? fingerprint : 1;
+    }
+
+    /**
+     * Completes a failed render, attributing the error to the phase that was
+     * in progress.
+     */
+    private RenderResult failed(RenderError error, RenderTimings.Recorder timer, long renderStart,
+            long allocatedBefore) {
+        RenderPhase phase = timer.current();
+        RenderTimings timings = timer.finish();
+        tracer.recordRender(renderStart, timings);
+        recordRender(false, timings, allocatedBefore);
+        return new RenderResult.Error(error.withPhase(phase, timings));
+    }
+
+    /**
+     * Checks a layout against the element and depth budgets.
+     *
+     * @return The error to report, or null if the layout is within budget.
+     */
+    private RenderError checkBudget(LayoutNode layout, int size, boolean virtualized) {
+        RenderError tooDeep = checkDepth(layout.depth());
+        if (tooDeep != null) {
+            return tooDeep;
+        }
+        if (elementBudget > 0 && size > elementBudget && !virtualized) {
+            return new RenderError("Layout has " + size + " elements; the limit is " + elementBudget,
+                    null, RenderError.Reason.BUDGET_EXCEEDED);
+        }
+        return null;
+    }
+
+    /**
+     * Checks a layout's nesting depth against the depth budget.
+     *
+     * @return The error to report, or null if the depth is within budget.
+     */
+    private RenderError checkDepth(int depth) {
+        if (depthBudget > 0 && depth > depthBudget) {
+            return new RenderError("Layout is nested " + depth + " levels deep; the limit is " + depthBudget,
+                    null, RenderError.Reason.BUDGET_EXCEEDED);
+        }
+        return null;
+    }
+
+    /**
+     * Converts a failed build into the error reported to the user.
+     */
+    private RenderError buildError(Throwable e) {
+        return switch (e) {
+            case TimeoutException timeout -> new RenderError(
+                    "Render took longer than " + renderTimeoutMillis + " ms and was abandoned", timeout,
+                    RenderError.Reason.TIMEOUT);
+            case RenderWatchdog.SaturatedException saturated -> new RenderError(
+                    saturated.getMessage() + "; try again later", saturated, RenderError.Reason.WATCHDOG_SATURATED);
+            case InterruptedException interrupted -> {
+                Thread.currentThread().interrupt();
+                yield new RenderError("Render cancelled", interrupted);
+            }
+            case StackOverflowError overflow -> new RenderError("Layout is nested too deeply to build", null,
+                    RenderError.Reason.BUDGET_EXCEEDED);
+            case Exception exception -> new RenderError(exception.getMessage(), exception);
+            default -> new RenderError(e.toString(), null);
+        };
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // Ignore; the file is only a rendering scratch copy
+            }
+        }
+    }
+
+    private void recordRender(boolean success, RenderTimings timings, long allocatedBefore) {
+        long allocated = allocatedBefore < 0 ? -1 : RenderMetrics.currentThreadAllocatedBytes() - allocatedBefore;
+        metrics.recordRender(success, allocated);
+        metrics.recordTimings(timings);
+    }
+
+    private static class RenderThreadFactory implements ThreadFactory {
 
-            System.out.println("Data saved for rendering to file: " + savePath.toAbsolutePath());
+        private final AtomicInteger count = new AtomicInteger();
 
-            JComponent rootComponent = UILoader.load(savePath);
-            return new RenderResult.Success(rootComponent);
-        } catch (IOException e) {
-            return new RenderResult.Error(new RenderError(e.getMessage(), e));
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "sierra-render-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes layouts that UILoader has to build from a file, such as rewritten
+ * or decompiled ones, to short-lived files in the system temp directory.
+ * Relative resource references are first made absolute against the
+ * directory of the layout's document, so that they resolve as they would
+ * for the document itself, and nothing is written next to the user's files.
+ */
+final class ScratchLayout {
+
+    private ScratchLayout() {
+    }
+
+    /**
+     * Writes a layout to a new temporary file. The caller deletes the file
+     * once UILoader has read it.
+     *
+     * @param layout The layout.
+     * @param directory The directory relative references are resolved
+     * against.
+     * @return The file.
+     * @throws IOException If the file cannot be written.
+     */
+    static Path write(LayoutNode layout, Path directory) throws IOException {
+        Path scratchPath = Files.createTempFile("sierrapreview", ".xml");
+        try {
+            Files.writeString(scratchPath, LayoutWriter.toXml(resolve(layout, directory)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Files.deleteIfExists(scratchPath);
+            throw e;
+        }
+        return scratchPath;
+    }
+
+    /**
+     * Replaces relative resource references with absolute file URLs.
+     *
+     * @param node The layout.
+     * @param directory The directory relative references are resolved
+     * against.
+     * @return The layout, or the node itself if it has no relative
+     * references.
+     */
+    static LayoutNode resolve(LayoutNode node, Path directory) {
+        Map<String, String> attributes = null;
+        for (Map.Entry<String, String> attribute : node.attributes().entrySet()) {
+            if (!ImageBinder.IMAGE_ATTRIBUTES.contains(attribute.getKey())) {
+                continue;
+            }
+            String url = toUrl(directory, attribute.getValue());
+            if (url != null) {
+                if (attributes == null) {
+                    attributes = new LinkedHashMap<>(node.attributes());
+                }
+                attributes.put(attribute.getKey(), url);
+            }
+        }
+
+        List<LayoutNode> children = node.children();
+        List<LayoutNode> resolvedChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            LayoutNode child = resolve(children.get(i), directory);
+            if (child != children.get(i) && resolvedChildren == null) {
+                resolvedChildren = new ArrayList<>(children.subList(0, i));
+            }
+            if (resolvedChildren != null) {
+                resolvedChildren.add(child);
+            }
+        }
+
+        if (attributes == null && resolvedChildren == null) {
+            return node;
+        }
+        return new LayoutNode(node.tag(), attributes != null ? attributes : node.attributes(),
+                resolvedChildren != null ? resolvedChildren : children,
+                node.line(), node.column(), node.startOffset(), node.endOffset());
+    }
+
+    private static String toUrl(Path directory, String value) {
+        if (value == null || value.isBlank() || ImageBinder.URL_SCHEME.matcher(value).matches()) {
+            return null;
+        }
+        try {
+            return directory.resolve(value).normalize().toUri().toString();
+        } catch (InvalidPathException e) {
+            return null; // Left for UILoader to report
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.awt.Component;
+import java.awt.Container;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+
+/**
+ * Links the components of a preview tree to the source ranges of the
+ * elements they were built from, in both directions.
+ * <p>
+ * Element ranges nest, so they are flattened into disjoint segments, each
+ * owned by the innermost element that contains it. Components are mapped to
+ * their elements by identity.
+ * <p>
+ * The segment starts and the element ends are kept in two {@link OffsetTree}s
+ * that follow edits of the document: an edit shifts every offset after it
+ * and collapses the offsets inside removed text, which are range updates on
+ * the sorted offsets. Edits and lookups in both directions therefore take
+ * O(log n) however many edits were made since the preview was rendered.
+ * <p>
+ * A map is built by the engine for each non-virtualized render and attached
+ * to the root of the preview tree; see {@link #of(JComponent)}. Like the
+ * tree, it must only be used on the EDT once the render has been handed over.
+ */
+public class SourceMap {
+
+    /**
+     * A range of the document.
+     *
+     * @param start The offset of the first character.
+     * @param end The offset just past the last character.
+     */
+    public record Span(int start, int end) {
+    }
+
+    // Elements that could be paired with a component, in document order
+    private final Component[] components;
+    private final int[] startSegments; // The segment each element starts
+    private final int[] endIndexes; // Each element's end in the end offsets
+    private final Map<Component, Integer> elementIndexes = new IdentityHashMap<>();
+
+    // Segment i covers [start of i, start of i + 1) and belongs to element segmentElements[i], or none if -1
+    private final OffsetTree segmentStarts;
+    private final int[] segmentElements;
+    private final OffsetTree ends;
+
+    private SourceMap(List<Component> components, List<LayoutNode> nodes, int[] segmentStarts, int[] segmentElements) {
+        this.components = components.toArray(new Component[0]);
+        this.startSegments = new int[nodes.size()];
+        this.endIndexes = new int[nodes.size()];
+
+        int[] distinctEnds = nodes.stream().mapToInt(LayoutNode::endOffset).sorted().distinct().toArray();
+        for (int i = 0; i < nodes.size(); i++) {
+            startSegments[i] = Arrays.binarySearch(segmentStarts, nodes.get(i).startOffset());
+            endIndexes[i] = Arrays.binarySearch(distinctEnds, nodes.get(i).endOffset());
+            elementIndexes.put(this.components[i], i);
+        }
+        this.segmentStarts = new OffsetTree(segmentStarts);
+        this.segmentElements = segmentElements;
+        this.ends = new OffsetTree(distinctEnds);
+    }
+
+    // --- Building ---
+
+    /**
+     * Maps a preview tree to the layout it was built from. Elements are paired
+     * with components while a component's children correspond one to one
+     * with its element's children; elements below a component whose children
+     * do not correspond are attributed to that component.
+     *
+     * @param root The root of the preview tree.
+     * @param layout The parsed layout, with source offsets.
+     * @return The map, which is empty if the layout has no source offsets.
+     */
+    public static SourceMap build(JComponent root, LayoutNode layout) {
+        List<Component> components = new ArrayList<>();
+        List<LayoutNode> nodes = new ArrayList<>();
+        Segments segments = new Segments();
+        if (layout.startOffset() >= 0) {
+            visit(root, layout, components, nodes, segments);
+            segments.add(layout.endOffset(), -1);
+        }
+        return new SourceMap(components, nodes, Arrays.copyOf(segments.starts, segments.size),
+                Arrays.copyOf(segments.elements, segments.size));
+    }
+
+    private static void visit(Component component, LayoutNode node, List<Component> components,
+            List<LayoutNode> nodes, Segments segments) {
+        int index = nodes.size();
+        components.add(component);
+        nodes.add(node);
+        segments.add(node.startOffset(), index);
+
+        // Elements of an included fragment have no source and belong to the include element
+        Component[] children = children(component);
+        if (children.length != node.children().size()
+                || !node.children().isEmpty() && node.children().get(0).startOffset() < 0) {
+            return;
+        }
+        for (int i = 0; i < children.length; i++) {
+            LayoutNode child = node.children().get(i);
+            visit(children[i], child, components, nodes, segments);
+            segments.add(child.endOffset(), index); // Text between this child and the next
+        }
+    }
+
+    /**
+     * Gets the children Sierra added to a component, looking through the
+     * viewport of scroll panes.
+     */
+    private static Component[] children(Component component) {
+        if (component instanceof JScrollPane scrollPane) {
+            Component view = scrollPane.getViewport().getView();
+            return view != null ? new Component[] {view} : new Component[0];
+        }
+        return component instanceof Container container ? container.getComponents() : new Component[0];
+    }
+
+    /**
+     * Gets the map attached to a preview tree by the engine.
+     *
+     * @param root The root of the preview tree.
+     * @return The map, or null if none was recorded, e.g. for virtualized
+     * previews.
+     */
+    public static SourceMap of(JComponent root) {
+        return root.getClientProperty(SourceMap.class) instanceof SourceMap sourceMap ? sourceMap : null;
+    }
+
+    /**
+     * Attaches a map to the root of the tree it describes.
+     */
+    static void attach(JComponent root, SourceMap sourceMap) {
+        root.putClientProperty(SourceMap.class, sourceMap);
+    }
+
+    // --- Lookups ---
+
+    /**
+     * Gets the number of elements paired with a component.
+     *
+     * @return The element count.
+     */
+    public int size() {
+        return components.length;
+    }
+
+    /**
+     * Finds the component built from the innermost element containing an
+     * offset.
+     *
+     * @param offset An offset in the current document.
+     * @return The component, or null if the offset is outside the root
+     * element or the preview was built from other text.
+     */
+    public Component componentAt(int offset) {
+        // The last segment starting at or before the offset
+        int found = segmentStarts.firstAtLeast(offset + 1) - 1;
+        return found >= 0 && segmentElements[found] >= 0 ? components[segmentElements[found]] : null;
+    }
+
+    /**
+     * Finds the source of a component, or of its nearest ancestor that was
+     * built from an element.
+     *
+     * @param component A component of the preview tree.
+     * @return The element's range in the current document, or null if the
+     * component is not part of the tree.
+     */
+    public Span sourceOf(Component component) {
+        for (Component c = component; c != null; c = c.getParent()) {
+            Integer index = elementIndexes.get(c);
+            if (index != null) {
+                return new Span(segmentStarts.get(startSegments[index]), ends.get(endIndexes[index]));
+            }
+        }
+        return null;
+    }
+
+    // --- Edits ---
+
+    /**
+     * Records an edit of the document the preview was built from.
+     *
+     * @param offset The offset of the edit.
+     * @param length The number of characters inserted, or the negated number
+     * of characters removed.
+     */
+    public void edit(int offset, int length) {
+        if (length > 0) {
+            // Text inserted at an element's start belongs to the element before it, and not to one ending there
+            segmentStarts.insert(offset, length, true);
+            ends.insert(offset, length, false);
+        } else if (length < 0) {
+            segmentStarts.remove(offset, -length);
+            ends.remove(offset, -length);
+        }
+    }
+
+    /**
+     * A growable list of segments. A segment starting where the previous one
+     * does replaces it, so that an element owns the text from its own start.
+     */
+    private static class Segments {
+
+        int[] starts = new int[64];
+        int[] elements = new int[64];
+        int size = 0;
+
+        void add(int start, int element) {
+            if (size > 0 && starts[size - 1] == start) {
+                elements[size - 1] = element;
+                return;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                elements = Arrays.copyOf(elements, size * 2);
+            }
+            starts[size] = start;
+            elements[size] = element;
+            size++;
+        }
+    }
+
+    /**
+     * The current offsets of a sorted list of boundaries. Edits keep the
+     * offsets sorted: an insertion or removal shifts a suffix of them, and a
+     * removal moves those inside the removed text to its start. A segment
+     * tree applies both as lazy range updates, and since each node's largest
+     * offset is its last one, the first boundary at or after an offset is
+     * found by descending from the root.
+     */
+    static final class OffsetTree {
+
+        private static final int NONE = Integer.MIN_VALUE;
+
+        private final int size;
+        private final int[] last; // The last offset in each node's range
+        private final int[] shifts; // Shifts not yet applied to the node's children
+        private final int[] collapses; // An offset the node's children are all moved to, or NONE
+
+        OffsetTree(int[] offsets) {
+            size = offsets.length;
+            int nodes = Math.max(1, 4 * size);
+            last = new int[nodes];
+            shifts = new int[nodes];
+            collapses = new int[nodes];
+            Arrays.fill(collapses, NONE);
+            if (size > 0) {
+                build(1, 0, size - 1, offsets);
+            }
+        }
+
+        private void build(int node, int low, int high, int[] offsets) {
+            if (low == high) {
+                last[node] = offsets[low];
+                return;
+            }
+            int mid = (low + high) >>> 1;
+            build(2 * node, low, mid, offsets);
+            build(2 * node + 1, mid + 1, high, offsets);
+            last[node] = last[2 * node + 1];
+        }
+
+        /**
+         * Gets the current offset of a boundary.
+         */
+        int get(int index) {
+            int node = 1;
+            int low = 0;
+            int high = size - 1;
+            while (low != high) {
+                push(node);
+                int mid = (low + high) >>> 1;
+                if (index <= mid) {
+                    node = 2 * node;
+                    high = mid;
+                } else {
+                    node = 2 * node + 1;
+                    low = mid + 1;
+                }
+            }
+            return last[node];
+        }
+
+        /**
+         * Finds the first boundary at or after an offset.
+         *
+         * @return Its index, or the number of boundaries if there is none.
+         */
+        int firstAtLeast(int offset) {
+            if (size == 0 || last[1] < offset) {
+                return size;
+            }
+            int node = 1;
+            int low = 0;
+            int high = size - 1;
+            while (low != high) {
+                push(node);
+                int mid = (low + high) >>> 1;
+                if (last[2 * node] >= offset) {
+                    node = 2 * node;
+                    high = mid;
+                } else {
+                    node = 2 * node + 1;
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Moves the boundaries after inserted text.
+         *
+         * @param offset The offset of the insertion.
+         * @param length The number of characters inserted.
+         * @param moveAtOffset Whether boundaries at the offset itself move.
+         */
+        void insert(int offset, int length, boolean moveAtOffset) {
+            shift(firstAtLeast(moveAtOffset ? offset : offset + 1), length);
+        }
+
+        /**
+         * Moves the boundaries after removed text, and those inside it to its
+         * start.
+         *
+         * @param offset The offset of the removal.
+         * @param length The number of characters removed.
+         */
+        void remove(int offset, int length) {
+            int removedEnd = firstAtLeast(offset + length);
+            collapse(firstAtLeast(offset + 1), removedEnd, offset);
+            shift(removedEnd, -length);
+        }
+
+        /**
+         * Shifts the boundaries from an index on.
+         */
+        private void shift(int from, int delta) {
+            if (from < size) {
+                update(1, 0, size - 1, from, size - 1, NONE, delta);
+            }
+        }
+
+        /**
+         * Moves the boundaries in [from, to) to an offset.
+         */
+        private void collapse(int from, int to, int offset) {
+            if (from < to) {
+                update(1, 0, size - 1, from, to - 1, offset, 0);
+            }
+        }
+
+        private void update(int node, int low, int high, int from, int to, int collapse, int delta) {
+            if (from <= low && high <= to) {
+                apply(node, collapse, delta);
+                return;
+            }
+            push(node);
+            int mid = (low + high) >>> 1;
+            if (from <= mid) {
+                update(2 * node, low, mid, from, to, collapse, delta);
+            }
+            if (to > mid) {
+                update(2 * node + 1, mid + 1, high, from, to, collapse, delta);
+            }
+            last[node] = last[2 * node + 1];
+        }
+
+        private void apply(int node, int collapse, int delta) {
+            if (collapse != NONE) {
+                last[node] = collapse;
+                collapses[node] = collapse;
+                shifts[node] = 0;
+            } else if (collapses[node] != NONE) {
+                last[node] += delta;
+                collapses[node] += delta;
+            } else {
+                last[node] += delta;
+                shifts[node] += delta;
+            }
+        }
+
+        private void push(int node) {
+            if (collapses[node] != NONE) {
+                apply(2 * node, collapses[node], 0);
+                apply(2 * node + 1, collapses[node], 0);
+                collapses[node] = NONE;
+            } else if (shifts[node] != 0) {
+                apply(2 * node, NONE, shifts[node]);
+                apply(2 * node + 1, NONE, shifts[node]);
+                shifts[node] = 0;
+            }
+        }
+    }
+}
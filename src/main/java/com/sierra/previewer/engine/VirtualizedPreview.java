@@ -0,0 +1,371 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import com.sierra.previewer.model.RenderResult;
+import java.awt.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import javax.swing.*;
+
+/**
+ * A preview container for very large layouts. The children of the layout's
+ * main column are laid out as placeholder slots sized from a cheap estimate,
+ * and only the slots intersecting the viewport (plus one viewport of margin)
+ * are built, on the render executor, as the user scrolls. Slots scrolled far
+ * out of view are released again.
+ * <p>
+ * The main column is the first column-panel with more than one child found by
+ * descending through single-child wrappers from the root; its attributes are
+ * applied to each slot, while the attributes of the wrappers above it are not
+ * rendered.
+ */
+public class VirtualizedPreview extends JScrollPane {
+
+    private static final int ESTIMATED_ROW_HEIGHT = 28;
+    private static final int ESTIMATED_VIEW_HEIGHT = 120; // Tables, lists, trees and text areas
+    private static final int EVICTION_DISTANCE = 4; // In viewport heights
+    private static final int MAX_QUEUED_BUILDS = 8; // Leaves room in the render queue for the tab's own renders
+    private static final Set<String> VIEW_ELEMENTS = Set.of(
+            "table", "list", "tree", "text-area", "text-pane", "color-chooser");
+
+    private final RenderingEngine engine;
+    private final Path targetPath;
+    private final String columnTag;
+    private final Map<String, String> columnAttributes;
+    private final JPanel content = new ColumnView();
+    private final List<Slot> slots = new ArrayList<>();
+    private final Set<Slot> materialized = new LinkedHashSet<>();
+
+    private boolean displayed = false;
+    private boolean updateScheduled = false;
+    private int queuedBuilds = 0; // Fragment builds submitted and not yet attached
+
+    /**
+     * Creates the placeholder slots for a layout's main column. May be called
+     * off the EDT, like UILoader.
+     *
+     * @param engine The engine used to build visible slots.
+     * @param column The column whose children are virtualized.
+     * @param targetPath The document's file path. Can be null.
+     */
+    VirtualizedPreview(RenderingEngine engine, LayoutNode column, Path targetPath) {
+        this(engine, column.tag(), column.attributes(), targetPath);
+        append(column.children());
+    }
+
+    /**
+     * Creates an empty preview for a column whose children are appended as
+     * they are parsed.
+     *
+     * @param engine The engine used to build visible slots.
+     * @param tag The column's element name.
+     * @param attributes The column's attributes.
+     * @param targetPath The document's file path. Can be null.
+     */
+    VirtualizedPreview(RenderingEngine engine, String tag, Map<String, String> attributes, Path targetPath) {
+        this.engine = engine;
+        this.targetPath = targetPath;
+        this.columnTag = tag;
+        this.columnAttributes = new LinkedHashMap<>(attributes);
+        columnAttributes.remove("name");
+
+        setViewportView(content);
+        setBorder(null);
+        getVerticalScrollBar().setUnitIncrement(16);
+        getViewport().addChangeListener(e -> scheduleUpdate());
+    }
+
+    /**
+     * Adds placeholder slots for more children of the column. Must be called
+     * on the EDT once the preview is displayed.
+     *
+     * @param children The children to append.
+     */
+    void append(List<LayoutNode> children) {
+        for (LayoutNode child : children) {
+            LayoutNode fragment = new LayoutNode(columnTag, columnAttributes, List.of(child),
+                    child.line(), child.column(), child.startOffset(), child.endOffset());
+            Slot slot = new Slot(fragment, estimateHeight(child));
+            slots.add(slot);
+            content.add(slot);
+        }
+
+        if (displayed) {
+            content.revalidate();
+            scheduleUpdate();
+        }
+    }
+
+    /**
+     * Gets the number of children previewed.
+     *
+     * @return The slot count.
+     */
+    int getSlotCount() {
+        return slots.size();
+    }
+
+    /**
+     * Finds the column to virtualize, if the layout has one.
+     *
+     * @param root The layout's root element.
+     * @return The main column, or null if the layout cannot be virtualized.
+     */
+    static LayoutNode findVirtualColumn(LayoutNode root) {
+        LayoutNode node = root;
+        while (node.children().size() == 1) {
+            node = node.children().get(0);
+        }
+        return node.tag().equals("column-panel") && node.children().size() > 1 ? node : null;
+    }
+
+    /**
+     * Estimates the height of an element without building it.
+     */
+    static int estimateHeight(LayoutNode node) {
+        String size = node.attribute("size");
+        if (size != null && size.indexOf(',') > 0) {
+            try {
+                return Integer.parseInt(size.substring(size.indexOf(',') + 1).trim());
+            } catch (NumberFormatException e) {
+                // Fall through to the structural estimate
+            }
+        }
+
+        return switch (node.tag()) {
+            case "column-panel" -> {
+                int height = 0;
+                for (LayoutNode child : node.children()) {
+                    height += estimateHeight(child);
+                }
+                yield height;
+            }
+            case "row-panel", "stack-panel", "scroll-pane" -> {
+                int height = 0;
+                for (LayoutNode child : node.children()) {
+                    height = Math.max(height, estimateHeight(child));
+                }
+                yield height;
+            }
+            default -> VIEW_ELEMENTS.contains(node.tag()) ? ESTIMATED_VIEW_HEIGHT : ESTIMATED_ROW_HEIGHT;
+        };
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        displayed = true;
+        scheduleUpdate();
+    }
+
+    @Override
+    public void removeNotify() {
+        displayed = false;
+        super.removeNotify();
+    }
+
+    /**
+     * Coalesces viewport changes into a single update that runs once the
+     * pending layout has completed.
+     */
+    private void scheduleUpdate() {
+        if (!updateScheduled) {
+            updateScheduled = true;
+            SwingUtilities.invokeLater(() -> {
+                updateScheduled = false;
+                updateMaterialized();
+            });
+        }
+    }
+
+    private void updateMaterialized() {
+        Rectangle view = getViewport().getViewRect();
+        if (!displayed || view.height == 0) {
+            return;
+        }
+
+        int margin = view.height;
+        int top = view.y - margin;
+        int bottom = view.y + view.height + margin;
+
+        // Slots are stacked vertically, so the first visible one can be found by bisection
+        for (int i = firstSlotEndingAfter(top); i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            if (slot.getY() > bottom) {
+                break;
+            }
+            slot.materialize();
+        }
+
+        int evictTop = view.y - EVICTION_DISTANCE * margin;
+        int evictBottom = view.y + view.height + EVICTION_DISTANCE * margin;
+        for (Slot slot : new ArrayList<>(materialized)) {
+            if (slot.getY() + slot.getHeight() < evictTop || slot.getY() > evictBottom) {
+                slot.dematerialize();
+            }
+        }
+    }
+
+    private int firstSlotEndingAfter(int y) {
+        int low = 0;
+        int high = slots.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Slot slot = slots.get(mid);
+            if (slot.getY() + slot.getHeight() < y) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Stacks the slots vertically and tracks the viewport width.
+     */
+    private static class ColumnView extends JPanel implements Scrollable {
+
+        ColumnView() {
+            setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+        }
+
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            return getPreferredSize();
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return ESTIMATED_ROW_HEIGHT;
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return true;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            return false;
+        }
+    }
+
+    /**
+     * A placeholder for one child of the main column, replaced by the built
+     * fragment while it is near the viewport.
+     */
+    private class Slot extends JPanel {
+
+        private final LayoutNode fragment;
+        private int estimatedHeight;
+        private boolean requested = false;
+        private JComponent component = null;
+
+        Slot(LayoutNode fragment, int estimatedHeight) {
+            super(new BorderLayout());
+            this.fragment = fragment;
+            this.estimatedHeight = estimatedHeight;
+            setOpaque(false);
+            setAlignmentX(LEFT_ALIGNMENT);
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            return component != null ? super.getPreferredSize() : new Dimension(0, estimatedHeight);
+        }
+
+        @Override
+        public Dimension getMaximumSize() {
+            return new Dimension(Integer.MAX_VALUE, getPreferredSize().height);
+        }
+
+        void materialize() {
+            if (requested || queuedBuilds >= MAX_QUEUED_BUILDS) {
+                return; // Slots over the limit are requested when a build completes
+            }
+            requested = true;
+            materialized.add(this);
+
+            try {
+                CompletableFuture.supplyAsync(() -> engine.renderFragment(fragment, targetPath), engine.getRenderExecutor())
+                        .thenAccept(result -> SwingUtilities.invokeLater(() -> attach(result)));
+                queuedBuilds++;
+            } catch (RejectedExecutionException e) {
+                // The executor is saturated; the next viewport change retries
+                requested = false;
+                materialized.remove(this);
+            }
+        }
+
+        private void attach(RenderResult result) {
+            queuedBuilds--;
+            scheduleUpdate(); // Slots that were over the limit can be requested now
+
+            JComponent built = switch (result) {
+                case RenderResult.Success success -> success.component();
+                case RenderResult.Error error -> {
+                    JLabel label = engine.getComponentPool().acquire(JLabel.class, JLabel::new);
+                    label.setText("Error: " + error.details());
+                    yield label;
+                }
+                case RenderResult.Unchanged unchanged -> throw new IllegalStateException("Fragments are always built");
+            };
+
+            if (!requested || component != null || !displayed) {
+                // Dematerialized or superseded while the fragment was building
+                engine.getComponentPool().release(built);
+                if (requested && component == null) {
+                    // Hidden while building; the slot is requested again once the preview is shown
+                    requested = false;
+                    materialized.remove(this);
+                }
+                return;
+            }
+
+            component = built;
+            add(component, BorderLayout.CENTER);
+            revalidate();
+            repaint();
+        }
+
+        void dematerialize() {
+            materialized.remove(this);
+            requested = false;
+
+            if (component != null) {
+                // The real height is a better estimate for next time
+                estimatedHeight = getHeight();
+                JComponent discarded = component;
+                component = null;
+                engine.getComponentPool().release(discarded);
+                revalidate();
+            }
+        }
+    }
+}
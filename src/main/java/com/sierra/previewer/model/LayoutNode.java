@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable element of a parsed Sierra layout. Instances are shared
+ * between renders and documents through the parse cache.
+ *
+ * @param tag The element name, e.g. "column-panel".
+ * @param attributes The attributes in document order.
+ * @param children The child elements in document order.
+ * @param line The 1-based line of the start tag.
+ * @param column The 1-based column of the start tag.
+ * @param startOffset The character offset of the start tag's '&lt;'.
+ * @param endOffset The character offset just past the element's last '&gt;'.
+ * @param fingerprint A hash of the element's tag, attributes and children
+ * that ignores attribute order and source positions, so that subtrees that
+ * build identical components have equal fingerprints.
+ */
+public record LayoutNode(String tag, Map<String, String> attributes, List<LayoutNode> children,
+        int line, int column, int startOffset, int endOffset, long fingerprint) {
+
+    public LayoutNode {
+        attributes = Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+        children = List.copyOf(children);
+    }
+
+    /**
+     * Creates a node, computing its fingerprint from its children's. Building
+     * a tree bottom-up, as the parser does, therefore fingerprints it in a
+     * single pass.
+     */
+    public LayoutNode(String tag, Map<String, String> attributes, List<LayoutNode> children,
+            int line, int column, int startOffset, int endOffset) {
+        this(tag, attributes, children, line, column, startOffset, endOffset,
+                computeFingerprint(tag, attributes, children));
+    }
+
+    /**
+     * Hashes an element. Attributes are combined by addition, which does not
+     * depend on their order; children are combined in sequence, which does.
+     */
+    private static long computeFingerprint(String tag, Map<String, String> attributes, List<LayoutNode> children) {
+        long attributeHash = 0;
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            attributeHash += mix(hash(attribute.getKey()) * 31 + hash(attribute.getValue()));
+        }
+
+        long fingerprint = mix(hash(tag) ^ attributeHash);
+        for (LayoutNode child : children) {
+            fingerprint = mix(fingerprint * 31 + child.fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Hashes a string with 64-bit FNV-1a, since String.hashCode() collides
+     * too easily for whole documents.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Scrambles the bits of a hash (the SplitMix64 finalizer).
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Gets an attribute value.
+     *
+     * @param name The attribute name.
+     * @return The value, or null if the attribute is not present.
+     */
+    public String attribute(String name) {
+        return attributes.get(name);
+    }
+
+    /**
+     * Counts this node and all of its descendants.
+     *
+     * @return The number of elements in this subtree.
+     */
+    public int size() {
+        // Iterative, so that pathologically deep documents cannot overflow the stack
+        int size = 0;
+        Deque<LayoutNode> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            LayoutNode node = pending.pop();
+            size++;
+            for (LayoutNode child : node.children) {
+                pending.push(child);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Measures the nesting depth of this subtree.
+     *
+     * @return The number of elements on the longest path from this node to a
+     * leaf, including both.
+     */
+    public int depth() {
+        int depth = 0;
+        List<LayoutNode> level = List.of(this);
+        while (!level.isEmpty()) {
+            depth++;
+            List<LayoutNode> next = new ArrayList<>();
+            for (LayoutNode node : level) {
+                next.addAll(node.children);
+            }
+            level = next;
+        }
+        return depth;
+    }
+}
@@ -19,11 +19,72 @@ package com.sierra.previewer.model;
  *
  * @param message A user-friendly error message.
  * @param exception The underlying exception for debugging.
+ * @param reason Why the render failed.
+ * @param phase The phase that failed.
+ * @param location Where in the document the failure occurred, or null if
+ * unknown.
+ * @param timings The time spent in each phase before the failure.
  */
-public record RenderError(String message, Exception exception) {
+public record RenderError(String message, Exception exception, Reason reason,
+        RenderPhase phase, Location location, RenderTimings timings) {
+
+    /**
+     * The reason a render failed.
+     */
+    public enum Reason {
+        /** The document could not be read, written or built. */
+        FAILED,
+        /** The document is not well-formed. */
+        INVALID_DOCUMENT,
+        /** Building the document took longer than the render timeout. */
+        TIMEOUT,
+        /** The document has more elements, or deeper nesting, than allowed. */
+        BUDGET_EXCEEDED,
+        /** Too many timed out builds are still running to start another. */
+        WATCHDOG_SATURATED
+    }
+
+    /**
+     * A position in the rendered document.
+     *
+     * @param line The 1-based line, or -1 if unknown.
+     * @param column The 1-based column, or -1 if unknown.
+     * @param elementPath The path of the enclosing element, e.g.
+     * "/column-panel/row-panel[2]/label", or null if unknown.
+     */
+    public record Location(int line, int column, String elementPath) {
+    }
+
+    public RenderError {
+        if (phase == null) {
+            phase = RenderPhase.BUILD;
+        }
+        if (timings == null) {
+            timings = RenderTimings.NONE;
+        }
+    }
+
+    public RenderError(String message, Exception exception) {
+        this(message, exception, Reason.FAILED);
+    }
+
+    public RenderError(String message, Exception exception, Reason reason) {
+        this(message, exception, reason, RenderPhase.BUILD, null, RenderTimings.NONE);
+    }
+
+    /**
+     * Returns a copy of this error with the given phase and timings.
+     *
+     * @param phase The phase that failed.
+     * @param timings The time spent in each phase.
+     * @return The updated error.
+     */
+    public RenderError withPhase(RenderPhase phase, RenderTimings timings) {
+        return new RenderError(message, exception, reason, phase, location, timings);
+    }
 
     @Override
     public String toString() {
-        return message;
+        return location != null && location.line() > 0 ? "Line " + location.line() + ": " + message : message;
     }
 }
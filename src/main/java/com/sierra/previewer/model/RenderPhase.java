@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.model;
+
+/**
+ * The phases of a render, in the order they run.
+ */
+public enum RenderPhase {
+    /** Writing the document to the file UILoader reads. */
+    IO,
+    /** Parsing the document and checking it against the render budgets. */
+    PARSE,
+    /** Building the component tree. */
+    BUILD,
+    /** Laying out the tree off screen. */
+    LAYOUT
+}
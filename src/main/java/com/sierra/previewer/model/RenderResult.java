@@ -17,15 +17,46 @@ import javax.swing.JComponent;
 
 /**
  * A sealed interface representing the outcome of the rendering process.
- * It will be either a Success or an Error.
+ * It will be a Success, an Error, or Unchanged if the document would build
+ * the preview that is already displayed.
  */
 public sealed interface RenderResult {
+
+    /**
+     * The fingerprint of a render whose output cannot be compared, e.g. a
+     * streamed one.
+     */
+    long NO_FINGERPRINT = 0;
+
     /**
      * Represents a successful render.
      *
      * @param component The root JComponent to display.
+     * @param timings The time spent in each phase.
+     * @param fingerprint Identifies the layout and resources the component
+     * was built from, or {@link #NO_FINGERPRINT}.
+     */
+    record Success(JComponent component, RenderTimings timings, long fingerprint) implements RenderResult {
+
+        public Success(JComponent component, RenderTimings timings) {
+            this(component, timings, NO_FINGERPRINT);
+        }
+
+        public Success(JComponent component) {
+            this(component, RenderTimings.NONE);
+        }
+    }
+
+    /**
+     * Represents a render that was skipped because its layout has the
+     * fingerprint of the displayed preview. Only the formatting of the text,
+     * such as whitespace, comments or attribute order, has changed.
+     *
+     * @param layout The parsed layout, whose source positions match the new
+     * text.
+     * @param timings The time spent in each phase.
      */
-    record Success(JComponent component) implements RenderResult {}
+    record Unchanged(LayoutNode layout, RenderTimings timings) implements RenderResult {}
 
     /**
      * Represents a failed render.
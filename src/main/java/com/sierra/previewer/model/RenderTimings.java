@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.model;
+
+import java.util.Arrays;
+
+/**
+ * The time spent in each phase of a render. Phases that did not run have a
+ * duration of zero.
+ */
+public final class RenderTimings {
+
+    /**
+     * Timings for a render that did no measurable work.
+     */
+    public static final RenderTimings NONE = new RenderTimings(new long[RenderPhase.values().length]);
+
+    private final long[] nanos;
+
+    private RenderTimings(long[] nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * Gets the time spent in a phase.
+     *
+     * @param phase The phase.
+     * @return The duration in nanoseconds.
+     */
+    public long getNanos(RenderPhase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public double getMillis(RenderPhase phase) {
+        return getNanos(phase) / 1e6;
+    }
+
+    /**
+     * Gets the time spent in all phases.
+     *
+     * @return The total duration in nanoseconds.
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long phaseNanos : nanos) {
+            total += phaseNanos;
+        }
+        return total;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof RenderTimings timings && Arrays.equals(nanos, timings.nanos);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(nanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (RenderPhase phase : RenderPhase.values()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(phase.name().toLowerCase()).append(' ')
+                    .append(String.format("%.1f ms", getMillis(phase)));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Measures consecutive phases of one render. Not thread-safe.
+     */
+    public static class Recorder {
+
+        private final long[] nanos = new long[RenderPhase.values().length];
+        private RenderPhase phase = null;
+        private long phaseStart;
+
+        /**
+         * Ends the current phase, if any, and starts the given one.
+         *
+         * @param next The phase that is starting.
+         */
+        public void begin(RenderPhase next) {
+            long now = System.nanoTime();
+            if (phase != null) {
+                nanos[phase.ordinal()] += now - phaseStart;
+            }
+            phase = next;
+            phaseStart = now;
+        }
+
+        /**
+         * Gets the phase in progress.
+         *
+         * @return The current phase, or null if none has begun or the
+         * recorder has finished.
+         */
+        public RenderPhase current() {
+            return phase;
+        }
+
+        /**
+         * Ends the current phase.
+         *
+         * @return The timings recorded so far.
+         */
+        public RenderTimings finish() {
+            if (phase != null) {
+                nanos[phase.ordinal()] += System.nanoTime() - phaseStart;
+                phase = null;
+            }
+            return new RenderTimings(nanos.clone());
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.server;
+
+import com.sierra.previewer.engine.Json;
+import com.sierra.previewer.engine.LayoutParseException;
+import com.sierra.previewer.engine.LayoutParser;
+import com.sierra.previewer.engine.OffscreenLayout;
+import com.sierra.previewer.engine.RenderMetrics;
+import com.sierra.previewer.engine.RenderingEngine;
+import com.sierra.previewer.model.RenderError;
+import com.sierra.previewer.model.RenderPhase;
+import com.sierra.previewer.model.RenderResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.imageio.ImageIO;
+import javax.swing.AbstractButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.text.JTextComponent;
+
+/**
+ * A headless HTTP server that renders Sierra XML on request. Connections are
+ * handled on virtual threads; rendering runs on the engine's bounded render
+ * executor, which provides the queue and back-pressure.
+ * <ul>
+ * <li>POST /render?format=png|json&amp;width=W&amp;height=H - renders the XML
+ * request body as a PNG image or as the component tree in JSON.</li>
+ * <li>POST /validate - checks the XML request body is well-formed.</li>
+ * <li>GET /metrics - engine and server counters in Prometheus format.</li>
+ * </ul>
+ * Invalid and over-budget documents are answered with 422 and a JSON error, a
+ * full render queue with 429, renders exceeding the timeout with 504, and
+ * renders refused by the engine's watchdog with 503.
+ * <p>
+ * Rendered layouts can read any local file through their image, icon and
+ * include references, so the server only listens on the loopback interface
+ * unless another address is given explicitly.
+ */
+public class RenderServer {
+
+    private static final int MAX_REQUEST_BYTES = 10 * 1024 * 1024;
+    private static final int DEFAULT_WIDTH = 800;
+    private static final int DEFAULT_HEIGHT = 600;
+    private static final int MAX_DIMENSION = 4096;
+
+    private static final String WARM_UP_LAYOUT = """
+            <column-panel>
+                <label text="Warm-up"/>
+                <button text="OK"/>
+            </column-panel>
+            """;
+
+    private final RenderingEngine engine;
+    private final Duration timeout;
+    private final HttpServer server;
+    private final ExecutorService connectionExecutor;
+
+    // --- Server Counters ---
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder requestNanos = new LongAdder();
+
+    /**
+     * Creates a server bound to the given port on the loopback interface.
+     * The server does not accept requests until {@link #start()} is called.
+     *
+     * @param port The TCP port, or 0 for an ephemeral port.
+     * @param engine The engine shared by all requests.
+     * @param timeout The maximum time a request may wait for its render.
+     * @throws IOException If the port cannot be bound.
+     */
+    public RenderServer(int port, RenderingEngine engine, Duration timeout) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, engine, timeout);
+    }
+
+    /**
+     * Creates a server bound to the given address and port. The server does
+     * not accept requests until {@link #start()} is called.
+     *
+     * @param address The address to listen on, e.g. the wildcard address to
+     * accept connections from other hosts.
+     * @param port The TCP port, or 0 for an ephemeral port.
+     * @param engine The engine shared by all requests.
+     * @param timeout The maximum time a request may wait for its render.
+     * @throws IOException If the port cannot be bound.
+     */
+    public RenderServer(InetAddress address, int port, RenderingEngine engine, Duration timeout) throws IOException {
+        this.engine = engine;
+        this.timeout = timeout;
+
+        this.connectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.setExecutor(connectionExecutor);
+        server.createContext("/render", this::handleRender);
+        server.createContext("/validate", this::handleValidate);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Warms up the rendering engine and starts accepting requests.
+     */
+    public void start() {
+        // The first render pays for class loading and look-and-feel initialization
+        engine.render(WARM_UP_LAYOUT, null);
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waiting up to the given delay for open
+     * exchanges to finish.
+     *
+     * @param delaySeconds The maximum time to wait, in seconds.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        connectionExecutor.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    // --- Handlers ---
+    private void handleRender(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, new Response(405, "text/plain", "POST required"));
+                return;
+            }
+
+            String xmlText = readBody(exchange);
+            if (xmlText == null) {
+                send(exchange, new Response(413, "text/plain", "Request body too large"));
+                return;
+            }
+
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String format = query.getOrDefault("format", "png");
+            if (!format.equals("png") && !format.equals("json")) {
+                send(exchange, new Response(400, "text/plain", "Unsupported format: " + format));
+                return;
+            }
+            Dimension size = new Dimension(
+                    dimension(query.get("width"), DEFAULT_WIDTH),
+                    dimension(query.get("height"), DEFAULT_HEIGHT));
+
+            Future<Response> future;
+            try {
+                future = engine.getRenderExecutor().submit(() -> render(xmlText, format, size));
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, new Response(429, "text/plain", "Render queue full"));
+                return;
+            }
+
+            Response response;
+            try {
+                response = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                timedOut.increment();
+                response = new Response(504, "text/plain", "Render timed out");
+            } catch (ExecutionException e) {
+                failed.increment();
+                response = error(500, String.valueOf(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.increment();
+                response = new Response(503, "text/plain", "Server shutting down");
+            }
+            send(exchange, response);
+        } finally {
+            requestNanos.add(System.nanoTime() - start);
+            exchange.close();
+        }
+    }
+
+    private void handleValidate(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, new Response(405, "text/plain", "POST required"));
+                return;
+            }
+
+            String xmlText = readBody(exchange);
+            if (xmlText == null) {
+                send(exchange, new Response(413, "text/plain", "Request body too large"));
+                return;
+            }
+
+            try {
+                // Validated documents are not rendered, so they are kept out of the shared parse cache
+                new LayoutParser().parse(xmlText);
+                send(exchange, new Response(200, "application/json", "{\"valid\":true}"));
+            } catch (LayoutParseException e) {
+                StringBuilder json = new StringBuilder("{\"valid\":false,\"error\":");
+                Json.quote(e.getMessage(), json)
+                        .append(",\"line\":").append(e.getLine())
+                        .append(",\"column\":").append(e.getColumn()).append('}');
+                send(exchange, new Response(422, "application/json", json.toString()));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder output = new StringBuilder();
+            engine.getMetrics().writePrometheus(output);
+            RenderMetrics.writeMetric(output, "sierra_http_renders_succeeded_total", "counter", "Render requests answered with 200.", succeeded.sum());
+            RenderMetrics.writeMetric(output, "sierra_http_renders_invalid_total", "counter", "Render requests answered with 422.", invalid.sum());
+            RenderMetrics.writeMetric(output, "sierra_http_renders_rejected_total", "counter", "Render requests answered with 429 or 503.", rejected.sum());
+            RenderMetrics.writeMetric(output, "sierra_http_renders_timed_out_total", "counter", "Render requests answered with 504.", timedOut.sum());
+            RenderMetrics.writeMetric(output, "sierra_http_renders_failed_total", "counter", "Render requests answered with 500.", failed.sum());
+            RenderMetrics.writeMetric(output, "sierra_http_render_seconds_total", "counter", "Total time spent handling render requests.", requestNanos.sum() / 1e9);
+            RenderMetrics.writeMetric(output, "sierra_interned_attributes_total", "counter", "Fonts, colors and borders replaced by a shared instance.", engine.getAttributeInterner().getSharedCount());
+            RenderMetrics.writeMetric(output, "sierra_render_queue_depth", "gauge", "Renders waiting for a render thread.", engine.getQueuedRenderCount());
+
+            send(exchange, new Response(200, "text/plain; version=0.0.4", output.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // --- Rendering ---
+    /**
+     * Renders a document in the requested format. Runs on a render thread.
+     */
+    private Response render(String xmlText, String format, Dimension size) throws IOException {
+        RenderResult result = engine.render(xmlText, null);
+
+        if (result instanceof RenderResult.Error error) {
+            RenderError details = error.details();
+            return switch (details.reason()) {
+                case TIMEOUT -> {
+                    timedOut.increment();
+                    yield error(504, details);
+                }
+                case WATCHDOG_SATURATED -> {
+                    rejected.increment();
+                    yield error(503, details);
+                }
+                default -> {
+                    invalid.increment();
+                    yield error(422, details);
+                }
+            };
+        }
+
+        JComponent component = ((RenderResult.Success) result).component();
+        try {
+            OffscreenLayout.layout(component, size);
+
+            Response response;
+            if (format.equals("json")) {
+                StringBuilder json = new StringBuilder();
+                writeComponent(component, json);
+                response = new Response(200, "application/json", json.toString());
+            } else {
+                BufferedImage image = OffscreenLayout.paint(component);
+                if (image == null) {
+                    failed.increment();
+                    return error(500, "The preview could not be painted");
+                }
+                ByteArrayOutputStream png = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", png);
+                response = new Response(200, "image/png", png.toByteArray());
+            }
+
+            succeeded.increment();
+            return response;
+        } finally {
+            // The tree is never displayed, so it can go back to the pool on this thread
+            engine.getComponentPool().release(component);
+        }
+    }
+
+    /**
+     * Writes a component and its descendants as JSON.
+     */
+    private static void writeComponent(Component component, StringBuilder json) {
+        json.append("{\"type\":");
+        Json.quote(component.getClass().getSimpleName(), json);
+        json.append(",\"name\":");
+        Json.quote(component.getName(), json);
+
+        String text = switch (component) {
+            case JLabel label -> label.getText();
+            case AbstractButton button -> button.getText();
+            case JTextComponent textComponent -> textComponent.getText();
+            default -> null;
+        };
+        if (text != null) {
+            json.append(",\"text\":");
+            Json.quote(text, json);
+        }
+
+        json.append(",\"bounds\":[").append(component.getX()).append(',').append(component.getY())
+                .append(',').append(component.getWidth()).append(',').append(component.getHeight()).append(']');
+
+        if (component instanceof Container container && container.getComponentCount() > 0) {
+            json.append(",\"children\":[");
+            Component[] children = container.getComponents();
+            for (int i = 0; i < children.length; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                writeComponent(children[i], json);
+            }
+            json.append(']');
+        }
+        json.append('}');
+    }
+
+    // --- HTTP Helpers ---
+    private record Response(int status, String contentType, byte[] body) {
+
+        Response(int status, String contentType, String body) {
+            this(status, contentType, body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Response error(int status, String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.quote(message, json).append('}');
+        return new Response(status, "application/json", json.toString());
+    }
+
+    private static Response error(int status, RenderError details) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.quote(details.message(), json).append(",\"reason\":");
+        Json.quote(details.reason().name(), json).append(",\"phase\":");
+        Json.quote(details.phase().name(), json);
+
+        RenderError.Location location = details.location();
+        if (location != null) {
+            json.append(",\"line\":").append(location.line())
+                    .append(",\"column\":").append(location.column())
+                    .append(",\"elementPath\":");
+            Json.quote(location.elementPath(), json);
+        }
+
+        json.append(",\"timings\":{");
+        for (RenderPhase phase : RenderPhase.values()) {
+            if (phase.ordinal() > 0) {
+                json.append(',');
+            }
+            Json.quote(phase.name(), json).append(':').append(details.timings().getMillis(phase));
+        }
+        json.append("}}");
+        return new Response(status, "application/json", json.toString());
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", response.contentType());
+        exchange.sendResponseHeaders(response.status(), response.body().length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response.body());
+        }
+    }
+
+    /**
+     * Reads the request body as UTF-8 text.
+     *
+     * @return The body, or null if it exceeds the size limit.
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] body = input.readNBytes(MAX_REQUEST_BYTES + 1);
+            return body.length > MAX_REQUEST_BYTES ? null : new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int index = parameter.indexOf('=');
+                if (index > 0) {
+                    query.put(URLDecoder.decode(parameter.substring(0, index), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(index + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static int dimension(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Math.min(MAX_DIMENSION, Integer.parseInt(value)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
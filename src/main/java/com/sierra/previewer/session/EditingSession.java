@@ -0,0 +1,204 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.session;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A recorded editing session: the text a document started with and every
+ * edit made to it, with the time it was made. Sessions are captured by
+ * {@link SessionRecorder} and replayed by {@link SessionReplay}.
+ * <p>
+ * Sessions are saved in a compact binary format:
+ * <pre>
+ * int magic, int version, then deflated:
+ * string initialText, varint editCount,
+ * (varint deltaMicros, varint offset, varint removed, string inserted)[editCount]
+ * </pre>
+ * where a string is a varint byte length followed by UTF-8 bytes, and each
+ * edit's time is stored as the microseconds since the previous edit.
+ *
+ * @param initialText The document text when recording started.
+ * @param edits The edits in the order they were made.
+ */
+public record EditingSession(String initialText, List<Edit> edits) {
+
+    private static final int MAGIC = 0x53584553; // "SXES"
+    private static final int VERSION = 1;
+
+    /**
+     * One document change. A replacement is recorded as a removal followed
+     * by an insertion, as the document reports it.
+     *
+     * @param timeNanos The time since recording started.
+     * @param offset The offset of the change.
+     * @param removed The number of characters removed at the offset.
+     * @param inserted The text inserted at the offset.
+     */
+    public record Edit(long timeNanos, int offset, int removed, String inserted) {
+    }
+
+    public EditingSession {
+        edits = List.copyOf(edits);
+    }
+
+    /**
+     * Gets the time of the last edit.
+     *
+     * @return The duration of the session in nanoseconds.
+     */
+    public long getDurationNanos() {
+        return edits.isEmpty() ? 0 : edits.get(edits.size() - 1).timeNanos();
+    }
+
+    /**
+     * Applies every edit to the initial text.
+     *
+     * @return The document text at the end of the session.
+     */
+    public String getFinalText() {
+        StringBuilder text = new StringBuilder(initialText);
+        for (Edit edit : edits) {
+            text.replace(edit.offset(), edit.offset() + edit.removed(), edit.inserted());
+        }
+        return text.toString();
+    }
+
+    // --- Serialization ---
+
+    /**
+     * Encodes the session in the binary format.
+     *
+     * @return The encoded session.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+
+            try (DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+                writeString(output, initialText);
+                writeVarint(output, edits.size());
+                long previousMicros = 0;
+                for (Edit edit : edits) {
+                    long micros = edit.timeNanos() / 1000;
+                    writeVarint(output, micros - previousMicros);
+                    writeVarint(output, edit.offset());
+                    writeVarint(output, edit.removed());
+                    writeString(output, edit.inserted());
+                    previousMicros = micros;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // ByteArrayOutputStream does not fail
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a session in the binary format.
+     *
+     * @param input The encoded session.
+     * @return The session.
+     * @throws IOException If the input cannot be read or is not a session.
+     */
+    public static EditingSession read(InputStream input) throws IOException {
+        DataInputStream header = new DataInputStream(input);
+        if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+            throw new IOException("Not an editing session.");
+        }
+
+        DataInputStream data = new DataInputStream(new InflaterInputStream(input));
+        String initialText = readString(data);
+        int count = (int) readVarint(data);
+        List<Edit> edits = new ArrayList<>(count);
+        long micros = 0;
+        for (int i = 0; i < count; i++) {
+            micros += readVarint(data);
+            int offset = (int) readVarint(data);
+            int removed = (int) readVarint(data);
+            edits.add(new Edit(micros * 1000, offset, removed, readString(data)));
+        }
+        return new EditingSession(initialText, edits);
+    }
+
+    /**
+     * Saves the session.
+     *
+     * @param path The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        Files.write(path, toBytes());
+    }
+
+    /**
+     * Loads a saved session.
+     *
+     * @param path The file to read.
+     * @return The session.
+     * @throws IOException If the file cannot be read or is not a session.
+     */
+    public static EditingSession read(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(path)) {
+            return read(input);
+        }
+    }
+
+    private static void writeVarint(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            output.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static void writeString(OutputStream output, String string) throws IOException {
+        byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(output, encoded.length);
+        output.write(encoded);
+    }
+
+    private static long readVarint(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] encoded = new byte[(int) readVarint(input)];
+        input.readFully(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+}
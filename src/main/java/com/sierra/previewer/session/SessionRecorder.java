@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Records the edits made to a document as an {@link EditingSession}. The
+ * recorder listens on the EDT like the editor's other listeners and only
+ * copies the inserted text, so recording does not slow typing down.
+ */
+public class SessionRecorder implements DocumentListener {
+
+    private final Document document;
+    private final String initialText;
+    private final long startNanos = System.nanoTime();
+    private final List<EditingSession.Edit> edits = new ArrayList<>();
+    private boolean recording = true;
+
+    /**
+     * Starts recording a document's edits.
+     *
+     * @param document The document, whose current text becomes the
+     * session's initial text.
+     */
+    public SessionRecorder(Document document) {
+        this.document = document;
+        this.initialText = read(document, 0, document.getLength());
+        document.addDocumentListener(this);
+    }
+
+    /**
+     * Stops recording.
+     *
+     * @return The recorded session.
+     */
+    public EditingSession stop() {
+        if (recording) {
+            document.removeDocumentListener(this);
+            recording = false;
+        }
+        return new EditingSession(initialText, edits);
+    }
+
+    public int getEditCount() {
+        return edits.size();
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        edits.add(new EditingSession.Edit(System.nanoTime() - startNanos, e.getOffset(), 0,
+                read(document, e.getOffset(), e.getLength())));
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        edits.add(new EditingSession.Edit(System.nanoTime() - startNanos, e.getOffset(), e.getLength(), ""));
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // Attribute changes, e.g. from syntax highlighting, are not edits
+    }
+
+    private static String read(Document document, int offset, int length) {
+        try {
+            return document.getText(offset, length);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e); // The range comes from the document itself
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.session;
+
+import com.sierra.previewer.DocumentTab;
+import com.sierra.previewer.engine.OffscreenLayout;
+import com.sierra.previewer.engine.RenderMetrics;
+import com.sierra.previewer.engine.RenderingEngine;
+import com.sierra.previewer.model.RenderResult;
+import java.awt.Dimension;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Replays a recorded {@link EditingSession} through a {@link DocumentTab},
+ * so that the debounce timer, render workers and preview swaps interact as
+ * they do while the user types. Edits are posted to the EDT at their
+ * recorded times, optionally accelerated, and each edit's time until a
+ * render that includes it is displayed is measured.
+ * <p>
+ * The tab is never shown, so replays can run headless, e.g. to compare
+ * changes to the rendering pipeline on the same workload.
+ */
+public class SessionReplay {
+
+    private static final Dimension TAB_SIZE = new Dimension(1200, 800);
+    private static final long SETTLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long POLL_MILLIS = 5;
+
+    /**
+     * The distribution of a set of durations.
+     *
+     * @param count The number of samples.
+     * @param p50Millis The median.
+     * @param p95Millis The 95th percentile.
+     * @param p99Millis The 99th percentile.
+     * @param maxMillis The longest duration.
+     */
+    public record Distribution(int count, double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+
+        /**
+         * Summarizes durations.
+         *
+         * @param nanos The durations in nanoseconds; sorted in place.
+         * @return The distribution.
+         */
+        public static Distribution of(long[] nanos) {
+            if (nanos.length == 0) {
+                return new Distribution(0, 0, 0, 0, 0);
+            }
+            Arrays.sort(nanos);
+            return new Distribution(nanos.length, percentile(nanos, 0.5), percentile(nanos, 0.95),
+                    percentile(nanos, 0.99), nanos[nanos.length - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double fraction) {
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms (%,d samples)",
+                    p50Millis, p95Millis, p99Millis, maxMillis, count);
+        }
+    }
+
+    /**
+     * The measurements of one replay.
+     *
+     * @param edits The number of edits replayed.
+     * @param renders The number of renders submitted.
+     * @param displayed The number of renders whose result was displayed.
+     * @param dropped The number of renders cancelled or superseded before
+     * their result was displayed.
+     * @param failed The number of displayed renders that produced an error.
+     * @param skipped The number of renders skipped because the preview was
+     * unchanged.
+     * @param latency The time from each edit until a render including it was
+     * displayed.
+     * @param dispatchLag How late each edit was applied on the EDT, i.e. how
+     * long the EDT was busy with other work when it was due.
+     * @param editBlocking The time the EDT spent applying each edit,
+     * including the editor's listeners.
+     * @param swapBlocking The time the EDT spent swapping each new preview in.
+     */
+    public record Report(int edits, int renders, int displayed, int dropped, int failed, long skipped,
+            Distribution latency, Distribution dispatchLag, Distribution editBlocking, Distribution swapBlocking) {
+
+        /**
+         * Prints the report in a readable form.
+         *
+         * @param output The stream to print to.
+         */
+        public void print(PrintStream output) {
+            output.printf("Edits:    %,d%n", edits);
+            output.printf("Renders:  %,d submitted, %,d displayed (%,d failed, %,d unchanged), %,d dropped%n",
+                    renders, displayed, failed, skipped, dropped);
+            output.println("Edit to preview:   " + latency);
+            output.println("EDT dispatch lag:  " + dispatchLag);
+            output.println("EDT edit blocking: " + editBlocking);
+            output.println("EDT swap blocking: " + swapBlocking);
+        }
+    }
+
+    private final RenderingEngine engine;
+
+    /**
+     * Creates a replay harness.
+     *
+     * @param engine The engine to render with. An engine of its own keeps
+     * other work out of the measurements.
+     */
+    public SessionReplay(RenderingEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Replays a session and waits until the preview includes its last edit.
+     * Must not be called on the EDT.
+     *
+     * @param session The session.
+     * @param speed How much faster than recorded to replay, e.g. 1 for the
+     * recorded speed, or 0 to post every edit as soon as possible.
+     * @return The measurements.
+     * @throws TimeoutException If the preview did not catch up with the
+     * edits within a minute.
+     * @throws InterruptedException If the calling thread was interrupted.
+     */
+    public Report replay(EditingSession session, double speed) throws TimeoutException, InterruptedException {
+        if (SwingUtilities.isEventDispatchThread()) {
+            throw new IllegalStateException("Sessions cannot be replayed on the EDT.");
+        }
+
+        Recorder recorder = new Recorder(session.edits().size());
+        DocumentTab[] tab = new DocumentTab[1];
+        onEdt(() -> {
+            tab[0] = new DocumentTab(engine, documentTab -> {
+            });
+            tab[0].setSize(TAB_SIZE);
+            OffscreenLayout.layout(tab[0], TAB_SIZE);
+            tab[0].setRenderListener(recorder);
+            tab[0].setContent(session.initialText(), null);
+            tab[0].setActive(true);
+        });
+
+        try {
+            // The initial render is not measured
+            awaitDisplayed(recorder, 0);
+            onEdt(recorder::reset);
+
+            Document document = tab[0].getEditorPane().getDocument();
+            long startNanos = System.nanoTime();
+            int index = 0;
+            for (EditingSession.Edit edit : session.edits()) {
+                long dueNanos = speed > 0 ? startNanos + (long) (edit.timeNanos() / speed) : System.nanoTime();
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                int editIndex = index++;
+                SwingUtilities.invokeLater(() -> recorder.apply(document, tab[0], edit, editIndex, dueNanos));
+            }
+
+            awaitDisplayed(recorder, session.edits().size());
+            Report[] report = new Report[1];
+            onEdt(() -> report[0] = recorder.report());
+            return report[0];
+        } finally {
+            SwingUtilities.invokeLater(tab[0]::dispose);
+        }
+    }
+
+    /**
+     * Waits until a displayed render includes a number of edits.
+     */
+    private static void awaitDisplayed(Recorder recorder, int edits) throws TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + SETTLE_TIMEOUT_NANOS;
+        while (!recorder.isDisplayed(edits)) {
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("The preview did not catch up with the session's edits.");
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    private static void onEdt(Runnable runnable) throws InterruptedException {
+        try {
+            SwingUtilities.invokeAndWait(runnable);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Applies edits and follows the tab's renders. Only used on the EDT,
+     * apart from the volatile progress flag.
+     */
+    private class Recorder implements DocumentTab.RenderListener {
+
+        private final long[] dueNanos;
+        private final long[] latencyNanos;
+        private final long[] lagNanos;
+        private final long[] applyNanos;
+        private final Map<Integer, Integer> startedRenders = new HashMap<>(); // Generation to edits included
+        private long[] swapNanos = new long[16];
+        private int swapCount = 0;
+
+        private int applied = 0;
+        private int covered = 0; // Edits included in a displayed render
+        private volatile int displayedEdits = -1;
+        private int renders = 0;
+        private int displayed = 0;
+        private int dropped = 0;
+        private int failed = 0;
+        private long skippedBefore = 0;
+
+        Recorder(int edits) {
+            dueNanos = new long[edits];
+            latencyNanos = new long[edits];
+            lagNanos = new long[edits];
+            applyNanos = new long[edits];
+        }
+
+        boolean isDisplayed(int edits) {
+            return displayedEdits >= edits;
+        }
+
+        void reset() {
+            renders = 0;
+            displayed = 0;
+            dropped = 0;
+            failed = 0;
+            swapCount = 0;
+            skippedBefore = engine.getMetrics().getSkippedRenderCount();
+        }
+
+        void apply(Document document, DocumentTab tab, EditingSession.Edit edit, int index, long due) {
+            long start = System.nanoTime();
+            dueNanos[index] = due;
+            lagNanos[index] = Math.max(0, start - due);
+            try {
+                if (edit.removed() > 0) {
+                    document.remove(edit.offset(), edit.removed());
+                }
+                if (!edit.inserted().isEmpty()) {
+                    document.insertString(edit.offset(), edit.inserted(), null);
+                }
+                // As if typed, so that caret listeners run too
+                tab.getEditorPane().setCaretPosition(edit.offset() + edit.inserted().length());
+            } catch (BadLocationException e) {
+                throw new IllegalStateException("The session does not match its initial text.", e);
+            }
+            applyNanos[index] = System.nanoTime() - start;
+            applied++;
+        }
+
+        @Override
+        public void renderStarted(int generation) {
+            renders++;
+            startedRenders.put(generation, applied);
+        }
+
+        @Override
+        public void renderDisplayed(int generation, RenderResult result, long swap) {
+            long now = System.nanoTime();
+            Integer edits = startedRenders.remove(generation);
+            if (edits == null) {
+                return;
+            }
+
+            // Earlier renders that are still outstanding were superseded
+            for (Iterator<Integer> iterator = startedRenders.keySet().iterator(); iterator.hasNext(); ) {
+                if (iterator.next() < generation) {
+                    iterator.remove();
+                    dropped++;
+                }
+            }
+
+            displayed++;
+            if (result instanceof RenderResult.Error) {
+                failed++; // The error is still feedback on the edits
+            }
+            if (swap > 0) {
+                if (swapCount == swapNanos.length) {
+                    swapNanos = Arrays.copyOf(swapNanos, swapCount * 2);
+                }
+                swapNanos[swapCount++] = swap;
+            }
+            for (int i = covered; i < edits; i++) {
+                latencyNanos[i] = now - dueNanos[i];
+            }
+            covered = Math.max(covered, edits);
+            displayedEdits = covered;
+        }
+
+        Report report() {
+            RenderMetrics metrics = engine.getMetrics();
+            return new Report(applied, renders, displayed, dropped + startedRenders.size(), failed,
+                    metrics.getSkippedRenderCount() - skippedBefore,
+                    Distribution.of(Arrays.copyOf(latencyNanos, covered)),
+                    Distribution.of(Arrays.copyOf(lagNanos, applied)),
+                    Distribution.of(Arrays.copyOf(applyNanos, applied)),
+                    Distribution.of(Arrays.copyOf(swapNanos, swapCount)));
+        }
+    }
+}
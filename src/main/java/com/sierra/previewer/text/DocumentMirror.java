@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.text;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Keeps a {@link Rope} in step with a Swing document by replaying each edit,
+ * so that the document's text can be captured in constant time. The mirror
+ * is updated on the EDT, where document events are delivered; the snapshots
+ * it hands out are immutable and may be read on any thread.
+ */
+public class DocumentMirror implements DocumentListener {
+
+    private final Document document;
+    private Rope text;
+
+    /**
+     * Creates a mirror of a document and starts tracking its edits.
+     *
+     * @param document The document to mirror.
+     */
+    public DocumentMirror(Document document) {
+        this.document = document;
+        this.text = Rope.of(read(0, document.getLength()));
+        document.addDocumentListener(this);
+    }
+
+    /**
+     * Gets the document's current text.
+     *
+     * @return An immutable snapshot of the text.
+     */
+    public Rope snapshot() {
+        return text;
+    }
+
+    /**
+     * Stops tracking the document.
+     */
+    public void dispose() {
+        document.removeDocumentListener(this);
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        text = text.insert(e.getOffset(), read(e.getOffset(), e.getLength()));
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        text = text.delete(e.getOffset(), e.getLength());
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // Attribute changes do not affect the text
+    }
+
+    private String read(int offset, int length) {
+        try {
+            return document.getText(offset, length);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e); // The range comes from the document itself
+        }
+    }
+}
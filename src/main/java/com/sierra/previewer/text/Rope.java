@@ -0,0 +1,332 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.text;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An immutable, persistent string. Edits return a new rope that shares all
+ * unchanged leaves with the old one, so keeping a version costs nothing and
+ * an insertion or deletion costs O(log n) in the length of the text. Ropes
+ * can therefore be handed to other threads as snapshots of an editor's text.
+ */
+public abstract sealed class Rope implements CharSequence {
+
+    private static final int MAX_LEAF_LENGTH = 512;
+    private static final int MAX_DEPTH = 48;
+
+    /**
+     * The empty rope.
+     */
+    public static final Rope EMPTY = new Leaf("");
+
+    private Rope() {
+    }
+
+    /**
+     * Creates a balanced rope holding the given text.
+     *
+     * @param text The text.
+     * @return The rope.
+     */
+    public static Rope of(CharSequence text) {
+        if (text.length() <= MAX_LEAF_LENGTH) {
+            return text.length() == 0 ? EMPTY : new Leaf(text.toString());
+        }
+
+        List<Rope> leaves = new ArrayList<>();
+        for (int start = 0; start < text.length(); start += MAX_LEAF_LENGTH) {
+            leaves.add(new Leaf(text.subSequence(start, Math.min(text.length(), start + MAX_LEAF_LENGTH)).toString()));
+        }
+        return balance(leaves, 0, leaves.size());
+    }
+
+    /**
+     * Gets the depth of the tree, which is 0 for a leaf.
+     */
+    abstract int depth();
+
+    /**
+     * Appends the text to a builder.
+     *
+     * @param builder The output.
+     */
+    abstract void appendTo(StringBuilder builder);
+
+    /**
+     * Returns a rope with text inserted at the given position.
+     *
+     * @param offset The insertion offset.
+     * @param text The text to insert.
+     * @return The new rope.
+     */
+    public Rope insert(int offset, CharSequence text) {
+        checkOffset(offset);
+        if (text.length() == 0) {
+            return this;
+        }
+        return concat(concat(prefix(offset), Rope.of(text)), suffix(offset));
+    }
+
+    /**
+     * Returns a rope without the given range.
+     *
+     * @param offset The start of the range.
+     * @param length The length of the range.
+     * @return The new rope.
+     */
+    public Rope delete(int offset, int length) {
+        checkOffset(offset);
+        checkOffset(offset + length);
+        if (length == 0) {
+            return this;
+        }
+        return concat(prefix(offset), suffix(offset + length));
+    }
+
+    /**
+     * Returns a rope holding this rope's text followed by another's.
+     *
+     * @param other The rope to append.
+     * @return The new rope.
+     */
+    public Rope append(Rope other) {
+        return concat(this, other);
+    }
+
+    /**
+     * Gets the text before an offset.
+     */
+    abstract Rope prefix(int offset);
+
+    /**
+     * Gets the text from an offset to the end.
+     */
+    abstract Rope suffix(int offset);
+
+    @Override
+    public Rope subSequence(int start, int end) {
+        checkOffset(start);
+        checkOffset(end);
+        if (start > end) {
+            throw new IndexOutOfBoundsException("start " + start + " > end " + end);
+        }
+        return suffix(start).prefix(end - start);
+    }
+
+    /**
+     * Opens a reader over the text that walks the rope's leaves, without
+     * flattening it into a single string.
+     *
+     * @return The reader.
+     */
+    public Reader reader() {
+        Deque<Rope> pending = new ArrayDeque<>();
+        pending.push(this);
+
+        return new Reader() {
+            private String leaf = "";
+            private int position = 0;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                while (position == leaf.length()) {
+                    if (pending.isEmpty()) {
+                        return -1;
+                    }
+                    Rope next = pending.pop();
+                    if (next instanceof Node node) {
+                        pending.push(node.right);
+                        pending.push(node.left);
+                    } else {
+                        leaf = ((Leaf) next).text;
+                        position = 0;
+                    }
+                }
+
+                int count = Math.min(length, leaf.length() - position);
+                leaf.getChars(position, position + count, buffer, offset);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(length());
+        appendTo(builder);
+        return builder.toString();
+    }
+
+    private void checkOffset(int offset) {
+        if (offset < 0 || offset > length()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " outside rope of length " + length());
+        }
+    }
+
+    private static Rope concat(Rope left, Rope right) {
+        if (left.length() == 0) {
+            return right;
+        }
+        if (right.length() == 0) {
+            return left;
+        }
+
+        // Merge small neighbouring leaves, so single-character edits do not fragment the text
+        if (left instanceof Leaf leftLeaf && right instanceof Leaf rightLeaf
+                && left.length() + right.length() <= MAX_LEAF_LENGTH) {
+            return new Leaf(leftLeaf.text + rightLeaf.text);
+        }
+        if (left instanceof Node leftNode && leftNode.right instanceof Leaf leftRight && right instanceof Leaf rightLeaf
+                && leftRight.length() + right.length() <= MAX_LEAF_LENGTH) {
+            return concat(leftNode.left, new Leaf(leftRight.text + rightLeaf.text));
+        }
+
+        Rope rope = new Node(left, right);
+        return rope.depth() > MAX_DEPTH ? rebalance(rope) : rope;
+    }
+
+    private static Rope rebalance(Rope rope) {
+        List<Rope> leaves = new ArrayList<>();
+        Deque<Rope> pending = new ArrayDeque<>();
+        pending.push(rope);
+        while (!pending.isEmpty()) {
+            Rope next = pending.pop();
+            if (next instanceof Node node) {
+                pending.push(node.right);
+                pending.push(node.left);
+            } else {
+                leaves.add(next);
+            }
+        }
+        return balance(leaves, 0, leaves.size());
+    }
+
+    private static Rope balance(List<Rope> leaves, int start, int end) {
+        if (end - start == 1) {
+            return leaves.get(start);
+        }
+        int middle = (start + end) >>> 1;
+        return new Node(balance(leaves, start, middle), balance(leaves, middle, end));
+    }
+
+    private static final class Leaf extends Rope {
+
+        private final String text;
+
+        Leaf(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(index);
+        }
+
+        @Override
+        int depth() {
+            return 0;
+        }
+
+        @Override
+        void appendTo(StringBuilder builder) {
+            builder.append(text);
+        }
+
+        @Override
+        Rope prefix(int offset) {
+            return offset == text.length() ? this : new Leaf(text.substring(0, offset));
+        }
+
+        @Override
+        Rope suffix(int offset) {
+            return offset == 0 ? this : new Leaf(text.substring(offset));
+        }
+    }
+
+    private static final class Node extends Rope {
+
+        private final Rope left;
+        private final Rope right;
+        private final int length;
+        private final int depth;
+
+        Node(Rope left, Rope right) {
+            this.left = left;
+            this.right = right;
+            this.length = left.length() + right.length();
+            this.depth = Math.max(left.depth(), right.depth()) + 1;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            Rope rope = this;
+            while (rope instanceof Node node) {
+                if (index < node.left.length()) {
+                    rope = node.left;
+                } else {
+                    index -= node.left.length();
+                    rope = node.right;
+                }
+            }
+            return rope.charAt(index);
+        }
+
+        @Override
+        int depth() {
+            return depth;
+        }
+
+        @Override
+        void appendTo(StringBuilder builder) {
+            left.appendTo(builder);
+            right.appendTo(builder);
+        }
+
+        @Override
+        Rope prefix(int offset) {
+            if (offset <= left.length()) {
+                return left.prefix(offset);
+            }
+            return concat(left, right.prefix(offset - left.length()));
+        }
+
+        @Override
+        Rope suffix(int offset) {
+            if (offset >= left.length()) {
+                return right.suffix(offset - left.length());
+            }
+            return concat(left.suffix(offset), right);
+        }
+    }
+}
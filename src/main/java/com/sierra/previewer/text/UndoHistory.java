@@ -0,0 +1,462 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An undo history that keeps every version of a text as a {@link Rope}.
+ * Consecutive versions share all unchanged leaves, so a version costs about
+ * as much memory as the text its edit inserted, rather than a copy of the
+ * document or a chain of edit objects.
+ * <p>
+ * For each step between two versions the history records how many
+ * characters at the start and end of the text the step left unchanged.
+ * Those lengths are kept in range-minimum tables, so the single region that
+ * differs between any two versions, however far apart, is found in constant
+ * time; switching versions then only replaces that region. Appending a step
+ * costs O(log n) in the number of versions.
+ * <p>
+ * The history is bounded by a version count and an estimate of the memory
+ * its versions retain. When a bound is exceeded, every other version in the
+ * older half of the history is dropped, so recent history stays fine-grained
+ * while older history becomes coarser; only if that is not enough are the
+ * oldest versions discarded.
+ * <p>
+ * Instances are not thread-safe; the editor uses one on the EDT.
+ */
+public class UndoHistory {
+
+    public static final int DEFAULT_MAX_VERSIONS = 10_000;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // Rough cost of the leaf and path an edit copies, plus two bytes per inserted character
+    private static final int EDIT_OVERHEAD_BYTES = 2 * 1024;
+
+    /**
+     * A version of the text.
+     *
+     * @param text The text.
+     * @param timeMillis When the version was recorded.
+     */
+    public record Version(Rope text, long timeMillis) {
+    }
+
+    /**
+     * The replacement that turns the current text into another version.
+     *
+     * @param start The offset of the first changed character.
+     * @param end The offset just past the last replaced character, in the
+     * text before the change.
+     * @param text The replacement text.
+     */
+    public record Change(int start, int end, CharSequence text) {
+    }
+
+    private int maxVersions;
+    private long maxBytes;
+
+    private final List<Version> versions = new ArrayList<>();
+    private long[] stepBytes = new long[16]; // Estimated memory retained by each version beyond its predecessor
+    private long retainedBytes = 0;
+    private int current = 0;
+
+    // Step i turns version i - 1 into version i; slot 0 is unused
+    private final RangeMin prefixes = new RangeMin();
+    private final RangeMin suffixes = new RangeMin();
+
+    /**
+     * Creates a history with the default bounds.
+     *
+     * @param initial The initial text.
+     */
+    public UndoHistory(Rope initial) {
+        this(initial, DEFAULT_MAX_VERSIONS, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a history.
+     *
+     * @param initial The initial text.
+     * @param maxVersions The most versions to keep, at least 2.
+     * @param maxBytes The most memory the versions other than the current
+     * one should retain, as estimated from the edits.
+     */
+    public UndoHistory(Rope initial, int maxVersions, long maxBytes) {
+        this.maxVersions = Math.max(2, maxVersions);
+        this.maxBytes = maxBytes;
+        reset(initial);
+    }
+
+    /**
+     * Changes the bounds, dropping versions if the history exceeds them.
+     *
+     * @param maxVersions The most versions to keep, at least 2.
+     * @param maxBytes The most memory the versions should retain.
+     */
+    public void setLimits(int maxVersions, long maxBytes) {
+        this.maxVersions = Math.max(2, maxVersions);
+        this.maxBytes = maxBytes;
+        enforceBounds();
+    }
+
+    public int getMaxVersions() {
+        return maxVersions;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Discards every version and starts again from a text.
+     *
+     * @param text The new initial text.
+     */
+    public void reset(Rope text) {
+        versions.clear();
+        versions.add(new Version(text, System.currentTimeMillis()));
+        retainedBytes = 0;
+        current = 0;
+        prefixes.truncate(0);
+        prefixes.add(Integer.MAX_VALUE);
+        suffixes.truncate(0);
+        suffixes.add(Integer.MAX_VALUE);
+    }
+
+    // --- Recording ---
+
+    /**
+     * Records an edit of the current version. Versions that were undone are
+     * discarded.
+     *
+     * @param text The text after the edit.
+     * @param offset The offset of the edit.
+     * @param removed The number of characters removed at the offset.
+     * @param inserted The number of characters inserted at the offset.
+     * @param merge Whether to fold the edit into the current version, e.g.
+     * when it continues the word being typed, rather than adding a version.
+     */
+    public void record(Rope text, int offset, int removed, int inserted, boolean merge) {
+        int previousLength = versions.get(current).text().length();
+        int prefix = offset;
+        int suffix = previousLength - offset - removed;
+        long bytes = EDIT_OVERHEAD_BYTES + 2L * inserted;
+        Version version = new Version(text, System.currentTimeMillis());
+
+        // Redo history ends where a new edit is made
+        truncate(current + 1);
+
+        if (merge && current > 0) {
+            // The merged step leaves unchanged what both of its parts left unchanged
+            versions.set(current, version);
+            prefixes.setLast(Math.min(prefixes.get(current), prefix));
+            suffixes.setLast(Math.min(suffixes.get(current), suffix));
+            stepBytes[current] += bytes;
+            retainedBytes += bytes;
+        } else {
+            versions.add(version);
+            prefixes.add(prefix);
+            suffixes.add(suffix);
+            current++;
+            if (current == stepBytes.length) {
+                stepBytes = Arrays.copyOf(stepBytes, current * 2);
+            }
+            stepBytes[current] = bytes;
+            retainedBytes += bytes;
+        }
+
+        enforceBounds();
+    }
+
+    private void truncate(int size) {
+        for (int i = size; i < versions.size(); i++) {
+            retainedBytes -= stepBytes[i];
+        }
+        while (versions.size() > size) {
+            versions.remove(versions.size() - 1);
+        }
+        prefixes.truncate(size);
+        suffixes.truncate(size);
+    }
+
+    // --- Navigation ---
+
+    public boolean canUndo() {
+        return current > 0;
+    }
+
+    public boolean canRedo() {
+        return current < versions.size() - 1;
+    }
+
+    /**
+     * Steps back one version.
+     *
+     * @return The change to apply to the text.
+     * @throws IllegalStateException If there is nothing to undo.
+     */
+    public Change undo() {
+        if (!canUndo()) {
+            throw new IllegalStateException("Nothing to undo.");
+        }
+        return jumpTo(current - 1);
+    }
+
+    /**
+     * Steps forward one version.
+     *
+     * @return The change to apply to the text.
+     * @throws IllegalStateException If there is nothing to redo.
+     */
+    public Change redo() {
+        if (!canRedo()) {
+            throw new IllegalStateException("Nothing to redo.");
+        }
+        return jumpTo(current + 1);
+    }
+
+    /**
+     * Makes another version current.
+     *
+     * @param index The index of the version.
+     * @return The change that turns the current text into the version's.
+     */
+    public Change jumpTo(int index) {
+        if (index < 0 || index >= versions.size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        Rope from = versions.get(current).text();
+        Version to = versions.get(index);
+        int low = Math.min(current, index) + 1;
+        int high = Math.max(current, index);
+        current = index;
+        if (low > high) {
+            return new Change(0, 0, "");
+        }
+
+        int length = Math.min(from.length(), to.text().length());
+        int prefix = Math.min(prefixes.min(low, high), length);
+        int suffix = Math.min(suffixes.min(low, high), length - prefix);
+        return new Change(prefix, from.length() - suffix, to.text().subSequence(prefix, to.text().length() - suffix));
+    }
+
+    /**
+     * Finds the latest version recorded at or before a time.
+     *
+     * @param timeMillis The time.
+     * @return The version index, or 0 if every version is later.
+     */
+    public int indexAt(long timeMillis) {
+        int low = 0;
+        int high = versions.size() - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (versions.get(mid).timeMillis() <= timeMillis) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // --- Accessors ---
+
+    public int size() {
+        return versions.size();
+    }
+
+    public int getCurrentIndex() {
+        return current;
+    }
+
+    public Version getVersion(int index) {
+        return versions.get(index);
+    }
+
+    /**
+     * Gets the estimated memory retained by the versions other than the
+     * first.
+     *
+     * @return The estimate, in bytes.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    // --- Bounds ---
+
+    private void enforceBounds() {
+        while ((versions.size() > maxVersions || retainedBytes > maxBytes) && versions.size() > 1) {
+            if (!thin()) {
+                dropOldest();
+            }
+        }
+    }
+
+    /**
+     * Drops every other version in the older half of the history, keeping
+     * the first and current ones.
+     *
+     * @return Whether any version was dropped.
+     */
+    private boolean thin() {
+        int end = versions.size() / 2;
+        List<Integer> kept = new ArrayList<>();
+        kept.add(0);
+        for (int i = 1; i < versions.size(); i++) {
+            if (i > end || i == current || i % 2 == 0) {
+                kept.add(i);
+            }
+        }
+        if (kept.size() == versions.size()) {
+            return false;
+        }
+        rebuild(kept);
+        return true;
+    }
+
+    private void dropOldest() {
+        // The current version is kept, so if everything was undone the newest version goes instead
+        int dropped = current > 0 ? 0 : versions.size() - 1;
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < versions.size(); i++) {
+            if (i != dropped) {
+                kept.add(i);
+            }
+        }
+        rebuild(kept);
+    }
+
+    /**
+     * Keeps only some versions. The step to each kept version spans the
+     * dropped ones before it.
+     */
+    private void rebuild(List<Integer> kept) {
+        int[] stepPrefixes = new int[kept.size()];
+        int[] stepSuffixes = new int[kept.size()];
+        long[] bytes = new long[Math.max(16, kept.size())];
+        List<Version> keptVersions = new ArrayList<>(kept.size());
+        int keptCurrent = 0;
+        retainedBytes = 0;
+
+        stepPrefixes[0] = Integer.MAX_VALUE;
+        stepSuffixes[0] = Integer.MAX_VALUE;
+        for (int i = 0; i < kept.size(); i++) {
+            int index = kept.get(i);
+            keptVersions.add(versions.get(index));
+            if (index <= current) {
+                keptCurrent = i;
+            }
+            if (i > 0) {
+                int previous = kept.get(i - 1);
+                stepPrefixes[i] = prefixes.min(previous + 1, index);
+                stepSuffixes[i] = suffixes.min(previous + 1, index);
+                // The leaves of a dropped version are freed unless a later version still uses them
+                for (int j = previous + 1; j <= index; j++) {
+                    bytes[i] = Math.max(bytes[i], stepBytes[j]);
+                }
+                retainedBytes += bytes[i];
+            }
+        }
+
+        versions.clear();
+        versions.addAll(keptVersions);
+        stepBytes = bytes;
+        current = keptCurrent;
+        prefixes.rebuild(stepPrefixes);
+        suffixes.rebuild(stepSuffixes);
+    }
+
+    /**
+     * A growable sequence of ints with constant-time range minimum queries,
+     * as a sparse table: level k holds the minimum of each run of 2^k values.
+     */
+    private static class RangeMin {
+
+        private int[][] levels = new int[5][16]; // Runs of up to 16 values
+        private int size = 0;
+
+        int get(int index) {
+            return levels[0][index];
+        }
+
+        void add(int value) {
+            ensureCapacity(size + 1);
+            size++;
+            setLast(value);
+        }
+
+        /**
+         * Replaces the last value, updating the runs that end with it.
+         */
+        void setLast(int value) {
+            int last = size - 1;
+            levels[0][last] = value;
+            for (int k = 1; k < levels.length && last - (1 << k) + 1 >= 0; k++) {
+                int start = last - (1 << k) + 1;
+                levels[k][start] = Math.min(levels[k - 1][start], levels[k - 1][start + (1 << (k - 1))]);
+            }
+        }
+
+        /**
+         * Drops the values from an index on. Runs that lie entirely before it
+         * remain valid.
+         */
+        void truncate(int size) {
+            this.size = Math.min(this.size, size);
+        }
+
+        void rebuild(int[] values) {
+            size = 0;
+            for (int value : values) {
+                add(value);
+            }
+        }
+
+        /**
+         * Gets the minimum of the values from low to high, inclusive.
+         */
+        int min(int low, int high) {
+            int k = 31 - Integer.numberOfLeadingZeros(high - low + 1);
+            return Math.min(levels[k][low], levels[k][high - (1 << k) + 1]);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= levels[0].length) {
+                return;
+            }
+            int length = Math.max(capacity, levels[0].length * 2);
+            int depth = 32 - Integer.numberOfLeadingZeros(length);
+            int[][] grown = new int[depth][];
+            for (int k = 0; k < depth; k++) {
+                grown[k] = k < levels.length ? Arrays.copyOf(levels[k], length) : new int[length];
+            }
+            levels = grown;
+
+            // Runs at the new levels that lie within the existing values
+            for (int k = 1; k < depth; k++) {
+                for (int start = 0; start + (1 << k) <= size; start++) {
+                    grown[k][start] = Math.min(grown[k - 1][start], grown[k - 1][start + (1 << (k - 1))]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,607 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.workspace;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * An inverted index of the elements and attributes used by every Sierra
+ * layout under a workspace directory. Each element of each layout is
+ * recorded under its name, the names of its attributes, and each attribute
+ * name and value pair, so that queries such as "combo-box editable=true" are
+ * answered by intersecting a few posting lists rather than by reading files.
+ * <p>
+ * Files are parsed with StAX on a pool of threads. The index can be saved to
+ * and loaded from a compact binary file, which is read through a memory
+ * mapping, and {@link #refresh()} then only parses files that changed since.
+ * All methods are thread-safe.
+ */
+public class WorkspaceIndex {
+
+    private static final int MAGIC = 0x53584958; // "SXIX"
+    private static final int VERSION = 1;
+    private static final int PARSE_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+
+    /**
+     * An element that matched a query.
+     *
+     * @param file The layout file.
+     * @param line The line the element's start tag ends on.
+     * @param element The element name.
+     */
+    public record Match(Path file, int line, String element) {
+    }
+
+    /**
+     * The elements of one file, in document order, and the ordinals of the
+     * elements recorded under each term. Files whose root is not a Sierra
+     * element are kept with no elements, so they are not parsed again until
+     * they change.
+     */
+    private record FileEntry(Path path, long modified, int[] lines, String[] elements, Map<String, int[]> terms) {
+    }
+
+    private final Path root;
+    private final Set<String> layoutElements;
+
+    private final List<FileEntry> files = new ArrayList<>(); // By file ID; null once removed
+    private final Map<Path, Integer> fileIds = new HashMap<>();
+    private final Map<String, Map<Integer, int[]>> postings = new HashMap<>(); // Term -> file ID -> element ordinals
+
+    /**
+     * Creates an empty index of a workspace.
+     *
+     * @param root The workspace directory.
+     * @param layoutElements The element names a layout's root may have;
+     * other XML files are not indexed.
+     */
+    public WorkspaceIndex(Path root, Set<String> layoutElements) {
+        this.root = root.toAbsolutePath().normalize();
+        this.layoutElements = Set.copyOf(layoutElements);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    // --- Indexing ---
+
+    /**
+     * Brings the index up to date with the workspace, parsing every layout
+     * that was added or modified since it was indexed and dropping those that
+     * were deleted.
+     *
+     * @return The number of files parsed.
+     * @throws IOException If the workspace cannot be walked.
+     */
+    public int refresh() throws IOException {
+        List<Path> candidates = new ArrayList<>();
+        Map<Path, Long> modified = new HashMap<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                return directory.equals(root) || !isHidden(directory) ? FileVisitResult.CONTINUE
+                        : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (isLayoutFile(file)) {
+                    long time = attributes.lastModifiedTime().toMillis();
+                    modified.put(file, time);
+                    if (!isCurrent(file, time)) {
+                        candidates.add(file);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exception) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        synchronized (this) {
+            for (Path path : List.copyOf(fileIds.keySet())) {
+                if (!modified.containsKey(path)) {
+                    remove(path);
+                }
+            }
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(PARSE_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "sierra-index-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<FileEntry>> tasks = new ArrayList<>(candidates.size());
+            for (Path path : candidates) {
+                tasks.add(() -> parse(path, modified.get(path)));
+            }
+            for (Future<FileEntry> future : executor.invokeAll(tasks)) {
+                FileEntry entry = future.get();
+                if (entry != null) {
+                    put(entry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return candidates.size();
+    }
+
+    /**
+     * Re-indexes a single file, e.g. when it is reported as changed. Files
+     * that no longer exist are removed from the index.
+     *
+     * @param file The file.
+     * @return True if the file was parsed.
+     */
+    public boolean update(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        if (!isLayoutFile(path) || !path.startsWith(root)) {
+            return false;
+        }
+
+        long time;
+        try {
+            time = Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            remove(path);
+            return false;
+        }
+        if (isCurrent(path, time)) {
+            return false;
+        }
+
+        FileEntry entry = parse(path, time);
+        if (entry == null) {
+            remove(path);
+            return false;
+        }
+        put(entry);
+        return true;
+    }
+
+    /**
+     * Removes a file, e.g. when it is reported as deleted.
+     *
+     * @param file The file.
+     */
+    public synchronized void remove(Path file) {
+        Integer id = fileIds.remove(file.toAbsolutePath().normalize());
+        if (id != null) {
+            unpost(id, files.get(id));
+            files.set(id, null);
+        }
+    }
+
+    /**
+     * Removes a file, or every file below a directory, e.g. when it is
+     * reported as deleted and it is no longer possible to tell which it was.
+     *
+     * @param path The file or directory.
+     */
+    public synchronized void removeAll(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        for (Path file : List.copyOf(fileIds.keySet())) {
+            if (file.startsWith(normalized)) {
+                remove(file);
+            }
+        }
+    }
+
+    private static boolean isHidden(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().startsWith(".");
+    }
+
+    private static boolean isLayoutFile(Path path) {
+        String fileName = path.getFileName().toString();
+        // Scratch copies written next to a document by the rendering engine start with a dot
+        return fileName.endsWith(".xml") && !fileName.startsWith(".");
+    }
+
+    private synchronized boolean isCurrent(Path path, long modified) {
+        Integer id = fileIds.get(path);
+        return id != null && files.get(id).modified() == modified;
+    }
+
+    /**
+     * Reads the elements of a file.
+     *
+     * @return The entry, or null if the file cannot be read.
+     */
+    private FileEntry parse(Path path, long modified) {
+        List<Integer> lines = new ArrayList<>();
+        List<String> elements = new ArrayList<>();
+        Map<String, List<Integer>> terms = new HashMap<>();
+
+        XMLStreamReader reader = null;
+        try (BufferedReader input = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            reader = INPUT_FACTORY.get().createXMLStreamReader(input);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String tag = reader.getLocalName();
+                if (elements.isEmpty() && !layoutElements.contains(tag)) {
+                    break; // Not a Sierra layout
+                }
+
+                int ordinal = elements.size();
+                elements.add(tag);
+                lines.add(reader.getLocation().getLineNumber());
+                terms.computeIfAbsent(elementTerm(tag), key -> new ArrayList<>()).add(ordinal);
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    String name = reader.getAttributeLocalName(i);
+                    terms.computeIfAbsent(attributeTerm(name), key -> new ArrayList<>()).add(ordinal);
+                    terms.computeIfAbsent(valueTerm(name, reader.getAttributeValue(i)),
+                            key -> new ArrayList<>()).add(ordinal);
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (XMLStreamException e) {
+            // Keep what was read before the error, so a file being edited stays searchable
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        Map<String, int[]> ordinals = new HashMap<>(terms.size() * 2);
+        for (Map.Entry<String, List<Integer>> term : terms.entrySet()) {
+            ordinals.put(term.getKey(), term.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return new FileEntry(path, modified, lines.stream().mapToInt(Integer::intValue).toArray(),
+                elements.toArray(String[]::new), ordinals);
+    }
+
+    private synchronized void put(FileEntry entry) {
+        Integer id = fileIds.get(entry.path());
+        if (id != null) {
+            unpost(id, files.get(id));
+            files.set(id, entry);
+        } else {
+            id = files.size();
+            files.add(entry);
+            fileIds.put(entry.path(), id);
+        }
+
+        for (Map.Entry<String, int[]> term : entry.terms().entrySet()) {
+            postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(id, term.getValue());
+        }
+    }
+
+    private void unpost(int id, FileEntry entry) {
+        for (String term : entry.terms().keySet()) {
+            Map<Integer, int[]> termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(id);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    // --- Queries ---
+
+    /**
+     * Finds the elements that match every term of a query. Terms are
+     * separated by spaces: a bare word matches an element name, "name=value"
+     * matches an attribute value, and "name=*" matches any element that has
+     * the attribute. Values containing spaces may be quoted, as in
+     * {@code text="Save As"}.
+     *
+     * @param query The query, e.g. "combo-box editable=true".
+     * @return The matching elements, ordered by file and line.
+     */
+    public List<Match> search(String query) {
+        List<String> terms = parseQuery(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        List<Match> matches = new ArrayList<>();
+        synchronized (this) {
+            List<Map<Integer, int[]>> termPostings = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Integer, int[]> filePostings = postings.get(term);
+                if (filePostings == null) {
+                    return List.of();
+                }
+                termPostings.add(filePostings);
+            }
+            // Intersect starting from the rarest term
+            termPostings.sort(Comparator.comparingInt(Map::size));
+
+            for (Map.Entry<Integer, int[]> file : termPostings.get(0).entrySet()) {
+                int[] ordinals = file.getValue();
+                for (int i = 1; i < termPostings.size() && ordinals.length > 0; i++) {
+                    int[] other = termPostings.get(i).get(file.getKey());
+                    ordinals = other == null ? new int[0] : intersect(ordinals, other);
+                }
+
+                FileEntry entry = files.get(file.getKey());
+                for (int ordinal : ordinals) {
+                    matches.add(new Match(entry.path(), entry.lines()[ordinal], entry.elements()[ordinal]));
+                }
+            }
+        }
+
+        matches.sort(Comparator.comparing(Match::file).thenComparingInt(Match::line));
+        return matches;
+    }
+
+    /**
+     * Splits a query into index terms.
+     */
+    static List<String> parseQuery(String query) {
+        List<String> terms = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            if (Character.isWhitespace(query.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            StringBuilder token = new StringBuilder();
+            boolean quoted = false;
+            while (i < query.length() && (quoted || !Character.isWhitespace(query.charAt(i)))) {
+                char c = query.charAt(i++);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else {
+                    token.append(c);
+                }
+            }
+
+            int equals = token.indexOf("=");
+            if (equals < 0) {
+                terms.add(elementTerm(token.toString()));
+            } else if (token.substring(equals + 1).equals("*")) {
+                terms.add(attributeTerm(token.substring(0, equals)));
+            } else {
+                terms.add(valueTerm(token.substring(0, equals), token.substring(equals + 1)));
+            }
+        }
+        return terms;
+    }
+
+    private static int[] intersect(int[] first, int[] second) {
+        int[] result = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Gets the number of files in the index, including XML files that are not
+     * Sierra layouts.
+     *
+     * @return The file count.
+     */
+    public synchronized int getFileCount() {
+        return fileIds.size();
+    }
+
+    /**
+     * Gets the number of distinct element names, attribute names and
+     * attribute values in the index.
+     *
+     * @return The term count.
+     */
+    public synchronized int getTermCount() {
+        return postings.size();
+    }
+
+    // --- Persistence ---
+
+    /**
+     * Writes the index to a file. Strings are stored once, in a table that
+     * the file and posting records refer to by number. The file is replaced
+     * atomically, so a crash leaves either the old index or the new one.
+     *
+     * @param indexFile The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path indexFile) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(records);
+
+        synchronized (this) {
+            List<FileEntry> entries = files.stream().filter(entry -> entry != null).toList();
+            output.writeInt(entries.size());
+            for (FileEntry entry : entries) {
+                output.writeInt(stringId(strings, root.relativize(entry.path()).toString()));
+                output.writeLong(entry.modified());
+                output.writeInt(entry.elements().length);
+                for (int i = 0; i < entry.elements().length; i++) {
+                    output.writeInt(entry.lines()[i]);
+                    output.writeInt(stringId(strings, entry.elements()[i]));
+                }
+                output.writeInt(entry.terms().size());
+                for (Map.Entry<String, int[]> term : entry.terms().entrySet()) {
+                    output.writeInt(stringId(strings, term.getKey()));
+                    output.writeInt(term.getValue().length);
+                    for (int ordinal : term.getValue()) {
+                        output.writeInt(ordinal);
+                    }
+                }
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(records.size() + strings.size() * 16);
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+            byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+            header.writeInt(encoded.length);
+            header.write(encoded);
+        }
+        records.writeTo(header);
+
+        Files.createDirectories(indexFile.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(indexFile.toAbsolutePath().getParent(), ".sierra-index", ".tmp");
+        try {
+            Files.write(temporary, bytes.toByteArray());
+            try {
+                Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static int stringId(Map<String, Integer> strings, String string) {
+        return strings.computeIfAbsent(string, key -> strings.size());
+    }
+
+    /**
+     * Reads an index written by {@link #save(Path)}. The file is mapped
+     * rather than read into a buffer. Call {@link #refresh()} afterwards to
+     * pick up changes made since the index was saved.
+     *
+     * @param indexFile The file to read.
+     * @param root The workspace directory.
+     * @param layoutElements The element names a layout's root may have.
+     * @return The index.
+     * @throws IOException If the file cannot be read or is not a valid
+     * index.
+     */
+    public static WorkspaceIndex load(Path indexFile, Path root, Set<String> layoutElements) throws IOException {
+        WorkspaceIndex index = new WorkspaceIndex(root, layoutElements);
+
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a workspace index: " + indexFile);
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] encoded = new byte[buffer.getInt()];
+                buffer.get(encoded);
+                strings[i] = new String(encoded, StandardCharsets.UTF_8);
+            }
+
+            int fileCount = buffer.getInt();
+            for (int i = 0; i < fileCount; i++) {
+                Path path = index.root.resolve(strings[buffer.getInt()]);
+                long modified = buffer.getLong();
+
+                int[] lines = new int[buffer.getInt()];
+                String[] elements = new String[lines.length];
+                for (int j = 0; j < lines.length; j++) {
+                    lines[j] = buffer.getInt();
+                    elements[j] = strings[buffer.getInt()];
+                }
+
+                int termCount = buffer.getInt();
+                Map<String, int[]> terms = new HashMap<>(termCount * 2);
+                for (int j = 0; j < termCount; j++) {
+                    String term = strings[buffer.getInt()];
+                    int[] ordinals = new int[buffer.getInt()];
+                    buffer.asIntBuffer().get(ordinals);
+                    buffer.position(buffer.position() + 4 * ordinals.length);
+                    terms.put(term, ordinals);
+                }
+
+                index.put(new FileEntry(path, modified, lines, elements, terms));
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt workspace index: " + indexFile, e);
+        }
+        return index;
+    }
+
+    static String elementTerm(String tag) {
+        return "<" + tag;
+    }
+
+    static String attributeTerm(String name) {
+        return "@" + name;
+    }
+
+    static String valueTerm(String name, String value) {
+        return "@" + name + "=" + value;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.workspace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps a {@link WorkspaceIndex} up to date by re-indexing files as the file
+ * system reports them created, modified or deleted. Events are handled on a
+ * background thread; new directories are watched as they appear.
+ */
+public class WorkspaceWatcher implements Closeable {
+
+    private final WorkspaceIndex index;
+    private final Runnable changeListener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Thread thread;
+
+    /**
+     * Starts watching an index's workspace.
+     *
+     * @param index The index to update.
+     * @param changeListener Called on the watcher thread after the index
+     * changed.
+     * @throws IOException If the workspace cannot be watched.
+     */
+    public WorkspaceWatcher(WorkspaceIndex index, Runnable changeListener) throws IOException {
+        this.index = index;
+        this.changeListener = changeListener;
+        this.watchService = index.getRoot().getFileSystem().newWatchService();
+        register(index.getRoot());
+
+        thread = new Thread(this::run, "sierra-workspace-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void register(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                if (!directory.equals(index.getRoot()) && directory.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, directory);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exception) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path directory = directories.get(key);
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                try {
+                    changed |= handle(directory, event);
+                } catch (IOException e) {
+                    System.err.println("Could not update workspace index: " + e.getMessage());
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key); // The directory was deleted
+            }
+
+            if (changed) {
+                changeListener.run();
+            }
+        }
+    }
+
+    private boolean handle(Path directory, WatchEvent<?> event) throws IOException {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+            // Events were lost, so compare the whole workspace against the index
+            index.refresh();
+            return true;
+        }
+
+        Path path = directory.resolve((Path) event.context());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            // The path may have been a directory, so drop everything below it
+            index.removeAll(path);
+            return true;
+        }
+        if (Files.isDirectory(path)) {
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                // Files may have been created before the directory was registered
+                register(path);
+                index.refresh();
+                return true;
+            }
+            return false;
+        }
+        return index.update(path);
+    }
+
+    /**
+     * Stops watching the workspace.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
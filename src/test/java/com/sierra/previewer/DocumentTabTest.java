@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import com.sierra.previewer.engine.RenderingEngine;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+import org.fife.ui.rsyntaxtextarea.parser.ParserNotice;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for DocumentTab covering the editor's budget warnings.
+ */
+public class DocumentTabTest {
+
+    private DocumentTab tab;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SwingUtilities.invokeAndWait(() -> tab = new DocumentTab(new RenderingEngine(1), changed -> { }));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        SwingUtilities.invokeAndWait(tab::dispose);
+    }
+
+    @Test
+    void testParse_WarnsWhereBudgetsAreExceeded() throws Exception {
+        // Nested one level deeper than the default depth budget
+        StringBuilder layout = new StringBuilder();
+        for (int i = 0; i < 13; i++) {
+            layout.append("<column-panel>\n");
+        }
+        layout.append("<label text=\"Deep\"/>\n");
+        for (int i = 0; i < 13; i++) {
+            layout.append("</column-panel>\n");
+        }
+
+        SwingUtilities.invokeAndWait(() -> {
+            tab.setContent(layout.toString(), null);
+            for (int i = 0; i < tab.getEditorPane().getParserCount(); i++) {
+                tab.getEditorPane().forceReparsing(i); // Rather than waiting for the parser delay
+            }
+        });
+
+        // The analysis completes in the background and is then applied on the EDT
+        AtomicReference<List<ParserNotice>> notices = new AtomicReference<>(List.of());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (notices.get().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            SwingUtilities.invokeAndWait(() -> notices.set(tab.getEditorPane().getParserNotices()));
+        }
+
+        assertEquals(1, notices.get().size());
+        ParserNotice notice = notices.get().get(0);
+        assertEquals(ParserNotice.Level.WARNING, notice.getLevel());
+        assertEquals(12, notice.getLine(), "The innermost panel is the first element nested too deeply.");
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for EditorMode covering threshold selection and the margin
+ * before features are restored.
+ */
+public class EditorModeTest {
+
+    private static final int LARGE = 1000;
+    private static final int HUGE = 4000;
+
+    @Test
+    void testForLength_SwitchesAtThresholds() {
+        assertEquals(EditorMode.FULL, EditorMode.forLength(999, EditorMode.FULL, LARGE, HUGE));
+        assertEquals(EditorMode.LARGE, EditorMode.forLength(1000, EditorMode.FULL, LARGE, HUGE));
+        assertEquals(EditorMode.HUGE, EditorMode.forLength(4000, EditorMode.FULL, LARGE, HUGE));
+        assertEquals(EditorMode.LARGE, EditorMode.forLength(4000, EditorMode.FULL, LARGE, 0),
+                "HUGE should be disabled by a zero threshold.");
+        assertEquals(EditorMode.FULL, EditorMode.forLength(4000, EditorMode.HUGE, 0, 0),
+                "Every feature should be restored when adapting is disabled.");
+    }
+
+    @Test
+    void testForLength_RestoresFeaturesWellBelowThreshold() {
+        assertEquals(EditorMode.LARGE, EditorMode.forLength(800, EditorMode.LARGE, LARGE, HUGE));
+        assertEquals(EditorMode.FULL, EditorMode.forLength(749, EditorMode.LARGE, LARGE, HUGE));
+        assertEquals(EditorMode.HUGE, EditorMode.forLength(3500, EditorMode.HUGE, LARGE, HUGE));
+        assertEquals(EditorMode.LARGE, EditorMode.forLength(2000, EditorMode.HUGE, LARGE, HUGE));
+        assertEquals(EditorMode.FULL, EditorMode.forLength(100, EditorMode.HUGE, LARGE, HUGE));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for RecentFilesManager covering ordering, persistence and the
+ * background reachability check.
+ */
+public class RecentFilesManagerTest {
+
+    @TempDir
+    Path directory;
+
+    private Preferences prefs;
+
+    @BeforeEach
+    void setUp() {
+        prefs = Preferences.userRoot().node("sierra-previewer-test-" + System.nanoTime());
+    }
+
+    @AfterEach
+    void tearDown() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    @Test
+    void testAddFile_MovesToFrontAndCapsList() {
+        RecentFilesManager manager = new RecentFilesManager(prefs, Duration.ofSeconds(2));
+        for (int i = 0; i < 7; i++) {
+            manager.addFile(directory.resolve(i + ".xml"));
+        }
+        manager.addFile(directory.resolve("4.xml"));
+
+        List<Path> recentFiles = manager.getRecentFiles();
+        assertEquals(manager.getMaxFiles(), recentFiles.size());
+        assertEquals(directory.resolve("4.xml"), recentFiles.get(0));
+        assertEquals(directory.resolve("6.xml"), recentFiles.get(1));
+        assertThrows(UnsupportedOperationException.class, () -> recentFiles.add(directory));
+    }
+
+    @Test
+    void testFlush_PersistsListAndRenderTimes() {
+        Path path = directory.resolve("layout.xml");
+        Instant rendered = Instant.ofEpochMilli(1_700_000_000_000L);
+
+        RecentFilesManager manager = new RecentFilesManager(prefs, Duration.ofSeconds(2));
+        manager.addFile(directory.resolve("other.xml"));
+        manager.addFile(path);
+        manager.recordRender(path, rendered);
+        manager.flush();
+
+        RecentFilesManager reloaded = new RecentFilesManager(prefs, Duration.ofSeconds(2));
+        assertEquals(List.of(path, directory.resolve("other.xml")), reloaded.getRecentFiles());
+        assertEquals(rendered, reloaded.getEntries().get(0).lastRendered());
+        assertNull(reloaded.getEntries().get(1).lastRendered());
+    }
+
+    @Test
+    void testRefresh_ReportsSizeAndMissingFiles() throws Exception {
+        Path present = Files.writeString(directory.resolve("present.xml"), "<column-panel/>");
+        Path missing = directory.resolve("missing.xml");
+
+        RecentFilesManager manager = new RecentFilesManager(prefs, Duration.ofSeconds(2));
+        CountDownLatch checked = new CountDownLatch(1);
+        manager.setChangeListener(() -> {
+            List<RecentFilesManager.RecentFile> entries = manager.getEntries();
+            if (entries.size() == 2
+                    && entries.stream().noneMatch(file -> file.status() == RecentFilesManager.Status.UNKNOWN)) {
+                checked.countDown();
+            }
+        });
+        manager.addFile(missing);
+        manager.addFile(present);
+
+        assertTrue(checked.await(5, TimeUnit.SECONDS), "Both files should be checked.");
+        RecentFilesManager.RecentFile first = manager.getEntries().get(0);
+        assertEquals(RecentFilesManager.Status.REACHABLE, first.status());
+        assertEquals(Files.size(present), first.size());
+        assertEquals(RecentFilesManager.Status.UNREACHABLE, manager.getEntries().get(1).status());
+    }
+}
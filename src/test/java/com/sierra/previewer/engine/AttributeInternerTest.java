@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.awt.Color;
+import java.awt.Font;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.plaf.ColorUIResource;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for AttributeInterner covering fonts, colors, borders and look
+ * and feel resources.
+ */
+public class AttributeInternerTest {
+
+    @Test
+    void testApply_SharesEqualValuesAcrossTrees() {
+        AttributeInterner interner = new AttributeInterner();
+
+        JLabel first = label();
+        JLabel second = label();
+        JPanel firstRoot = new JPanel();
+        firstRoot.add(first);
+        JPanel secondRoot = new JPanel();
+        secondRoot.add(second);
+
+        interner.apply(firstRoot);
+        interner.apply(secondRoot);
+
+        assertSame(first.getFont(), second.getFont());
+        assertSame(first.getForeground(), second.getForeground());
+        assertSame(first.getBorder(), second.getBorder());
+        assertEquals(3, interner.getSharedCount());
+    }
+
+    @Test
+    void testApply_LeavesLookAndFeelResourcesAlone() {
+        AttributeInterner interner = new AttributeInterner();
+
+        JLabel first = new JLabel();
+        first.setForeground(new ColorUIResource(Color.RED));
+        JLabel second = new JLabel();
+        Color resource = new ColorUIResource(Color.RED);
+        second.setForeground(resource);
+
+        interner.apply(first);
+        interner.apply(second);
+
+        assertSame(resource, second.getForeground());
+        assertEquals(0, interner.getSharedCount());
+    }
+
+    private static JLabel label() {
+        JLabel label = new JLabel("Text");
+        label.setFont(new Font("Dialog", Font.BOLD, 14));
+        label.setForeground(new Color(0x336699));
+        label.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(new Color(0xcccccc)),
+                BorderFactory.createEmptyBorder(4, 8, 4, 8)));
+        return label;
+    }
+}
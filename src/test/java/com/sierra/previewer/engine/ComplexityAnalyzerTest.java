@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.engine.ComplexityAnalyzer.Analysis;
+import com.sierra.previewer.engine.ComplexityAnalyzer.Budgets;
+import com.sierra.previewer.engine.ComplexityAnalyzer.Measure;
+import com.sierra.previewer.engine.ComplexityAnalyzer.Violation;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for ComplexityAnalyzer covering the measurements, budget checks
+ * and budget files.
+ */
+public class ComplexityAnalyzerTest {
+
+    private static final String LAYOUT = "<column-panel>\n"
+            + "    <label text=\"Name\"/>\n"
+            + "    <row-panel>\n"
+            + "        <button text=\"OK\"/>\n"
+            + "        <button text=\"Cancel\"/>\n"
+            + "    </row-panel>\n"
+            + "    <table/>\n"
+            + "</column-panel>\n";
+
+    private static final Map<String, String> TYPES = Map.of("column-panel", "ColumnPanel", "row-panel", "RowPanel",
+            "label", "JLabel", "button", "JButton", "table", "JTable", "image-pane", "ImagePane");
+
+    @TempDir
+    Path directory;
+
+    private final ComplexityAnalyzer analyzer = new ComplexityAnalyzer(TYPES);
+
+    @Test
+    void testAnalyze_MeasuresLayout() throws LayoutParseException {
+        Analysis analysis = analyzer.analyze(new StringReader(LAYOUT), null, Budgets.DEFAULTS);
+
+        assertEquals(3, analysis.depth());
+        assertEquals(6, analysis.components());
+        assertEquals(Map.of("column-panel", 1, "row-panel", 1, "label", 1, "button", 2, "table", 1),
+                analysis.componentsByTag());
+        assertEquals(1 + 1 + 1 + 1.5 * 2 + 10, analysis.cost(), 1e-9);
+        assertTrue(analysis.isWithinBudgets());
+    }
+
+    @Test
+    void testAnalyze_ReportsWhereBudgetsAreExceeded() throws LayoutParseException {
+        Analysis analysis = analyzer.analyze(new StringReader(LAYOUT), null, new Budgets(2, 4, 100, 0));
+
+        assertEquals(2, analysis.violations().size());
+        Violation depth = analysis.violations().get(0);
+        assertEquals(Measure.DEPTH, depth.measure());
+        assertEquals(3.0, depth.value());
+        assertEquals(4, depth.line(), "The first button is the first element nested too deeply.");
+        Violation components = analysis.violations().get(1);
+        assertEquals(Measure.COMPONENTS, components.measure());
+        assertEquals(6.0, components.value());
+        assertEquals(5, components.line());
+        assertEquals("Component count 6 exceeds the budget of 4.", components.getMessage());
+
+        String json = analysis.writeJson(new StringBuilder()).toString();
+        assertTrue(json.contains("\"budget\":\"maxDepth\""));
+        assertTrue(json.contains("\"componentsByTag\":{\"button\":2,"));
+    }
+
+    @Test
+    void testAnalyze_SumsDistinctImages() throws Exception {
+        ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB), "png",
+                directory.resolve("photo.png").toFile());
+        String layout = "<column-panel>"
+                + "<image-pane image=\"photo.png\"/>"
+                + "<image-pane image=\"./photo.png\"/>"
+                + "<image-pane image=\"missing.png\"/>"
+                + "<image-pane image=\"https://example.com/photo.png\"/>"
+                + "</column-panel>";
+
+        Analysis analysis = analyzer.analyze(new StringReader(layout), directory, new Budgets(12, 1000, 2000, 50_000));
+        assertEquals(1, analysis.images());
+        assertEquals(4L * 200 * 100, analysis.imageBytes());
+        assertEquals(Measure.IMAGE_BYTES, analysis.violations().get(0).measure());
+    }
+
+    @Test
+    void testAnalyze_RejectsMalformedXml() {
+        LayoutParseException exception = assertThrows(LayoutParseException.class,
+                () -> analyzer.analyze(new StringReader("<column-panel>\n<label>\n</column-panel>"), null,
+                        Budgets.DEFAULTS));
+        assertEquals(3, exception.getLine());
+    }
+
+    @Test
+    void testFind_ReadsNearestBudgetsFile() throws Exception {
+        Path nested = Files.createDirectories(directory.resolve("forms/settings"));
+        assertEquals(Budgets.DEFAULTS, Budgets.find(nested));
+
+        Files.writeString(directory.resolve(ComplexityAnalyzer.BUDGETS_FILE_NAME), "maxDepth=6\nmaxCost = 250.5\n");
+        Budgets budgets = Budgets.find(nested);
+        assertEquals(6, budgets.maxDepth());
+        assertEquals(250.5, budgets.maxCost());
+        assertEquals(Budgets.DEFAULTS.maxComponents(), budgets.maxComponents());
+
+        Files.writeString(directory.resolve(ComplexityAnalyzer.BUDGETS_FILE_NAME), "maxDepth=deep\n");
+        assertThrows(IOException.class, () -> Budgets.find(nested));
+    }
+}
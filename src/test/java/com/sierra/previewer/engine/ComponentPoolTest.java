@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for ComponentPool covering recycling, reset and the per-type cap.
+ */
+public class ComponentPoolTest {
+
+    @Test
+    void testRelease_RecyclesSupportedTypesInResetState() {
+        ComponentPool pool = new ComponentPool();
+
+        JPanel root = new JPanel();
+        JLabel label = new JLabel("Hello");
+        label.setName("greeting");
+        label.setEnabled(false);
+        JButton button = new JButton("Go");
+        button.addActionListener(e -> { });
+        root.add(label);
+        root.add(button);
+
+        pool.release(root);
+
+        assertEquals(0, root.getComponentCount(), "Released containers should be emptied.");
+        assertEquals(2, pool.size(), "Panel and label should be pooled.");
+
+        JLabel recycledLabel = pool.acquire(JLabel.class, JLabel::new);
+        assertSame(label, recycledLabel, "The released label should be handed back.");
+        assertNull(recycledLabel.getText(), "Text should be reset.");
+        assertNull(recycledLabel.getName(), "Name should be reset.");
+        assertTrue(recycledLabel.isEnabled(), "Enabled state should be reset.");
+
+        JPanel recycledPanel = pool.acquire(JPanel.class, JPanel::new);
+        assertSame(root, recycledPanel);
+        assertEquals(2, pool.getHits());
+        assertEquals(0, pool.getMisses());
+    }
+
+    @Test
+    void testRelease_IgnoresUnsupportedTypes() {
+        ComponentPool pool = new ComponentPool();
+
+        pool.release(new JSlider());
+        pool.release(new JButton("Go"));
+
+        assertEquals(0, pool.size(), "Types UILoader builds itself should not be pooled.");
+    }
+
+    @Test
+    void testRelease_KeepsAtMostCapPerType() {
+        ComponentPool pool = new ComponentPool(2);
+
+        for (int i = 0; i < 5; i++) {
+            pool.release(new JLabel("label " + i));
+        }
+
+        assertEquals(2, pool.size(), "The pool should never hold more than the cap per type.");
+
+        pool.acquire(JLabel.class, JLabel::new);
+        pool.acquire(JLabel.class, JLabel::new);
+        pool.acquire(JLabel.class, JLabel::new);
+        assertEquals(1, pool.getMisses(), "An empty pool should fall back to the factory.");
+    }
+
+    @Test
+    void testRelease_StopsOnceEveryPoolIsFull() {
+        ComponentPool pool = new ComponentPool(1);
+
+        JPanel root = new JPanel();
+        root.add(new JPanel());
+        for (int i = 0; i < 50; i++) {
+            root.add(new JLabel("label " + i));
+        }
+
+        pool.release(root);
+
+        assertEquals(2, pool.size(), "One panel and one label should be pooled.");
+        assertEquals(49, root.getComponentCount(), "Only the pooled components should be detached.");
+        assertEquals("label 1", ((JLabel) root.getComponent(0)).getText(),
+                "Components after the pools filled up should not be reset.");
+    }
+}
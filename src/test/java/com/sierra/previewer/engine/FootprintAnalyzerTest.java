@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringWriter;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for FootprintAnalyzer covering element subtree matching, shared
+ * image accounting and the CSV export.
+ */
+public class FootprintAnalyzerTest {
+
+    private static final String LAYOUT = """
+            <column-panel>
+                <label text="A"/>
+                <row-panel>
+                    <label text="B"/>
+                    <label text="C"/>
+                </row-panel>
+            </column-panel>
+            """;
+
+    @Test
+    void testAnalyze_ReportsSubtreesAndCountsSharedImagesOnce() throws LayoutParseException, IOException {
+        LayoutNode layout = new LayoutParser().parse(LAYOUT);
+        ImageIcon icon = new ImageIcon(new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+
+        JPanel root = new JPanel();
+        root.add(new JLabel("A", icon, JLabel.LEADING));
+        JPanel row = new JPanel();
+        row.add(new JLabel("B", icon, JLabel.LEADING));
+        row.add(new JLabel("C"));
+        root.add(row);
+
+        FootprintAnalyzer.Footprint footprint = FootprintAnalyzer.analyze(root, layout);
+
+        assertEquals(5, footprint.components());
+        assertEquals(1, footprint.images(), "The shared icon should be counted once.");
+        assertEquals(400, footprint.imageBytes());
+
+        FootprintAnalyzer.SubtreeFootprint rowSubtree = footprint.bySubtree().stream()
+                .filter(subtree -> subtree.elementPath().equals("/column-panel/row-panel"))
+                .findFirst().orElseThrow();
+        assertEquals(3, rowSubtree.components());
+        assertEquals(3, rowSubtree.line());
+        assertTrue(footprint.bySubtree().stream()
+                .anyMatch(subtree -> subtree.elementPath().equals("/column-panel/row-panel/label[2]")));
+        assertEquals(footprint.totalBytes(), footprint.bySubtree().get(0).bytes(), "The root should be largest.");
+
+        StringWriter csv = new StringWriter();
+        footprint.writeCsv(csv);
+        assertTrue(csv.toString().startsWith("section,name,line,count,bytes,detail\n"));
+        assertTrue(csv.toString().contains("\ntype,JLabel,,3,"));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for FragmentCache covering expansion, sharing between documents
+ * and invalidation.
+ */
+public class FragmentCacheTest {
+
+    private static final String HEADER = "<row-panel>\n"
+            + "    <label text=\"Title\"/>\n"
+            + "    <include src=\"parts/close.xml\"/>\n"
+            + "</row-panel>\n";
+
+    private static final String CLOSE = "<button text=\"Close\"/>";
+
+    private static final String LAYOUT = "<column-panel>\n"
+            + "    <include src=\"header.xml\" name=\"header\"/>\n"
+            + "    <text-area/>\n"
+            + "</column-panel>\n";
+
+    @TempDir
+    Path directory;
+
+    private final FragmentCache cache = new FragmentCache();
+    private final LayoutParser parser = new LayoutParser();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(directory.resolve("header.xml"), HEADER);
+        Files.createDirectories(directory.resolve("parts"));
+        Files.writeString(directory.resolve("parts/close.xml"), CLOSE);
+    }
+
+    @Test
+    void testExpand_ReplacesIncludesWithFragments() throws Exception {
+        LayoutNode expanded = cache.expand(parser.parse(LAYOUT), directory);
+        LayoutNode header = expanded.children().get(0);
+
+        assertEquals("row-panel", header.tag());
+        assertEquals("header", header.attribute("name"), "Include attributes are set on the fragment root.");
+        assertNull(header.attribute("src"));
+        assertEquals(2, header.line());
+        assertEquals(LAYOUT.indexOf("<include"), header.startOffset(), "The root takes the include's position.");
+        assertEquals(-1, header.children().get(0).startOffset(), "Fragment elements have no source.");
+        assertEquals("Close", header.children().get(1).attribute("text"), "Nested includes are expanded.");
+        assertEquals(new LayoutParser().parse("<column-panel><row-panel name=\"header\"><label text=\"Title\"/>"
+                + "<button text=\"Close\"/></row-panel><text-area/></column-panel>").fingerprint(),
+                expanded.fingerprint());
+
+        LayoutNode plain = parser.parse("<column-panel><label/></column-panel>");
+        assertSame(plain, cache.expand(plain, directory), "Layouts without includes are not copied.");
+    }
+
+    @Test
+    void testExpand_SharesFragmentsUntilTheyChange() throws Exception {
+        LayoutNode first = cache.expand(parser.parse(LAYOUT), directory);
+        LayoutNode second = cache.expand(parser.parse(LAYOUT.replace("text-area", "label")), directory);
+        assertSame(first.children().get(0).children().get(0), second.children().get(0).children().get(0));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        // Editing the nested fragment invalidates the fragments that include it
+        Path close = directory.resolve("parts/close.xml");
+        Files.writeString(close, CLOSE.replace("Close", "Done"));
+        Files.setLastModifiedTime(close, FileTime.fromMillis(Files.getLastModifiedTime(close).toMillis() + 2000));
+        LayoutNode third = cache.expand(parser.parse(LAYOUT), directory);
+        assertEquals("Done", third.children().get(0).children().get(1).attribute("text"));
+        assertNotEquals(first.fingerprint(), third.fingerprint());
+    }
+
+    @Test
+    void testExpand_ReportsBadIncludesAtTheIncludeElement() throws Exception {
+        String missing = "<column-panel>\n    <include src=\"missing.xml\"/>\n</column-panel>";
+        LayoutParseException exception = assertThrows(LayoutParseException.class,
+                () -> cache.expand(parser.parse(missing), directory));
+        assertEquals(2, exception.getLine());
+        assertTrue(exception.getMessage().contains("missing.xml"));
+
+        Files.writeString(directory.resolve("parts/close.xml"), "<include src=\"../header.xml\"/>");
+        exception = assertThrows(LayoutParseException.class, () -> cache.expand(parser.parse(LAYOUT), directory));
+        assertEquals(2, exception.getLine());
+        assertTrue(exception.getMessage().contains("includes itself"));
+    }
+
+    @Test
+    void testSourceMap_AttributesFragmentComponentsToInclude() throws Exception {
+        LayoutNode expanded = cache.expand(parser.parse(LAYOUT), directory);
+        JPanel root = new JPanel();
+        JPanel header = new JPanel();
+        JLabel title = new JLabel("Title");
+        JButton close = new JButton("Close");
+        root.add(header);
+        root.add(new JPanel());
+        header.add(title);
+        header.add(close);
+
+        SourceMap sourceMap = SourceMap.build(root, expanded);
+        int include = LAYOUT.indexOf("<include");
+        assertEquals(include, sourceMap.sourceOf(close).start());
+        assertSame(header, sourceMap.componentAt(include + 1));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for ImageCache and ImageBinder covering hits, invalidation on
+ * modification, downscaling and binding images to built components.
+ */
+public class ImageCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private Path writeImage(String fileName, int width, int height) throws Exception {
+        Path path = directory.resolve(fileName);
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", path.toFile());
+        return path;
+    }
+
+    @Test
+    void testLoad_CachesUntilFileIsModified() throws Exception {
+        RenderMetrics metrics = new RenderMetrics();
+        ImageCache cache = new ImageCache(1024 * 1024, 1, metrics);
+        Path path = writeImage("icon.png", 16, 16);
+
+        BufferedImage first = cache.load(path, 0, 0).get();
+        BufferedImage second = cache.load(path, 0, 0).get();
+        assertSame(first, second, "The decoded image should be reused.");
+        assertEquals(1, metrics.getImageHits());
+        assertEquals(1, metrics.getImageMisses());
+
+        Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 5000));
+        assertNotSame(first, cache.load(path, 0, 0).get(), "A modified file should be decoded again.");
+        assertEquals(2, metrics.getImageMisses());
+    }
+
+    @Test
+    void testLoad_ScalesDownAndEvictsOverBudget() throws Exception {
+        RenderMetrics metrics = new RenderMetrics();
+        ImageCache cache = new ImageCache(100 * 100 * 4, 1, metrics);
+        Path path = writeImage("photo.png", 400, 200);
+
+        BufferedImage scaled = cache.load(path, 100, 100).get();
+        assertEquals(100, scaled.getWidth());
+        assertEquals(50, scaled.getHeight());
+
+        cache.load(writeImage("other.png", 100, 100), 0, 0).get();
+        assertEquals(1, cache.size(), "The older image should be evicted to stay within budget.");
+        assertEquals(1, metrics.getImageEvictions());
+    }
+
+    @Test
+    void testBinder_StripsCachedAttributesAndSetsIcons() throws Exception {
+        writeImage("icon.png", 8, 8);
+        LayoutNode layout = new LayoutParser().parse("""
+                <row-panel>
+                    <button name="ok" text="OK" icon="icon.png"/>
+                    <button text="Remote" icon="https://example.com/icon.png"/>
+                </row-panel>
+                """);
+
+        ImageBinder binder = ImageBinder.prepare(layout, directory, new ImageCache(1024 * 1024, 1, new RenderMetrics()));
+        assertNotNull(binder);
+
+        LayoutNode local = binder.getLayout().children().get(0);
+        assertNull(local.attribute("icon"), "Cached icons should not be decoded by UILoader.");
+        assertEquals("https://example.com/icon.png", binder.getLayout().children().get(1).attribute("icon"),
+                "URLs should be left for UILoader.");
+
+        // Stand in for the tree UILoader would build from the rewritten layout
+        JPanel root = new JPanel();
+        JButton button = new JButton("OK");
+        button.setName(local.attribute("name"));
+        root.add(button);
+
+        binder.apply(root, 5000);
+
+        assertEquals("ok", button.getName(), "The original name should be restored.");
+        assertInstanceOf(ImageIcon.class, button.getIcon());
+        assertEquals(8, button.getIcon().getIconWidth());
+    }
+}
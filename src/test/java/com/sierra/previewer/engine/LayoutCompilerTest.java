@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.awt.Component;
+import java.awt.Container;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.swing.JComponent;
+import org.httprpc.sierra.UILoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for LayoutCompiler covering round trips through the binary
+ * format and equivalence with the XML path.
+ */
+public class LayoutCompilerTest {
+
+    private static final List<String> ELEMENTS = List.of("column-panel", "row-panel", "label", "button", "spacer");
+
+    private static final String LAYOUT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <column-panel spacing="4" padding="8" opaque="true" background="#ff8800">
+                <label name="title" text="Hello &amp; welcome" foreground="#0A0B0C"/>
+                <row-panel weight="1" alignToBaseline="false">
+                    <button text="007" mnemonic="-1" border="#AbCdEf"/>
+                    <spacer weight="-0"/>
+                    <button text="OK" name="ok"/>
+                </row-panel>
+            </column-panel>
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testDecompile_RoundTripsLayout() throws Exception {
+        LayoutNode layout = new LayoutParser().parse(LAYOUT);
+
+        byte[] compiled = new LayoutCompiler(ELEMENTS).compile(layout);
+        LayoutNode decompiled = LayoutCompiler.decompile(ByteBuffer.wrap(compiled));
+
+        assertEquals(LayoutWriter.toXml(layout), LayoutWriter.toXml(decompiled));
+        assertEquals(layout.children().get(1).line(), decompiled.children().get(1).line());
+        assertEquals("007", decompiled.children().get(1).children().get(0).attribute("text"),
+                "Values whose text would change when parsed should be kept as strings.");
+        assertEquals("-0", decompiled.children().get(1).children().get(1).attribute("weight"));
+        assertEquals("#0A0B0C", decompiled.children().get(0).attribute("foreground"));
+    }
+
+    @Test
+    void testCompile_IsSmallerThanXml() throws Exception {
+        StringBuilder xml = new StringBuilder("<column-panel>\n");
+        for (int i = 0; i < 1000; i++) {
+            xml.append("    <row-panel spacing=\"4\">\n        <label text=\"Item ").append(i % 10)
+                    .append("\" opaque=\"true\" background=\"#eeeeee\"/>\n    </row-panel>\n");
+        }
+        xml.append("</column-panel>\n");
+
+        byte[] compiled = new LayoutCompiler(ELEMENTS).compile(new LayoutParser().parse(xml.toString()));
+
+        int xmlBytes = xml.toString().getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(compiled.length * 4 < xmlBytes, "Compiled " + compiled.length + " bytes vs XML " + xmlBytes);
+    }
+
+    @Test
+    void testCompile_RejectsUnknownElement() throws Exception {
+        LayoutNode layout = new LayoutParser().parse("<column-panel>\n    <row-panel><blink/></row-panel>\n</column-panel>");
+
+        LayoutParseException e = assertThrows(LayoutParseException.class,
+                () -> new LayoutCompiler(ELEMENTS).compile(layout));
+
+        assertEquals(2, e.getLine());
+        assertEquals("/column-panel/row-panel/blink", e.getElementPath());
+    }
+
+    @Test
+    void testDecompile_RejectsCorruptData() throws Exception {
+        byte[] compiled = new LayoutCompiler(ELEMENTS).compile(new LayoutParser().parse(LAYOUT));
+
+        assertThrows(IOException.class, () -> LayoutCompiler.decompile(ByteBuffer.wrap(
+                Arrays.copyOf(compiled, compiled.length / 2))));
+        assertThrows(IOException.class, () -> LayoutCompiler.decompile(ByteBuffer.wrap(
+                LAYOUT.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void testLoad_BuildsSameTreeAsXml() throws Exception {
+        Path xmlPath = Files.writeString(directory.resolve("layout.xml"), LAYOUT);
+        Path compiledPath = Files.write(directory.resolve("layout.sierrab"),
+                new LayoutCompiler(ELEMENTS).compile(new LayoutParser().parse(LAYOUT)));
+
+        JComponent fromXml = UILoader.load(xmlPath);
+        JComponent fromCompiled = LayoutCompiler.load(compiledPath);
+
+        assertEquals(describe(fromXml), describe(fromCompiled));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count(), "Nothing should be written next to the compiled layout.");
+        }
+    }
+
+    private static String describe(Component component) {
+        StringBuilder description = new StringBuilder(component.getClass().getName())
+                .append('[').append(component.getName()).append(']');
+        if (component instanceof Container container) {
+            description.append('(');
+            for (Component child : container.getComponents()) {
+                description.append(describe(child)).append(',');
+            }
+            description.append(')');
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for LayoutParser and ParseCache covering the node tree, source
+ * locations and error reporting.
+ */
+public class LayoutParserTest {
+
+    private static final String LAYOUT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <!DOCTYPE column-panel SYSTEM "sierra.dtd">
+            <column-panel spacing="4">
+                <label text="Name"/>
+                <row-panel>
+                    <button text="OK"/>
+                </row-panel>
+            </column-panel>
+            """;
+
+    @Test
+    void testParse_BuildsTreeWithSourceLocations() throws LayoutParseException {
+        LayoutNode root = new LayoutParser().parse(LAYOUT);
+
+        assertEquals("column-panel", root.tag());
+        assertEquals("4", root.attribute("spacing"));
+        assertEquals(4, root.size(), "Root, label, row-panel and button should be parsed.");
+        assertEquals(3, root.line());
+        assertEquals(1, root.column());
+
+        LayoutNode label = root.children().get(0);
+        assertEquals("label", label.tag());
+        assertEquals(4, label.line());
+        assertEquals(5, label.column());
+        assertEquals("<label text=\"Name\"/>", LAYOUT.substring(label.startOffset(), label.endOffset()));
+
+        LayoutNode rowPanel = root.children().get(1);
+        assertTrue(LAYOUT.substring(rowPanel.startOffset(), rowPanel.endOffset()).endsWith("</row-panel>"));
+        assertEquals("button", rowPanel.children().get(0).tag());
+    }
+
+    @Test
+    void testParse_ReportsLocationOfMalformedXml() {
+        String text = "<column-panel>\n    <label text=\"x\">\n</column-panel>";
+
+        LayoutParseException e = assertThrows(LayoutParseException.class, () -> new LayoutParser().parse(text));
+
+        assertEquals(3, e.getLine(), "The mismatched end tag is on line 3.");
+        assertFalse(e.getMessage().startsWith("ParseError"), "The location prefix should be stripped.");
+    }
+
+    @Test
+    void testParse_ReportsPathOfOpenElements() {
+        String text = "<column-panel>\n    <row-panel/>\n    <row-panel>\n        <label>\n</column-panel>";
+
+        LayoutParseException e = assertThrows(LayoutParseException.class, () -> new LayoutParser().parse(text));
+
+        assertEquals("/column-panel/row-panel[2]/label", e.getElementPath());
+    }
+
+    @Test
+    void testStream_HandsOverEachChildOfTheRoot() throws LayoutParseException {
+        List<String> events = new ArrayList<>();
+
+        boolean complete = new LayoutParser().stream(new StringReader(LAYOUT), new LayoutParser.StreamListener() {
+            @Override
+            public boolean rootStarted(String tag, Map<String, String> attributes) {
+                events.add("root " + tag);
+                return true;
+            }
+
+            @Override
+            public boolean childParsed(LayoutNode child) {
+                events.add(child.tag() + " " + child.children().size() + " line " + child.line());
+                return true;
+            }
+        });
+
+        assertTrue(complete);
+        assertEquals(List.of("root column-panel", "label 0 line 4", "row-panel 1 line 5"), events);
+    }
+
+    @Test
+    void testStream_StopsWhenListenerDeclines() throws LayoutParseException {
+        List<LayoutNode> children = new ArrayList<>();
+
+        boolean complete = new LayoutParser().stream(new StringReader(LAYOUT), new LayoutParser.StreamListener() {
+            @Override
+            public boolean rootStarted(String tag, Map<String, String> attributes) {
+                return true;
+            }
+
+            @Override
+            public boolean childParsed(LayoutNode child) {
+                children.add(child);
+                return false;
+            }
+        });
+
+        assertFalse(complete);
+        assertEquals(1, children.size(), "Parsing should stop after the first child.");
+    }
+
+    @Test
+    void testParseCache_ReusesTreeForIdenticalText() throws LayoutParseException {
+        ParseCache cache = new ParseCache();
+
+        LayoutNode first = cache.parse(LAYOUT);
+        LayoutNode second = cache.parse(LAYOUT);
+
+        assertSame(first, second, "Identical text should be parsed once.");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testParseCache_BoundsCachedTextLength() throws LayoutParseException {
+        String small = "<label text=\"a\"/>";
+        ParseCache cache = new ParseCache(32, 2 * small.length());
+
+        cache.parse(small);
+        cache.parse("<label text=\"b\"/>");
+        cache.parse("<label text=\"c\"/>");
+        assertEquals(2, cache.size(), "The eldest layout should be evicted to stay within the length budget.");
+
+        cache.parse(LAYOUT);
+        assertEquals(2, cache.size(), "Text longer than the whole budget should not be cached.");
+        cache.parse(LAYOUT);
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void testFingerprint_IgnoresFormattingButNotContent() throws LayoutParseException {
+        LayoutParser parser = new LayoutParser();
+        long fingerprint = parser.parse(LAYOUT).fingerprint();
+
+        String reformatted = """
+                <column-panel   spacing="4"><!-- The form -->
+                <label text="Name"/><row-panel><button text="OK"/></row-panel></column-panel>
+                """;
+        assertEquals(fingerprint, parser.parse(reformatted).fingerprint(), "Whitespace and comments");
+        assertEquals(parser.parse("<label text=\"a\" font=\"bold\"/>").fingerprint(),
+                parser.parse("<label font=\"bold\" text=\"a\"/>").fingerprint(), "Attribute order");
+
+        assertNotEquals(fingerprint, parser.parse(LAYOUT.replace("\"OK\"", "\"Cancel\"")).fingerprint());
+        assertNotEquals(fingerprint, parser.parse(LAYOUT.replace("spacing", "padding")).fingerprint());
+        assertNotEquals(parser.parse("<row-panel><label/><button/></row-panel>").fingerprint(),
+                parser.parse("<row-panel><button/><label/></row-panel>").fingerprint(), "Child order");
+        assertNotEquals(parser.parse("<row-panel><label/></row-panel>").fingerprint(),
+                parser.parse("<row-panel/>").fingerprint());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for PreviewCache covering lookups by path and content, eviction
+ * and damaged entries.
+ */
+public class PreviewCacheTest {
+
+    private static final String LAYOUT = "<column-panel><label text=\"Name\"/><button text=\"OK\"/></column-panel>";
+
+    @TempDir
+    Path directory;
+
+    private static BufferedImage image(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(1, 1, Color.RED.getRGB());
+        return image;
+    }
+
+    @Test
+    void testLoad_ReturnsStoredPreviewOfSameContent() throws Exception {
+        PreviewCache cache = new PreviewCache(directory.resolve("previews"), PreviewCache.DEFAULT_MAX_BYTES,
+                new ParseCache());
+        Path file = directory.resolve("form.xml");
+        assertNull(cache.load(file, LAYOUT), "Nothing is cached yet.");
+
+        cache.store(file, LAYOUT, image(40, 30)).get();
+        PreviewCache.Entry entry = cache.load(file, LAYOUT);
+        assertNotNull(entry);
+        assertEquals(40, entry.image().getWidth());
+        assertEquals(Color.RED.getRGB(), entry.image().getRGB(1, 1));
+        assertEquals("column-panel", entry.metadata().rootTag());
+        assertEquals(3, entry.metadata().elementCount());
+        assertEquals(2, entry.metadata().depth());
+
+        assertNull(cache.load(file, LAYOUT.replace("OK", "Cancel")), "Edited content misses.");
+        assertNull(cache.load(directory.resolve("other.xml"), LAYOUT), "Other files miss.");
+
+        // A new instance finds the entries on disk
+        PreviewCache reopened = new PreviewCache(directory.resolve("previews"), PreviewCache.DEFAULT_MAX_BYTES,
+                new ParseCache());
+        assertEquals(1, reopened.size());
+        assertNotNull(reopened.load(file, LAYOUT));
+    }
+
+    @Test
+    void testStore_EvictsLeastRecentlyUsed() throws Exception {
+        PreviewCache unbounded = new PreviewCache(directory, Long.MAX_VALUE, new ParseCache());
+        unbounded.store(directory.resolve("probe.xml"), LAYOUT, image(64, 64)).get();
+        long entryBytes = unbounded.getBytes();
+
+        PreviewCache cache = new PreviewCache(directory.resolve("bounded"), entryBytes * 2, new ParseCache());
+        Path first = directory.resolve("first.xml");
+        Path second = directory.resolve("second.xml");
+        Path third = directory.resolve("third.xml");
+        cache.store(first, LAYOUT, image(64, 64)).get();
+        cache.store(second, LAYOUT, image(64, 64)).get();
+        assertNotNull(cache.load(first, LAYOUT)); // Now used more recently than the second
+        cache.store(third, LAYOUT, image(64, 64)).get();
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.load(first, LAYOUT));
+        assertNull(cache.load(second, LAYOUT), "The least recently used entry is evicted.");
+        assertNotNull(cache.load(third, LAYOUT));
+        try (Stream<Path> files = Files.list(directory.resolve("bounded"))) {
+            assertEquals(2, files.count(), "Evicted entries are deleted and no temporary files remain.");
+        }
+    }
+
+    @Test
+    void testLoad_DiscardsDamagedEntries() throws Exception {
+        PreviewCache cache = new PreviewCache(directory, PreviewCache.DEFAULT_MAX_BYTES, new ParseCache());
+        Path file = directory.resolve("form.xml");
+        cache.store(file, LAYOUT, image(16, 16)).get();
+
+        Path entryFile;
+        try (Stream<Path> files = Files.list(directory)) {
+            entryFile = files.filter(path -> path.toString().endsWith(".preview")).findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(entryFile);
+        bytes[bytes.length - 5] ^= 0x55;
+        Files.write(entryFile, bytes);
+
+        assertNull(cache.load(file, LAYOUT), "The checksum should reject the entry.");
+        assertEquals(0, cache.size());
+        assertFalse(Files.exists(entryFile));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.engine.PreviewMatrix.Configuration;
+import com.sierra.previewer.engine.PreviewMatrix.Snapshot;
+import com.sierra.previewer.engine.PreviewMatrix.Theme;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.UIManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for PreviewMatrix covering parallel rendering of several
+ * configurations from one parse.
+ */
+public class PreviewMatrixTest {
+
+    private static final String LAYOUT = """
+            <column-panel>
+                <label text="Hello"/>
+                <row-panel>
+                    <button text="OK"/>
+                </row-panel>
+            </column-panel>
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRender_DeliversOneSnapshotPerConfiguration() throws Exception {
+        RenderingEngine engine = new RenderingEngine();
+        PreviewMatrix matrix = new PreviewMatrix(engine);
+        String lookAndFeel = UIManager.getLookAndFeel().getClass().getName();
+
+        List<Configuration> configurations = List.of(
+                new Configuration(new Dimension(360, 640), Theme.LIGHT, 1f),
+                new Configuration(new Dimension(1280, 800), Theme.LIGHT, 1.5f),
+                new Configuration(new Dimension(360, 640), Theme.DARK, 1f),
+                new Configuration(new Dimension(1280, 800), Theme.DARK, 1.5f));
+        List<Snapshot> snapshots = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(configurations.size());
+        try {
+            matrix.render(LAYOUT, directory.resolve("layout.xml"), configurations, snapshot -> {
+                snapshots.add(snapshot);
+                done.countDown();
+            });
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        } finally {
+            matrix.shutdown();
+        }
+
+        assertEquals(configurations.size(), snapshots.size());
+        for (Snapshot snapshot : snapshots) {
+            assertNull(snapshot.error(), snapshot.configuration().label() + ": " + snapshot.error());
+            assertTrue(snapshot.image().getWidth() <= PreviewMatrix.MAX_SNAPSHOT_SIZE);
+            assertTrue(snapshot.image().getHeight() <= PreviewMatrix.MAX_SNAPSHOT_SIZE);
+        }
+        assertEquals(1, engine.getParseCache().getMisses(), "The document should be parsed once.");
+        assertEquals(lookAndFeel, UIManager.getLookAndFeel().getClass().getName(),
+                "The look and feel should be restored.");
+    }
+
+    @Test
+    void testRender_ReportsInvalidDocumentForEveryConfiguration() throws Exception {
+        PreviewMatrix matrix = new PreviewMatrix(new RenderingEngine());
+        List<Configuration> configurations = List.of(
+                new Configuration(new Dimension(360, 640), Theme.LIGHT, 1f),
+                new Configuration(new Dimension(768, 1024), Theme.DARK, 1f));
+        List<Snapshot> snapshots = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(configurations.size());
+        try {
+            matrix.render("<column-panel>", null, configurations, snapshot -> {
+                snapshots.add(snapshot);
+                done.countDown();
+            });
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        } finally {
+            matrix.shutdown();
+        }
+
+        for (Snapshot snapshot : snapshots) {
+            assertNull(snapshot.image());
+            assertNotNull(snapshot.error());
+        }
+    }
+
+    @Test
+    void testScaleFonts_ScalesInheritedFontsOnce() {
+        JPanel panel = new JPanel();
+        panel.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 10));
+        JLabel label = new JLabel("Inherited");
+        label.setFont(null);
+        panel.add(label);
+
+        PreviewMatrix.scaleFonts(panel, 1.5f);
+
+        assertEquals(15f, panel.getFont().getSize2D());
+        assertEquals(15f, label.getFont().getSize2D());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for RenderTracer covering the enabled switch, ring buffer
+ * overwriting and the Chrome trace-event output.
+ */
+public class RenderTracerTest {
+
+    @Test
+    void testEnd_IgnoresSpansBegunWhileDisabled() {
+        RenderTracer tracer = new RenderTracer(4);
+
+        long start = tracer.begin();
+        tracer.end(RenderTracer.Category.LAYOUT, tracer.nameId("column-panel"), start, 0);
+
+        assertEquals(0, start);
+        assertEquals(0, tracer.size());
+    }
+
+    @Test
+    void testWriteChromeTrace_KeepsNewestEventsWhenFull() throws IOException {
+        RenderTracer tracer = new RenderTracer(2);
+        tracer.setEnabled(true);
+
+        for (String tag : new String[] {"first", "second", "third"}) {
+            tracer.end(RenderTracer.Category.BUILD, tracer.nameId(tag), tracer.begin(), 7);
+        }
+        assertEquals(2, tracer.size());
+
+        StringWriter trace = new StringWriter();
+        tracer.writeChromeTrace(trace);
+        String json = trace.toString();
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertFalse(json.contains("\"first\""), "The oldest event should be overwritten.");
+        assertTrue(json.indexOf("\"second\"") < json.indexOf("\"third\""), "Events should be oldest first.");
+        assertTrue(json.contains("\"cat\":\"build\",\"ph\":\"X\""));
+        assertTrue(json.contains("\"args\":{\"line\":7}"));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for RenderWatchdog covering timeouts, discarding of abandoned
+ * trees and the abandoned build cap.
+ */
+public class RenderWatchdogTest {
+
+    @Test
+    void testBuild_ReturnsTreeWithinTimeout() throws Exception {
+        RenderWatchdog watchdog = new RenderWatchdog(1, component -> fail("Nothing should be discarded."));
+
+        JLabel label = new JLabel("Hello");
+        assertSame(label, watchdog.build(() -> label, 5000));
+        assertEquals(0, watchdog.getAbandonedCount());
+    }
+
+    @Test
+    void testBuild_AbandonsSlowBuildAndDiscardsItsTree() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch discarded = new CountDownLatch(1);
+        AtomicReference<JComponent> discardedTree = new AtomicReference<>();
+        RenderWatchdog watchdog = new RenderWatchdog(1, component -> {
+            discardedTree.set(component);
+            discarded.countDown();
+        });
+
+        JLabel label = new JLabel("Slow");
+        assertThrows(TimeoutException.class, () -> watchdog.build(() -> {
+            // Ignores interruption, like UILoader
+            while (true) {
+                try {
+                    release.await();
+                    return label;
+                } catch (InterruptedException e) {
+                    // Keep building
+                }
+            }
+        }, 50));
+        assertEquals(1, watchdog.getAbandonedCount());
+
+        assertThrows(RenderWatchdog.SaturatedException.class, () -> watchdog.build(JLabel::new, 50),
+                "Builds should be refused while the cap is reached.");
+
+        release.countDown();
+        assertTrue(discarded.await(5, TimeUnit.SECONDS), "The late tree should be discarded.");
+        assertSame(label, discardedTree.get());
+        assertEquals(0, watchdog.getAbandonedCount());
+    }
+
+    @Test
+    void testBuild_ReleasesSlotOfBuildAbandonedBeforeStarting() throws Exception {
+        RenderWatchdog watchdog = new RenderWatchdog(1, component -> { });
+
+        // An interrupted caller usually gives up before the build thread picks the build up
+        Thread.currentThread().interrupt();
+        try {
+            watchdog.build(JLabel::new, 5000);
+        } catch (InterruptedException e) {
+            // Abandoned
+        }
+        Thread.interrupted();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (watchdog.getAbandonedCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, watchdog.getAbandonedCount(), "The build's slot should be released.");
+        assertSame(JLabel.class, watchdog.build(JLabel::new, 5000).getClass());
+    }
+
+    @Test
+    void testBuild_PropagatesBuildFailure() {
+        RenderWatchdog watchdog = new RenderWatchdog(1, component -> { });
+
+        IOException failure = new IOException("Broken");
+        IOException thrown = assertThrows(IOException.class,
+                () -> watchdog.build(() -> { throw failure; }, 5000));
+        assertSame(failure, thrown);
+    }
+}
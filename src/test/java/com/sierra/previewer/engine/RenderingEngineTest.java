@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.RenderError;
+import com.sierra.previewer.model.RenderResult;
+import com.sierra.previewer.text.Rope;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JComponent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for RenderingEngine covering streamed renders.
+ */
+public class RenderingEngineTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRenderStreaming_SavesInvalidDocument() throws Exception {
+        Path targetPath = directory.resolve("layout.xml");
+        String xmlText = "<column-panel><label text=\"A\"/><label text=\"B\">";
+
+        RenderResult result = new RenderingEngine(1).renderStreaming(Rope.of(xmlText), targetPath, null,
+                preview -> { }, () -> false);
+
+        assertInstanceOf(RenderResult.Error.class, result);
+        assertEquals(xmlText, Files.readString(targetPath), "The text should be saved before it is parsed.");
+    }
+
+    @Test
+    void testRenderStreaming_RejectsChildrenOverDepthBudget() {
+        RenderingEngine engine = new RenderingEngine(1);
+        engine.setDepthBudget(3);
+        List<JComponent> published = new ArrayList<>();
+
+        RenderResult result = engine.renderStreaming(Rope.of("<column-panel>"
+                + "<row-panel><label text=\"Shallow\"/></row-panel>"
+                + "<row-panel><row-panel><label text=\"Deep\"/></row-panel></row-panel>"
+                + "</column-panel>"), null, null, published::add, () -> false);
+
+        RenderError error = assertInstanceOf(RenderResult.Error.class, result).details();
+        assertEquals(RenderError.Reason.BUDGET_EXCEEDED, error.reason());
+        assertTrue(published.isEmpty(), "Nothing should be streamed in before the budget is checked.");
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.model.LayoutNode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for ScratchLayout covering resource resolution and where
+ * scratch files are written.
+ */
+public class ScratchLayoutTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testResolve_MakesRelativeResourcesAbsolute() throws LayoutParseException {
+        LayoutNode layout = new LayoutParser().parse("""
+                <column-panel>
+                    <label text="icons/ok.png" icon="icons/ok.png"/>
+                    <button icon="https://example.com/ok.png"/>
+                </column-panel>
+                """);
+
+        LayoutNode resolved = ScratchLayout.resolve(layout, directory);
+
+        LayoutNode label = resolved.children().get(0);
+        assertEquals(directory.resolve("icons/ok.png").toUri().toString(), label.attribute("icon"));
+        assertEquals("icons/ok.png", label.attribute("text"), "Only resource attributes should be resolved.");
+        assertSame(layout.children().get(1), resolved.children().get(1), "URLs should be left as they are.");
+    }
+
+    @Test
+    void testWrite_UsesSystemTempDirectory() throws Exception {
+        Path scratchPath = ScratchLayout.write(new LayoutParser().parse("<label icon=\"ok.png\"/>"), directory);
+        try {
+            assertNotEquals(directory, scratchPath.getParent());
+            assertTrue(Files.readString(scratchPath).contains(directory.resolve("ok.png").toUri().toString()));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(0, files.count(), "Nothing should be written to the layout's directory.");
+            }
+        } finally {
+            Files.deleteIfExists(scratchPath);
+        }
+    }
+}
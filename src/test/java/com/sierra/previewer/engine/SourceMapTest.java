@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.engine;
+
+import com.sierra.previewer.engine.SourceMap.Span;
+import com.sierra.previewer.model.LayoutNode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for SourceMap covering lookups in both directions and the
+ * translation of offsets through later edits.
+ */
+public class SourceMapTest {
+
+    private static final String LAYOUT = "<column-panel>\n"
+            + "    <label text=\"Name\"/>\n"
+            + "    <row-panel><button text=\"OK\"/><button text=\"Cancel\"/></row-panel>\n"
+            + "</column-panel>\n";
+
+    private JPanel root;
+    private JLabel label;
+    private JPanel row;
+    private JButton ok;
+    private JButton cancel;
+    private SourceMap sourceMap;
+
+    @BeforeEach
+    void setUp() throws LayoutParseException {
+        root = new JPanel();
+        label = new JLabel("Name");
+        row = new JPanel();
+        ok = new JButton("OK");
+        cancel = new JButton("Cancel");
+        root.add(label);
+        root.add(row);
+        row.add(ok);
+        row.add(cancel);
+
+        LayoutNode layout = new LayoutParser().parse(LAYOUT);
+        sourceMap = SourceMap.build(root, layout);
+    }
+
+    @Test
+    void testComponentAt_FindsInnermostElement() {
+        assertEquals(5, sourceMap.size());
+        assertSame(root, sourceMap.componentAt(0));
+        assertSame(label, sourceMap.componentAt(LAYOUT.indexOf("text=\"Name\"")));
+        assertSame(root, sourceMap.componentAt(LAYOUT.indexOf("<row-panel") - 1), "Text between children");
+        assertSame(row, sourceMap.componentAt(LAYOUT.indexOf("<row-panel")));
+        assertSame(ok, sourceMap.componentAt(LAYOUT.indexOf("\"OK\"")));
+        assertSame(cancel, sourceMap.componentAt(LAYOUT.indexOf("<button text=\"Cancel")));
+        assertSame(row, sourceMap.componentAt(LAYOUT.indexOf("</row-panel>")));
+        assertNull(sourceMap.componentAt(LAYOUT.length() - 1), "Text after the root element");
+    }
+
+    @Test
+    void testSourceOf_ReturnsElementRange() {
+        int start = LAYOUT.indexOf("<button text=\"OK\"/>");
+        assertEquals(new Span(start, start + "<button text=\"OK\"/>".length()), sourceMap.sourceOf(ok));
+
+        JLabel unmapped = new JLabel();
+        ok.add(unmapped);
+        assertEquals(sourceMap.sourceOf(ok), sourceMap.sourceOf(unmapped), "The nearest mapped ancestor is used.");
+        assertNull(sourceMap.sourceOf(new JLabel()));
+    }
+
+    @Test
+    void testBuild_AttributesUnpairedChildrenToParent() throws LayoutParseException {
+        JPanel composite = new JPanel(); // Built with no children for its element's two
+        SourceMap partial = SourceMap.build(composite, new LayoutParser().parse(LAYOUT));
+
+        assertEquals(1, partial.size());
+        assertSame(composite, partial.componentAt(LAYOUT.indexOf("\"OK\"")));
+    }
+
+    @Test
+    void testEdit_TranslatesOffsets() {
+        int labelStart = LAYOUT.indexOf("<label");
+        int okStart = LAYOUT.indexOf("<button text=\"OK\"");
+        Span okSpan = sourceMap.sourceOf(ok);
+
+        // Insert a line before the label, then remove "Name" from it
+        String inserted = "    <spacer/>\n";
+        sourceMap.edit(labelStart - 4, inserted.length());
+        int nameOffset = LAYOUT.indexOf("Name") + inserted.length();
+        sourceMap.edit(nameOffset, -4);
+
+        int shift = inserted.length() - 4;
+        assertEquals(new Span(okSpan.start() + shift, okSpan.end() + shift), sourceMap.sourceOf(ok));
+        assertSame(ok, sourceMap.componentAt(okStart + shift));
+        assertSame(root, sourceMap.componentAt(labelStart), "Inserted text belongs to the enclosing element.");
+        assertSame(label, sourceMap.componentAt(labelStart + inserted.length()));
+    }
+
+    @Test
+    void testEdit_AppliesManyEdits() {
+        int okStart = LAYOUT.indexOf("<button text=\"OK\"");
+        int edits = 100;
+        for (int i = 0; i < edits; i++) {
+            sourceMap.edit(0, 1); // Typing at the start of the document
+        }
+
+        assertSame(ok, sourceMap.componentAt(okStart + edits));
+        assertEquals(okStart + edits, sourceMap.sourceOf(ok).start());
+        assertNull(sourceMap.componentAt(edits - 1), "Text typed before the root element");
+    }
+
+    @Test
+    void testEdit_CollapsesRemovedElements() {
+        Span rowSpan = sourceMap.sourceOf(row);
+        int rowStart = rowSpan.start();
+        sourceMap.edit(rowStart, -(rowSpan.end() - rowStart));
+
+        assertEquals(new Span(rowStart, rowStart), sourceMap.sourceOf(ok), "Removed elements become empty.");
+        assertEquals(new Span(rowStart, rowStart), sourceMap.sourceOf(row));
+        assertSame(root, sourceMap.componentAt(rowStart), "The text after the removal belongs to the root.");
+        assertEquals(LAYOUT.length() - (rowSpan.end() - rowStart) - 1, sourceMap.sourceOf(root).end());
+    }
+
+    @Test
+    void testOffsetTree_MatchesTranslatingEachOffset() {
+        Random random = new Random(42);
+        int[] offsets = new int[1000];
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] = offsets[i - 1] + random.nextInt(5);
+        }
+        int[] distinct = Arrays.stream(offsets).distinct().toArray();
+        SourceMap.OffsetTree starts = new SourceMap.OffsetTree(distinct);
+        SourceMap.OffsetTree ends = new SourceMap.OffsetTree(distinct);
+        int[] expectedStarts = distinct.clone();
+        int[] expectedEnds = distinct.clone();
+
+        int length = distinct[distinct.length - 1] + 1;
+        for (int edit = 0; edit < 500; edit++) {
+            int offset = random.nextInt(length + 1);
+            if (random.nextBoolean() || offset == length) {
+                int inserted = 1 + random.nextInt(20);
+                starts.insert(offset, inserted, true);
+                ends.insert(offset, inserted, false);
+                for (int i = 0; i < distinct.length; i++) {
+                    expectedStarts[i] += expectedStarts[i] >= offset ? inserted : 0;
+                    expectedEnds[i] += expectedEnds[i] > offset ? inserted : 0;
+                }
+                length += inserted;
+            } else {
+                int removed = 1 + random.nextInt(Math.min(50, length - offset));
+                starts.remove(offset, removed);
+                ends.remove(offset, removed);
+                for (int[] expected : List.of(expectedStarts, expectedEnds)) {
+                    for (int i = 0; i < distinct.length; i++) {
+                        expected[i] = expected[i] >= offset + removed ? expected[i] - removed
+                                : Math.min(expected[i], offset); // Inside the removed text
+                    }
+                }
+                length -= removed;
+            }
+        }
+
+        for (int i = 0; i < distinct.length; i++) {
+            assertEquals(expectedStarts[i], starts.get(i));
+            assertEquals(expectedEnds[i], ends.get(i));
+        }
+        for (int probe = 0; probe <= length; probe += 7) {
+            int first = 0;
+            while (first < distinct.length && expectedStarts[first] < probe) {
+                first++;
+            }
+            assertEquals(first, starts.firstAtLeast(probe));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for SessionRecorder and EditingSession covering the recorded
+ * edits and the binary format.
+ */
+public class EditingSessionTest {
+
+    @Test
+    void testRecorder_CapturesEditsThatReproduceTheDocument() throws BadLocationException {
+        PlainDocument document = new PlainDocument();
+        document.insertString(0, "<column-panel/>", null);
+
+        SessionRecorder recorder = new SessionRecorder(document);
+        document.insertString(13, " spacing=\"4\"", null);
+        document.replace(0, 7, "<row", null);
+        document.remove(document.getLength() - 2, 1);
+        EditingSession session = recorder.stop();
+        document.insertString(0, "ignored", null);
+
+        assertEquals("<column-panel/>", session.initialText());
+        assertEquals(4, session.edits().size(), "A replacement is a removal and an insertion.");
+        assertEquals(new EditingSession.Edit(session.edits().get(0).timeNanos(), 13, 0, " spacing=\"4\""),
+                session.edits().get(0));
+        assertEquals("<row-panel spacing=\"4\">", session.getFinalText());
+        assertTrue(session.edits().get(3).timeNanos() >= session.edits().get(0).timeNanos());
+    }
+
+    @Test
+    void testBytes_RoundTripSession() throws IOException {
+        EditingSession session = new EditingSession("<label text=\"\u00e9t\u00e9\"/>", List.of(
+                new EditingSession.Edit(1_000, 0, 0, "\n"),
+                new EditingSession.Edit(250_000_000, 8, 4, ""),
+                new EditingSession.Edit(90_000_000_000L, 8, 0, "name")));
+
+        byte[] bytes = session.toBytes();
+        EditingSession read = EditingSession.read(new ByteArrayInputStream(bytes));
+
+        assertEquals(session, read);
+        assertEquals(90_000_000_000L, read.getDurationNanos());
+    }
+
+    @Test
+    void testRead_RejectsOtherFiles() {
+        byte[] bytes = "<column-panel/>".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> EditingSession.read(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.text;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for Rope and DocumentMirror covering random edits, persistence
+ * of old versions and mirroring of document events.
+ */
+public class RopeTest {
+
+    @Test
+    void testEdits_MatchStringBuilderAndKeepOldVersions() {
+        Random random = new Random(42);
+        StringBuilder expected = new StringBuilder();
+        Rope rope = Rope.EMPTY;
+
+        for (int i = 0; i < 5000; i++) {
+            if (expected.length() > 0 && random.nextInt(3) == 0) {
+                int offset = random.nextInt(expected.length());
+                int length = random.nextInt(Math.min(50, expected.length() - offset) + 1);
+                expected.delete(offset, offset + length);
+                rope = rope.delete(offset, length);
+            } else {
+                int offset = random.nextInt(expected.length() + 1);
+                String text = "x".repeat(random.nextInt(700)) + i;
+                expected.insert(offset, text);
+                rope = rope.insert(offset, text);
+            }
+        }
+
+        assertEquals(expected.toString(), rope.toString());
+        assertEquals(expected.length(), rope.length());
+        assertEquals(expected.charAt(expected.length() / 2), rope.charAt(rope.length() / 2));
+        assertEquals(expected.substring(100, 900), rope.subSequence(100, 900).toString());
+
+        Rope before = rope;
+        Rope after = rope.insert(0, "<column-panel/>");
+        assertEquals(expected.toString(), before.toString(), "Old versions should be unaffected by edits.");
+        assertTrue(after.toString().startsWith("<column-panel/>"));
+    }
+
+    @Test
+    void testReader_ReadsEveryLeafInOrder() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            expected.append("<label text=\"").append(i).append("\"/>\n");
+        }
+        Rope rope = Rope.of(expected).insert(1000, "<spacer/>").delete(50, 20);
+        String text = rope.toString();
+
+        StringWriter output = new StringWriter();
+        rope.reader().transferTo(output);
+
+        assertEquals(text, output.toString());
+    }
+
+    @Test
+    void testMirror_TracksDocumentEdits() throws BadLocationException {
+        PlainDocument document = new PlainDocument();
+        document.insertString(0, "<column-panel>\n</column-panel>", null);
+        DocumentMirror mirror = new DocumentMirror(document);
+
+        Rope original = mirror.snapshot();
+        document.insertString(15, "    <label/>\n", null);
+        document.remove(0, 1);
+
+        assertEquals(document.getText(0, document.getLength()), mirror.snapshot().toString());
+        assertEquals("<column-panel>\n</column-panel>", original.toString());
+    }
+}
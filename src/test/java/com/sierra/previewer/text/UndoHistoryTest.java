@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for UndoHistory covering navigation between arbitrary versions,
+ * merging of edits and the bounds on retained history.
+ */
+public class UndoHistoryTest {
+
+    private Rope text;
+    private UndoHistory history;
+
+    private void insert(int offset, String inserted, boolean merge) {
+        text = text.insert(offset, inserted);
+        history.record(text, offset, 0, inserted.length(), merge);
+    }
+
+    private void delete(int offset, int length) {
+        text = text.delete(offset, length);
+        history.record(text, offset, length, 0, false);
+    }
+
+    /**
+     * Applies a change the way the editor does and returns the result.
+     */
+    private static String apply(String before, UndoHistory.Change change) {
+        return before.substring(0, change.start()) + change.text() + before.substring(change.end());
+    }
+
+    @Test
+    void testJumpTo_ChangeReproducesEveryVersion() {
+        Random random = new Random(7);
+        text = Rope.of("<column-panel>\n</column-panel>\n");
+        history = new UndoHistory(text);
+        List<String> expected = new ArrayList<>();
+        expected.add(text.toString());
+
+        for (int i = 0; i < 300; i++) {
+            if (text.length() > 10 && random.nextInt(3) == 0) {
+                int offset = random.nextInt(text.length() - 5);
+                delete(offset, 1 + random.nextInt(5));
+            } else {
+                insert(random.nextInt(text.length() + 1), "<label text=\"" + i + "\"/>", false);
+            }
+            expected.add(text.toString());
+        }
+        assertEquals(expected.size(), history.size());
+
+        String current = text.toString();
+        for (int i = 0; i < 200; i++) {
+            int index = random.nextInt(history.size());
+            current = apply(current, history.jumpTo(index));
+            assertEquals(expected.get(index), current, "Jump to version " + index);
+            assertEquals(index, history.getCurrentIndex());
+        }
+    }
+
+    @Test
+    void testUndoRedo_MergedEditsAreOneVersion() {
+        text = Rope.of("<label/>");
+        history = new UndoHistory(text);
+        insert(6, " t", false);
+        insert(8, "e", true);
+        insert(9, "x", true);
+        insert(10, "t", true);
+        delete(0, 1);
+
+        assertEquals(3, history.size());
+        String current = text.toString();
+        current = apply(current, history.undo());
+        assertEquals("<label text/>", current);
+        current = apply(current, history.undo());
+        assertEquals("<label/>", current);
+        assertFalse(history.canUndo());
+
+        current = apply(current, history.redo());
+        assertEquals("<label text/>", current);
+        assertTrue(history.canRedo());
+    }
+
+    @Test
+    void testRecord_DiscardsRedoHistory() {
+        text = Rope.of("a");
+        history = new UndoHistory(text);
+        insert(1, "b", false);
+        insert(2, "c", false);
+        String current = apply(text.toString(), history.undo());
+        assertEquals("ab", current);
+
+        text = Rope.of(current);
+        insert(2, "d", false);
+        assertEquals(3, history.size());
+        assertFalse(history.canRedo());
+        assertEquals("a", apply("abd", history.jumpTo(0)));
+    }
+
+    @Test
+    void testBounds_ThinOlderVersionsAndKeepCurrent() {
+        text = Rope.EMPTY;
+        history = new UndoHistory(text, 64, Long.MAX_VALUE);
+        List<String> recorded = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            insert(text.length(), i + ",", false);
+            recorded.add(text.toString());
+        }
+
+        assertTrue(history.size() <= 64, "History size " + history.size());
+        assertEquals("", history.getVersion(0).text().toString(), "The first version is kept.");
+        assertEquals(text.toString(), history.getVersion(history.getCurrentIndex()).text().toString());
+        assertEquals(recorded.get(recorded.size() - 2), history.getVersion(history.size() - 2).text().toString(),
+                "Recent history keeps every version.");
+
+        // Every kept version is still reachable through the merged steps
+        String current = text.toString();
+        for (int i = history.size() - 1; i >= 0; i--) {
+            current = apply(current, history.jumpTo(i));
+            assertEquals(history.getVersion(i).text().toString(), current);
+        }
+    }
+
+    @Test
+    void testBounds_MemoryLimitDropsVersions() {
+        text = Rope.EMPTY;
+        history = new UndoHistory(text, UndoHistory.DEFAULT_MAX_VERSIONS, 64 * 1024);
+        for (int i = 0; i < 200; i++) {
+            insert(0, "x".repeat(1000), false);
+        }
+
+        assertTrue(history.getRetainedBytes() <= 64 * 1024, "Retained " + history.getRetainedBytes());
+        assertTrue(history.size() < 200);
+        assertEquals(text.toString(), history.getVersion(history.getCurrentIndex()).text().toString());
+    }
+
+    @Test
+    void testIndexAt_FindsLatestVersionBeforeTime() {
+        text = Rope.of("a");
+        history = new UndoHistory(text);
+        insert(1, "b", false);
+
+        assertEquals(0, history.indexAt(history.getVersion(0).timeMillis() - 1));
+        assertEquals(1, history.indexAt(history.getVersion(1).timeMillis()));
+        assertEquals(1, history.indexAt(Long.MAX_VALUE));
+    }
+}
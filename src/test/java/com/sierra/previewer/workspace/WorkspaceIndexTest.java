@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sierra.previewer.workspace;
+
+import com.sierra.previewer.workspace.WorkspaceIndex.Match;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for WorkspaceIndex covering queries, incremental updates and
+ * persistence.
+ */
+public class WorkspaceIndexTest {
+
+    private static final Set<String> LAYOUT_ELEMENTS = Set.of("column-panel", "row-panel", "label", "combo-box");
+
+    @TempDir
+    Path workspace;
+
+    private Path main;
+    private Path settings;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        main = Files.writeString(workspace.resolve("main.xml"), """
+                <column-panel>
+                    <label name="statusBar" text="Ready"/>
+                    <combo-box editable="true"/>
+                </column-panel>
+                """);
+        Files.createDirectories(workspace.resolve("dialogs"));
+        settings = Files.writeString(workspace.resolve("dialogs/settings.xml"), """
+                <row-panel>
+                    <combo-box editable="false"/>
+                    <label text="Save As"/>
+                </row-panel>
+                """);
+        Files.writeString(workspace.resolve("pom.xml"), "<project><label editable=\"true\"/></project>");
+    }
+
+    @Test
+    void testSearch_IntersectsElementAndAttributeTerms() throws IOException {
+        WorkspaceIndex index = new WorkspaceIndex(workspace, LAYOUT_ELEMENTS);
+        assertEquals(3, index.refresh());
+
+        assertEquals(List.of(new Match(main.toAbsolutePath(), 3, "combo-box")), index.search("combo-box editable=true"));
+        assertEquals(List.of(new Match(main.toAbsolutePath(), 2, "label")), index.search("name=statusBar"));
+        assertEquals(2, index.search("editable=*").size(), "Files that are not layouts should be skipped.");
+        assertEquals(1, index.search("label text=\"Save As\"").size());
+        assertTrue(index.search("button").isEmpty());
+    }
+
+    @Test
+    void testRefresh_OnlyParsesChangedFiles() throws IOException {
+        WorkspaceIndex index = new WorkspaceIndex(workspace, LAYOUT_ELEMENTS);
+        index.refresh();
+
+        Files.writeString(settings, "<row-panel><combo-box editable=\"true\"/></row-panel>");
+        Files.setLastModifiedTime(settings, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        Files.delete(main);
+
+        assertEquals(1, index.refresh());
+        List<Match> matches = index.search("combo-box editable=true");
+        assertEquals(1, matches.size());
+        assertEquals(settings.toAbsolutePath(), matches.get(0).file());
+        assertTrue(index.search("name=statusBar").isEmpty(), "Deleted files should be dropped.");
+    }
+
+    @Test
+    void testUpdate_ReindexesSingleFile() throws IOException {
+        WorkspaceIndex index = new WorkspaceIndex(workspace, LAYOUT_ELEMENTS);
+        index.refresh();
+
+        Files.writeString(main, "<column-panel><label name=\"footer\"/></column-panel>");
+        Files.setLastModifiedTime(main, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+
+        assertTrue(index.update(main));
+        assertFalse(index.update(main), "An unchanged file should not be parsed again.");
+        assertEquals(1, index.search("name=footer").size());
+        assertTrue(index.search("name=statusBar").isEmpty());
+    }
+
+    @Test
+    void testSaveAndLoad_RoundTripsIndex() throws IOException {
+        WorkspaceIndex index = new WorkspaceIndex(workspace, LAYOUT_ELEMENTS);
+        index.refresh();
+        Path indexFile = workspace.resolve(".index/workspace.idx");
+        index.save(indexFile);
+
+        WorkspaceIndex loaded = WorkspaceIndex.load(indexFile, workspace, LAYOUT_ELEMENTS);
+
+        assertEquals(index.getFileCount(), loaded.getFileCount());
+        assertEquals(index.getTermCount(), loaded.getTermCount());
+        assertEquals(index.search("combo-box"), loaded.search("combo-box"));
+        assertEquals(0, loaded.refresh(), "A loaded index should be up to date.");
+    }
+
+    @Test
+    void testLoad_RejectsCorruptFile() throws IOException {
+        Path indexFile = Files.write(workspace.resolve("broken.idx"), new byte[] {0x53, 0x58, 0x49, 0x58, 0, 0, 0, 1, 0});
+
+        assertThrows(IOException.class, () -> WorkspaceIndex.load(indexFile, workspace, LAYOUT_ELEMENTS));
+    }
+}